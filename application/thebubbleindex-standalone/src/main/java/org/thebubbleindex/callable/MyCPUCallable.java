@@ -1,15 +1,11 @@
 package org.thebubbleindex.callable;
 
-import static info.yeppp.Core.Multiply_V64fS64f_V64f;
-import static info.yeppp.Core.Multiply_V64fV64f_V64f;
-import static info.yeppp.Math.Cos_V64f_V64f;
-import static info.yeppp.Math.Log_V64f_V64f;
-
 import java.util.concurrent.Callable;
-import org.apache.commons.math3.util.FastMath;
-import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.FloatHQDerivativeEngine;
+import org.thebubbleindex.math.HQDerivativeEngine;
+import org.thebubbleindex.math.WindowBasis;
 import org.thebubbleindex.runnable.RunContext;
-import org.thebubbleindex.swing.BubbleIndexWorker;
+import org.thebubbleindex.util.ScratchArena;
 import org.thebubbleindex.util.Utilities;
 
 /**
@@ -23,42 +19,45 @@ public class MyCPUCallable implements Callable<Double> {
 
 	private final int numberOfDays;
 	private final int index;
-	private final LombScargle lombScargle;
-	private final double tCritDouble;
-	private final double mCoeffDouble;
-	private final double omegaDouble;
-	private final double[] dailyPriceValues;
+	private final HQDerivativeEngine hqDerivativeEngine;
+	private final FloatHQDerivativeEngine floatHQDerivativeEngine;
+	private final WindowBasis windowBasis;
+	private final double[] dailyPriceLogValues;
+	private final double[] batchCoef;
 	private final String displayPeriodString;
 	private final String selectionName;
-	private final BubbleIndexWorker bubbleIndexWorker;
 	private final RunContext runContext;
 
 	/**
 	 * MyCPUCallable constructor
 	 * 
-	 * @param bubbleIndexWorker
 	 * @param index
-	 * @param numberOfDays
-	 * @param lombScargle
-	 * @param tCritDouble
-	 * @param mCoeffDouble
-	 * @param dailyPriceValues
+	 * @param hqDerivativeEngine
+	 * @param floatHQDerivativeEngine
+	 *            The single precision engine, or null to calculate in double
+	 *            precision
+	 * @param windowBasis
+	 * @param dailyPriceLogValues
+	 *            The log prices of the selection
+	 * @param batchCoef
+	 *            The coefficients computed by the batch fit of the window, or
+	 *            null to fit the date in this callable
 	 * @param displayPeriodString
 	 * @param selectionName
 	 */
-	public MyCPUCallable(final BubbleIndexWorker bubbleIndexWorker, final int index, final int numberOfDays,
-			final LombScargle lombScargle, final double tCritDouble, final double[] dailyPriceValues,
-			final String displayPeriodString, final String selectionName, final RunContext runContext) {
-		this.numberOfDays = numberOfDays;
+	public MyCPUCallable(final int index, final HQDerivativeEngine hqDerivativeEngine,
+			final FloatHQDerivativeEngine floatHQDerivativeEngine, final WindowBasis windowBasis,
+			final double[] dailyPriceLogValues, final double[] batchCoef, final String displayPeriodString,
+			final String selectionName, final RunContext runContext) {
+		this.numberOfDays = windowBasis.numberOfDays;
 		this.index = index;
-		this.lombScargle = lombScargle;
-		this.tCritDouble = tCritDouble;
-		this.dailyPriceValues = dailyPriceValues;
+		this.hqDerivativeEngine = hqDerivativeEngine;
+		this.floatHQDerivativeEngine = floatHQDerivativeEngine;
+		this.windowBasis = windowBasis;
+		this.dailyPriceLogValues = dailyPriceLogValues;
+		this.batchCoef = batchCoef;
 		this.displayPeriodString = displayPeriodString;
 		this.selectionName = selectionName;
-		this.bubbleIndexWorker = bubbleIndexWorker;
-		this.omegaDouble = lombScargle.omegaDouble;
-		this.mCoeffDouble = lombScargle.mCoeffDouble;
 		this.runContext = runContext;
 	}
 
@@ -71,61 +70,73 @@ public class MyCPUCallable implements Callable<Double> {
 	public Double call() {
 
 		if (!runContext.isStop()) {
-			final double[] TimeValues = new double[numberOfDays];
-			final double[] TimeValues_M_Power = new double[numberOfDays];
-			final double[] LogCosTimeValues = new double[numberOfDays];
-			final double[] SelectedData = new double[numberOfDays];
-			final double[] Coef = new double[3];
-			final double[] LogTimeValuesTemp = new double[numberOfDays];
-
-			boolean containsNonZeroDouble = false;
-
-			// Arrays used in the H,Q derivative calculation and periodogram
-			for (int k = 0; k < numberOfDays; k++) {
-				TimeValues[k] = numberOfDays + tCritDouble - k;
-				TimeValues_M_Power[k] = FastMath.pow(TimeValues[k], mCoeffDouble);
-				SelectedData[k] = dailyPriceValues[k + index + 1];
-				if (!containsNonZeroDouble && SelectedData[k] > 0)
-					containsNonZeroDouble = true;
-			}
-
-			// Return 0.0 if the timeseries === 0
-			if (!containsNonZeroDouble) {
-				return new Double(0.0);
+			final ScratchArena arena = ScratchArena.get();
+			final int mark = arena.mark();
+			final double Temp;
+
+			try {
+				double[] SelectedData = null;
+
+				if (batchCoef == null) {
+					SelectedData = arena.doubles(numberOfDays);
+
+					boolean containsNonZeroDouble = false;
+
+					// log(price) > -Infinity for positive prices
+					for (int k = 0; k < numberOfDays; k++) {
+						if (dailyPriceLogValues[k + index + 1] > Double.NEGATIVE_INFINITY) {
+							containsNonZeroDouble = true;
+							break;
+						}
+					}
+
+					// Return 0.0 if the timeseries === 0
+					if (!containsNonZeroDouble) {
+						return new Double(0.0);
+					}
+
+					// Normalize data to a price starting at 100
+					Utilities.NormalizeLogPrices(dailyPriceLogValues, index + 1, SelectedData, numberOfDays);
+
+					Utilities.DataReverse(SelectedData, numberOfDays);
+				}
+
+				if (floatHQDerivativeEngine != null) {
+					// Single precision from the fit on, as on the GPU
+					final float[] Coef = arena.floats(3);
+
+					if (batchCoef != null) {
+						for (int i = 0; i < 3; i++) {
+							Coef[i] = (float) batchCoef[i];
+						}
+					} else {
+						final float[] FloatData = arena.floats(numberOfDays);
+						for (int k = 0; k < numberOfDays; k++) {
+							FloatData[k] = (float) SelectedData[k];
+						}
+						windowBasis.linearFitOperator.fit(FloatData, Coef);
+					}
+
+					Temp = floatHQDerivativeEngine.hqDerivative(Coef);
+				} else {
+					final double[] Coef;
+
+					if (batchCoef != null) {
+						Coef = batchCoef;
+					} else {
+						Coef = arena.doubles(3);
+
+						// Fit the curve with the equation given in:
+						windowBasis.linearFitOperator.fit(SelectedData, Coef);
+					}
+
+					Temp = hqDerivativeEngine.hqDerivative(Coef);
+				}
+			} finally {
+				arena.release(mark);
 			}
 
-			final double[] tempFour = new double[numberOfDays];
-			final double[] tempFive = new double[numberOfDays];
-
-			Log_V64f_V64f(TimeValues, 0, tempFour, 0, numberOfDays);
-
-			System.arraycopy(tempFour, 0, LogTimeValuesTemp, 0, numberOfDays);
-
-			Multiply_V64fS64f_V64f(tempFour, 0, omegaDouble, tempFive, 0, numberOfDays);
-			Cos_V64f_V64f(tempFive, 0, tempFour, 0, numberOfDays);
-			Multiply_V64fV64f_V64f(tempFour, 0, TimeValues_M_Power, 0, tempFive, 0, numberOfDays);
-
-			System.arraycopy(tempFive, 0, LogCosTimeValues, 0, numberOfDays);
-
-			// Normalize data to a price starting at 100
-			Utilities.Normalize(SelectedData, numberOfDays);
-
-			Utilities.DataReverse(SelectedData, numberOfDays);
-
-			// Fit the curve with the equation given in:
-			Utilities.LinearFit(SelectedData, TimeValues_M_Power, LogCosTimeValues, Coef, numberOfDays);
-
-			final double Temp = lombScargle.hqDerivative(TimeValues, Coef, numberOfDays);
-
-			final double output = Temp;
-
-			if (runContext.isGUI()) {
-				bubbleIndexWorker.publishText(String.format("Name: %s    Date: %s    Value: %15.2f    Window: %d",
-						selectionName, displayPeriodString, output, numberOfDays));
-			} else {
-				System.out.println(String.format("Name: %s    Date: %s    Value: %15.2f    Window: %d", selectionName,
-						displayPeriodString, output, numberOfDays));
-			}
+			runContext.getProgress().dateCompleted(selectionName, displayPeriodString, Temp, numberOfDays);
 			return Temp;
 		}
 
@@ -7,20 +7,13 @@ import com.nativelibs4java.opencl.CLKernel;
 import com.nativelibs4java.opencl.CLMem;
 import com.nativelibs4java.opencl.CLProgram;
 import com.nativelibs4java.opencl.CLQueue;
-import static info.yeppp.Core.Add_V64fV64f_V64f;
-import static info.yeppp.Core.Multiply_V64fS64f_V64f;
-import static info.yeppp.Core.Multiply_V64fV64f_V64f;
-import static info.yeppp.Math.Cos_V64f_V64f;
-import static info.yeppp.Math.Log_V64f_V64f;
-import static info.yeppp.Math.Sin_V64f_V64f;
 import java.nio.ByteOrder;
 import java.util.concurrent.Callable;
-import org.apache.commons.math3.util.FastMath;
 import org.bridj.Pointer;
 import org.thebubbleindex.logging.Logs;
 import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
 import org.thebubbleindex.runnable.RunContext;
-import org.thebubbleindex.swing.BubbleIndexWorker;
 import org.thebubbleindex.util.Utilities;
 
 import static org.bridj.Pointer.allocateFloats;
@@ -47,82 +40,56 @@ public class MyGPUCallable implements Callable<Float> {
 	private final int hSize;
 	private final double[] testFrequencies;
 
-	@SuppressWarnings("unused")
-	private final double[] Q;
-	private final double[] H;
-
 	private final double[] QiM;
-	private final double[] cOne;
-	private final double[] cTwo;
 	private final double[][] powTempVar;
 
-	@SuppressWarnings("unused")
-	private final float omegaFloat;
-	private final double omegaDouble;
-	private final float mCoeffFloat;
-	private final double mCoeffDouble;
-
-	private final double tCritDouble;
-	private final double[] dailyPriceValues;
+	private final WindowBasis windowBasis;
+	private final double[] dailyPriceLogValues;
 
 	private final String selectionName;
 	private final String displayPeriodString;
 
-	private final BubbleIndexWorker bubbleIndexWorker;
-	
 	private final RunContext runContext;
 
 	/**
 	 * MyGPUCallable constructor
 	 * 
-	 * @param bubbleIndexWorker
 	 * @param index
-	 * @param numberOfDays
 	 * @param lombScargle
 	 * @param context
 	 * @param queue
 	 * @param program
 	 * @param kernel
 	 * @param byteOrder
-	 * @param tCritDouble
-	 * @param dailyPriceValues
+	 * @param windowBasis
+	 * @param dailyPriceLogValues
+	 *            The log prices of the selection
 	 * @param selectionName
 	 * @param displayPeriodString
 	 */
-	public MyGPUCallable(final BubbleIndexWorker bubbleIndexWorker, final int index, final int numberOfDays,
-			final LombScargle lombScargle, final CLContext context, final CLQueue queue, final CLProgram program,
-			final CLKernel kernel, final ByteOrder byteOrder, final double tCritDouble, final double[] dailyPriceValues,
-			final String selectionName, final String displayPeriodString, final RunContext runContext) {
-		this.numberOfDays = numberOfDays;
+	public MyGPUCallable(final int index, final LombScargle lombScargle, final CLContext context,
+			final CLQueue queue, final CLProgram program, final CLKernel kernel, final ByteOrder byteOrder,
+			final WindowBasis windowBasis, final double[] dailyPriceLogValues, final String selectionName,
+			final String displayPeriodString, final RunContext runContext) {
+		this.numberOfDays = windowBasis.numberOfDays;
 		this.index = index;
 		this.context = context;
 		this.queue = queue;
 		this.kernel = kernel;
 		this.byteOrder = byteOrder;
-		this.tCritDouble = tCritDouble;
-		this.dailyPriceValues = dailyPriceValues;
+		this.windowBasis = windowBasis;
+		this.dailyPriceLogValues = dailyPriceLogValues;
 		this.selectionName = selectionName;
 		this.displayPeriodString = displayPeriodString;
-		this.bubbleIndexWorker = bubbleIndexWorker;
 		this.runContext = runContext;
 
 		this.freqSize = lombScargle.freqSize;
 		this.qSize = lombScargle.qSize;
 		this.hSize = lombScargle.hSize;
 		this.testFrequencies = lombScargle.testFrequencies;
-		this.Q = lombScargle.Q;
-		this.H = lombScargle.H;
 
 		this.QiM = lombScargle.QiM;
-		this.cOne = lombScargle.cOne;
-		this.cTwo = lombScargle.cTwo;
 		this.powTempVar = lombScargle.powTempVar;
-
-		this.omegaFloat = lombScargle.omegaFloat;
-		this.omegaDouble = lombScargle.omegaDouble;
-		this.mCoeffFloat = lombScargle.mCoeffFloat;
-		this.mCoeffDouble = lombScargle.mCoeffDouble;
-
 	}
 
 	/**
@@ -148,22 +115,17 @@ public class MyGPUCallable implements Callable<Float> {
 				testfreq.set(i, (float) testFrequencies[i]);
 			}
 
-			final double[] TimeValues = new double[numberOfDays];
-			final double[] TimeValues_M_Power = new double[numberOfDays];
-			final double[] LogCosTimeValues = new double[numberOfDays];
 			final double[] SelectedData = new double[numberOfDays];
 			final double[] Coef = new double[3];
-			final double[] LogTimeValuesTemp = new double[numberOfDays];
 
 			boolean containsNonZeroDouble = false;
 
-			// Arrays used in the H,Q derivative calculation and periodogram
+			// log(price) > -Infinity for positive prices
 			for (int k = 0; k < numberOfDays; k++) {
-				TimeValues[k] = numberOfDays + tCritDouble - k;
-				TimeValues_M_Power[k] = FastMath.pow(TimeValues[k], mCoeffFloat);
-				SelectedData[k] = dailyPriceValues[k + index + 1];
-				if (!containsNonZeroDouble && SelectedData[k] > 0)
+				if (dailyPriceLogValues[k + index + 1] > Double.NEGATIVE_INFINITY) {
 					containsNonZeroDouble = true;
+					break;
+				}
 			}
 
 			// Return 0.0 if the timeseries === 0
@@ -171,48 +133,20 @@ public class MyGPUCallable implements Callable<Float> {
 				return new Float(0.0f);
 			}
 
-			final double[] tempFour = new double[numberOfDays];
-			final double[] tempFive = new double[numberOfDays];
-
-			Log_V64f_V64f(TimeValues, 0, tempFour, 0, numberOfDays);
-
-			System.arraycopy(tempFour, 0, LogTimeValuesTemp, 0, numberOfDays);
-
-			Multiply_V64fS64f_V64f(tempFour, 0, omegaDouble, tempFive, 0, numberOfDays);
-			Cos_V64f_V64f(tempFive, 0, tempFour, 0, numberOfDays);
-			Multiply_V64fV64f_V64f(tempFour, 0, TimeValues_M_Power, 0, tempFive, 0, numberOfDays);
-
-			System.arraycopy(tempFive, 0, LogCosTimeValues, 0, numberOfDays);
-
 			// Normalize data to a price starting at 100
-			Utilities.Normalize(SelectedData, numberOfDays);
+			Utilities.NormalizeLogPrices(dailyPriceLogValues, index + 1, SelectedData, numberOfDays);
 
 			Utilities.DataReverse(SelectedData, numberOfDays);
 
 			// Fit the curve with the equation given in:
-			Utilities.LinearFit(SelectedData, TimeValues_M_Power, LogCosTimeValues, Coef, numberOfDays);
-
-			final double[] tempSix = new double[numberOfDays];
-
-			Multiply_V64fS64f_V64f(LogTimeValuesTemp, 0, omegaDouble, tempFour, 0, numberOfDays);
-
-			Cos_V64f_V64f(tempFour, 0, tempFive, 0, numberOfDays);
-			Sin_V64f_V64f(tempFour, 0, tempSix, 0, numberOfDays);
+			windowBasis.linearFitOperator.fit(SelectedData, Coef);
 
 			final double[] mean = new double[qSize * hSize];
 
 			for (int i = 0; i < qSize; i++) {
 
 				final double Qi_M = QiM[i];
-				final double C_one = cOne[i];
-				final double C_two = cTwo[i];
-				final double[] tempSeven = new double[numberOfDays];
-				final double[] tempEight = new double[numberOfDays];
-				final double[] tempNine = new double[numberOfDays];
-
-				Multiply_V64fS64f_V64f(tempFive, 0, C_one, tempSeven, 0, numberOfDays);
-				Multiply_V64fS64f_V64f(tempSix, 0, C_two, tempEight, 0, numberOfDays);
-				Add_V64fV64f_V64f(tempSeven, 0, tempEight, 0, tempNine, 0, numberOfDays);
+				final double[] tempNine = windowBasis.gFunction[i];
 
 				for (int p = 0; p < hSize; p++) {
 
@@ -224,14 +158,14 @@ public class MyGPUCallable implements Callable<Float> {
 
 					C_prime = (Coef[2]) * 1.0 / tempVar;
 
+					final double[] TimePowerMH = windowBasis.timePowerMH[p];
 					double sum = 0.0f;
 
 					for (int k = 0; k < numberOfDays; k++) {
 
 						final double G_function = tempNine[k];
 
-						final double tempValue = (FastMath.pow(TimeValues[k], mCoeffDouble - H[p]))
-								* (B_prime + C_prime * G_function);
+						final double tempValue = TimePowerMH[k] * (B_prime + C_prime * G_function);
 						sum = sum + tempValue;
 						hqderiv.set((i + p * qSize) * numberOfDays + k, (float) tempValue);
 					}
@@ -242,7 +176,7 @@ public class MyGPUCallable implements Callable<Float> {
 
 			// Prepare the arrays to be copied to device memory
 			for (int i = 0; i < numberOfDays; i++) {
-				logtimeValues.set(i, (float) LogTimeValuesTemp[i]);
+				logtimeValues.set(i, (float) windowBasis.LogTimeValues[i]);
 			}
 
 			for (int i = 0; i < qSize * hSize; i++) {
@@ -298,15 +232,7 @@ public class MyGPUCallable implements Callable<Float> {
 				Logs.myLogger.error("GPU Kernel exception. Selection Name = {}. {}", selectionName, th);
 			}
 
-			final float output = Temp;
-
-			if (runContext.isGUI()) {
-				bubbleIndexWorker.publishText(String.format("Name: %s    Date: %s    Value: %15.2f    Window: %d",
-						selectionName, displayPeriodString, output, numberOfDays));
-			} else {
-				System.out.println(String.format("Name: %s    Date: %s    Value: %15.2f    Window: %d", selectionName,
-						displayPeriodString, output, numberOfDays));
-			}
+			runContext.getProgress().dateCompleted(selectionName, displayPeriodString, Temp, numberOfDays);
 			Values.release();
 			MeanArray.release();
 			logtimeValues.release();
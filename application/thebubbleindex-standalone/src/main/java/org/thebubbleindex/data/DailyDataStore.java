@@ -0,0 +1,410 @@
+package org.thebubbleindex.data;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.inputs.InputCategory;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.util.Utilities;
+
+/**
+ * DailyDataStore is a binary columnar copy of a dailydata.csv file, beside it
+ * with the extension .bin, such as BITSTAMPUSDdailydata.bin. It is memory
+ * mapped and read without parsing a single date or price.
+ * <p>
+ * The file is little endian: a header of HEADER_BYTES with the magic number,
+ * the version, the number of dates, the length and last modified time of the
+ * dailydata.csv file it was imported from and the CRC32 of the columns,
+ * followed by the column of prices as doubles and the column of dates as
+ * days since 1970-01-01.
+ * <p>
+ * The dailydata.csv file remains the source of the prices, which the update
+ * and other tools read and write. A store whose recorded length or last
+ * modified time differs from the dailydata.csv file is stale and is imported
+ * again, see {@link #isFresh(String)}. exportTsv writes the dailydata.csv file
+ * of a store.
+ *
+ * @author thebubbleindex
+ */
+public class DailyDataStore {
+
+	public static final String EXTENSION = ".bin";
+	public static final int HEADER_BYTES = 40;
+	static final int MAGIC = 0x44444942;
+	static final int VERSION = 1;
+
+	private final String storePath;
+	private final MappedByteBuffer buffer;
+	private final int size;
+	private final long sourceLength;
+	private final long sourceLastModified;
+
+	private DailyDataStore(final String storePath, final MappedByteBuffer buffer) throws IOException {
+		this.storePath = storePath;
+		this.buffer = buffer;
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Not a daily data store: " + storePath);
+		}
+		size = buffer.getInt(8);
+		sourceLength = buffer.getLong(16);
+		sourceLastModified = buffer.getLong(24);
+		if (size < 0 || buffer.capacity() != HEADER_BYTES + 12L * size) {
+			throw new IOException("Truncated daily data store: " + storePath);
+		}
+
+		final ByteBuffer columns = buffer.duplicate();
+		columns.position(HEADER_BYTES);
+		final CRC32 crc = new CRC32();
+		crc.update(columns);
+		if (crc.getValue() != buffer.getLong(32)) {
+			throw new IOException("Checksum of daily data store does not match: " + storePath);
+		}
+	}
+
+	/**
+	 * storePath returns the path of the store of a dailydata.csv file
+	 *
+	 * @param tsvPath
+	 * @return
+	 */
+	public static String storePath(final String tsvPath) {
+		final String base = tsvPath.endsWith(".csv") ? tsvPath.substring(0, tsvPath.length() - ".csv".length())
+				: tsvPath;
+		return base + EXTENSION;
+	}
+
+	/**
+	 * open maps a store and checks its header and checksum
+	 *
+	 * @param storePath
+	 * @return
+	 * @throws IOException
+	 */
+	public static DailyDataStore open(final String storePath) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(storePath, "r");
+		try {
+			final FileChannel channel = file.getChannel();
+			return new DailyDataStore(storePath, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * isFresh returns true if the store of a dailydata.csv file exists and
+	 * was imported from the current dailydata.csv file, or if there is only
+	 * the store
+	 *
+	 * @param tsvPath
+	 * @return
+	 */
+	public static boolean isFresh(final String tsvPath) {
+		final File store = new File(storePath(tsvPath));
+		if (!store.isFile() || store.length() < HEADER_BYTES) {
+			return false;
+		}
+		final File tsv = new File(tsvPath);
+		if (!tsv.exists()) {
+			return true;
+		}
+		try {
+			final RandomAccessFile file = new RandomAccessFile(store, "r");
+			try {
+				final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				file.getChannel().read(header, 0);
+				return header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+						&& header.getLong(16) == tsv.length() && header.getLong(24) == tsv.lastModified();
+			} finally {
+				file.close();
+			}
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to read daily data store {}. {}", store, ex);
+			return false;
+		}
+	}
+
+	/**
+	 * countDates returns the number of dates of a fresh store, or -1 if the
+	 * store of the dailydata.csv file is missing or stale
+	 *
+	 * @param tsvPath
+	 * @return
+	 */
+	public static int countDates(final String tsvPath) {
+		if (!isFresh(tsvPath)) {
+			return -1;
+		}
+		try {
+			final RandomAccessFile file = new RandomAccessFile(storePath(tsvPath), "r");
+			try {
+				final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				file.getChannel().read(header, 0);
+				return header.getInt(8);
+			} finally {
+				file.close();
+			}
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to read daily data store of {}. {}", tsvPath, ex);
+			return -1;
+		}
+	}
+
+	/**
+	 * importTsv writes the store of a dailydata.csv file. The dates must be
+	 * formatted as YYYY-MM-DD and every price must be a number, otherwise
+	 * nothing is written.
+	 *
+	 * @param tsvPath
+	 * @return The store
+	 * @throws IOException
+	 */
+	public static DailyDataStore importTsv(final String tsvPath) throws IOException {
+		final File tsv = new File(tsvPath);
+		final long length = tsv.length();
+		final long lastModified = tsv.lastModified();
+
+		final List<String> dates = new ArrayList<String>(10000);
+		final List<String> prices = new ArrayList<String>(10000);
+		try {
+			Utilities.ReadValues(tsvPath, dates, prices, false, false);
+		} catch (final FailedToRunIndex ex) {
+			throw new IOException(ex);
+		}
+
+		final int size = dates.size();
+		final int[] epochDays = new int[size];
+		final double[] values = new double[size];
+		for (int i = 0; i < size; i++) {
+			try {
+				epochDays[i] = (int) LocalDate.parse(dates.get(i)).toEpochDay();
+				values[i] = Double.parseDouble(prices.get(i));
+			} catch (final DateTimeParseException ex) {
+				throw new IOException("Invalid date on line " + (i + 1) + " of " + tsvPath, ex);
+			} catch (final NumberFormatException ex) {
+				throw new IOException("Invalid price on line " + (i + 1) + " of " + tsvPath, ex);
+			}
+		}
+
+		final String storePath = storePath(tsvPath);
+		write(storePath, epochDays, values, size, length, lastModified);
+		return open(storePath);
+	}
+
+	/**
+	 * exportTsv writes the dates and prices of a store to a dailydata.csv
+	 * file, which the store then is the import of
+	 *
+	 * @param storePath
+	 * @param tsvPath
+	 * @throws IOException
+	 */
+	public static void exportTsv(final String storePath, final String tsvPath) throws IOException {
+		final DailyDataStore store = open(storePath);
+		final Path temporary = temporaryFile(tsvPath);
+		try {
+			final BufferedWriter writer = Files.newBufferedWriter(temporary, Charset.defaultCharset());
+			try {
+				for (int i = 0; i < store.size; i++) {
+					writer.append(store.getDate(i));
+					writer.append('\t');
+					writer.append(BigDecimal.valueOf(store.getPrice(i)).toPlainString());
+					writer.append('\n');
+				}
+			} finally {
+				writer.close();
+			}
+			Files.move(temporary, new File(tsvPath).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+
+		final File tsv = new File(tsvPath);
+		final int[] epochDays = new int[store.size];
+		final double[] values = new double[store.size];
+		for (int i = 0; i < store.size; i++) {
+			epochDays[i] = store.getEpochDay(i);
+			values[i] = store.getPrice(i);
+		}
+		write(storePath(tsvPath), epochDays, values, store.size, tsv.length(), tsv.lastModified());
+	}
+
+	/**
+	 * convert imports the store of every selection of the categories, or
+	 * exports the dailydata.csv file of every selection which has a store
+	 *
+	 * @param indices
+	 * @param categoryNames
+	 * @param export
+	 * @return The number of selections converted
+	 */
+	public static int convert(final Indices indices, final List<String> categoryNames, final boolean export) {
+		int converted = 0;
+		for (final String categoryName : categoryNames) {
+			final InputCategory category = indices.getCategoriesAndComponents().get(categoryName);
+			if (category == null) {
+				Logs.myLogger.error("Unknown category {}.", categoryName);
+				continue;
+			}
+			for (final String selectionName : category.getComponents()) {
+				final String tsvPath = indices.getUserDir() + indices.getProgramDataFolder()
+						+ indices.getFilePathSymbol() + categoryName + indices.getFilePathSymbol() + selectionName
+						+ indices.getFilePathSymbol() + selectionName + "dailydata.csv";
+				try {
+					if (!export && new File(tsvPath).exists()) {
+						importTsv(tsvPath);
+						converted++;
+					} else if (export && new File(storePath(tsvPath)).exists()) {
+						exportTsv(storePath(tsvPath), tsvPath);
+						converted++;
+					}
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to convert daily data of {}. {}", tsvPath, ex);
+				}
+			}
+		}
+		return converted;
+	}
+
+	/**
+	 * write replaces a store with the columns
+	 *
+	 * @param storePath
+	 * @param epochDays
+	 * @param prices
+	 * @param size
+	 * @param sourceLength
+	 * @param sourceLastModified
+	 * @throws IOException
+	 */
+	static void write(final String storePath, final int[] epochDays, final double[] prices, final int size,
+			final long sourceLength, final long sourceLastModified) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 12 * size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(HEADER_BYTES);
+		buffer.asDoubleBuffer().put(prices, 0, size);
+		buffer.position(HEADER_BYTES + 8 * size);
+		buffer.asIntBuffer().put(epochDays, 0, size);
+		buffer.position(HEADER_BYTES);
+		final CRC32 crc = new CRC32();
+		crc.update(buffer);
+
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, size);
+		buffer.putInt(12, 0);
+		buffer.putLong(16, sourceLength);
+		buffer.putLong(24, sourceLastModified);
+		buffer.putLong(32, crc.getValue());
+		buffer.rewind();
+
+		final Path temporary = temporaryFile(storePath);
+		try {
+			final RandomAccessFile file = new RandomAccessFile(temporary.toFile(), "rw");
+			try {
+				final FileChannel channel = file.getChannel();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} finally {
+				file.close();
+			}
+			Files.move(temporary, new File(storePath).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * temporaryFile creates a new empty file in the folder of path, so that
+	 * writers of the same path at the same time, such as cluster workers
+	 * importing one selection, each write their own file before the atomic
+	 * move
+	 *
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	static Path temporaryFile(final String path) throws IOException {
+		final File target = new File(path).getAbsoluteFile();
+		return Files.createTempFile(target.getParentFile().toPath(), target.getName(), ".tmp");
+	}
+
+	public String getStorePath() {
+		return storePath;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getSourceLength() {
+		return sourceLength;
+	}
+
+	public long getSourceLastModified() {
+		return sourceLastModified;
+	}
+
+	public double getPrice(final int index) {
+		return buffer.getDouble(HEADER_BYTES + 8 * index);
+	}
+
+	public int getEpochDay(final int index) {
+		return buffer.getInt(HEADER_BYTES + 8 * size + 4 * index);
+	}
+
+	/**
+	 * getDate returns the date of index formatted as YYYY-MM-DD
+	 *
+	 * @param index
+	 * @return
+	 */
+	public String getDate(final int index) {
+		return LocalDate.ofEpochDay(getEpochDay(index)).toString();
+	}
+
+	/**
+	 * copyPrices copies the column of prices into prices
+	 *
+	 * @param prices
+	 */
+	public void copyPrices(final double[] prices) {
+		final ByteBuffer columns = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		columns.position(HEADER_BYTES);
+		columns.asDoubleBuffer().get(prices, 0, size);
+	}
+
+	/**
+	 * getDates returns the formatted dates
+	 *
+	 * @return
+	 */
+	public List<String> getDates() {
+		final List<String> dates = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			dates.add(getDate(i));
+		}
+		return dates;
+	}
+}
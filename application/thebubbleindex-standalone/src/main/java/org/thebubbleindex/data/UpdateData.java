@@ -13,9 +13,7 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 import org.thebubbleindex.inputs.Indices;
 import org.thebubbleindex.logging.Logs;
@@ -66,7 +64,9 @@ public class UpdateData {
 			readCategoryList(category, Selections, Sources, quandlDataSet, quandlDataName, quandlColumn, isYahooIndex,
 					overwrite);
 
-			final ExecutorService executor = Executors.newFixedThreadPool(runContext.getThreadNumber());
+			// the downloads block on the network, so they do not run on the
+			// workers of the compute pool
+			final ExecutorService executor = runContext.getScheduler().getIO();
 			final List<Callable<Integer>> callables = new ArrayList<Callable<Integer>>(500);
 
 			for (int j = 0; j < Selections.size(); j++) {
@@ -93,15 +93,6 @@ public class UpdateData {
 				Logs.myLogger.error("Category Name = {}. {}", category, ex);
 			}
 
-			executor.shutdownNow();
-			try {
-				executor.awaitTermination(5, TimeUnit.SECONDS);
-			} catch (final InterruptedException ex) {
-				executor.shutdownNow();
-				Logs.myLogger.error("While updating category {}. Await termination execution exception. {}", category,
-						ex);
-			}
-
 			final Integer finalErrorNumber = new Integer(errors);
 			errorsPerCategory.put(category, finalErrorNumber);
 		}
@@ -10,6 +10,8 @@ import org.thebubbleindex.inputs.Indices;
 import org.thebubbleindex.logging.Logs;
 import org.thebubbleindex.plot.BubbleIndexPlot;
 import org.thebubbleindex.plot.DerivativePlot;
+import org.thebubbleindex.runnable.ResultManifest;
+import org.thebubbleindex.runnable.ResultStore;
 import org.thebubbleindex.runnable.RunContext;
 import org.thebubbleindex.runnable.RunIndex;
 import org.thebubbleindex.swing.BubbleIndexWorker;
@@ -28,6 +30,7 @@ public class BubbleIndex {
 	private final String selectionName;
 
 	private String previousFilePath;
+	private ResultManifest resultManifest;
 	private String filePath;
 	private String savePath;
 	private final String openCLSrc;
@@ -43,6 +46,7 @@ public class BubbleIndex {
 	private final List<Double> results;
 
 	private final double[] dailyPriceDoubleValues;
+	private final double[] dailyPriceLogValues;
 	private final Indices indices;
 	private final RunContext runContext;
 
@@ -77,38 +81,17 @@ public class BubbleIndex {
 		if (!runContext.isStop())
 			setFilePaths();
 
-		if (dailyDataCache.getSelectionName().equals(this.selectionName)) {
-			dailyPriceData = dailyDataCache.getDailyPriceData();
-			dailyPriceDate = dailyDataCache.getDailyPriceDate();
+		dailyDataCache.load(this.selectionName, filePath, runContext);
 
-			dataSize = dailyPriceData.size();
+		dailyPriceData = dailyDataCache.getDailyPriceData();
+		dailyPriceDate = dailyDataCache.getDailyPriceDate();
 
-			dailyPriceDoubleValues = dailyDataCache.getDailyPriceDoubleValues();
-
-			results = new ArrayList<Double>(dataSize);
-
-		} else {
-			dailyPriceData = new ArrayList<String>(10000);
-			dailyPriceDate = new ArrayList<String>(10000);
-
-			if (!runContext.isStop())
-				Utilities.ReadValues(filePath, dailyPriceDate, dailyPriceData, false, false);
-
-			dailyDataCache.setSelectionName(this.selectionName);
-			dailyDataCache.setDailyPriceData(new ArrayList<String>(dailyPriceData));
-			dailyDataCache.setDailyPriceDate(new ArrayList<String>(dailyPriceDate));
-
-			dataSize = dailyPriceData.size();
-
-			dailyPriceDoubleValues = new double[dataSize];
-
-			if (!runContext.isStop())
-				convertPrices();
+		dataSize = dailyPriceData.size();
 
-			dailyDataCache.setDailyPriceDoubleValues(dailyPriceDoubleValues);
+		dailyPriceDoubleValues = dailyDataCache.getDailyPriceDoubleValues();
+		dailyPriceLogValues = dailyDataCache.getDailyPriceLogValues();
 
-			results = new ArrayList<Double>(dataSize);
-		}
+		results = new ArrayList<Double>(dataSize);
 	}
 
 	/**
@@ -146,6 +129,7 @@ public class BubbleIndex {
 		dataSize = dailyPriceData.size();
 
 		dailyPriceDoubleValues = new double[dataSize];
+		dailyPriceLogValues = new double[dataSize];
 
 		if (!runContext.isStop())
 			convertPrices();
@@ -160,9 +144,9 @@ public class BubbleIndex {
 	 */
 	public void runBubbleIndex(final BubbleIndexWorker bubbleIndexWorker) {
 		if (dataSize > window) {
-			final RunIndex runIndex = new RunIndex(bubbleIndexWorker, dailyPriceDoubleValues, dataSize, window, results,
-					dailyPriceDate, previousFilePath, selectionName, omega, mCoeff, tCrit, indices, openCLSrc,
-					runContext);
+			final RunIndex runIndex = new RunIndex(bubbleIndexWorker, dailyPriceDoubleValues, dailyPriceLogValues,
+					dataSize, window, results, dailyPriceDate, previousFilePath, selectionName, omega, mCoeff, tCrit,
+					indices, openCLSrc, runContext);
 
 			if (!runContext.isForceCPU()) {
 				try {
@@ -195,6 +179,7 @@ public class BubbleIndex {
 					results.clear();
 				}
 			}
+			resultManifest = runIndex.getResultManifest();
 		}
 	}
 
@@ -219,6 +204,13 @@ public class BubbleIndex {
 
 					Utilities.WriteCSV(savePath, results, dataSize - window, Name, dailyPriceDate,
 							new File(previousFilePath).exists());
+					if (resultManifest != null) {
+						resultManifest.writePending();
+					}
+					if (runContext.isResultStore()) {
+						ResultStore.updateWindow(savePath, selectionName, window, dailyPriceDate,
+								dataSize - window - results.size(), results);
+					}
 				} catch (final IOException ex) {
 					Logs.myLogger.error("Failed to write csv output. Save path = {}. {}", savePath, ex);
 				}
@@ -275,6 +267,7 @@ public class BubbleIndex {
 
 	/**
 	 * convertPrices helper method to convert the daily price data into doubles
+	 * and take their log once for every window of the selection
 	 * 
 	 */
 	private void convertPrices() {
@@ -285,5 +278,6 @@ public class BubbleIndex {
 				Logs.myLogger.error("Number Format Exception. Code 030. " + ex);
 			}
 		}
+		Utilities.LogPrices(dailyPriceDoubleValues, dailyPriceLogValues, dataSize);
 	}
 }
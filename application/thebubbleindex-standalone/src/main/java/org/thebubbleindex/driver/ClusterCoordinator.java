@@ -0,0 +1,620 @@
+package org.thebubbleindex.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.VectorMaths;
+import org.thebubbleindex.runnable.ResultJournal;
+import org.thebubbleindex.runnable.ResultManifest;
+import org.thebubbleindex.runnable.ResultStore;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+import org.thebubbleindex.util.Utilities;
+
+/**
+ * ClusterCoordinator runs The Bubble Index of many selections on several
+ * worker JVMs. Every (category, selection, window) is one job. The jobs are
+ * ordered longest first and handed out one at a time to the
+ * {@link ClusterWorker}s which connect to the coordinator, over the
+ * {@link ClusterProtocol}.
+ * <p>
+ * The coordinator starts its local workers itself, with the system
+ * properties of the run which noGUI reads. Workers on other hosts
+ * which share the ProgramData folder may connect at any time with noGUI
+ * Worker. A worker whose connection closes or which stops sending its
+ * heartbeat is dead: its job is returned to the front of the queue and given
+ * to the next free worker, which continues from the journal of the window.
+ * A job is failed after MAX_ATTEMPTS dead workers. A dead local worker is
+ * restarted, at most once per local worker.
+ * <p>
+ * The rows of a finished job are collected on the thread which calls run,
+ * which is the single writer of the output files, and appended to the output
+ * file of the window in the usual ProgramData layout, and to the result store
+ * of the selection if the run context keeps one. Before the jobs are handed
+ * out, the output file of every window is prepared on the same thread: the
+ * rows which are no longer valid are removed and its manifest is updated, so
+ * the workers only read it.
+ *
+ * @author thebubbleindex
+ */
+public class ClusterCoordinator {
+
+	static final int MAX_ATTEMPTS = 3;
+
+	private final double omega;
+	private final double mCoeff;
+	private final double tCrit;
+	private final int[] windows;
+	private final List<String[]> selections = new ArrayList<String[]>();
+
+	private final Indices indices;
+	private final RunContext runContext;
+
+	private final BlockingDeque<ClusterJob> pendingJobs = new LinkedBlockingDeque<ClusterJob>();
+	private final BlockingQueue<ClusterJob> finishedJobs = new LinkedBlockingQueue<ClusterJob>();
+	private final List<WorkerSession> sessions = Collections.synchronizedList(new ArrayList<WorkerSession>());
+	private final List<Process> localWorkers = new ArrayList<Process>();
+	private final List<Boolean> restartedWorkers = new ArrayList<Boolean>();
+	private final AtomicInteger reassignedJobs = new AtomicInteger();
+	private final DailyDataCache dailyDataCache = new DailyDataCache();
+	private LombScargle lombScargle;
+
+	private ServerSocket serverSocket;
+	private volatile boolean done;
+	private int workerThreads;
+	private int totalJobs;
+	private int completedJobs;
+	private int failedJobs;
+
+	/**
+	 * ClusterCoordinator constructor
+	 *
+	 * @param omega
+	 * @param mCoeff
+	 * @param tCrit
+	 * @param windows
+	 * @param indices
+	 * @param runContext
+	 */
+	public ClusterCoordinator(final double omega, final double mCoeff, final double tCrit, final int[] windows,
+			final Indices indices, final RunContext runContext) {
+		this.omega = omega;
+		this.mCoeff = mCoeff;
+		this.tCrit = tCrit;
+		this.windows = windows;
+		this.indices = indices;
+		this.runContext = runContext;
+	}
+
+	/**
+	 * addSelection adds the windows of a selection to the jobs
+	 *
+	 * @param categoryName
+	 * @param selectionName
+	 */
+	public void addSelection(final String categoryName, final String selectionName) {
+		selections.add(new String[] { categoryName, selectionName });
+	}
+
+	/**
+	 * addCategory adds the windows of every selection of the category to the
+	 * jobs
+	 *
+	 * @param categoryName
+	 */
+	public void addCategory(final String categoryName) {
+		for (final String selectionName : indices.getCategoriesAndComponents().get(categoryName).getComponents()) {
+			addSelection(categoryName, selectionName);
+		}
+	}
+
+	/**
+	 * start creates the jobs and listens for workers
+	 *
+	 * @param bindAddress
+	 *            The address to listen on, such as 127.0.0.1 for local
+	 *            workers only or 0.0.0.0 for workers on other hosts
+	 * @param port
+	 *            The port to listen on, or 0 for any free port
+	 * @throws IOException
+	 */
+	public void start(final String bindAddress, final int port) throws IOException {
+		createJobs();
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName(bindAddress));
+		Logs.myLogger.info("Cluster coordinator listening on {}:{}. Jobs = {}", bindAddress, getPort(), totalJobs);
+		Utilities.displayOutput(runContext, "Cluster coordinator listening on port " + getPort() + ". " + totalJobs
+				+ " jobs.", false);
+
+		final Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, "cluster-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * launchWorkers starts local worker JVMs with the class path of this JVM
+	 *
+	 * @param workers
+	 * @param threads
+	 *            The number of threads of each worker
+	 * @throws IOException
+	 */
+	public synchronized void launchWorkers(final int workers, final int threads) throws IOException {
+		this.workerThreads = threads;
+		for (int w = 0; w < workers; w++) {
+			localWorkers.add(launchWorker());
+			restartedWorkers.add(Boolean.FALSE);
+		}
+	}
+
+	/**
+	 * run waits until every job has finished or failed, writes their output
+	 * files and stops the workers
+	 */
+	public void run() {
+		final long startNanos = System.nanoTime();
+		try {
+			while (completedJobs + failedJobs < totalJobs && !runContext.isStop()) {
+				final ClusterJob clusterJob = finishedJobs.poll(1, TimeUnit.SECONDS);
+				if (clusterJob != null) {
+					collect(clusterJob);
+				} else {
+					checkLocalWorkers();
+				}
+			}
+		} catch (final InterruptedException ex) {
+			Logs.myLogger.error("Interrupted while running cluster jobs. {}", ex);
+			Thread.currentThread().interrupt();
+		} finally {
+			shutdown();
+		}
+		Logs.myLogger.info("Finished cluster jobs. Completed = {}, Failed = {}, Reassigned = {}, Elapsed = {} ms",
+				completedJobs, failedJobs, reassignedJobs.get(), (System.nanoTime() - startNanos) / 1000000);
+	}
+
+	/**
+	 * getCompletedJobs returns the number of jobs whose output was written
+	 *
+	 * @return
+	 */
+	public int getCompletedJobs() {
+		return completedJobs;
+	}
+
+	/**
+	 * getFailedJobs returns the number of jobs which failed, including windows
+	 * which were already fully updated
+	 *
+	 * @return
+	 */
+	public int getFailedJobs() {
+		return failedJobs;
+	}
+
+	/**
+	 * getReassignedJobs returns the number of times a job of a dead worker
+	 * was returned to the queue
+	 *
+	 * @return
+	 */
+	public int getReassignedJobs() {
+		return reassignedJobs.get();
+	}
+
+	/**
+	 * createJobs creates the job of every window which is shorter than the
+	 * data of its selection, longest first
+	 */
+	private void createJobs() {
+		final List<ClusterJob> jobs = new ArrayList<ClusterJob>();
+		for (final String[] selection : selections) {
+			final String savePath = indices.getUserDir() + indices.getProgramDataFolder()
+					+ indices.getFilePathSymbol() + selection[0] + indices.getFilePathSymbol() + selection[1]
+					+ indices.getFilePathSymbol();
+			final int dataSize = JobScheduler.countDates(savePath + selection[1] + "dailydata.csv");
+			for (final int window : windows) {
+				if (dataSize > window) {
+					prepareOutputFile(selection[1], savePath, window);
+					jobs.add(new ClusterJob(jobs.size(), selection[0], selection[1], window, savePath,
+							(double) window * (dataSize - window)));
+				}
+			}
+		}
+
+		Collections.sort(jobs, new Comparator<ClusterJob>() {
+			@Override
+			public int compare(final ClusterJob first, final ClusterJob second) {
+				return Double.compare(second.work, first.work);
+			}
+		});
+		pendingJobs.addAll(jobs);
+		totalJobs = jobs.size();
+		Logs.myLogger.info("Cluster jobs. Selections = {}, Windows = {}, Jobs = {}", selections.size(),
+				Arrays.toString(windows), totalJobs);
+	}
+
+	/**
+	 * prepareOutputFile prepares the output file of a window for its job, see
+	 * {@link RunIndex#prepareOutputFile}, since the workers only read it
+	 *
+	 * @param selectionName
+	 * @param savePath
+	 * @param window
+	 */
+	private void prepareOutputFile(final String selectionName, final String savePath, final int window) {
+		final String previousFilePath = savePath + selectionName + window + "days.csv";
+		try {
+			dailyDataCache.load(selectionName, savePath + selectionName + "dailydata.csv", runContext);
+			final List<String> dailyPriceDate = dailyDataCache.getDailyPriceDate();
+			new RunIndex(null, dailyDataCache.getDailyPriceDoubleValues(), dailyDataCache.getDailyPriceLogValues(),
+					dailyPriceDate.size(), window, null, dailyPriceDate, previousFilePath, selectionName, omega,
+					mCoeff, tCrit, indices, null, runContext, getLombScargle())
+							.prepareOutputFile(runContext.isSinglePrecision() ? "single" : "double");
+		} catch (final FailedToRunIndex er) {
+			Logs.myLogger.error("Failed to prepare output file {}. {}", previousFilePath, er);
+		}
+	}
+
+	private void accept() {
+		while (!done) {
+			try {
+				final Socket socket = serverSocket.accept();
+				socket.setSoTimeout(ClusterProtocol.WORKER_TIMEOUT_MILLIS);
+				final WorkerSession session = new WorkerSession(new ClusterProtocol.Connection(socket));
+				sessions.add(session);
+				final Thread thread = new Thread(session, "cluster-worker-" + socket.getRemoteSocketAddress());
+				thread.setDaemon(true);
+				thread.start();
+			} catch (final SocketException ex) {
+				if (!done) {
+					Logs.myLogger.error("Cluster coordinator stopped listening. {}", ex);
+				}
+				return;
+			} catch (final IOException ex) {
+				Logs.myLogger.error("Failed to accept a worker. {}", ex);
+			}
+		}
+	}
+
+	/**
+	 * collect writes the rows of a finished job to its output file, deletes
+	 * its journal, writes its manifest and updates the result store of its
+	 * selection if the run context keeps one
+	 *
+	 * @param clusterJob
+	 */
+	private void collect(final ClusterJob clusterJob) {
+		if (clusterJob.error != null) {
+			Logs.myLogger.info("Category Name = {}, Selection Name = {}, Window = {}. {}", clusterJob.categoryName,
+					clusterJob.selectionName, clusterJob.window, clusterJob.error);
+			Utilities.displayOutput(runContext, clusterJob.error, false);
+			failedJobs++;
+		} else {
+			if (!clusterJob.values.isEmpty()) {
+				write(clusterJob);
+			}
+			completedJobs++;
+		}
+		Utilities.displayOutput(runContext, "Finished " + clusterJob.selectionName + " window " + clusterJob.window
+				+ " on " + clusterJob.workerName + ". " + (completedJobs + failedJobs) + " of " + totalJobs
+				+ " jobs.", false);
+		clusterJob.values = null;
+		clusterJob.dates = null;
+	}
+
+	private void write(final ClusterJob clusterJob) {
+		final String name = clusterJob.selectionName + clusterJob.window + "days.csv";
+		final String previousFilePath = clusterJob.savePath + name;
+		Utilities.displayOutput(runContext, "Writing output file: " + previousFilePath, false);
+		try {
+			Utilities.WriteCSV(clusterJob.savePath, clusterJob.values, clusterJob.lastPeriod, name, clusterJob.dates,
+					new File(previousFilePath).exists());
+			new ResultJournal(previousFilePath).delete();
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to write csv output. Save path = {}. {}", clusterJob.savePath, ex);
+			return;
+		}
+		try {
+			dailyDataCache.load(clusterJob.selectionName,
+					clusterJob.savePath + clusterJob.selectionName + "dailydata.csv", runContext);
+		} catch (final FailedToRunIndex er) {
+			Logs.myLogger.error("Failed to update manifest of {}. {}", previousFilePath, er);
+			return;
+		}
+		final List<String> dailyPriceDate = dailyDataCache.getDailyPriceDate();
+		new ResultManifest(previousFilePath).update(
+				ResultManifest.parametersKey(clusterJob.window, omega, mCoeff, tCrit, getLombScargle(),
+						runContext.isSinglePrecision() ? "single" : "double"),
+				dailyPriceDate, dailyDataCache.getDailyPriceDoubleValues(), dailyPriceDate.size());
+		if (runContext.isResultStore()) {
+			ResultStore.updateWindow(clusterJob.savePath, clusterJob.selectionName, clusterJob.window, dailyPriceDate,
+					clusterJob.lastPeriod - clusterJob.values.size(), clusterJob.values);
+		}
+	}
+
+	/**
+	 * getLombScargle returns the LombScargle of the run, whose settings are
+	 * part of the manifest of every output file
+	 *
+	 * @return
+	 */
+	private LombScargle getLombScargle() {
+		if (lombScargle == null) {
+			lombScargle = new LombScargle(70, 18, 19, omega, mCoeff, indices);
+		}
+		return lombScargle;
+	}
+
+	/**
+	 * checkLocalWorkers restarts each dead local worker which has not been
+	 * restarted before, and fails the pending jobs if no worker is left to run
+	 * them
+	 */
+	private synchronized void checkLocalWorkers() {
+		if (localWorkers.isEmpty()) {
+			return;
+		}
+		int alive = 0;
+		for (int w = 0; w < localWorkers.size(); w++) {
+			if (localWorkers.get(w).isAlive()) {
+				alive++;
+			} else if (!restartedWorkers.get(w) && !pendingJobs.isEmpty()) {
+				Logs.myLogger.info("Local worker {} exited with {}. Restarting it.", w,
+						localWorkers.get(w).exitValue());
+				restartedWorkers.set(w, Boolean.TRUE);
+				try {
+					localWorkers.set(w, launchWorker());
+					alive++;
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to restart local worker. {}", ex);
+				}
+			}
+		}
+		if (alive == 0 && sessions.isEmpty()) {
+			ClusterJob clusterJob;
+			while ((clusterJob = pendingJobs.poll()) != null) {
+				clusterJob.error = "No worker left to run window " + clusterJob.window + " of "
+						+ clusterJob.selectionName + ".";
+				finishedJobs.add(clusterJob);
+			}
+		}
+	}
+
+	private Process launchWorker() throws IOException {
+		final List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(workerProperties(runContext));
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ClusterWorker.class.getName());
+		command.add(InetAddress.getLoopbackAddress().getHostAddress());
+		command.add(Integer.toString(getPort()));
+		command.add(Integer.toString(workerThreads));
+		command.add(indices.getUserDir());
+
+		final ProcessBuilder processBuilder = new ProcessBuilder(command);
+		processBuilder.redirectErrorStream(true);
+		processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+		return processBuilder.start();
+	}
+
+	/**
+	 * workerProperties returns the system property arguments of a local
+	 * worker: the properties which noGUI reads and which are set in this JVM,
+	 * with the vector math backend, precision and daily data format of the
+	 * run context, so the worker calculates like the coordinator would
+	 *
+	 * @param runContext
+	 * @return
+	 */
+	public static List<String> workerProperties(final RunContext runContext) {
+		final Map<String, String> properties = new LinkedHashMap<String, String>();
+		for (final String property : noGUI.SYSTEM_PROPERTIES) {
+			final String value = System.getProperty(property);
+			if (value != null) {
+				properties.put(property, value);
+			}
+		}
+		properties.put(VectorMaths.PROPERTY, VectorMaths.get().getName());
+		properties.put("singleprecision", Boolean.toString(runContext.isSinglePrecision()));
+		properties.put("dailydatabinary", Boolean.toString(runContext.isBinaryDailyData()));
+
+		final List<String> arguments = new ArrayList<String>(properties.size());
+		for (final Map.Entry<String, String> property : properties.entrySet()) {
+			arguments.add("-D" + property.getKey() + "=" + property.getValue());
+		}
+		return arguments;
+	}
+
+	private void shutdown() {
+		done = true;
+		try {
+			serverSocket.close();
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to close cluster coordinator. {}", ex);
+		}
+		synchronized (this) {
+			for (final Process process : localWorkers) {
+				try {
+					if (!process.waitFor(ClusterProtocol.HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS)) {
+						process.destroyForcibly();
+					}
+				} catch (final InterruptedException ex) {
+					process.destroyForcibly();
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		synchronized (sessions) {
+			for (final WorkerSession session : sessions) {
+				session.connection.close();
+			}
+		}
+	}
+
+	/**
+	 * requeue returns the job of a dead worker to the front of the queue, or
+	 * fails it after MAX_ATTEMPTS workers
+	 *
+	 * @param clusterJob
+	 */
+	private void requeue(final ClusterJob clusterJob) {
+		clusterJob.attempts++;
+		if (clusterJob.attempts >= MAX_ATTEMPTS) {
+			clusterJob.error = "Window " + clusterJob.window + " of " + clusterJob.selectionName + " failed on "
+					+ clusterJob.attempts + " workers.";
+			finishedJobs.add(clusterJob);
+		} else {
+			reassignedJobs.incrementAndGet();
+			pendingJobs.addFirst(clusterJob);
+		}
+	}
+
+	/**
+	 * WorkerSession hands jobs to one connected worker and receives their
+	 * results
+	 */
+	private class WorkerSession implements Runnable {
+		final ClusterProtocol.Connection connection;
+		String workerName;
+
+		WorkerSession(final ClusterProtocol.Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public void run() {
+			ClusterJob clusterJob = null;
+			try {
+				final String[] hello = connection.receive();
+				if (!ClusterProtocol.HELLO.equals(hello[0]) || hello.length < 2) {
+					throw new IOException("Expected HELLO from " + connection.socket.getRemoteSocketAddress());
+				}
+				workerName = hello[1];
+				Logs.myLogger.info("Worker {} connected from {}", workerName,
+						connection.socket.getRemoteSocketAddress());
+
+				while (!done) {
+					clusterJob = pendingJobs.poll(1, TimeUnit.SECONDS);
+					if (clusterJob == null) {
+						continue;
+					}
+					clusterJob.workerName = workerName;
+					connection.send(ClusterProtocol.JOB, clusterJob.id, clusterJob.categoryName,
+							clusterJob.selectionName, clusterJob.window, omega, mCoeff, tCrit);
+					receive(clusterJob);
+					finishedJobs.add(clusterJob);
+					clusterJob = null;
+				}
+				connection.send(ClusterProtocol.STOP);
+			} catch (final IOException ex) {
+				if (!done) {
+					Logs.myLogger.error("Worker {} is dead. {}", workerName, ex);
+				}
+				if (clusterJob != null) {
+					requeue(clusterJob);
+				}
+			} catch (final InterruptedException ex) {
+				if (clusterJob != null) {
+					requeue(clusterJob);
+				}
+				Thread.currentThread().interrupt();
+			} finally {
+				sessions.remove(this);
+				connection.close();
+			}
+		}
+
+		/**
+		 * receive reads messages until the result of the job
+		 */
+		private void receive(final ClusterJob clusterJob) throws IOException {
+			while (true) {
+				final String[] message = connection.receive();
+				if (ClusterProtocol.RESULT.equals(message[0]) && Long.parseLong(message[1]) == clusterJob.id) {
+					final int rows = Integer.parseInt(message[2]);
+					final List<Double> values = new ArrayList<Double>(rows);
+					final List<String> dates = new ArrayList<String>(rows);
+					int lastPeriod = 0;
+					for (int r = 0; r < rows; r++) {
+						final String[] row = connection.receiveLine().split(",");
+						try {
+							lastPeriod = Integer.parseInt(row[0]);
+							values.add(Double.parseDouble(row[1]));
+						} catch (final NumberFormatException ex) {
+							throw new IOException("Invalid row from worker " + workerName + ": " + ex.getMessage());
+						}
+						dates.add(row[2]);
+					}
+					clusterJob.values = values;
+					clusterJob.dates = dates;
+					clusterJob.lastPeriod = lastPeriod;
+					return;
+				} else if (ClusterProtocol.FAILED.equals(message[0])
+						&& Long.parseLong(message[1]) == clusterJob.id) {
+					clusterJob.error = message.length > 2 ? message[2] : "Failed on worker " + workerName;
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * ClusterJob is one window of a selection and, once it has finished, the
+	 * rows which its worker calculated
+	 */
+	private static class ClusterJob {
+		final long id;
+		final String categoryName;
+		final String selectionName;
+		final int window;
+		final String savePath;
+		final double work;
+
+		int attempts;
+		String workerName;
+		List<Double> values;
+		List<String> dates;
+		int lastPeriod;
+		String error;
+
+		ClusterJob(final long id, final String categoryName, final String selectionName, final int window,
+				final String savePath, final double work) {
+			this.id = id;
+			this.categoryName = categoryName;
+			this.selectionName = selectionName;
+			this.window = window;
+			this.savePath = savePath;
+			this.work = work;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package org.thebubbleindex.driver;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ClusterProtocol is the line protocol between the {@link ClusterCoordinator}
+ * and its {@link ClusterWorker}s. Every message is one line of tab separated
+ * fields:
+ * <ul>
+ * <li>HELLO name: the worker has connected</li>
+ * <li>JOB id category selection window omega mCoeff tCrit: the coordinator
+ * assigns a window to the worker</li>
+ * <li>ALIVE: the heartbeat of the worker, sent every HEARTBEAT_MILLIS</li>
+ * <li>RESULT id rows: followed by rows lines of the output file, period
+ * number, value and date, for the dates which were not in it yet</li>
+ * <li>FAILED id message: the window could not be calculated</li>
+ * <li>STOP: the coordinator has no more jobs</li>
+ * </ul>
+ *
+ * @author thebubbleindex
+ */
+final class ClusterProtocol {
+
+	static final String HELLO = "HELLO";
+	static final String JOB = "JOB";
+	static final String ALIVE = "ALIVE";
+	static final String RESULT = "RESULT";
+	static final String FAILED = "FAILED";
+	static final String STOP = "STOP";
+
+	static final String SEPARATOR = "\t";
+
+	static final long HEARTBEAT_MILLIS = 5000;
+
+	/**
+	 * A worker which sends nothing for this long is considered dead
+	 */
+	static final int WORKER_TIMEOUT_MILLIS = 30000;
+
+	private ClusterProtocol() {
+	}
+
+	/**
+	 * Connection is one end of a connection. send may be called by several
+	 * threads.
+	 */
+	static class Connection {
+		final Socket socket;
+		final BufferedReader reader;
+		final BufferedWriter writer;
+
+		Connection(final Socket socket) throws IOException {
+			this.socket = socket;
+			this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * receive returns the fields of the next message
+		 *
+		 * @return
+		 * @throws IOException
+		 *             if the connection was closed
+		 */
+		String[] receive() throws IOException {
+			final String line = reader.readLine();
+			if (line == null) {
+				throw new IOException("Connection closed by " + socket.getRemoteSocketAddress());
+			}
+			return line.split(SEPARATOR, -1);
+		}
+
+		/**
+		 * receiveLine returns the next line, such as a row of a result
+		 *
+		 * @return
+		 * @throws IOException
+		 */
+		String receiveLine() throws IOException {
+			final String line = reader.readLine();
+			if (line == null) {
+				throw new IOException("Connection closed by " + socket.getRemoteSocketAddress());
+			}
+			return line;
+		}
+
+		/**
+		 * send writes a message of the fields and flushes it
+		 *
+		 * @param fields
+		 * @throws IOException
+		 */
+		synchronized void send(final Object... fields) throws IOException {
+			for (int i = 0; i < fields.length; i++) {
+				if (i > 0) {
+					writer.write(SEPARATOR);
+				}
+				writer.write(String.valueOf(fields[i]).replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+			}
+			writer.write('\n');
+			writer.flush();
+		}
+
+		/**
+		 * sendLines writes a message followed by lines without flushing in
+		 * between
+		 *
+		 * @param lines
+		 * @param fields
+		 * @throws IOException
+		 */
+		synchronized void sendLines(final Iterable<String> lines, final Object... fields) throws IOException {
+			for (int i = 0; i < fields.length; i++) {
+				if (i > 0) {
+					writer.write(SEPARATOR);
+				}
+				writer.write(String.valueOf(fields[i]));
+			}
+			writer.write('\n');
+			for (final String line : lines) {
+				writer.write(line);
+				writer.write('\n');
+			}
+			writer.flush();
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (final IOException ex) {
+				// already closed
+			}
+		}
+	}
+}
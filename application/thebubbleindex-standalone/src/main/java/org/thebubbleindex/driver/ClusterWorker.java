@@ -0,0 +1,186 @@
+package org.thebubbleindex.driver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.runnable.MemoryResultSink;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+
+/**
+ * ClusterWorker calculates the windows which a {@link ClusterCoordinator}
+ * assigns to it, one at a time, on the compute scheduler of its JVM.
+ * <p>
+ * The worker reads the daily data and the previous output files from its own
+ * ProgramData folder, which is the folder of the coordinator or a copy of it
+ * on a shared filesystem, and journals its batches beside the output files
+ * like a local run, so a window which is reassigned after the worker dies
+ * continues from the journal. The journal is the only file which the worker
+ * writes: it finds the start of a window without changing the output file or
+ * its manifest, which the coordinator has prepared before handing out the
+ * job and writes from the rows which the worker sends back.
+ * <p>
+ * The daily data of the last selection and the LombScargle of the last omega
+ * and M coefficient are kept between jobs.
+ *
+ * @author thebubbleindex
+ */
+public class ClusterWorker {
+
+	private final Indices indices;
+	private final RunContext runContext;
+	private final DailyDataCache dailyDataCache = new DailyDataCache();
+	private LombScargle lombScargle;
+
+	/**
+	 * ClusterWorker constructor
+	 *
+	 * @param indices
+	 * @param runContext
+	 */
+	public ClusterWorker(final Indices indices, final RunContext runContext) {
+		this.indices = indices;
+		this.runContext = runContext;
+	}
+
+	/**
+	 * run connects to the coordinator and calculates its jobs until it has
+	 * no more
+	 *
+	 * @param host
+	 * @param port
+	 * @throws IOException
+	 *             if the connection fails
+	 */
+	public void run(final String host, final int port) throws IOException {
+		final ClusterProtocol.Connection connection = new ClusterProtocol.Connection(new Socket(host, port));
+		final Thread heartbeat = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (!Thread.currentThread().isInterrupted()) {
+						Thread.sleep(ClusterProtocol.HEARTBEAT_MILLIS);
+						connection.send(ClusterProtocol.ALIVE);
+					}
+				} catch (final InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				} catch (final IOException ex) {
+					connection.close();
+				}
+			}
+		}, "cluster-heartbeat");
+		heartbeat.setDaemon(true);
+
+		try {
+			connection.send(ClusterProtocol.HELLO, ManagementFactory.getRuntimeMXBean().getName());
+			heartbeat.start();
+			Logs.myLogger.info("Connected to coordinator {}:{}", host, port);
+
+			while (true) {
+				final String[] message = connection.receive();
+				if (ClusterProtocol.STOP.equals(message[0])) {
+					break;
+				}
+				if (ClusterProtocol.JOB.equals(message[0])) {
+					runJob(connection, message);
+				}
+			}
+		} finally {
+			heartbeat.interrupt();
+			connection.close();
+		}
+		Logs.myLogger.info("Coordinator has no more jobs.");
+	}
+
+	/**
+	 * runJob calculates the window of a JOB message and sends its rows or
+	 * its failure
+	 *
+	 * @param connection
+	 * @param message
+	 * @throws IOException
+	 */
+	private void runJob(final ClusterProtocol.Connection connection, final String[] message) throws IOException {
+		final long id = Long.parseLong(message[1]);
+		final String categoryName = message[2];
+		final String selectionName = message[3];
+		final int window = Integer.parseInt(message[4]);
+		final double omega = Double.parseDouble(message[5]);
+		final double mCoeff = Double.parseDouble(message[6]);
+		final double tCrit = Double.parseDouble(message[7]);
+		Logs.myLogger.info("Job {}. Category Name = {}, Selection Name = {}, Window = {}", id, categoryName,
+				selectionName, window);
+
+		final String savePath = indices.getUserDir() + indices.getProgramDataFolder() + indices.getFilePathSymbol()
+				+ categoryName + indices.getFilePathSymbol() + selectionName + indices.getFilePathSymbol();
+		final MemoryResultSink results = new MemoryResultSink();
+		try {
+			dailyDataCache.load(categoryName + indices.getFilePathSymbol() + selectionName,
+					savePath + selectionName + "dailydata.csv", runContext);
+			final List<String> dailyPriceDate = dailyDataCache.getDailyPriceDate();
+
+			final RunIndex runIndex = new RunIndex(null, dailyDataCache.getDailyPriceDoubleValues(),
+					dailyDataCache.getDailyPriceLogValues(), dailyPriceDate.size(), window, null, dailyPriceDate,
+					savePath + selectionName + window + "days.csv", selectionName, omega, mCoeff, tCrit, indices,
+					null, runContext, getLombScargle(omega, mCoeff));
+			runIndex.setReadOnly(true);
+			runIndex.submitCPUCallables(runContext.getScheduler(), null, results, true).finish();
+			runIndex.logStatistics();
+
+			final List<String> rows = new ArrayList<String>(results.size());
+			for (int i = 0; i < results.size(); i++) {
+				final int j = results.getFirstIndex() + i;
+				rows.add((j + 1) + "," + results.get(i) + "," + dailyPriceDate.get(j + window));
+			}
+			connection.sendLines(rows, ClusterProtocol.RESULT, id, rows.size());
+		} catch (final FailedToRunIndex er) {
+			connection.send(ClusterProtocol.FAILED, id, er.getMessage());
+		} catch (final ExecutionException ex) {
+			Logs.myLogger.error("Execution exception. Selection Name = {}. {}", selectionName, ex);
+			connection.send(ClusterProtocol.FAILED, id, ex.toString());
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException(ex);
+		}
+	}
+
+	private LombScargle getLombScargle(final double omega, final double mCoeff) {
+		if (lombScargle == null || lombScargle.omegaDouble != omega || lombScargle.mCoeffDouble != mCoeff) {
+			lombScargle = new LombScargle(70, 18, 19, omega, mCoeff, indices);
+		}
+		return lombScargle;
+	}
+
+	/**
+	 * main runs a worker of a ProgramData folder, such as a local worker
+	 * which the coordinator has started. The system properties are read as
+	 * by noGUI.
+	 * <p>
+	 * Arguments: host, port, threads and the user directory which holds the
+	 * ProgramData folder
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(final String[] args) throws IOException {
+		final Indices indices = new Indices();
+		indices.setUserDir(args[3]);
+		final RunContext runContext = new RunContext(false, true, Integer.parseInt(args[2]));
+		noGUI.readSystemProperties(runContext);
+		try {
+			new ClusterWorker(indices, runContext).run(args[0], Integer.parseInt(args[1]));
+		} finally {
+			runContext.getScheduler().shutdown();
+			runContext.getProgress().stop();
+		}
+		System.exit(0);
+	}
+}
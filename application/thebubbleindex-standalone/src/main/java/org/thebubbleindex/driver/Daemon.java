@@ -0,0 +1,571 @@
+package org.thebubbleindex.driver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.thebubbleindex.data.UpdateData;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.inputs.InputCategory;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.runnable.RunContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Daemon is a resident process which runs jobs from a queue, one at a time,
+ * submitted over a local HTTP API. The JVM, the vector math library, the
+ * categories and selections of Indices, the parsed daily data of the recently
+ * run selections and the LombScargle and window bases of the recently run
+ * windows stay loaded between jobs, so a small run after an update does not
+ * pay for them again.
+ * <p>
+ * The API:
+ * <ul>
+ * <li>POST /jobs?type=Single&amp;category=C&amp;selection=S&amp;windows=52,104
+ * &amp;tcrit=21.0&amp;m=0.38&amp;omega=6.28[&amp;cpu=false] queues a run of
+ * one selection. Type Category also takes category, type All takes no
+ * category or selection, and type Update takes an optional quandlkey. The
+ * parameters may also be sent as a form body. Returns the job.</li>
+ * <li>GET /jobs returns every job, GET /jobs/{id} returns one job.</li>
+ * <li>DELETE /jobs/{id} cancels a queued job, or stops the running job.</li>
+ * <li>POST /reload reads the categories and selections again and drops the
+ * cached daily data and window bases.</li>
+ * <li>POST /shutdown stops the daemon once the running job has finished.</li>
+ * </ul>
+ * A job is returned as a JSON object with its id, type, parameters, state
+ * (QUEUED, RUNNING, DONE, FAILED or CANCELLED), run time in milliseconds and
+ * message. The daily data is reloaded when its file changes, so runs after an
+ * Update job see the new prices.
+ * <p>
+ * The API is not authenticated, so the daemon listens on 127.0.0.1 unless it
+ * is told otherwise.
+ *
+ * @author thebubbleindex
+ */
+public class Daemon {
+
+	public static final int DEFAULT_PORT = 7071;
+	static final int MAX_SELECTIONS = 64;
+	static final int MAX_FINISHED_JOBS = 1000;
+
+	private final Indices indices;
+	private final String openCLSrc;
+	private final RunContext runContext;
+	private final WindowBasisCache windowBasisCache;
+	private final Map<String, DailyDataCache> dailyDataCaches = new LinkedHashMap<String, DailyDataCache>(16, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, DailyDataCache> eldest) {
+			return size() > MAX_SELECTIONS;
+		}
+	};
+
+	private final BlockingQueue<DaemonJob> queue = new LinkedBlockingQueue<DaemonJob>();
+	private final Map<Long, DaemonJob> jobs = new LinkedHashMap<Long, DaemonJob>();
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private long nextId = 1;
+	private volatile boolean shutdown;
+	private volatile DaemonJob runningJob;
+	private HttpServer server;
+	private ExecutorService httpExecutor;
+
+	/**
+	 * Daemon constructor
+	 *
+	 * @param indices
+	 * @param openCLSrc
+	 * @param runContext
+	 */
+	public Daemon(final Indices indices, final String openCLSrc, final RunContext runContext) {
+		this.indices = indices;
+		this.openCLSrc = openCLSrc;
+		this.runContext = runContext;
+		this.windowBasisCache = new WindowBasisCache(indices, runContext.getMemoryBudget() / 2);
+	}
+
+	/**
+	 * start listens on bindAddress and port, or any free port if port is 0,
+	 * and starts the thread which runs the jobs
+	 *
+	 * @param bindAddress
+	 * @param port
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 */
+	public void start(final String bindAddress, final int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+		httpExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "daemon-http");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(httpExecutor);
+		server.createContext("/jobs", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				handleJobs(exchange);
+			}
+		});
+		server.createContext("/reload", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				if (!"POST".equals(exchange.getRequestMethod())) {
+					respond(exchange, 405, error("Use POST"));
+					return;
+				}
+				queue(exchange, new DaemonJob(JobType.Reload, new HashMap<String, String>()));
+			}
+		});
+		server.createContext("/shutdown", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				if (!"POST".equals(exchange.getRequestMethod())) {
+					respond(exchange, 405, error("Use POST"));
+					return;
+				}
+				shutdown = true;
+				respond(exchange, 200, "{\"shutdown\":true}");
+			}
+		});
+		server.start();
+
+		final Thread runner = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runJobs();
+			}
+		}, "daemon-jobs");
+		runner.start();
+		Logs.myLogger.info("Daemon listening on {}:{}", bindAddress, getPort());
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public WindowBasisCache getWindowBasisCache() {
+		return windowBasisCache;
+	}
+
+	/**
+	 * awaitShutdown waits until the daemon has been shut down over the API
+	 * and its running job has finished
+	 *
+	 * @throws InterruptedException
+	 */
+	public void awaitShutdown() throws InterruptedException {
+		stopped.await();
+	}
+
+	/**
+	 * shutdown stops the daemon once the running job has finished. Queued
+	 * jobs are cancelled.
+	 */
+	public void shutdown() {
+		shutdown = true;
+	}
+
+	private void runJobs() {
+		try {
+			while (!shutdown) {
+				final DaemonJob job = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (job == null) {
+					continue;
+				}
+				synchronized (this) {
+					if (job.state != JobState.QUEUED) {
+						continue;
+					}
+					job.state = JobState.RUNNING;
+					runningJob = job;
+				}
+				run(job);
+			}
+		} catch (final InterruptedException ex) {
+			Logs.myLogger.error("Daemon interrupted. {}", ex);
+		} finally {
+			synchronized (this) {
+				for (final DaemonJob job : queue) {
+					job.state = JobState.CANCELLED;
+				}
+				queue.clear();
+			}
+			server.stop(0);
+			httpExecutor.shutdown();
+			Logs.myLogger.info("Daemon stopped.");
+			stopped.countDown();
+		}
+	}
+
+	private void run(final DaemonJob job) {
+		Logs.myLogger.info("Running daemon job {}. {}", job.id, job.parameters);
+		final long startNanos = System.nanoTime();
+		runContext.setStop(false);
+		runContext.getProgress().reset();
+		String message = "";
+		JobState state = JobState.DONE;
+		try {
+			message = execute(job);
+		} catch (final RuntimeException ex) {
+			Logs.myLogger.error("Daemon job {} failed. {}", job.id, ex);
+			state = JobState.FAILED;
+			message = ex.toString();
+		}
+		synchronized (this) {
+			job.millis = (System.nanoTime() - startNanos) / 1000000L;
+			job.state = runContext.isStop() ? JobState.CANCELLED : state;
+			job.message = message;
+			runningJob = null;
+		}
+		runContext.setStop(false);
+		Logs.myLogger.info("Daemon job {} {} in {} ms.", job.id, job.state, job.millis);
+	}
+
+	/**
+	 * execute runs a job on the calling thread and returns its message
+	 *
+	 * @param job
+	 * @return
+	 */
+	private String execute(final DaemonJob job) {
+		final Map<String, String> parameters = job.parameters;
+		switch (job.type) {
+		case Single: {
+			final String categoryName = parameters.get("category");
+			final String selectionName = parameters.get("selection");
+			runContext.setForceCPU(!"false".equalsIgnoreCase(parameters.get("cpu")));
+			final MultiWindowRun multiWindowRun = new MultiWindowRun(Double.parseDouble(parameters.get("omega")),
+					Double.parseDouble(parameters.get("m")), Double.parseDouble(parameters.get("tcrit")),
+					MultiWindowRun.parseWindows(parameters.get("windows")), categoryName, selectionName,
+					getDailyDataCache(categoryName, selectionName), indices, openCLSrc, runContext);
+			multiWindowRun.setWindowBasisCache(windowBasisCache);
+			multiWindowRun.run(null);
+			multiWindowRun.outputResults(null);
+			return "";
+		}
+		case Category:
+		case All: {
+			runContext.setForceCPU(!"false".equalsIgnoreCase(parameters.get("cpu")));
+			final JobScheduler jobScheduler = new JobScheduler(Double.parseDouble(parameters.get("omega")),
+					Double.parseDouble(parameters.get("m")), Double.parseDouble(parameters.get("tcrit")),
+					MultiWindowRun.parseWindows(parameters.get("windows")), indices, openCLSrc, runContext);
+			jobScheduler.setWindowBasisCache(windowBasisCache);
+			if (job.type == JobType.Category) {
+				jobScheduler.addCategory(parameters.get("category"));
+			} else {
+				for (final String category : indices.getCategoriesAndComponents().keySet()) {
+					jobScheduler.addCategory(category);
+				}
+			}
+			jobScheduler.run(null);
+			return jobScheduler.getCompletedJobs() + " windows completed, " + jobScheduler.getFailedJobs()
+					+ " failed.";
+		}
+		case Update: {
+			final String quandlKey = parameters.get("quandlkey");
+			new UpdateData(null, quandlKey == null ? "" : quandlKey, indices, runContext).run();
+			return "";
+		}
+		case Reload: {
+			// validate reads the categories on the HTTP thread
+			synchronized (this) {
+				indices.initialize();
+			}
+			synchronized (dailyDataCaches) {
+				dailyDataCaches.clear();
+			}
+			windowBasisCache.clear();
+			return "";
+		}
+		default:
+			throw new IllegalArgumentException("Unknown job type " + job.type);
+		}
+	}
+
+	private DailyDataCache getDailyDataCache(final String categoryName, final String selectionName) {
+		final String key = categoryName + indices.getFilePathSymbol() + selectionName;
+		synchronized (dailyDataCaches) {
+			DailyDataCache dailyDataCache = dailyDataCaches.get(key);
+			if (dailyDataCache == null) {
+				dailyDataCache = new DailyDataCache();
+				dailyDataCaches.put(key, dailyDataCache);
+			}
+			return dailyDataCache;
+		}
+	}
+
+	private void handleJobs(final HttpExchange exchange) throws IOException {
+		final String method = exchange.getRequestMethod();
+		final String path = exchange.getRequestURI().getPath();
+		final String idPath = path.length() > "/jobs".length() ? path.substring("/jobs/".length()) : "";
+
+		if (idPath.isEmpty()) {
+			if ("GET".equals(method)) {
+				final StringBuilder body = new StringBuilder("[");
+				synchronized (this) {
+					for (final DaemonJob job : jobs.values()) {
+						if (body.length() > 1) {
+							body.append(',');
+						}
+						body.append(job.toJson());
+					}
+				}
+				respond(exchange, 200, body.append(']').toString());
+			} else if ("POST".equals(method)) {
+				final Map<String, String> parameters = parseParameters(exchange);
+				final String error = validate(parameters);
+				if (error != null) {
+					respond(exchange, 400, error(error));
+					return;
+				}
+				queue(exchange, new DaemonJob(JobType.valueOf(parameters.get("type")), parameters));
+			} else {
+				respond(exchange, 405, error("Use GET or POST"));
+			}
+			return;
+		}
+
+		final DaemonJob job;
+		try {
+			synchronized (this) {
+				job = jobs.get(Long.parseLong(idPath));
+			}
+		} catch (final NumberFormatException ex) {
+			respond(exchange, 404, error("No job " + idPath));
+			return;
+		}
+		if (job == null) {
+			respond(exchange, 404, error("No job " + idPath));
+		} else if ("GET".equals(method)) {
+			respond(exchange, 200, toJson(job));
+		} else if ("DELETE".equals(method)) {
+			synchronized (this) {
+				if (job.state == JobState.QUEUED) {
+					job.state = JobState.CANCELLED;
+					queue.remove(job);
+				} else if (job == runningJob) {
+					runContext.setStop(true);
+				}
+			}
+			respond(exchange, 200, toJson(job));
+		} else {
+			respond(exchange, 405, error("Use GET or DELETE"));
+		}
+	}
+
+	private void queue(final HttpExchange exchange, final DaemonJob job) throws IOException {
+		if (shutdown) {
+			respond(exchange, 503, error("The daemon is shutting down"));
+			return;
+		}
+		synchronized (this) {
+			job.id = nextId++;
+			jobs.put(job.id, job);
+			final Iterator<DaemonJob> oldest = jobs.values().iterator();
+			while (jobs.size() > MAX_FINISHED_JOBS && oldest.hasNext()) {
+				final JobState state = oldest.next().state;
+				if (state != JobState.QUEUED && state != JobState.RUNNING) {
+					oldest.remove();
+				}
+			}
+			queue.add(job);
+		}
+		respond(exchange, 202, toJson(job));
+	}
+
+	/**
+	 * validate returns the error of the parameters of a new job, or null. The
+	 * category and selection must be ones of the indices.
+	 *
+	 * @param parameters
+	 * @return
+	 */
+	private String validate(final Map<String, String> parameters) {
+		final JobType type;
+		try {
+			type = JobType.valueOf(String.valueOf(parameters.get("type")));
+		} catch (final IllegalArgumentException ex) {
+			return "Unknown type " + parameters.get("type") + ". Use Single, Category, All or Update.";
+		}
+		if (type == JobType.Reload) {
+			return "Use POST /reload";
+		}
+		if (type == JobType.Update) {
+			return null;
+		}
+		final List<String> required = new ArrayList<String>();
+		if (type == JobType.Single || type == JobType.Category) {
+			required.add("category");
+		}
+		if (type == JobType.Single) {
+			required.add("selection");
+		}
+		for (final String name : new String[] { "windows", "tcrit", "m", "omega" }) {
+			required.add(name);
+		}
+		for (final String name : required) {
+			if (parameters.get(name) == null || parameters.get(name).trim().isEmpty()) {
+				return "Missing parameter " + name;
+			}
+		}
+		if (type == JobType.Single || type == JobType.Category) {
+			// the category and selection name the folders of the output files
+			synchronized (this) {
+				final InputCategory inputCategory = indices.getCategoriesAndComponents()
+						.get(parameters.get("category"));
+				if (inputCategory == null) {
+					return "Unknown category " + parameters.get("category");
+				}
+				if (type == JobType.Single && !inputCategory.getComponents().contains(parameters.get("selection"))) {
+					return "Unknown selection " + parameters.get("selection");
+				}
+			}
+		}
+		try {
+			MultiWindowRun.parseWindows(parameters.get("windows"));
+			Double.parseDouble(parameters.get("tcrit"));
+			Double.parseDouble(parameters.get("m"));
+			Double.parseDouble(parameters.get("omega"));
+		} catch (final NumberFormatException ex) {
+			return "Invalid number. " + ex.getMessage();
+		}
+		return null;
+	}
+
+	private synchronized String toJson(final DaemonJob job) {
+		return job.toJson();
+	}
+
+	private static Map<String, String> parseParameters(final HttpExchange exchange) throws IOException {
+		final Map<String, String> parameters = new LinkedHashMap<String, String>();
+		parseParameters(exchange.getRequestURI().getRawQuery(), parameters);
+
+		final InputStream input = exchange.getRequestBody();
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			body.write(buffer, 0, read);
+		}
+		parseParameters(new String(body.toByteArray(), StandardCharsets.UTF_8).trim(), parameters);
+		return parameters;
+	}
+
+	private static void parseParameters(final String query, final Map<String, String> parameters)
+			throws UnsupportedEncodingException {
+		if (query == null || query.isEmpty()) {
+			return;
+		}
+		for (final String pair : query.split("&")) {
+			final int equals = pair.indexOf('=');
+			if (equals > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8").toLowerCase(),
+						URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+			}
+		}
+	}
+
+	private static void respond(final HttpExchange exchange, final int status, final String body)
+			throws IOException {
+		final byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		final OutputStream output = exchange.getResponseBody();
+		try {
+			output.write(bytes);
+		} finally {
+			output.close();
+		}
+	}
+
+	private static String error(final String message) {
+		return "{\"error\":" + quote(message) + "}";
+	}
+
+	private static String quote(final String text) {
+		final StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	enum JobType {
+		Single, Category, All, Update, Reload
+	}
+
+	enum JobState {
+		QUEUED, RUNNING, DONE, FAILED, CANCELLED
+	}
+
+	/**
+	 * DaemonJob is a queued job and its status, guarded by the daemon
+	 */
+	private static class DaemonJob {
+		final JobType type;
+		final Map<String, String> parameters;
+		long id;
+		JobState state = JobState.QUEUED;
+		long millis = -1;
+		String message = "";
+
+		DaemonJob(final JobType type, final Map<String, String> parameters) {
+			this.type = type;
+			this.parameters = parameters;
+		}
+
+		String toJson() {
+			final StringBuilder json = new StringBuilder("{\"id\":").append(id);
+			json.append(",\"type\":").append(quote(type.name()));
+			json.append(",\"parameters\":{");
+			boolean first = true;
+			for (final Map.Entry<String, String> parameter : parameters.entrySet()) {
+				if (parameter.getKey().equals("type") || parameter.getKey().equals("quandlkey")) {
+					continue;
+				}
+				if (!first) {
+					json.append(',');
+				}
+				json.append(quote(parameter.getKey())).append(':').append(quote(parameter.getValue()));
+				first = false;
+			}
+			json.append("},\"state\":").append(quote(state.name()));
+			json.append(",\"millis\":").append(millis);
+			json.append(",\"message\":").append(quote(message));
+			return json.append('}').toString();
+		}
+	}
+}
@@ -1,8 +1,16 @@
 package org.thebubbleindex.driver;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.thebubbleindex.data.DailyDataStore;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.util.Utilities;
+
 /**
  *
  * @author thebubbleindex
@@ -13,13 +21,124 @@ public class DailyDataCache {
 	private List<String> dailyPriceData = new ArrayList<String>(10000);
 	private List<String> dailyPriceDate = new ArrayList<String>(10000);
 	private double[] dailyPriceDoubleValues;
-	
+	private double[] dailyPriceLogValues;
+	private long lastModified;
+	private long length;
+
 	public void reset() {
 		selectionName = "";
 		dailyPriceData = new ArrayList<String>(10000);
 		dailyPriceDate = new ArrayList<String>(10000);
 	}
 
+	/**
+	 * load reads the daily data file of the selection, converts the prices
+	 * into doubles and takes their log, unless the selection is already
+	 * cached and its file has not changed since
+	 * <p>
+	 * If the run context reads binary daily data, the dates and prices are
+	 * copied from the memory mapped store of the file instead, which is
+	 * imported first if it is missing or stale. A file which cannot be
+	 * imported is read as text. A load which is stopped is not cached.
+	 * 
+	 * @param selectionName
+	 * @param filePath
+	 * @param runContext
+	 */
+	public void load(final String selectionName, final String filePath, final RunContext runContext) {
+		final File file = new File(filePath);
+		if (this.selectionName.equals(selectionName) && lastModified == file.lastModified()
+				&& length == file.length()) {
+			return;
+		}
+		final long fileLastModified = file.lastModified();
+		final long fileLength = file.length();
+
+		final DailyDataStore store = runContext.isBinaryDailyData() && !runContext.isStop() ? openStore(filePath)
+				: null;
+
+		final List<String> priceData;
+		final List<String> priceDate;
+		final double[] doubleValues;
+
+		if (store != null) {
+			doubleValues = new double[store.size()];
+			store.copyPrices(doubleValues);
+			priceDate = store.getDates();
+			priceData = new AbstractList<String>() {
+				@Override
+				public String get(final int index) {
+					return String.valueOf(doubleValues[index]);
+				}
+
+				@Override
+				public int size() {
+					return doubleValues.length;
+				}
+			};
+		} else {
+			priceData = new ArrayList<String>(10000);
+			priceDate = new ArrayList<String>(10000);
+
+			if (!runContext.isStop())
+				Utilities.ReadValues(filePath, priceDate, priceData, false, false);
+
+			doubleValues = new double[priceData.size()];
+			if (!runContext.isStop()) {
+				for (int i = 0; i < doubleValues.length; i++) {
+					try {
+						doubleValues[i] = Double.parseDouble(priceData.get(i));
+					} catch (final NumberFormatException ex) {
+						Logs.myLogger.error("Number Format Exception. Code 030. " + ex);
+					}
+				}
+			}
+		}
+
+		final int dataSize = doubleValues.length;
+		final double[] logValues = new double[dataSize];
+		if (!runContext.isStop()) {
+			Utilities.LogPrices(doubleValues, logValues, dataSize);
+		}
+
+		// a load which the run context stopped may be incomplete, so it is
+		// read again next time
+		this.selectionName = runContext.isStop() ? "" : selectionName;
+		this.dailyPriceData = priceData;
+		this.dailyPriceDate = priceDate;
+		this.dailyPriceDoubleValues = doubleValues;
+		this.dailyPriceLogValues = logValues;
+		this.lastModified = fileLastModified;
+		this.length = fileLength;
+	}
+
+	/**
+	 * openStore opens the store of the daily data file, importing it if it is
+	 * missing or stale, or returns null if the file cannot be imported
+	 * 
+	 * @param filePath
+	 * @return
+	 */
+	private DailyDataStore openStore(final String filePath) {
+		if (DailyDataStore.isFresh(filePath)) {
+			try {
+				return DailyDataStore.open(DailyDataStore.storePath(filePath));
+			} catch (final IOException ex) {
+				Logs.myLogger.error("Failed to open daily data store of {}. Importing it again. {}", filePath, ex);
+			}
+		}
+		if (!new File(filePath).exists()) {
+			return null;
+		}
+		try {
+			Logs.myLogger.info("Importing daily data store of {}.", filePath);
+			return DailyDataStore.importTsv(filePath);
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to import daily data store of {}. Reading it as text. {}", filePath, ex);
+			return null;
+		}
+	}
+
 	public String getSelectionName() {
 		return selectionName;
 	}
@@ -51,4 +170,12 @@ public class DailyDataCache {
 	public void setDailyPriceDoubleValues(final double[] dailyPriceDoubleValues) {
 		this.dailyPriceDoubleValues = dailyPriceDoubleValues;
 	}
+
+	public double[] getDailyPriceLogValues() {
+		return dailyPriceLogValues;
+	}
+
+	public void setDailyPriceLogValues(final double[] dailyPriceLogValues) {
+		this.dailyPriceLogValues = dailyPriceLogValues;
+	}
 }
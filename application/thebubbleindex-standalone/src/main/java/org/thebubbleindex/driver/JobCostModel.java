@@ -0,0 +1,190 @@
+package org.thebubbleindex.driver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.LombScargle;
+
+/**
+ * JobCostModel estimates the time of a (selection, window) job. The work of a
+ * job is counted in units of window * dates * freqSize * qSize * hSize, which
+ * is the number of terms of its periodograms and H, Q grids, and one unit
+ * takes nanosPerUnit of pool time.
+ * <p>
+ * nanosPerUnit is calibrated from the job timings of every CPU run: the
+ * elapsed time of the run times the number of threads, divided by the units
+ * of its completed jobs. The calibration is smoothed with the previous value
+ * and saved to jobcost.properties in the ProgramData folder, with one value
+ * for each engine and frequency search.
+ *
+ * @author thebubbleindex
+ */
+public class JobCostModel {
+
+	static final double DEFAULT_NANOS_PER_UNIT = 3.0;
+
+	/**
+	 * Weight of a new calibration against the saved value
+	 */
+	static final double SMOOTHING = 0.5;
+
+	/**
+	 * Runs shorter than this are not used for calibration
+	 */
+	static final long MIN_CALIBRATION_NANOS = 1000000000L;
+
+	private final String filePath;
+	private final String key;
+	private final double gridSize;
+	private double nanosPerUnit = DEFAULT_NANOS_PER_UNIT;
+	private boolean calibrated;
+
+	/**
+	 * JobCostModel constructor reads the calibration of the engine and
+	 * frequency search of lombScargle, or uses the default if it has not
+	 * been calibrated yet
+	 *
+	 * @param lombScargle
+	 * @param indices
+	 */
+	public JobCostModel(final LombScargle lombScargle, final Indices indices) {
+		this.filePath = indices.getUserDir() + indices.getFilePathSymbol() + indices.getProgramDataFolder()
+				+ indices.getFilePathSymbol() + "jobcost.properties";
+		this.key = "nanosperunit." + lombScargle.engine + "." + lombScargle.frequencySearch;
+		this.gridSize = (double) lombScargle.freqSize * lombScargle.qSize * lombScargle.hSize;
+
+		final Properties properties = load();
+		final String value = properties.getProperty(key);
+		if (value != null) {
+			try {
+				nanosPerUnit = Double.parseDouble(value.trim());
+				calibrated = true;
+			} catch (final NumberFormatException ex) {
+				Logs.myLogger.error("Invalid {} in jobcost.properties. Using {}. {}", key, nanosPerUnit, ex);
+			}
+		}
+	}
+
+	/**
+	 * units returns the work of a job
+	 *
+	 * @param window
+	 * @param dates
+	 *            The number of dates which are calculated
+	 * @return
+	 */
+	public double units(final int window, final int dates) {
+		return (double) window * dates * gridSize;
+	}
+
+	/**
+	 * estimateNanos returns the estimated time of the units on the threads
+	 *
+	 * @param units
+	 * @param threads
+	 * @return
+	 */
+	public long estimateNanos(final double units, final int threads) {
+		return (long) (units * nanosPerUnit / Math.max(1, threads));
+	}
+
+	public double getNanosPerUnit() {
+		return nanosPerUnit;
+	}
+
+	public boolean isCalibrated() {
+		return calibrated;
+	}
+
+	/**
+	 * calibrate updates nanosPerUnit with a finished run and saves it. Runs
+	 * without completed work or shorter than MIN_CALIBRATION_NANOS are
+	 * ignored.
+	 *
+	 * @param jobTimings
+	 * @param elapsedNanos
+	 *            The elapsed time of the run
+	 * @param threads
+	 */
+	public void calibrate(final List<JobTiming> jobTimings, final long elapsedNanos, final int threads) {
+		double units = 0.0;
+		for (final JobTiming jobTiming : jobTimings) {
+			if (jobTiming.completed) {
+				units += units(jobTiming.window, jobTiming.dates);
+			}
+		}
+		if (units <= 0.0 || elapsedNanos < MIN_CALIBRATION_NANOS) {
+			return;
+		}
+
+		final double measured = (double) elapsedNanos * Math.max(1, threads) / units;
+		nanosPerUnit = calibrated ? (1.0 - SMOOTHING) * nanosPerUnit + SMOOTHING * measured : measured;
+		calibrated = true;
+		Logs.myLogger.info("Calibrated job cost. {} = {} ns (measured {} ns)", key, nanosPerUnit, measured);
+
+		final Properties properties = load();
+		properties.setProperty(key, Double.toString(nanosPerUnit));
+		OutputStream output = null;
+		try {
+			output = new FileOutputStream(filePath);
+			properties.store(output, "The Bubble Index job cost calibration");
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to save jobcost.properties. {}", ex);
+		} finally {
+			if (output != null) {
+				try {
+					output.close();
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to close jobcost.properties. {}", ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * formatDuration formats nanoseconds as hours, minutes and seconds
+	 *
+	 * @param nanos
+	 * @return
+	 */
+	public static String formatDuration(final long nanos) {
+		final long seconds = Math.max(0, nanos / 1000000000L);
+		if (seconds >= 3600) {
+			return String.format("%dh %02dm %02ds", seconds / 3600, seconds / 60 % 60, seconds % 60);
+		} else if (seconds >= 60) {
+			return String.format("%dm %02ds", seconds / 60, seconds % 60);
+		}
+		return seconds + "s";
+	}
+
+	private Properties load() {
+		final Properties properties = new Properties();
+		if (!new File(filePath).exists()) {
+			return properties;
+		}
+		InputStream input = null;
+		try {
+			input = new FileInputStream(filePath);
+			properties.load(input);
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to read jobcost.properties. {}", ex);
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to close jobcost.properties. {}", ex);
+				}
+			}
+		}
+		return properties;
+	}
+}
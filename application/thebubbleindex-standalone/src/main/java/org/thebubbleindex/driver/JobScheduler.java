@@ -0,0 +1,645 @@
+package org.thebubbleindex.driver;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import org.thebubbleindex.data.DailyDataStore;
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.BatchLinearFit;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+import org.thebubbleindex.runnable.CsvResultSink;
+import org.thebubbleindex.runnable.ResultJournal;
+import org.thebubbleindex.runnable.ResultSink;
+import org.thebubbleindex.runnable.ResultStoreSink;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+import org.thebubbleindex.swing.BubbleIndexWorker;
+import org.thebubbleindex.util.Utilities;
+
+/**
+ * JobScheduler runs The Bubble Index of many selections as one set of
+ * (category, selection, window) jobs on the compute scheduler.
+ * <p>
+ * One LombScargle is shared by every job. Each job prepares its window on a
+ * coordinator thread of the compute scheduler and computes its dates as work
+ * stealing tasks of the pool, so the jobs of several windows and selections
+ * run at the same time and small windows no longer leave most threads idle.
+ * A job is only started when the estimated memory of the running jobs, their
+ * window bases, engines, batch fits, results and the daily data of their
+ * selections, fits in the memory budget of the run context; otherwise
+ * finished jobs are collected until it fits. The scratch arrays which every
+ * thread of the pool keeps between jobs are held in the budget for the
+ * largest window of the run.
+ * <p>
+ * The work of every job is estimated with the {@link JobCostModel} from its
+ * window and the number of dates which are not in its output file yet, and
+ * the jobs are started longest first, so the large windows do not run alone
+ * at the end of the run. The estimate also gives the remaining time which is
+ * shown as each job finishes. The model is calibrated with the timings of the
+ * run when it ends.
+ * <p>
+ * Each job streams the rows of its window to its output file as contiguous
+ * batches of dates complete, and syncs them to disk, so the output of a
+ * running window can already be read and a killed run continues after the
+ * last written batch. No other job writes the file. The jobs are collected
+ * on the thread which calls run. The daily data of a selection is loaded when
+ * its first job starts and released once all of its windows have been
+ * collected, and the GUI then shows the category of the selection. The
+ * timing of every job is logged and kept in getJobTimings.
+ * <p>
+ * The GPU calculation runs selection by selection with {@link MultiWindowRun}.
+ * <p>
+ * If the scheduler is given a {@link WindowBasisCache}, the LombScargle and
+ * the window bases, with their engines, are taken from it, so the jobs of
+ * the same window share them and repeated runs of a resident process reuse
+ * them.
+ *
+ * @author thebubbleindex
+ */
+public class JobScheduler {
+
+	/**
+	 * Approximate heap size of one day of daily data: the date and price
+	 * strings and their double and log values
+	 */
+	static final long DAY_BYTES = 160;
+
+	/**
+	 * Approximate heap size of the batch fit coefficients of one date. The
+	 * results are streamed to the output file, and only kept as doubles for
+	 * the result store.
+	 */
+	static final long RESULT_BYTES = 40;
+
+	/**
+	 * Number of bytes at the end of an output file which are read to find its
+	 * last row
+	 */
+	static final int TAIL_BYTES = 512;
+
+	private final double omega;
+	private final double mCoeff;
+	private final double tCrit;
+	private final int[] windows;
+	private final List<String[]> selections = new ArrayList<String[]>();
+
+	private final Indices indices;
+	private final String openCLSrc;
+	private final RunContext runContext;
+
+	private final List<JobTiming> jobTimings = new ArrayList<JobTiming>();
+	private final List<String> dispatchOrder = new ArrayList<String>();
+	private LombScargle lombScargle;
+	private WindowBasisCache windowBasisCache;
+	private JobCostModel jobCostModel;
+	private int completedJobs;
+	private int failedJobs;
+
+	private int threads;
+	private long startNanos;
+	private double totalUnits;
+	private double finishedUnits;
+	private int finishedJobs;
+	private int totalJobs;
+
+	/**
+	 * JobScheduler constructor
+	 *
+	 * @param omega
+	 * @param mCoeff
+	 * @param tCrit
+	 * @param windows
+	 * @param indices
+	 * @param openCLSrc
+	 * @param runContext
+	 */
+	public JobScheduler(final double omega, final double mCoeff, final double tCrit, final int[] windows,
+			final Indices indices, final String openCLSrc, final RunContext runContext) {
+		this.omega = omega;
+		this.mCoeff = mCoeff;
+		this.tCrit = tCrit;
+		this.windows = windows;
+		this.indices = indices;
+		this.openCLSrc = openCLSrc;
+		this.runContext = runContext;
+	}
+
+	/**
+	 * addSelection adds the windows of a selection to the jobs
+	 *
+	 * @param categoryName
+	 * @param selectionName
+	 */
+	public void addSelection(final String categoryName, final String selectionName) {
+		selections.add(new String[] { categoryName, selectionName });
+	}
+
+	/**
+	 * addCategory adds the windows of every selection of the category to the
+	 * jobs
+	 *
+	 * @param categoryName
+	 */
+	public void addCategory(final String categoryName) {
+		for (final String selectionName : indices.getCategoriesAndComponents().get(categoryName).getComponents()) {
+			addSelection(categoryName, selectionName);
+		}
+	}
+
+	/**
+	 * setWindowBasisCache sets the cache of the LombScargle and window bases
+	 * of the run, or null to build them for this run
+	 *
+	 * @param windowBasisCache
+	 */
+	public void setWindowBasisCache(final WindowBasisCache windowBasisCache) {
+		this.windowBasisCache = windowBasisCache;
+	}
+
+	/**
+	 * run calculates every job and writes its output file. Catches any errors
+	 * which the Run methods may throw; a failed job writes no output.
+	 *
+	 * @param bubbleIndexWorker
+	 */
+	public void run(final BubbleIndexWorker bubbleIndexWorker) {
+		if (runContext.isStop())
+			return;
+
+		if (!runContext.isForceCPU()) {
+			final DailyDataCache dailyDataCache = new DailyDataCache();
+			for (int s = 0; s < selections.size() && !runContext.isStop(); s++) {
+				showCategory(bubbleIndexWorker, selections.get(s)[0]);
+				final MultiWindowRun multiWindowRun = new MultiWindowRun(omega, mCoeff, tCrit, windows,
+						selections.get(s)[0], selections.get(s)[1], dailyDataCache, indices, openCLSrc, runContext);
+				multiWindowRun.setWindowBasisCache(windowBasisCache);
+				multiWindowRun.run(bubbleIndexWorker);
+				if (!runContext.isStop())
+					multiWindowRun.outputResults(bubbleIndexWorker);
+			}
+			return;
+		}
+
+		lombScargle = windowBasisCache != null ? windowBasisCache.getLombScargle(omega, mCoeff)
+				: new LombScargle(70, 18, 19, omega, mCoeff, indices);
+		jobCostModel = new JobCostModel(lombScargle, indices);
+		threads = runContext.getScheduler().getParallelism();
+
+		final List<WindowJob> windowJobs = createJobs(bubbleIndexWorker);
+		totalJobs = windowJobs.size();
+
+		final long memoryBudget = runContext.getMemoryBudget();
+		Logs.myLogger.info("Executing CPU jobs. Selections = {}, Windows = {}, Jobs = {}, Memory Budget = {} MB",
+				selections.size(), Arrays.toString(windows), totalJobs, memoryBudget / (1024 * 1024));
+		Utilities.displayOutput(runContext,
+				"Running " + totalJobs + " jobs. Estimated time: "
+						+ JobCostModel.formatDuration(jobCostModel.estimateNanos(totalUnits, threads))
+						+ (jobCostModel.isCalibrated() ? "" : " (not calibrated)"),
+				false);
+
+		startNanos = System.nanoTime();
+		final CompletionService<WindowJob> completionService = new ExecutorCompletionService<WindowJob>(
+				runContext.getScheduler().getCoordinator());
+		final Map<Future<WindowJob>, WindowJob> running = new IdentityHashMap<Future<WindowJob>, WindowJob>();
+		// every thread of the pool keeps the scratch arrays of the largest
+		// window it calculated, whichever job it runs
+		long scratchBytes = 0;
+		for (final WindowJob windowJob : windowJobs) {
+			scratchBytes = Math.max(scratchBytes,
+					lombScargle.estimateScratchBytes(windowJob.window, runContext.isSinglePrecision()));
+		}
+		long usedBytes = threads * scratchBytes;
+
+		try {
+			for (final WindowJob windowJob : windowJobs) {
+				if (runContext.isStop()) {
+					break;
+				}
+				final SelectionJob selectionJob = windowJob.selectionJob;
+				final long jobBytes = windowJob.bytes + (selectionJob.loaded ? 0 : selectionJob.bytes);
+				while (!running.isEmpty() && usedBytes + jobBytes > memoryBudget) {
+					usedBytes -= collect(running.remove(completionService.take()));
+				}
+
+				if (!selectionJob.loaded) {
+					if (!selectionJob.load()) {
+						windowJob.error = selectionJob.loadError;
+						collect(windowJob);
+						continue;
+					}
+					showCategory(bubbleIndexWorker, selectionJob.categoryName);
+				}
+				usedBytes += jobBytes;
+				dispatchOrder.add(selectionJob.selectionName + windowJob.window);
+				windowJob.submitNanos = System.nanoTime();
+				running.put(completionService.submit(windowJob), windowJob);
+			}
+
+			while (!running.isEmpty()) {
+				usedBytes -= collect(running.remove(completionService.take()));
+			}
+		} catch (final InterruptedException ex) {
+			Logs.myLogger.error("Interrupted while running jobs. {}", ex);
+			for (final Future<WindowJob> future : running.keySet()) {
+				future.cancel(false);
+			}
+			Thread.currentThread().interrupt();
+		}
+
+		final long elapsedNanos = System.nanoTime() - startNanos;
+		if (!runContext.isStop()) {
+			jobCostModel.calibrate(jobTimings, elapsedNanos, threads);
+		}
+		Logs.myLogger.info("Finished CPU jobs. Completed = {}, Failed = {}, Elapsed = {} ms", completedJobs,
+				failedJobs, elapsedNanos / 1000000);
+	}
+
+	/**
+	 * getJobTimings returns the timing of every collected job in the order of
+	 * collection
+	 *
+	 * @return
+	 */
+	public List<JobTiming> getJobTimings() {
+		return jobTimings;
+	}
+
+	/**
+	 * getDispatchOrder returns the selection name and window of every started
+	 * job, such as BITSTAMPUSD512, in the order in which the jobs were started
+	 *
+	 * @return
+	 */
+	public List<String> getDispatchOrder() {
+		return dispatchOrder;
+	}
+
+	/**
+	 * getCompletedJobs returns the number of jobs whose output was written
+	 *
+	 * @return
+	 */
+	public int getCompletedJobs() {
+		return completedJobs;
+	}
+
+	/**
+	 * getFailedJobs returns the number of jobs which failed, including windows
+	 * which were already fully updated
+	 *
+	 * @return
+	 */
+	public int getFailedJobs() {
+		return failedJobs;
+	}
+
+	/**
+	 * createJobs creates the job of every window which is shorter than the
+	 * data of its selection and sorts the jobs by their estimated work,
+	 * longest first
+	 *
+	 * @param bubbleIndexWorker
+	 * @return
+	 */
+	private List<WindowJob> createJobs(final BubbleIndexWorker bubbleIndexWorker) {
+		final List<WindowJob> windowJobs = new ArrayList<WindowJob>();
+		for (final String[] selection : selections) {
+			final SelectionJob selectionJob = new SelectionJob(selection[0], selection[1]);
+			for (final int window : windows) {
+				if (selectionJob.dataSize > window) {
+					final WindowJob windowJob = new WindowJob(selectionJob, window, bubbleIndexWorker);
+					windowJobs.add(windowJob);
+					selectionJob.pendingWindows++;
+					totalUnits += windowJob.units;
+				}
+			}
+		}
+
+		Collections.sort(windowJobs, new Comparator<WindowJob>() {
+			@Override
+			public int compare(final WindowJob first, final WindowJob second) {
+				return Double.compare(second.units, first.units);
+			}
+		});
+		return windowJobs;
+	}
+
+	/**
+	 * collect records the timing of a finished job, shows the progress and
+	 * returns the number of bytes which the job releases
+	 *
+	 * @param windowJob
+	 * @return
+	 */
+	private long collect(final WindowJob windowJob) {
+		final SelectionJob selectionJob = windowJob.selectionJob;
+
+		if (windowJob.error == null) {
+			completedJobs++;
+		} else {
+			Logs.myLogger.info("Category Name = {}, Selection Name = {}, Window = {}. {}", selectionJob.categoryName,
+					selectionJob.selectionName, windowJob.window, windowJob.error);
+			Utilities.displayOutput(runContext, windowJob.error.getMessage(), false);
+			failedJobs++;
+		}
+
+		final JobTiming jobTiming = new JobTiming(selectionJob.categoryName, selectionJob.selectionName,
+				windowJob.window, windowJob.rows, windowJob.startNanos - windowJob.submitNanos,
+				windowJob.endNanos - windowJob.startNanos, windowJob.error == null);
+		jobTimings.add(jobTiming);
+		Logs.myLogger.info("Job {} {} window {}: {} dates in {} ms, queued {} ms.", selectionJob.categoryName,
+				selectionJob.selectionName, windowJob.window, jobTiming.dates, jobTiming.runNanos / 1000000,
+				jobTiming.queuedNanos / 1000000);
+
+		finishedJobs++;
+		finishedUnits += windowJob.units;
+		final long remainingNanos = finishedUnits > 0.0
+				? (long) ((System.nanoTime() - startNanos) / finishedUnits * (totalUnits - finishedUnits))
+				: jobCostModel.estimateNanos(totalUnits - finishedUnits, threads);
+		Utilities.displayOutput(runContext,
+				"Finished " + selectionJob.selectionName + " window " + windowJob.window + ". " + finishedJobs
+						+ " of " + totalJobs + " jobs. ETA: " + JobCostModel.formatDuration(remainingNanos),
+				false);
+
+		selectionJob.pendingWindows--;
+		return windowJob.bytes + selectionJob.releaseIfDone();
+	}
+
+	/**
+	 * showCategory shows the category of a selection which is starting in the
+	 * GUI, if the run has one
+	 *
+	 * @param bubbleIndexWorker
+	 * @param categoryName
+	 */
+	private static void showCategory(final BubbleIndexWorker bubbleIndexWorker, final String categoryName) {
+		if (bubbleIndexWorker != null) {
+			bubbleIndexWorker.showCategory(categoryName);
+		}
+	}
+
+	/**
+	 * countDates returns the number of dates of a dailydata.csv file, from the
+	 * header of its store if the store is fresh
+	 *
+	 * @param dailyDataPath
+	 * @return
+	 */
+	static int countDates(final String dailyDataPath) {
+		final int dates = DailyDataStore.countDates(dailyDataPath);
+		return dates >= 0 ? dates : countLines(dailyDataPath);
+	}
+
+	/**
+	 * countLines returns the number of non empty lines of a file, or 0 if it
+	 * does not exist or cannot be read
+	 *
+	 * @param filePath
+	 * @return
+	 */
+	static int countLines(final String filePath) {
+		if (!new File(filePath).exists()) {
+			return 0;
+		}
+		BufferedReader reader = null;
+		int lines = 0;
+		try {
+			reader = new BufferedReader(new FileReader(filePath));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty()) {
+					lines++;
+				}
+			}
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to count lines of {}. {}", filePath, ex);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to close {}. {}", filePath, ex);
+				}
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * lastPeriod returns the period number of the last complete row of an
+	 * output file, which is the number of dates calculated so far, by reading
+	 * only the end of the file. Returns 0 if the file does not exist or has no
+	 * rows.
+	 *
+	 * @param filePath
+	 * @return
+	 */
+	static int lastPeriod(final String filePath) {
+		final File file = new File(filePath);
+		if (!file.exists()) {
+			return 0;
+		}
+		RandomAccessFile reader = null;
+		try {
+			reader = new RandomAccessFile(file, "r");
+			final long length = reader.length();
+			final byte[] tail = new byte[(int) Math.min(length, TAIL_BYTES)];
+			reader.seek(length - tail.length);
+			reader.readFully(tail);
+
+			// skip a torn last line, then find the start of the last row
+			int end = tail.length;
+			while (end > 0 && tail[end - 1] != '\n') {
+				end--;
+			}
+			while (end > 0 && (tail[end - 1] == '\n' || tail[end - 1] == '\r')) {
+				end--;
+			}
+			int start = end;
+			while (start > 0 && tail[start - 1] != '\n') {
+				start--;
+			}
+			final String row = new String(tail, start, end - start, StandardCharsets.UTF_8);
+			final int comma = row.indexOf(',');
+			return comma > 0 ? Integer.parseInt(row.substring(0, comma).trim()) : 0;
+		} catch (final NumberFormatException ex) {
+			// the header, or a row which findStartIndex will reject
+			return 0;
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to read last row of {}. {}", filePath, ex);
+			return 0;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to close {}. {}", filePath, ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * SelectionJob holds the daily data of a selection while any of its
+	 * windows is running
+	 */
+	private class SelectionJob {
+		final String categoryName;
+		final String selectionName;
+		final String savePath;
+		final int dataSize;
+		final long bytes;
+
+		boolean loaded;
+		FailedToRunIndex loadError;
+		int pendingWindows;
+
+		List<String> dailyPriceDate;
+		double[] dailyPriceDoubleValues;
+		double[] dailyPriceLogValues;
+
+		SelectionJob(final String categoryName, final String selectionName) {
+			this.categoryName = categoryName;
+			this.selectionName = selectionName;
+			this.savePath = indices.getUserDir() + indices.getProgramDataFolder() + indices.getFilePathSymbol()
+					+ categoryName + indices.getFilePathSymbol() + selectionName + indices.getFilePathSymbol();
+			this.dataSize = countDates(savePath + selectionName + "dailydata.csv");
+			this.bytes = DAY_BYTES * dataSize;
+		}
+
+		/**
+		 * load reads the daily data. Returns false if it cannot be read, in
+		 * which case every window of the selection fails with loadError.
+		 */
+		boolean load() {
+			if (loadError != null) {
+				return false;
+			}
+			Logs.myLogger.info("Loading selection. Category Name = {}, Selection Name = {}", categoryName,
+					selectionName);
+			final DailyDataCache dailyDataCache = new DailyDataCache();
+			try {
+				dailyDataCache.load(selectionName, savePath + selectionName + "dailydata.csv", runContext);
+			} catch (final FailedToRunIndex er) {
+				loadError = er;
+				return false;
+			}
+			dailyPriceDate = dailyDataCache.getDailyPriceDate();
+			dailyPriceDoubleValues = dailyDataCache.getDailyPriceDoubleValues();
+			dailyPriceLogValues = dailyDataCache.getDailyPriceLogValues();
+			loaded = true;
+			return true;
+		}
+
+		/**
+		 * releaseIfDone releases the daily data once every window has been
+		 * collected, and returns the number of bytes released
+		 */
+		long releaseIfDone() {
+			if (!loaded || pendingWindows > 0) {
+				return 0;
+			}
+			dailyPriceDate = null;
+			dailyPriceDoubleValues = null;
+			dailyPriceLogValues = null;
+			loaded = false;
+			return bytes;
+		}
+
+		String outputName(final int window) {
+			return selectionName + window + "days.csv";
+		}
+	}
+
+	/**
+	 * WindowJob calculates one window of a selection on a coordinator thread
+	 * of the compute scheduler. Its dates are computed as checkpointed batches
+	 * on the pool and streamed to its output file.
+	 */
+	private class WindowJob implements Callable<WindowJob> {
+		final SelectionJob selectionJob;
+		final int window;
+		final long bytes;
+		final double units;
+		final BubbleIndexWorker bubbleIndexWorker;
+
+		int rows;
+		long submitNanos;
+		long startNanos;
+		long endNanos;
+		FailedToRunIndex error;
+
+		WindowJob(final SelectionJob selectionJob, final int window, final BubbleIndexWorker bubbleIndexWorker) {
+			this.selectionJob = selectionJob;
+			this.window = window;
+			this.bubbleIndexWorker = bubbleIndexWorker;
+
+			// the last row of the output file holds the number of calculated
+			// dates; the rows themselves are read once the job runs
+			final int calculatedDates = lastPeriod(selectionJob.savePath + selectionJob.outputName(window));
+			final int dates = Math.max(0, selectionJob.dataSize - window - calculatedDates);
+			this.units = jobCostModel.units(window, dates);
+			this.bytes = WindowBasis.estimateBytes(lombScargle, window)
+					+ lombScargle.estimateEngineBytes(window, runContext.isSinglePrecision())
+					+ (lombScargle.batchFit ? BatchLinearFit.estimateBytes(selectionJob.dataSize) : 0)
+					+ RESULT_BYTES * dates;
+		}
+
+		@Override
+		public WindowJob call() {
+			startNanos = System.nanoTime();
+			final String outputPath = selectionJob.savePath + selectionJob.outputName(window);
+			final CsvResultSink csvResultSink = new CsvResultSink(outputPath, selectionJob.dailyPriceDate, window,
+					true);
+			final ResultSink resultSink = runContext.isResultStore()
+					? new ResultStoreSink(csvResultSink, selectionJob.savePath, selectionJob.selectionName, window,
+							selectionJob.dailyPriceDate)
+					: csvResultSink;
+			final RunIndex runIndex = new RunIndex(bubbleIndexWorker, selectionJob.dailyPriceDoubleValues,
+					selectionJob.dailyPriceLogValues, selectionJob.dailyPriceDate.size(), window, null,
+					selectionJob.dailyPriceDate, outputPath, selectionJob.selectionName, omega, mCoeff, tCrit, indices,
+					openCLSrc, runContext, lombScargle);
+			try {
+				runIndex.submitCPUCallables(runContext.getScheduler(),
+						windowBasisCache != null ? windowBasisCache.getWindowBasis(lombScargle, window, tCrit) : null,
+						resultSink, false).finish();
+				runIndex.logStatistics();
+				// a journal left by an interrupted Single run is stale now
+				new ResultJournal(outputPath).delete();
+			} catch (final FailedToRunIndex er) {
+				error = er;
+			} catch (final ExecutionException ex) {
+				error = new FailedToRunIndex(ex);
+			} catch (final InterruptedException ex) {
+				error = new FailedToRunIndex(ex);
+				Thread.currentThread().interrupt();
+			}
+			// the rows which were streamed before a failure are kept too
+			if (runIndex.getResultManifest() != null) {
+				runIndex.getResultManifest().writePending();
+			}
+			rows = csvResultSink.getRows();
+			endNanos = System.nanoTime();
+			return this;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package org.thebubbleindex.driver;
+
+/**
+ * JobTiming records how long a (category, selection, window) job of the
+ * {@link JobScheduler} waited for a thread and how long it ran
+ *
+ * @author thebubbleindex
+ */
+public class JobTiming {
+
+	public final String categoryName;
+	public final String selectionName;
+	public final int window;
+	public final int dates;
+	public final long queuedNanos;
+	public final long runNanos;
+	public final boolean completed;
+
+	/**
+	 * JobTiming constructor
+	 *
+	 * @param categoryName
+	 * @param selectionName
+	 * @param window
+	 * @param dates
+	 *            The number of dates which were calculated
+	 * @param queuedNanos
+	 * @param runNanos
+	 * @param completed
+	 *            False if the job failed
+	 */
+	public JobTiming(final String categoryName, final String selectionName, final int window, final int dates,
+			final long queuedNanos, final long runNanos, final boolean completed) {
+		this.categoryName = categoryName;
+		this.selectionName = selectionName;
+		this.window = window;
+		this.dates = dates;
+		this.queuedNanos = queuedNanos;
+		this.runNanos = runNanos;
+		this.completed = completed;
+	}
+}
@@ -0,0 +1,329 @@
+package org.thebubbleindex.driver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.runnable.CsvResultSink;
+import org.thebubbleindex.runnable.MemoryResultSink;
+import org.thebubbleindex.runnable.ResultJournal;
+import org.thebubbleindex.runnable.ResultManifest;
+import org.thebubbleindex.runnable.ResultStoreSink;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+import org.thebubbleindex.swing.BubbleIndexWorker;
+import org.thebubbleindex.util.Utilities;
+
+/**
+ * MultiWindowRun runs every window of a single selection in one pass.
+ * <p>
+ * The daily data is read, converted and logged once, and a single LombScargle
+ * (and with it lombscargle.properties and the Q, H grid tables) is shared by
+ * every window. The (window, date) callables of all windows are submitted to
+ * the compute scheduler through a {@link WindowPipeline} with at most
+ * PENDING_WINDOWS windows prepared ahead of the oldest unfinished window. The
+ * windows are submitted longest first, so a large window does not run alone
+ * at the end. The dates of each window are journaled in batches as they
+ * complete, so a killed run resumes where it stopped. The output files of all
+ * windows are written at the end of the run.
+ * <p>
+ * The GPU calculation runs window by window and only shares the data and the
+ * LombScargle.
+ * <p>
+ * If the run is given a {@link WindowBasisCache}, the LombScargle and the
+ * window bases are taken from it, so repeated runs of a resident process
+ * reuse them.
+ *
+ * @author thebubbleindex
+ */
+public class MultiWindowRun {
+
+	static final int PENDING_WINDOWS = 2;
+
+	private final String categoryName;
+	private final String selectionName;
+	private final String savePath;
+	private final String openCLSrc;
+
+	private final double omega;
+	private final double mCoeff;
+	private final double tCrit;
+	private final int[] windows;
+	private final int dataSize;
+
+	private final List<String> dailyPriceDate;
+	private final double[] dailyPriceDoubleValues;
+	private final double[] dailyPriceLogValues;
+	private final List<MemoryResultSink> results;
+	private final ResultManifest[] resultManifests;
+
+	private final Indices indices;
+	private final RunContext runContext;
+	private WindowBasisCache windowBasisCache;
+
+	/**
+	 * MultiWindowRun constructor
+	 *
+	 * @param omega
+	 * @param mCoeff
+	 * @param tCrit
+	 * @param windows
+	 * @param categoryName
+	 * @param selectionName
+	 * @param dailyDataCache
+	 * @param indices
+	 * @param openCLSrc
+	 * @param runContext
+	 */
+	public MultiWindowRun(final double omega, final double mCoeff, final double tCrit, final int[] windows,
+			final String categoryName, final String selectionName, final DailyDataCache dailyDataCache,
+			final Indices indices, final String openCLSrc, final RunContext runContext) {
+
+		Logs.myLogger.info(
+				"Initializing The Bubble Index. Category Name = {}, Selection Name = {}, Omega = {}, M = {}, "
+						+ "TCrit = {}, Windows = {}",
+				categoryName, selectionName, omega, mCoeff, tCrit, Arrays.toString(windows));
+
+		this.omega = omega;
+		this.mCoeff = mCoeff;
+		this.tCrit = tCrit;
+		this.windows = windows;
+		this.categoryName = categoryName;
+		this.selectionName = selectionName;
+		this.indices = indices;
+		this.openCLSrc = openCLSrc;
+		this.runContext = runContext;
+
+		savePath = indices.getUserDir() + indices.getProgramDataFolder() + indices.getFilePathSymbol() + categoryName
+				+ indices.getFilePathSymbol() + selectionName + indices.getFilePathSymbol();
+
+		dailyDataCache.load(selectionName, savePath + selectionName + "dailydata.csv", runContext);
+
+		dailyPriceDate = dailyDataCache.getDailyPriceDate();
+		dailyPriceDoubleValues = dailyDataCache.getDailyPriceDoubleValues();
+		dailyPriceLogValues = dailyDataCache.getDailyPriceLogValues();
+		dataSize = dailyPriceDate.size();
+
+		resultManifests = new ResultManifest[windows.length];
+		results = new ArrayList<MemoryResultSink>(windows.length);
+		for (int w = 0; w < windows.length; w++) {
+			results.add(new MemoryResultSink(dataSize - windows[w]));
+		}
+	}
+
+	/**
+	 * parseWindows converts the comma separated list of windows into integers
+	 *
+	 * @param windowsString
+	 * @return
+	 */
+	public static int[] parseWindows(final String windowsString) {
+		final String[] windowArray = windowsString.split(",");
+		final int[] windows = new int[windowArray.length];
+		for (int w = 0; w < windowArray.length; w++) {
+			windows[w] = Integer.parseInt(windowArray[w].trim());
+		}
+		return windows;
+	}
+
+	/**
+	 * setWindowBasisCache sets the cache of the LombScargle and window bases
+	 * of the run, or null to build them for this run
+	 *
+	 * @param windowBasisCache
+	 */
+	public void setWindowBasisCache(final WindowBasisCache windowBasisCache) {
+		this.windowBasisCache = windowBasisCache;
+	}
+
+	/**
+	 * run calculates every window of the selection. Catches any errors which
+	 * the Run methods may throw; the results of a failed window are discarded.
+	 *
+	 * @param bubbleIndexWorker
+	 */
+	public void run(final BubbleIndexWorker bubbleIndexWorker) {
+		if (runContext.isStop())
+			return;
+
+		final LombScargle lombScargle = windowBasisCache != null ? windowBasisCache.getLombScargle(omega, mCoeff)
+				: new LombScargle(70, 18, 19, omega, mCoeff, indices);
+
+		if (!runContext.isForceCPU()) {
+			Logs.myLogger.info("Executing GPU Run. Category Name = {}, Selection Name = {}", categoryName,
+					selectionName);
+			for (int w = 0; w < windows.length && !runContext.isStop(); w++) {
+				if (dataSize > windows[w]) {
+					try {
+						final List<Double> gpuResults = new ArrayList<Double>(dataSize - windows[w]);
+						final RunIndex runIndex = createRunIndex(bubbleIndexWorker, w, lombScargle, gpuResults);
+						runIndex.execIndexWithGPU();
+						resultManifests[w] = runIndex.getResultManifest();
+						results.get(w).open(dataSize - windows[w] - gpuResults.size());
+						for (final double value : gpuResults) {
+							results.get(w).add(value);
+						}
+					} catch (final FailedToRunIndex er) {
+						failed(bubbleIndexWorker, w, er);
+					}
+				}
+			}
+			return;
+		}
+
+		Logs.myLogger.info("Executing CPU Run. Category Name = {}, Selection Name = {}, Windows = {}", categoryName,
+				selectionName, windows.length);
+
+		final WindowPipeline pipeline = new WindowPipeline(runContext.getScheduler(), PENDING_WINDOWS) {
+			@Override
+			void completed(final int w) {
+			}
+
+			@Override
+			void failed(final int w, final FailedToRunIndex er) {
+				MultiWindowRun.this.failed(bubbleIndexWorker, w, er);
+			}
+		};
+
+		try {
+			for (final int w : longestFirst()) {
+				if (runContext.isStop()) {
+					break;
+				}
+				if (dataSize > windows[w]) {
+					final RunIndex runIndex = createRunIndex(bubbleIndexWorker, w, lombScargle, null);
+					pipeline.submit(w, runIndex,
+							windowBasisCache != null ? windowBasisCache.getWindowBasis(lombScargle, windows[w], tCrit)
+									: null,
+							results.get(w));
+					resultManifests[w] = runIndex.getResultManifest();
+				}
+			}
+			pipeline.finish();
+		} catch (final InterruptedException ex) {
+			Logs.myLogger.error("Interrupted. Selection Name = {}. {}", selectionName, ex);
+			pipeline.cancel();
+			Thread.currentThread().interrupt();
+		}
+		Logs.myLogger.info("Finished CPU execution.");
+	}
+
+	/**
+	 * outputResults saves the results of every window to the savePath, writes
+	 * the manifest of each output file which was created and deletes the
+	 * journal of each window which was written
+	 *
+	 * @param bubbleIndexWorker
+	 */
+	public void outputResults(final BubbleIndexWorker bubbleIndexWorker) {
+		for (int w = 0; w < windows.length; w++) {
+			if (dataSize > windows[w] && !results.get(w).isEmpty()) {
+
+				final String Name = selectionName + windows[w] + "days.csv";
+				final String previousFilePath = savePath + Name;
+
+				if (runContext.isGUI()) {
+					bubbleIndexWorker.publishText("Writing output file.");
+				} else {
+					System.out.println("Writing output file.");
+				}
+				try {
+					Logs.myLogger.info("Writing output file: {}", previousFilePath);
+
+					final CsvResultSink csvResultSink = new CsvResultSink(previousFilePath, dailyPriceDate, windows[w],
+							false);
+					results.get(w).writeTo(runContext.isResultStore()
+							? new ResultStoreSink(csvResultSink, savePath, selectionName, windows[w], dailyPriceDate)
+							: csvResultSink);
+					if (resultManifests[w] != null) {
+						resultManifests[w].writePending();
+					}
+					new ResultJournal(previousFilePath).delete();
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to write csv output. Save path = {}. {}", savePath, ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * getResults returns the results of the window at the position of the
+	 * windows array
+	 *
+	 * @param w
+	 * @return
+	 */
+	public List<Double> getResults(final int w) {
+		return results.get(w).asList();
+	}
+
+	/**
+	 * longestFirst returns the positions of the windows ordered by their work,
+	 * window * (dataSize - window), longest first
+	 *
+	 * @return
+	 */
+	private Integer[] longestFirst() {
+		final Integer[] order = new Integer[windows.length];
+		for (int w = 0; w < windows.length; w++) {
+			order[w] = w;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer first, final Integer second) {
+				return Long.compare(work(windows[second]), work(windows[first]));
+			}
+
+			private long work(final int window) {
+				return (long) window * Math.max(0, dataSize - window);
+			}
+		});
+		return order;
+	}
+
+	/**
+	 * createRunIndex helper method to create the RunIndex of a window with the
+	 * shared data and LombScargle
+	 *
+	 * @param bubbleIndexWorker
+	 * @param w
+	 * @param lombScargle
+	 * @param gpuResults
+	 *            The results of the GPU calculation, or null for the CPU
+	 *            calculation, which writes to the result sink of the window
+	 * @return
+	 */
+	private RunIndex createRunIndex(final BubbleIndexWorker bubbleIndexWorker, final int w,
+			final LombScargle lombScargle, final List<Double> gpuResults) {
+		final String previousFilePath = savePath + selectionName + Integer.toString(windows[w]) + "days.csv";
+		Utilities.displayOutput(runContext, "Output File Path: " + previousFilePath, false);
+
+		return new RunIndex(bubbleIndexWorker, dailyPriceDoubleValues, dailyPriceLogValues, dataSize, windows[w],
+				gpuResults, dailyPriceDate, previousFilePath, selectionName, omega, mCoeff, tCrit, indices,
+				openCLSrc, runContext, lombScargle);
+	}
+
+	/**
+	 * failed reports a failed window and discards its results
+	 *
+	 * @param bubbleIndexWorker
+	 * @param w
+	 * @param er
+	 */
+	private void failed(final BubbleIndexWorker bubbleIndexWorker, final int w, final FailedToRunIndex er) {
+		Logs.myLogger.info("Category Name = {}, Selection Name = {}, Window = {}. {}", categoryName, selectionName,
+				windows[w], er);
+		if (runContext.isGUI()) {
+			bubbleIndexWorker.publishText(er.getMessage());
+		} else {
+			System.out.println(er.getMessage());
+		}
+		results.get(w).clear();
+	}
+}
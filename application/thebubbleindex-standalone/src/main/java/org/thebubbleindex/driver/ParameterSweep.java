@@ -0,0 +1,323 @@
+package org.thebubbleindex.driver;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+import org.thebubbleindex.runnable.MemoryResultSink;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+import org.thebubbleindex.swing.BubbleIndexWorker;
+import org.thebubbleindex.util.Utilities;
+
+/**
+ * ParameterSweep calculates The Bubble Index of a selection for every
+ * combination of omega, m and critical time values and every window, as one
+ * job on the compute scheduler of the run context.
+ * <p>
+ * The daily data and its log prices are loaded once, lombscargle.properties
+ * is read once, and one LombScargle is built per (omega, m) pair. The
+ * combinations are run with omega innermost, so the time values and
+ * t^(m - H) of a window are computed once per (critical time, m) and shared
+ * by every omega. Every date of every window is calculated; previous output
+ * files are neither read nor written.
+ * <p>
+ * The results are written to the tidy file SelectionNamesweep.csv with one
+ * row per (omega, m, critical time, window, date). Rows are written as each
+ * run completes, so the cube is never held in memory.
+ *
+ * @author thebubbleindex
+ */
+public class ParameterSweep {
+
+	static final int PENDING_RUNS = 2;
+
+	private final String categoryName;
+	private final String selectionName;
+	private final String savePath;
+
+	private final double[] omegas;
+	private final double[] mCoeffs;
+	private final double[] tCrits;
+	private final int[] windows;
+	private final int dataSize;
+
+	private final List<String> dailyPriceDate;
+	private final double[] dailyPriceDoubleValues;
+	private final double[] dailyPriceLogValues;
+
+	private final Indices indices;
+	private final RunContext runContext;
+
+	private final List<SweepRun> runs = new ArrayList<SweepRun>();
+	private int completedRuns;
+	private int failedRuns;
+
+	/**
+	 * ParameterSweep constructor
+	 *
+	 * @param omegas
+	 * @param mCoeffs
+	 * @param tCrits
+	 * @param windows
+	 * @param categoryName
+	 * @param selectionName
+	 * @param dailyDataCache
+	 * @param indices
+	 * @param runContext
+	 */
+	public ParameterSweep(final double[] omegas, final double[] mCoeffs, final double[] tCrits, final int[] windows,
+			final String categoryName, final String selectionName, final DailyDataCache dailyDataCache,
+			final Indices indices, final RunContext runContext) {
+
+		Logs.myLogger.info(
+				"Initializing parameter sweep. Category Name = {}, Selection Name = {}, Omega = {}, M = {}, "
+						+ "TCrit = {}, Windows = {}",
+				categoryName, selectionName, Arrays.toString(omegas), Arrays.toString(mCoeffs),
+				Arrays.toString(tCrits), Arrays.toString(windows));
+
+		this.omegas = omegas;
+		this.mCoeffs = mCoeffs;
+		this.tCrits = tCrits;
+		this.windows = windows;
+		this.categoryName = categoryName;
+		this.selectionName = selectionName;
+		this.indices = indices;
+		this.runContext = runContext;
+
+		savePath = indices.getUserDir() + indices.getProgramDataFolder() + indices.getFilePathSymbol() + categoryName
+				+ indices.getFilePathSymbol() + selectionName + indices.getFilePathSymbol();
+
+		dailyDataCache.load(selectionName, savePath + selectionName + "dailydata.csv", runContext);
+
+		dailyPriceDate = dailyDataCache.getDailyPriceDate();
+		dailyPriceDoubleValues = dailyDataCache.getDailyPriceDoubleValues();
+		dailyPriceLogValues = dailyDataCache.getDailyPriceLogValues();
+		dataSize = dailyPriceDate.size();
+	}
+
+	/**
+	 * parseRange converts a parameter range into its values. The range is
+	 * either start:end:step, inclusive of end, or a comma separated list of
+	 * values.
+	 *
+	 * @param rangeString
+	 * @return
+	 */
+	public static double[] parseRange(final String rangeString) {
+		final String[] bounds = rangeString.split(":");
+		if (bounds.length == 3) {
+			final double start = Double.parseDouble(bounds[0].trim());
+			final double end = Double.parseDouble(bounds[1].trim());
+			final double step = Double.parseDouble(bounds[2].trim());
+			if (!(step > 0.0) || end < start) {
+				throw new IllegalArgumentException("Invalid range " + rangeString + ". Use start:end:step.");
+			}
+
+			final int count = (int) Math.floor((end - start) / step + 1.0e-9) + 1;
+			final double[] values = new double[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = start + i * step;
+			}
+			return values;
+		}
+
+		final String[] valueArray = rangeString.split(",");
+		final double[] values = new double[valueArray.length];
+		for (int i = 0; i < valueArray.length; i++) {
+			values[i] = Double.parseDouble(valueArray[i].trim());
+		}
+		return values;
+	}
+
+	/**
+	 * run calculates every combination and writes the results file. Catches
+	 * any errors which the Run methods may throw; a failed combination is
+	 * left out of the results file.
+	 *
+	 * @param bubbleIndexWorker
+	 */
+	public void run(final BubbleIndexWorker bubbleIndexWorker) {
+		if (runContext.isStop())
+			return;
+
+		if (!runContext.isForceCPU()) {
+			Logs.myLogger.info("Parameter sweep runs on the CPU.");
+		}
+
+		final String fileName = selectionName + "sweep.csv";
+		Utilities.displayOutput(runContext, "Output File Path: " + savePath + fileName, false);
+
+		BufferedWriter writer = null;
+		WindowPipeline pipeline = null;
+
+		try {
+			writer = new BufferedWriter(new FileWriter(savePath + fileName, false));
+			writer.append("Omega,M,TCrit,Window,Date,Value");
+			writer.append('\n');
+
+			final BufferedWriter output = writer;
+			pipeline = new WindowPipeline(runContext.getScheduler(), PENDING_RUNS) {
+				@Override
+				void completed(final int key) {
+					writeRun(output, runs.get(key));
+					runs.set(key, null);
+				}
+
+				@Override
+				void failed(final int key, final FailedToRunIndex er) {
+					ParameterSweep.this.failed(bubbleIndexWorker, runs.get(key), er);
+					runs.set(key, null);
+				}
+			};
+
+			final LombScargle settings = new LombScargle(70, 18, 19, omegas[0], mCoeffs[0], indices);
+			final LombScargle[] lombScargles = new LombScargle[omegas.length];
+
+			for (int t = 0; t < tCrits.length && !runContext.isStop(); t++) {
+				for (int m = 0; m < mCoeffs.length && !runContext.isStop(); m++) {
+					for (int o = 0; o < omegas.length; o++) {
+						lombScargles[o] = new LombScargle(settings, omegas[o], mCoeffs[m]);
+					}
+
+					for (int w = 0; w < windows.length && !runContext.isStop(); w++) {
+						if (dataSize - windows[w] <= 1) {
+							continue;
+						}
+
+						WindowBasis omegaIndependentBasis = null;
+						for (int o = 0; o < omegas.length && !runContext.isStop(); o++) {
+							final WindowBasis windowBasis = omegaIndependentBasis == null
+									? new WindowBasis(lombScargles[o], windows[w], tCrits[t])
+									: new WindowBasis(lombScargles[o], omegaIndependentBasis);
+							omegaIndependentBasis = windowBasis;
+
+							final SweepRun sweepRun = new SweepRun(omegas[o], mCoeffs[m], tCrits[t], windows[w],
+									dataSize - windows[w]);
+							runs.add(sweepRun);
+
+							final RunIndex runIndex = new RunIndex(bubbleIndexWorker, dailyPriceDoubleValues,
+									dailyPriceLogValues, dataSize, windows[w], null, dailyPriceDate, null,
+									selectionName, omegas[o], mCoeffs[m], tCrits[t], indices, null, runContext,
+									lombScargles[o]);
+							pipeline.submit(runs.size() - 1, runIndex, windowBasis, sweepRun.results);
+						}
+					}
+				}
+			}
+			pipeline.finish();
+			writer.flush();
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to write parameter sweep output. Save path = {}. {}", savePath, ex);
+		} catch (final InterruptedException ex) {
+			Logs.myLogger.error("Interrupted. Selection Name = {}. {}", selectionName, ex);
+			Thread.currentThread().interrupt();
+		} finally {
+			if (pipeline != null) {
+				pipeline.cancel();
+			}
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to close parameter sweep output. {}", ex);
+				}
+			}
+		}
+
+		Utilities.displayOutput(runContext, "Parameter sweep finished. " + completedRuns + " runs completed, "
+				+ failedRuns + " failed.", false);
+		Logs.myLogger.info("Finished parameter sweep. Category Name = {}, Selection Name = {}, Completed = {}, "
+				+ "Failed = {}", categoryName, selectionName, completedRuns, failedRuns);
+	}
+
+	/**
+	 * getCompletedRuns returns the number of (omega, m, critical time, window)
+	 * runs which were written to the results file
+	 *
+	 * @return
+	 */
+	public int getCompletedRuns() {
+		return completedRuns;
+	}
+
+	/**
+	 * getFailedRuns returns the number of runs which failed
+	 *
+	 * @return
+	 */
+	public int getFailedRuns() {
+		return failedRuns;
+	}
+
+	/**
+	 * writeRun writes the rows of a completed run
+	 *
+	 * @param writer
+	 * @param sweepRun
+	 */
+	private void writeRun(final BufferedWriter writer, final SweepRun sweepRun) {
+		final String prefix = sweepRun.omega + "," + sweepRun.mCoeff + "," + sweepRun.tCrit + "," + sweepRun.window
+				+ ",";
+		try {
+			for (int i = 0; i < sweepRun.results.size(); i++) {
+				writer.append(prefix);
+				writer.append(dailyPriceDate.get(i + sweepRun.window));
+				writer.append(',');
+				writer.append(String.valueOf(sweepRun.results.get(i)));
+				writer.append('\n');
+			}
+			completedRuns++;
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to write parameter sweep output. Save path = {}. {}", savePath, ex);
+			failedRuns++;
+		}
+	}
+
+	/**
+	 * failed reports a failed run
+	 *
+	 * @param bubbleIndexWorker
+	 * @param sweepRun
+	 * @param er
+	 */
+	private void failed(final BubbleIndexWorker bubbleIndexWorker, final SweepRun sweepRun,
+			final FailedToRunIndex er) {
+		Logs.myLogger.info("Selection Name = {}, Omega = {}, M = {}, TCrit = {}, Window = {}. {}", selectionName,
+				sweepRun.omega, sweepRun.mCoeff, sweepRun.tCrit, sweepRun.window, er);
+		if (runContext.isGUI()) {
+			bubbleIndexWorker.publishText(er.getMessage());
+		} else {
+			System.out.println(er.getMessage());
+		}
+		failedRuns++;
+	}
+
+	/**
+	 * SweepRun holds the parameters of one run and its results until they are
+	 * written
+	 */
+	private static class SweepRun {
+		final double omega;
+		final double mCoeff;
+		final double tCrit;
+		final int window;
+		final MemoryResultSink results;
+
+		SweepRun(final double omega, final double mCoeff, final double tCrit, final int window, final int dates) {
+			this.omega = omega;
+			this.mCoeff = mCoeff;
+			this.tCrit = tCrit;
+			this.window = window;
+			this.results = new MemoryResultSink(dates);
+		}
+	}
+}
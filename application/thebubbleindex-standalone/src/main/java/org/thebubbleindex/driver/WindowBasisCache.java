@@ -0,0 +1,128 @@
+package org.thebubbleindex.driver;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+
+/**
+ * WindowBasisCache keeps the LombScargle of every omega and M coefficient and
+ * the window bases of the recently run windows between runs, so a repeated
+ * run of a window does not rebuild its grid tables, basis arrays and linear
+ * fit operator, nor the engine and cell bound which a basis keeps once it has
+ * built them, see {@link WindowBasis#getEngine}. The batch fits depend on the
+ * prices of the selection and are not cached. The bases are evicted least
+ * recently used first once their estimated size, with the engine of either
+ * precision, exceeds maxBytes.
+ * <p>
+ * The cached objects are read only during a run and may be shared by
+ * concurrent runs. clear drops them, for example after lombscargle.properties
+ * has changed.
+ *
+ * @author thebubbleindex
+ */
+public class WindowBasisCache {
+
+	private final Indices indices;
+	private final long maxBytes;
+	private final Map<String, LombScargle> lombScargles = new HashMap<String, LombScargle>();
+	private final LinkedHashMap<String, WindowBasis> windowBases = new LinkedHashMap<String, WindowBasis>(16, 0.75f,
+			true);
+	private final Map<String, Long> windowBasisBytes = new HashMap<String, Long>();
+	private long bytes;
+	private int hits;
+	private int misses;
+
+	/**
+	 * WindowBasisCache constructor
+	 *
+	 * @param indices
+	 * @param maxBytes
+	 *            The estimated size of the cached bases
+	 */
+	public WindowBasisCache(final Indices indices, final long maxBytes) {
+		this.indices = indices;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * getLombScargle returns the LombScargle of omega and mCoeff
+	 *
+	 * @param omega
+	 * @param mCoeff
+	 * @return
+	 */
+	public synchronized LombScargle getLombScargle(final double omega, final double mCoeff) {
+		final String key = omega + "," + mCoeff;
+		LombScargle lombScargle = lombScargles.get(key);
+		if (lombScargle == null) {
+			lombScargle = new LombScargle(70, 18, 19, omega, mCoeff, indices);
+			lombScargles.put(key, lombScargle);
+		}
+		return lombScargle;
+	}
+
+	/**
+	 * getWindowBasis returns the window basis of the window and critical time
+	 * for a LombScargle of this cache
+	 *
+	 * @param lombScargle
+	 * @param window
+	 * @param tCrit
+	 * @return
+	 */
+	public synchronized WindowBasis getWindowBasis(final LombScargle lombScargle, final int window,
+			final double tCrit) {
+		final String key = lombScargle.omegaDouble + "," + lombScargle.mCoeffDouble + "," + window + "," + tCrit;
+		WindowBasis windowBasis = windowBases.get(key);
+		if (windowBasis != null) {
+			hits++;
+			return windowBasis;
+		}
+		misses++;
+		windowBasis = new WindowBasis(lombScargle, window, tCrit);
+		final long engineBytes = Math.max(lombScargle.estimateEngineBytes(window, false),
+				lombScargle.estimateEngineBytes(window, true));
+		final long basisBytes = WindowBasis.estimateBytes(lombScargle, window) + engineBytes;
+		windowBases.put(key, windowBasis);
+		windowBasisBytes.put(key, basisBytes);
+		bytes += basisBytes;
+
+		final Iterator<Map.Entry<String, WindowBasis>> eldest = windowBases.entrySet().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			final String eldestKey = eldest.next().getKey();
+			if (eldestKey.equals(key)) {
+				break;
+			}
+			eldest.remove();
+			bytes -= windowBasisBytes.remove(eldestKey);
+		}
+		return windowBasis;
+	}
+
+	/**
+	 * clear drops every LombScargle and window basis
+	 */
+	public synchronized void clear() {
+		lombScargles.clear();
+		windowBases.clear();
+		windowBasisBytes.clear();
+		bytes = 0;
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	public synchronized int size() {
+		return windowBases.size();
+	}
+}
@@ -0,0 +1,142 @@
+package org.thebubbleindex.driver;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.WindowBasis;
+import org.thebubbleindex.runnable.CheckpointedWindow;
+import org.thebubbleindex.runnable.ComputeScheduler;
+import org.thebubbleindex.runnable.ResultSink;
+import org.thebubbleindex.runnable.RunIndex;
+
+/**
+ * WindowPipeline submits the CPU callables of a sequence of window runs to
+ * the compute scheduler as the checkpointed batches of a
+ * {@link CheckpointedWindow}. The runs are
+ * submitted in order, so the pool does not drain and restart between runs,
+ * and at most pendingRuns runs are prepared ahead of the oldest unfinished
+ * run, which bounds the memory held by their window bases.
+ * <p>
+ * The values of a run are written to its result sink in date order as its
+ * batches complete, and journaled if the run has an output file.
+ *
+ * @author thebubbleindex
+ */
+abstract class WindowPipeline {
+
+	private final ComputeScheduler scheduler;
+	private final int pendingRuns;
+	private final Deque<PendingRun> pending;
+
+	/**
+	 * WindowPipeline constructor
+	 *
+	 * @param scheduler
+	 * @param pendingRuns
+	 */
+	WindowPipeline(final ComputeScheduler scheduler, final int pendingRuns) {
+		this.scheduler = scheduler;
+		this.pendingRuns = pendingRuns;
+		this.pending = new ArrayDeque<PendingRun>(pendingRuns + 1);
+	}
+
+	/**
+	 * submit prepares the callables of a run and submits them. A run which
+	 * cannot be prepared is reported to failed and skipped.
+	 *
+	 * @param key
+	 *            Identifies the run in completed and failed
+	 * @param runIndex
+	 * @param windowBasis
+	 *            The window basis of the run or null
+	 * @param resultSink
+	 * @throws InterruptedException
+	 */
+	void submit(final int key, final RunIndex runIndex, final WindowBasis windowBasis, final ResultSink resultSink)
+			throws InterruptedException {
+		final CheckpointedWindow checkpointedWindow;
+		try {
+			checkpointedWindow = runIndex.submitCPUCallables(scheduler, windowBasis, resultSink, true);
+		} catch (final FailedToRunIndex er) {
+			failed(key, er);
+			return;
+		}
+
+		pending.addLast(new PendingRun(key, runIndex, checkpointedWindow));
+
+		while (pending.size() > pendingRuns) {
+			collect(pending.removeFirst());
+		}
+	}
+
+	/**
+	 * finish waits for every submitted run
+	 *
+	 * @throws InterruptedException
+	 */
+	void finish() throws InterruptedException {
+		while (!pending.isEmpty()) {
+			collect(pending.removeFirst());
+		}
+	}
+
+	/**
+	 * cancel cancels every submitted run which has not been collected. Their
+	 * unstarted dates are not calculated.
+	 */
+	void cancel() {
+		while (!pending.isEmpty()) {
+			pending.removeFirst().checkpointedWindow.cancel();
+		}
+	}
+
+	/**
+	 * completed is called in submission order when all values of a run have
+	 * been written to its result sink
+	 *
+	 * @param key
+	 */
+	abstract void completed(int key);
+
+	/**
+	 * failed is called when a run cannot be prepared, one of its callables
+	 * fails or the run is stopped. The values in its result sink are
+	 * incomplete.
+	 *
+	 * @param key
+	 * @param er
+	 */
+	abstract void failed(int key, FailedToRunIndex er);
+
+	private void collect(final PendingRun pendingRun) throws InterruptedException {
+		try {
+			pendingRun.checkpointedWindow.finish();
+			pendingRun.runIndex.logStatistics();
+			completed(pendingRun.key);
+		} catch (final ExecutionException ex) {
+			Logs.myLogger.error("Execution exception. {}", ex);
+			failed(pendingRun.key, new FailedToRunIndex(ex));
+		} catch (final FailedToRunIndex er) {
+			failed(pendingRun.key, er);
+		}
+	}
+
+	/**
+	 * PendingRun holds the submitted batches of a run until its values are
+	 * collected
+	 */
+	private static class PendingRun {
+		final int key;
+		final RunIndex runIndex;
+		final CheckpointedWindow checkpointedWindow;
+
+		PendingRun(final int key, final RunIndex runIndex, final CheckpointedWindow checkpointedWindow) {
+			this.key = key;
+			this.runIndex = runIndex;
+			this.checkpointedWindow = checkpointedWindow;
+		}
+	}
+}
@@ -4,14 +4,19 @@ import com.nativelibs4java.util.IOUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.Map;
+import java.util.List;
+
 import org.apache.logging.log4j.ThreadContext;
+import org.thebubbleindex.data.DailyDataStore;
 import org.thebubbleindex.data.UpdateData;
 import org.thebubbleindex.exception.FailedToRunIndex;
 import org.thebubbleindex.inputs.Indices;
-import org.thebubbleindex.inputs.InputCategory;
 import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.VectorMaths;
+import org.thebubbleindex.runnable.ProgressReporter;
+import org.thebubbleindex.runnable.ResultStore;
 import org.thebubbleindex.runnable.RunContext;
 import org.thebubbleindex.runnable.RunIndex;
 import org.thebubbleindex.swing.GUI;
@@ -27,7 +32,41 @@ import org.thebubbleindex.util.Utilities;
 public class noGUI {
 
 	public enum RunType {
-		Single, Category, All, Update
+		Single, Category, All, Update, Sweep, Cluster, Worker, Daemon, DailyData, Results
+	}
+
+	/**
+	 * The system properties which readSystemProperties reads, which the
+	 * cluster coordinator also passes to its local workers
+	 */
+	static final String[] SYSTEM_PROPERTIES = new String[] { VectorMaths.PROPERTY, "singleprecision",
+			"memorybudget", "progresslines", "progressinterval", "dailydatabinary", "resultstore" };
+
+	/**
+	 * readSystemProperties selects the vector math backend and sets the run
+	 * context from the system properties of the JVM
+	 * 
+	 * @param runContext
+	 */
+	static void readSystemProperties(final RunContext runContext) {
+		// select the vector math backend (-Dvectormath=Yeppp|Java)
+		VectorMaths.get();
+		// single precision CPU calculation (-Dsingleprecision=true)
+		runContext.setSinglePrecision(Boolean.getBoolean("singleprecision"));
+		// memory budget of concurrent Category and All jobs in MB
+		// (-Dmemorybudget=4096)
+		runContext.setMemoryBudget(Long.getLong("memorybudget", 0L) * 1024 * 1024);
+		// sampled per date lines of the progress reports
+		// (-Dprogresslines=false)
+		runContext.getProgress().setDateLines(Boolean.parseBoolean(System.getProperty("progresslines", "true")));
+		// interval of the progress reports in milliseconds
+		// (-Dprogressinterval=1000)
+		runContext.getProgress().setIntervalMillis(
+				Long.getLong("progressinterval", ProgressReporter.DEFAULT_INTERVAL_MILLIS));
+		// memory mapped binary daily data (-Ddailydatabinary=false)
+		runContext.setBinaryDailyData(Boolean.parseBoolean(System.getProperty("dailydatabinary", "true")));
+		// per selection result stores of every window (-Dresultstore=true)
+		runContext.setResultStore(Boolean.getBoolean("resultstore"));
 	}
 
 	/**
@@ -39,7 +78,8 @@ public class noGUI {
 	 * <ol>
 	 * <li>Input either "noGUI" - runs in terminal, "GUI" - runs GUI JSwing</li>
 	 * <li>RunType Enumerator: input one of these strings: {"Single",
-	 * "Category", "All", "Update"}</li>
+	 * "Category", "All", "Update", "Sweep", "Cluster", "Worker", "Daemon",
+	 * "DailyData", "Results"}</li>
 	 * <li>Category name: input the name of category. Example: "Currencies"</li>
 	 * <li>Windows: input the integer value of windows to run, separated by
 	 * comma</li>
@@ -56,6 +96,45 @@ public class noGUI {
 	 * <p>
 	 * java -jar Bubble_Index.jar noGUI Category Currencies
 	 * 700,800,900,1000,1500,2000,2200,2700 100 21.0 0.38 6.28 true
+	 * <p>
+	 * Sweep runs a single selection for every combination of critical time, M
+	 * coefficient and omega, each given as start:end:step or as a comma
+	 * separated list:
+	 * <p>
+	 * java -jar Bubble_Index.jar noGUI Sweep Currencies BITSTAMPUSD 153,256 4
+	 * 15:27:3 0.3,0.38,0.5 5.5:7.0:0.5
+	 * <p>
+	 * Cluster runs all categories on worker JVMs: the windows, the number of
+	 * local workers and the threads of each worker, then the critical time, M
+	 * coefficient and omega. The coordinator listens on -Dclusterhost
+	 * (127.0.0.1) and -Dclusterport (any free port). Worker connects another
+	 * host which shares the ProgramData folder to a coordinator, with its
+	 * host, port and threads:
+	 * <p>
+	 * java -Dclusterhost=0.0.0.0 -Dclusterport=7070 -jar Bubble_Index.jar
+	 * noGUI Cluster 52,104,153 4 2 21.0 0.38 6.28
+	 * <p>
+	 * java -jar Bubble_Index.jar noGUI Worker coordinatorhost 7070 8
+	 * <p>
+	 * Daemon keeps running with the given number of threads and runs the jobs
+	 * which are posted to its HTTP API, see {@link Daemon}. It listens on
+	 * -Ddaemonhost (127.0.0.1) and -Ddaemonport (7071):
+	 * <p>
+	 * java -jar Bubble_Index.jar noGUI Daemon 8
+	 * <p>
+	 * DailyData imports the binary store of every dailydata.csv file, or
+	 * exports the dailydata.csv files of the stores, of a category or of all
+	 * categories, see {@link DailyDataStore}. The stores are read unless
+	 * -Ddailydatabinary=false:
+	 * <p>
+	 * java -jar Bubble_Index.jar noGUI DailyData Import Currencies
+	 * <p>
+	 * Results consolidates the output files of every window of a selection
+	 * into its result store, or exports the output files of the stores, of a
+	 * category or of all categories, see {@link ResultStore}. Runs keep the
+	 * stores up to date with -Dresultstore=true:
+	 * <p>
+	 * java -jar Bubble_Index.jar noGUI Results Consolidate Currencies
 	 * 
 	 * @param args
 	 *            Command line arguments
@@ -70,7 +149,6 @@ public class noGUI {
 		float tCrit;
 		float mCoeff;
 		float omega;
-		@SuppressWarnings("unused")
 		Boolean forcedCPU;
 		String categoryName;
 		String selectionName;
@@ -85,6 +163,8 @@ public class noGUI {
 
 		Logs.myLogger.info("Starting The Bubble Index");
 
+		readSystemProperties(runContext);
+
 		if (args.length > 0) {
 			Logs.myLogger.info("Found command line arguments.");
 
@@ -121,21 +201,18 @@ public class noGUI {
 					omega = Float.parseFloat(args[++i]);
 					forcedCPU = Boolean.parseBoolean(args[++i]);
 					runContext.setThreadNumber(threads);
+					runContext.setForceCPU(forcedCPU);
 					Logs.myLogger.info("Running single selection. Category Name = {}, Selection Name = {}",
 							categoryName, selectionName);
-					final String[] windowArray = windows.split(",");
-
-					for (final String window : windowArray) {
-						try {
-							final BubbleIndex bubble = new BubbleIndex(omega, mCoeff, tCrit,
-									Integer.parseInt(window.trim()), categoryName, selectionName, dailyDataCache,
-									indices, openCLSrc, runContext);
-							bubble.runBubbleIndex(null);
-							bubble.outputResults(null);
-						} catch (final FailedToRunIndex ex) {
-							Logs.myLogger.error("Failed to Run Index. Category Name = {}, Selection Name = {}. {}",
-									categoryName, selectionName, ex);
-						}
+					try {
+						final MultiWindowRun multiWindowRun = new MultiWindowRun(omega, mCoeff, tCrit,
+								MultiWindowRun.parseWindows(windows), categoryName, selectionName, dailyDataCache,
+								indices, openCLSrc, runContext);
+						multiWindowRun.run(null);
+						multiWindowRun.outputResults(null);
+					} catch (final FailedToRunIndex ex) {
+						Logs.myLogger.error("Failed to Run Index. Category Name = {}, Selection Name = {}. {}",
+								categoryName, selectionName, ex);
 					}
 				} else if (type == RunType.Category) {
 					categoryName = args[++i];
@@ -147,22 +224,13 @@ public class noGUI {
 					forcedCPU = Boolean.parseBoolean(args[++i]);
 
 					runContext.setThreadNumber(threads);
+					runContext.setForceCPU(forcedCPU);
 					Logs.myLogger.info("Running entire category. Category Name = {}", categoryName);
 
-					final ArrayList<String> updateNames = indices.getCategoriesAndComponents().get(categoryName)
-							.getComponents();
-					final String[] windowArray = windows.split(",");
-
-					for (final String updateName : updateNames) {
-						selectionName = updateName;
-						for (final String window : windowArray) {
-							final BubbleIndex bubbleIndex = new BubbleIndex(omega, mCoeff, tCrit,
-									Integer.parseInt(window.trim()), categoryName, updateName, dailyDataCache, indices,
-									openCLSrc, runContext);
-							bubbleIndex.runBubbleIndex(null);
-							bubbleIndex.outputResults(null);
-						}
-					}
+					final JobScheduler jobScheduler = new JobScheduler(omega, mCoeff, tCrit,
+							MultiWindowRun.parseWindows(windows), indices, openCLSrc, runContext);
+					jobScheduler.addCategory(categoryName);
+					jobScheduler.run(null);
 				} else if (type == RunType.All) {
 					windows = args[++i];
 					threads = Integer.parseInt(args[++i]);
@@ -172,26 +240,89 @@ public class noGUI {
 					forcedCPU = Boolean.parseBoolean(args[++i]);
 
 					runContext.setThreadNumber(threads);
+					runContext.setForceCPU(forcedCPU);
 					Logs.myLogger.info("Running all categories and selections.");
-					final String[] windowArray = windows.split(",");
-
-					for (final Map.Entry<String, InputCategory> myEntry : indices.getCategoriesAndComponents()
-							.entrySet()) {
-
-						categoryName = myEntry.getKey();
-						final ArrayList<String> updateNames = myEntry.getValue().getComponents();
-
-						for (final String updateName : updateNames) {
-							selectionName = updateName;
-							for (final String window : windowArray) {
-								final BubbleIndex bubbleIndex = new BubbleIndex(omega, mCoeff, tCrit,
-										Integer.parseInt(window.trim()), categoryName, updateName, dailyDataCache,
-										indices, openCLSrc, runContext);
-								bubbleIndex.runBubbleIndex(null);
-								bubbleIndex.outputResults(null);
-							}
-						}
+					final JobScheduler jobScheduler = new JobScheduler(omega, mCoeff, tCrit,
+							MultiWindowRun.parseWindows(windows), indices, openCLSrc, runContext);
+
+					for (final String category : indices.getCategoriesAndComponents().keySet()) {
+						jobScheduler.addCategory(category);
 					}
+					jobScheduler.run(null);
+				} else if (type == RunType.Sweep) {
+					categoryName = args[++i];
+					selectionName = args[++i];
+					windows = args[++i];
+					threads = Integer.parseInt(args[++i]);
+					final double[] tCrits = ParameterSweep.parseRange(args[++i]);
+					final double[] mCoeffs = ParameterSweep.parseRange(args[++i]);
+					final double[] omegas = ParameterSweep.parseRange(args[++i]);
+					runContext.setThreadNumber(threads);
+					runContext.setForceCPU(true);
+					Logs.myLogger.info("Running parameter sweep. Category Name = {}, Selection Name = {}",
+							categoryName, selectionName);
+
+					final ParameterSweep parameterSweep = new ParameterSweep(omegas, mCoeffs, tCrits,
+							MultiWindowRun.parseWindows(windows), categoryName, selectionName, dailyDataCache, indices,
+							runContext);
+					parameterSweep.run(null);
+				} else if (type == RunType.Cluster) {
+					windows = args[++i];
+					final int workers = Integer.parseInt(args[++i]);
+					threads = Integer.parseInt(args[++i]);
+					tCrit = Float.parseFloat(args[++i]);
+					mCoeff = Float.parseFloat(args[++i]);
+					omega = Float.parseFloat(args[++i]);
+					runContext.setForceCPU(true);
+					Logs.myLogger.info("Running all categories and selections on {} local workers.", workers);
+
+					final ClusterCoordinator clusterCoordinator = new ClusterCoordinator(omega, mCoeff, tCrit,
+							MultiWindowRun.parseWindows(windows), indices, runContext);
+					for (final String category : indices.getCategoriesAndComponents().keySet()) {
+						clusterCoordinator.addCategory(category);
+					}
+					clusterCoordinator.start(System.getProperty("clusterhost", "127.0.0.1"),
+							Integer.getInteger("clusterport", 0));
+					clusterCoordinator.launchWorkers(workers, threads);
+					clusterCoordinator.run();
+				} else if (type == RunType.Worker) {
+					final String host = args[++i];
+					final int port = Integer.parseInt(args[++i]);
+					threads = Integer.parseInt(args[++i]);
+					runContext.setThreadNumber(threads);
+					runContext.setForceCPU(true);
+					Logs.myLogger.info("Running cluster worker. Coordinator = {}:{}", host, port);
+
+					new ClusterWorker(indices, runContext).run(host, port);
+					runContext.getScheduler().shutdown();
+				} else if (type == RunType.Daemon) {
+					threads = Integer.parseInt(args[++i]);
+					runContext.setThreadNumber(threads);
+					Logs.myLogger.info("Running daemon.");
+
+					final Daemon daemon = new Daemon(indices, openCLSrc, runContext);
+					daemon.start(System.getProperty("daemonhost", "127.0.0.1"),
+							Integer.getInteger("daemonport", Daemon.DEFAULT_PORT));
+					try {
+						daemon.awaitShutdown();
+					} catch (final InterruptedException ex) {
+						Logs.myLogger.error("Daemon interrupted. {}", ex);
+					}
+					runContext.getScheduler().shutdown();
+				} else if (type == RunType.DailyData) {
+					final boolean export = args[++i].equalsIgnoreCase("Export");
+					final List<String> categories = i + 1 < args.length ? Arrays.asList(args[++i])
+							: new ArrayList<String>(indices.getCategoriesAndComponents().keySet());
+					final int converted = DailyDataStore.convert(indices, categories, export);
+					Utilities.displayOutput(runContext,
+							(export ? "Exported " : "Imported ") + converted + " daily data files.", false);
+				} else if (type == RunType.Results) {
+					final boolean export = args[++i].equalsIgnoreCase("Export");
+					final List<String> categories = i + 1 < args.length ? Arrays.asList(args[++i])
+							: new ArrayList<String>(indices.getCategoriesAndComponents().keySet());
+					final int converted = ResultStore.convert(indices, categories, export, runContext);
+					Utilities.displayOutput(runContext,
+							(export ? "Exported " : "Consolidated ") + converted + " windows.", false);
 				} else if (type == RunType.Update) {
 					runContext.setThreadNumber(Runtime.getRuntime().availableProcessors());
 					String quandlKey;
@@ -206,6 +337,9 @@ public class noGUI {
 					runContext.setGUI(true);
 					GUI.GUImain(runContext);
 				}
+				if (!runContext.isGUI()) {
+					runContext.getProgress().stop();
+				}
 			} else {
 				runContext.setGUI(true);
 				omega = Float.parseFloat(args[++i]);
@@ -0,0 +1,289 @@
+package org.thebubbleindex.math;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.thebubbleindex.util.ScratchArena;
+
+/**
+ * AdaptiveFrequencySearch finds the peak of the Lomb-Scargle periodogram with
+ * a coarse to fine search instead of the exhaustive scan of every test
+ * frequency.
+ * <p>
+ * The coarse pass evaluates every coarseStep-th test frequency and the last
+ * one. Their shifted cosine and sine series depend only on the window, so
+ * they are computed once and the coarse pass is two inner products per
+ * frequency. The refinedPeaks largest local peaks of the coarse pass are then
+ * refined with a golden section search between their coarse neighbours until
+ * the bracket is narrower than REFINE_TOLERANCE test frequency increments.
+ * The search stays within the range of the test frequencies.
+ * <p>
+ * The peak lies between the grid frequencies in general, so the value is
+ * usually slightly above the largest value of the exhaustive scan. A peak
+ * narrower than coarseStep increments can be missed by the coarse pass.
+ *
+ * @author thebubbleindex
+ */
+public class AdaptiveFrequencySearch implements PeriodogramPeak {
+
+	static final double REFINE_TOLERANCE = 0.05;
+	static final double GOLDEN_RATIO = 0.6180339887498949;
+
+	final LombScargle lombScargle;
+	final double[] TimeValues;
+	final int SIZE;
+	final int refinedPeaks;
+	final double tolerance;
+
+	final double[] coarseFrequencies;
+	final double[][] coarseCos;
+	final double[][] coarseSin;
+	final double[] coarseInverseCosSquareSum;
+	final double[] coarseInverseSinSquareSum;
+
+	private final LongAdder evaluations = new LongAdder();
+	private final LongAdder searches = new LongAdder();
+
+	/**
+	 * AdaptiveFrequencySearch constructor
+	 *
+	 * @param lombScargle
+	 * @param TimeValues
+	 *            The time values of the window, log(t) in The Bubble Index
+	 * @param SIZE
+	 */
+	public AdaptiveFrequencySearch(final LombScargle lombScargle, final double[] TimeValues, final int SIZE) {
+		this.lombScargle = lombScargle;
+		this.TimeValues = TimeValues;
+		this.SIZE = SIZE;
+		this.refinedPeaks = lombScargle.refinedPeaks;
+		this.tolerance = REFINE_TOLERANCE * lombScargle.frequencyIncrement;
+
+		final int freqSize = lombScargle.freqSize;
+		final int coarseStep = lombScargle.coarseStep;
+		final int coarseSize = coarseSize(freqSize, coarseStep);
+
+		coarseFrequencies = new double[coarseSize];
+		coarseCos = new double[coarseSize][SIZE];
+		coarseSin = new double[coarseSize][SIZE];
+		coarseInverseCosSquareSum = new double[coarseSize];
+		coarseInverseSinSquareSum = new double[coarseSize];
+
+		final double[] WorkArray = new double[SIZE];
+
+		for (int m = 0; m < coarseSize; m++) {
+			coarseFrequencies[m] = lombScargle.testFrequencies[Math.min(m * coarseStep, freqSize - 1)];
+			final double Omega = 2.0 * 3.14159 * coarseFrequencies[m];
+
+			lombScargle.computeTrigBasis(TimeValues, Omega, WorkArray, coarseCos[m], coarseSin[m], SIZE);
+
+			double CosSum = 0.0;
+			double SinSum = 0.0;
+			for (int k = 0; k < SIZE; k++) {
+				CosSum = CosSum + coarseCos[m][k] * coarseCos[m][k];
+				SinSum = SinSum + coarseSin[m][k] * coarseSin[m][k];
+			}
+			coarseInverseCosSquareSum[m] = 1.0 / CosSum;
+			coarseInverseSinSquareSum[m] = 1.0 / SinSum;
+		}
+	}
+
+	/**
+	 * coarseSize returns the number of coarse frequencies, every coarseStep-th
+	 * test frequency and the last one
+	 *
+	 * @param freqSize
+	 * @param coarseStep
+	 * @return
+	 */
+	static int coarseSize(final int freqSize, final int coarseStep) {
+		return (freqSize - 1) / coarseStep + ((freqSize - 1) % coarseStep == 0 ? 1 : 2);
+	}
+
+	/**
+	 * estimateBytes returns the heap size of the arrays of the
+	 * AdaptiveFrequencySearch of a window
+	 *
+	 * @param lombScargle
+	 * @param SIZE
+	 * @return
+	 */
+	static long estimateBytes(final LombScargle lombScargle, final int SIZE) {
+		return 8L * coarseSize(lombScargle.freqSize, lombScargle.coarseStep) * (3 + 2 * SIZE);
+	}
+
+	/**
+	 * peak calculates the largest value of the periodogram of the time series
+	 * found by the coarse pass and the refinement of its largest local peaks
+	 *
+	 * @param TimeSeries
+	 * @return
+	 */
+	@Override
+	public double peak(final double[] TimeSeries) {
+
+		final int coarseSize = coarseFrequencies.length;
+		final ScratchArena arena = ScratchArena.get();
+		final int mark = arena.mark();
+
+		try {
+			final double[] Residual = arena.doubles(SIZE);
+			final double[] Coarse = arena.doubles(coarseSize);
+			final double[] Refined = arena.doubles(coarseSize);
+			final double[] WorkArray = arena.doubles(SIZE);
+			final double[] CosValues = arena.doubles(SIZE);
+			final double[] SinValues = arena.doubles(SIZE);
+
+			double Sum = 0;
+			for (int k = 0; k < SIZE; k++) {
+				Sum = Sum + TimeSeries[k];
+			}
+			final double Mean = Sum * 1.0 / SIZE;
+			for (int k = 0; k < SIZE; k++) {
+				Residual[k] = TimeSeries[k] - Mean;
+			}
+
+			double value = 0.0;
+			for (int m = 0; m < coarseSize; m++) {
+				double CosResidSum = 0.0;
+				double SinResidSum = 0.0;
+				final double[] Cos = coarseCos[m];
+				final double[] Sin = coarseSin[m];
+				for (int k = 0; k < SIZE; k++) {
+					CosResidSum = CosResidSum + Cos[k] * Residual[k];
+					SinResidSum = SinResidSum + Sin[k] * Residual[k];
+				}
+				Coarse[m] = CosResidSum * CosResidSum * coarseInverseCosSquareSum[m]
+						+ SinResidSum * SinResidSum * coarseInverseSinSquareSum[m];
+				Refined[m] = 0.0;
+				if (Coarse[m] > value)
+					value = Coarse[m];
+			}
+			int count = coarseSize;
+
+			for (int r = 0; r < refinedPeaks; r++) {
+				final int m = largestLocalPeak(Coarse, Refined, coarseSize);
+				if (m < 0) {
+					break;
+				}
+				Refined[m] = 1.0;
+
+				double lower = coarseFrequencies[Math.max(m - 1, 0)];
+				double upper = coarseFrequencies[Math.min(m + 1, coarseSize - 1)];
+
+				double left = upper - GOLDEN_RATIO * (upper - lower);
+				double right = lower + GOLDEN_RATIO * (upper - lower);
+				double leftValue = periodogram(left, Residual, WorkArray, CosValues, SinValues);
+				double rightValue = periodogram(right, Residual, WorkArray, CosValues, SinValues);
+				count = count + 2;
+
+				while (upper - lower > tolerance) {
+					if (leftValue > value)
+						value = leftValue;
+					if (rightValue > value)
+						value = rightValue;
+
+					if (leftValue >= rightValue) {
+						upper = right;
+						right = left;
+						rightValue = leftValue;
+						left = upper - GOLDEN_RATIO * (upper - lower);
+						leftValue = periodogram(left, Residual, WorkArray, CosValues, SinValues);
+					} else {
+						lower = left;
+						left = right;
+						leftValue = rightValue;
+						right = lower + GOLDEN_RATIO * (upper - lower);
+						rightValue = periodogram(right, Residual, WorkArray, CosValues, SinValues);
+					}
+					count++;
+				}
+
+				if (leftValue > value)
+					value = leftValue;
+				if (rightValue > value)
+					value = rightValue;
+			}
+
+			evaluations.add(count);
+			searches.increment();
+
+			return value;
+		} finally {
+			arena.release(mark);
+		}
+	}
+
+	/**
+	 * getEvaluations returns the number of frequencies at which the
+	 * periodogram was evaluated
+	 *
+	 * @return
+	 */
+	public long getEvaluations() {
+		return evaluations.sum();
+	}
+
+	/**
+	 * getSearches returns the number of peak searches
+	 *
+	 * @return
+	 */
+	public long getSearches() {
+		return searches.sum();
+	}
+
+	/**
+	 * largestLocalPeak returns the coarse index of the largest local peak
+	 * which has not been refined yet, or -1 if there is none
+	 *
+	 * @param Coarse
+	 * @param Refined
+	 * @param coarseSize
+	 * @return
+	 */
+	private static int largestLocalPeak(final double[] Coarse, final double[] Refined, final int coarseSize) {
+		int largest = -1;
+		for (int m = 0; m < coarseSize; m++) {
+			if (Refined[m] != 0.0) {
+				continue;
+			}
+			final boolean aboveLower = m == 0 || Coarse[m] >= Coarse[m - 1];
+			final boolean aboveUpper = m == coarseSize - 1 || Coarse[m] >= Coarse[m + 1];
+			if (aboveLower && aboveUpper && (largest < 0 || Coarse[m] > Coarse[largest])) {
+				largest = m;
+			}
+		}
+		return largest;
+	}
+
+	/**
+	 * periodogram computes the periodogram of the residual at a single
+	 * frequency
+	 *
+	 * @param frequency
+	 * @param Residual
+	 * @param WorkArray
+	 * @param CosValues
+	 * @param SinValues
+	 * @return
+	 */
+	private double periodogram(final double frequency, final double[] Residual, final double[] WorkArray,
+			final double[] CosValues, final double[] SinValues) {
+
+		final double Omega = 2.0 * 3.14159 * frequency;
+		lombScargle.computeTrigBasis(TimeValues, Omega, WorkArray, CosValues, SinValues, SIZE);
+
+		double CosResidSum = 0.0;
+		double SinResidSum = 0.0;
+		double CosSum = 0.0;
+		double SinSum = 0.0;
+		for (int k = 0; k < SIZE; k++) {
+			CosResidSum = CosResidSum + CosValues[k] * Residual[k];
+			SinResidSum = SinResidSum + SinValues[k] * Residual[k];
+			CosSum = CosSum + CosValues[k] * CosValues[k];
+			SinSum = SinSum + SinValues[k] * SinValues[k];
+		}
+
+		return CosResidSum * CosResidSum / CosSum + SinResidSum * SinResidSum / SinSum;
+	}
+}
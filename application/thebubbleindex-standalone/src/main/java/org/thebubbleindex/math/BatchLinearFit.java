@@ -0,0 +1,136 @@
+package org.thebubbleindex.math;
+
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * BatchLinearFit computes the fitted coefficients of every date of a window at
+ * once.
+ * <p>
+ * The data of a date is the normalized and reversed log price window, which
+ * is log(100) + log(P[index + SIZE - k]) - log(P[index + 1]). Applying the
+ * pseudo-inverse of the window (see {@link LinearFitOperator}) to it is
+ * therefore a constant term plus a sliding cross-correlation of the log price
+ * series with the three reversed rows of the pseudo-inverse. The correlations
+ * of all dates are computed with FFTs in O((D + N) log(D + N)) instead of
+ * O(D * N).
+ * <p>
+ * The log prices are centered before the transform, which keeps the rounding
+ * error of the FFT relative to the variation of the prices rather than to
+ * their level.
+ *
+ * @author thebubbleindex
+ */
+public class BatchLinearFit {
+
+	/**
+	 * isBatchable checks that every price is positive. The per date
+	 * normalization is not defined otherwise and the batch fit must not spread
+	 * an invalid log price to every date.
+	 *
+	 * @param dailyPriceValues
+	 * @param dataSize
+	 * @return
+	 */
+	public static boolean isBatchable(final double[] dailyPriceValues, final int dataSize) {
+		for (int i = 0; i < dataSize; i++) {
+			if (!(dailyPriceValues[i] > 0.0) || Double.isInfinite(dailyPriceValues[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * estimateBytes returns the heap size of the centered log prices and the
+	 * transforms of a batch fit, without the coefficients
+	 *
+	 * @param dataSize
+	 * @return
+	 */
+	public static long estimateBytes(final int dataSize) {
+		return 8L * (dataSize + 4L * transformLength(dataSize));
+	}
+
+	/**
+	 * fitAll computes the coefficients for the dates START (inclusive) to END
+	 * (exclusive). The data of a date index uses the prices index + 1 to index
+	 * + SIZE.
+	 *
+	 * @param linearFitOperator
+	 *            The fit operator of the window
+	 * @param dailyPriceLogValues
+	 *            The log of the positive daily prices
+	 * @param dataSize
+	 * @param SIZE
+	 *            Size of the data window (days)
+	 * @param START
+	 * @param END
+	 * @return Coefs[index - START] containing the three coefficients of a date
+	 */
+	public static double[][] fitAll(final LinearFitOperator linearFitOperator, final double[] dailyPriceLogValues,
+			final int dataSize, final int SIZE, final int START, final int END) {
+
+		final double[][] pseudoInverse = linearFitOperator.getPseudoInverse();
+		final int length = transformLength(dataSize);
+
+		final double[] logPrices = new double[dataSize];
+		double Sum = 0.0;
+		for (int i = 0; i < dataSize; i++) {
+			logPrices[i] = dailyPriceLogValues[i];
+			Sum = Sum + logPrices[i];
+		}
+		final double Mean = Sum / dataSize;
+
+		final double[][] priceTransform = new double[2][length];
+		for (int i = 0; i < dataSize; i++) {
+			logPrices[i] = logPrices[i] - Mean;
+			priceTransform[0][i] = logPrices[i];
+		}
+		FastFourierTransformer.transformInPlace(priceTransform, DftNormalization.STANDARD, TransformType.FORWARD);
+
+		final double logHundred = FastMath.log(100.0);
+		final double[][] Coefs = new double[END - START][3];
+
+		for (int r = 0; r < 3; r++) {
+			final double[] row = pseudoInverse[r];
+
+			double rowSum = 0.0;
+			final double[][] rowTransform = new double[2][length];
+			for (int n = 0; n < SIZE; n++) {
+				rowTransform[0][n] = row[SIZE - 1 - n];
+				rowSum = rowSum + row[n];
+			}
+			FastFourierTransformer.transformInPlace(rowTransform, DftNormalization.STANDARD, TransformType.FORWARD);
+
+			// correlation = inverse(price * conj(row))
+			for (int k = 0; k < length; k++) {
+				final double real = priceTransform[0][k] * rowTransform[0][k] + priceTransform[1][k] * rowTransform[1][k];
+				final double imaginary = priceTransform[1][k] * rowTransform[0][k]
+						- priceTransform[0][k] * rowTransform[1][k];
+				rowTransform[0][k] = real;
+				rowTransform[1][k] = imaginary;
+			}
+			FastFourierTransformer.transformInPlace(rowTransform, DftNormalization.STANDARD, TransformType.INVERSE);
+
+			for (int index = START; index < END; index++) {
+				Coefs[index - START][r] = (logHundred - logPrices[index + 1]) * rowSum + rowTransform[0][index + 1];
+			}
+		}
+
+		return Coefs;
+	}
+
+	/**
+	 * transformLength returns the length of the transforms, the smallest
+	 * power of two of at least dataSize
+	 *
+	 * @param dataSize
+	 * @return
+	 */
+	private static int transformLength(final int dataSize) {
+		return Integer.highestOneBit(Math.max(dataSize, 2) - 1) << 1;
+	}
+}
@@ -0,0 +1,178 @@
+package org.thebubbleindex.math;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CellEnergyBound prunes the (Q, H) grid of the H,Q derivative scan.
+ * <p>
+ * The periodogram is the energy of the projection of the mean removed series
+ * onto the orthogonal shifted cosine and sine series, so at every test
+ * frequency it is at most the energy of the series itself (Bessel's
+ * inequality). The series of the (Q_i, H_j) cell is B' * a_j + C' * b_ij with
+ * a_j = t^(m-H_j) and b_ij = t^(m-H_j) * g_i(t), so its energy is the quadratic
+ * form
+ * <p>
+ * B'^2 (a_j, a_j) + 2 B' C' (a_j, b_ij) + C'^2 (b_ij, b_ij)
+ * <p>
+ * of the mean removed inner products, which are computed once per window. A
+ * cell whose bound is not above the running maximum cannot change the result
+ * and is skipped. The bound is widened by SAFETY times B'^2 (a_j, a_j) + C'^2
+ * (b_ij, b_ij), which covers the rounding of the periodogram and of the
+ * quadratic form, so the scan returns exactly the value of the exhaustive
+ * scan.
+ * <p>
+ * The number of evaluated and skipped cells is counted over every date of the
+ * window.
+ *
+ * @author thebubbleindex
+ */
+public class CellEnergyBound {
+
+	static final double SAFETY = 1.0e-6;
+
+	final int qSize;
+	final int hSize;
+
+	/**
+	 * Mean removed inner products, indexed by i * hSize + j
+	 */
+	final double[] powerPower;
+	final double[] powerG;
+	final double[] gG;
+
+	/**
+	 * B' and C' per unit of Coef[1] and Coef[2], indexed by i * hSize + j
+	 */
+	final double[] bScale;
+	final double[] cScale;
+
+	private final LongAdder evaluatedCells = new LongAdder();
+	private final LongAdder prunedCells = new LongAdder();
+
+	/**
+	 * CellEnergyBound constructor
+	 *
+	 * @param lombScargle
+	 * @param windowBasis
+	 */
+	public CellEnergyBound(final LombScargle lombScargle, final WindowBasis windowBasis) {
+		this.qSize = lombScargle.qSize;
+		this.hSize = lombScargle.hSize;
+
+		final int SIZE = windowBasis.numberOfDays;
+		final int cells = qSize * hSize;
+
+		powerPower = new double[cells];
+		powerG = new double[cells];
+		gG = new double[cells];
+		bScale = new double[cells];
+		cScale = new double[cells];
+
+		final double[] basisPower = new double[SIZE];
+		final double[] basisG = new double[SIZE];
+
+		for (int j = 0; j < hSize; j++) {
+			final double[] TimePowerMH = windowBasis.timePowerMH[j];
+			System.arraycopy(TimePowerMH, 0, basisPower, 0, SIZE);
+			LinearBasisPeriodogram.removeMean(basisPower, SIZE);
+			final double power = LinearBasisPeriodogram.dot(basisPower, basisPower, SIZE);
+
+			for (int i = 0; i < qSize; i++) {
+				final double[] tempNine = windowBasis.gFunction[i];
+				for (int k = 0; k < SIZE; k++) {
+					basisG[k] = TimePowerMH[k] * tempNine[k];
+				}
+				LinearBasisPeriodogram.removeMean(basisG, SIZE);
+
+				final int cell = i * hSize + j;
+				final double tempVar = lombScargle.powTempVar[i][j];
+				powerPower[cell] = power;
+				powerG[cell] = LinearBasisPeriodogram.dot(basisPower, basisG, SIZE);
+				gG[cell] = LinearBasisPeriodogram.dot(basisG, basisG, SIZE);
+				bScale[cell] = (1.0 - lombScargle.QiM[i]) / tempVar;
+				cScale[cell] = 1.0 / tempVar;
+			}
+		}
+	}
+
+	/**
+	 * estimateBytes returns the heap size of the arrays of the cell bound of
+	 * a window
+	 *
+	 * @param lombScargle
+	 * @return
+	 */
+	static long estimateBytes(final LombScargle lombScargle) {
+		return 8L * 5 * lombScargle.qSize * lombScargle.hSize;
+	}
+
+	/**
+	 * bounds computes the upper bound of the periodogram of every cell for the
+	 * coefficients of a date
+	 *
+	 * @param Coef
+	 * @param Bounds
+	 *            Output array of qSize * hSize bounds, indexed by i * hSize +
+	 *            j
+	 * @return The index of the cell with the largest bound
+	 */
+	public int bounds(final double[] Coef, final double[] Bounds) {
+		int largest = 0;
+
+		for (int cell = 0; cell < qSize * hSize; cell++) {
+			final double B_prime = Coef[1] * bScale[cell];
+			final double C_prime = Coef[2] * cScale[cell];
+
+			final double diagonal = B_prime * B_prime * powerPower[cell] + C_prime * C_prime * gG[cell];
+			final double energy = diagonal + 2.0 * B_prime * C_prime * powerG[cell];
+
+			Bounds[cell] = energy + SAFETY * diagonal;
+			if (Bounds[cell] > Bounds[largest]) {
+				largest = cell;
+			}
+		}
+
+		return largest;
+	}
+
+	/**
+	 * record adds the cell counts of one date to the statistics of the window
+	 *
+	 * @param evaluated
+	 * @param pruned
+	 */
+	public void record(final int evaluated, final int pruned) {
+		evaluatedCells.add(evaluated);
+		prunedCells.add(pruned);
+	}
+
+	/**
+	 * getEvaluatedCells returns the number of cells whose periodogram was
+	 * computed
+	 *
+	 * @return
+	 */
+	public long getEvaluatedCells() {
+		return evaluatedCells.sum();
+	}
+
+	/**
+	 * getPrunedCells returns the number of cells which were skipped
+	 *
+	 * @return
+	 */
+	public long getPrunedCells() {
+		return prunedCells.sum();
+	}
+
+	/**
+	 * getPruneRate returns the fraction of cells which were skipped
+	 *
+	 * @return
+	 */
+	public double getPruneRate() {
+		final long pruned = getPrunedCells();
+		final long total = pruned + getEvaluatedCells();
+		return total == 0 ? 0.0 : pruned * 1.0 / total;
+	}
+}
@@ -0,0 +1,341 @@
+package org.thebubbleindex.math;
+
+import org.apache.commons.math3.util.FastMath;
+import org.thebubbleindex.util.ScratchArena;
+
+/**
+ * FastLombScargle evaluates the periodogram of
+ * {@link LombScargle#computeLombScargle(double[], double[], double[], int)}
+ * for every test frequency with one FFT, following Press and Rybicki (1989),
+ * "Fast algorithm for spectral analysis of unevenly sampled data".
+ * <p>
+ * Tau and the sums of squares depend only on the time values and the test
+ * frequency, so they are computed directly once per window. The only series
+ * dependent quantities are the sums of h * cos(Omega * t) and h * sin(Omega *
+ * t). The test frequencies are equally spaced, Omega_i = Omega_c + (i - c) *
+ * dOmega, so these sums are the values of
+ * <p>
+ * sum h_k * exp(i * Omega_c * (t_k - t0)) * exp(i * (i - c) * dOmega * (t_k -
+ * t0))
+ * <p>
+ * at integer multiples of dOmega. Each weight is extirpolated onto a regular
+ * periodic mesh with Lagrange weights of order EXTIRPOLATION_ORDER, and one
+ * complex FFT of the mesh gives the sums of all frequencies. The cost of a
+ * call is O(N * EXTIRPOLATION_ORDER + M log M) for a mesh of M points instead
+ * of O(N * freqSize) sine and cosine evaluations.
+ * <p>
+ * The mesh is sized so that the highest frequency offset has at least
+ * MESH_OVERSAMPLING points per period, where the extirpolation error is below
+ * 1e-10 of the sum of |h|. On the sample windows the periodogram differs from
+ * the direct evaluation by less than 1e-10 relative to its maximum.
+ *
+ * @author thebubbleindex
+ */
+public class FastLombScargle implements PeriodogramPeak {
+
+	static final int EXTIRPOLATION_ORDER = 10;
+	static final int MESH_OVERSAMPLING = 32;
+
+	final int SIZE;
+	final int freqSize;
+	final int meshSize;
+	final int centerFrequency;
+
+	/**
+	 * First mesh point and Lagrange weights of every time value, indexed by k
+	 * * EXTIRPOLATION_ORDER + l
+	 */
+	final int[] meshStart;
+	final double[] meshWeights;
+
+	/**
+	 * exp(i * Omega_c * (t_k - t0))
+	 */
+	final double[] modulationCos;
+	final double[] modulationSin;
+
+	/**
+	 * exp(i * Omega_f * (t0 + Tau_f)), which turns the mesh sums into the sums
+	 * over the shifted cosine and sine series
+	 */
+	final double[] rotationCos;
+	final double[] rotationSin;
+
+	final double[] inverseCosSquareSum;
+	final double[] inverseSinSquareSum;
+
+	final int[] bitReversal;
+	final double[] twiddleCos;
+	final double[] twiddleSin;
+
+	/**
+	 * FastLombScargle constructor
+	 *
+	 * @param lombScargle
+	 * @param TimeValues
+	 *            The time values of the window, log(t) in The Bubble Index
+	 * @param SIZE
+	 */
+	public FastLombScargle(final LombScargle lombScargle, final double[] TimeValues, final int SIZE) {
+		this.SIZE = SIZE;
+		this.freqSize = lombScargle.freqSize;
+		this.centerFrequency = (freqSize - 1) / 2;
+
+		this.meshSize = meshSize(freqSize);
+
+		double timeOrigin = TimeValues[0];
+		for (int k = 1; k < SIZE; k++) {
+			timeOrigin = Math.min(timeOrigin, TimeValues[k]);
+		}
+
+		final double deltaOmega = 2.0 * 3.14159 * lombScargle.frequencyIncrement;
+		final double centerOmega = 2.0 * 3.14159 * lombScargle.testFrequencies[centerFrequency];
+		final double meshScale = deltaOmega * meshSize / (2.0 * FastMath.PI);
+
+		meshStart = new int[SIZE];
+		meshWeights = new double[SIZE * EXTIRPOLATION_ORDER];
+		modulationCos = new double[SIZE];
+		modulationSin = new double[SIZE];
+
+		final double[] denominators = lagrangeDenominators();
+		final double[] prefix = new double[EXTIRPOLATION_ORDER + 1];
+		final double[] suffix = new double[EXTIRPOLATION_ORDER + 1];
+
+		for (int k = 0; k < SIZE; k++) {
+			final double position = (TimeValues[k] - timeOrigin) * meshScale;
+			final int first = (int) FastMath.floor(position) - EXTIRPOLATION_ORDER / 2 + 1;
+			final double u = position - first;
+
+			prefix[0] = 1.0;
+			for (int l = 0; l < EXTIRPOLATION_ORDER; l++) {
+				prefix[l + 1] = prefix[l] * (u - l);
+			}
+			suffix[EXTIRPOLATION_ORDER] = 1.0;
+			for (int l = EXTIRPOLATION_ORDER - 1; l >= 0; l--) {
+				suffix[l] = suffix[l + 1] * (u - l);
+			}
+			for (int l = 0; l < EXTIRPOLATION_ORDER; l++) {
+				meshWeights[k * EXTIRPOLATION_ORDER + l] = prefix[l] * suffix[l + 1] / denominators[l];
+			}
+			meshStart[k] = first & (meshSize - 1);
+
+			modulationCos[k] = FastMath.cos(centerOmega * (TimeValues[k] - timeOrigin));
+			modulationSin[k] = FastMath.sin(centerOmega * (TimeValues[k] - timeOrigin));
+		}
+
+		rotationCos = new double[freqSize];
+		rotationSin = new double[freqSize];
+		inverseCosSquareSum = new double[freqSize];
+		inverseSinSquareSum = new double[freqSize];
+
+		final VectorMath vectorMath = VectorMaths.get();
+		final double[] WorkArray = new double[SIZE];
+		final double[] DoubleCos = new double[SIZE];
+		final double[] DoubleSin = new double[SIZE];
+
+		for (int f = 0; f < freqSize; f++) {
+			final double Omega = 2.0 * 3.14159 * lombScargle.testFrequencies[f];
+
+			vectorMath.multiply(TimeValues, 0, 2.0 * Omega, WorkArray, 0, SIZE);
+			vectorMath.cos(WorkArray, 0, DoubleCos, 0, SIZE);
+			vectorMath.sin(WorkArray, 0, DoubleSin, 0, SIZE);
+
+			double SinSum = 0.0;
+			double CosSum = 0.0;
+			for (int k = 0; k < SIZE; k++) {
+				SinSum = SinSum + DoubleSin[k];
+				CosSum = CosSum + DoubleCos[k];
+			}
+
+			final double Tau = -1.0 * FastMath.atan2(SinSum, CosSum) * 1.0 / (2.0 * Omega);
+
+			// sum cos^2(Omega (t + Tau)) = (N + |sum exp(2i Omega t)|) / 2
+			final double Amplitude = FastMath.hypot(SinSum, CosSum);
+			inverseCosSquareSum[f] = 2.0 / (SIZE + Amplitude);
+			inverseSinSquareSum[f] = 2.0 / (SIZE - Amplitude);
+
+			rotationCos[f] = FastMath.cos(Omega * (timeOrigin + Tau));
+			rotationSin[f] = FastMath.sin(Omega * (timeOrigin + Tau));
+		}
+
+		bitReversal = new int[meshSize];
+		final int bits = Integer.numberOfTrailingZeros(meshSize);
+		for (int m = 0; m < meshSize; m++) {
+			bitReversal[m] = Integer.reverse(m) >>> (32 - bits);
+		}
+
+		twiddleCos = new double[meshSize / 2];
+		twiddleSin = new double[meshSize / 2];
+		for (int m = 0; m < meshSize / 2; m++) {
+			twiddleCos[m] = FastMath.cos(2.0 * FastMath.PI * m / meshSize);
+			twiddleSin[m] = FastMath.sin(2.0 * FastMath.PI * m / meshSize);
+		}
+	}
+
+	/**
+	 * computeLombScargle computes the periodogram of the time series at every
+	 * test frequency
+	 *
+	 * @param TimeSeries
+	 * @param SpectralDensity
+	 */
+	public void computeLombScargle(final double[] TimeSeries, final double[] SpectralDensity) {
+
+		final ScratchArena arena = ScratchArena.get();
+		final int mark = arena.mark();
+
+		try {
+			final double[] MeshReal = arena.doubles(meshSize);
+			final double[] MeshImag = arena.doubles(meshSize);
+
+			double Sum = 0;
+			for (int k = 0; k < SIZE; k++) {
+				Sum = Sum + TimeSeries[k];
+			}
+			final double Mean = Sum * 1.0 / SIZE;
+
+			for (int m = 0; m < meshSize; m++) {
+				MeshReal[m] = 0.0;
+				MeshImag[m] = 0.0;
+			}
+
+			final int mask = meshSize - 1;
+			for (int k = 0; k < SIZE; k++) {
+				final double Residual = TimeSeries[k] - Mean;
+				final double Real = Residual * modulationCos[k];
+				final double Imag = Residual * modulationSin[k];
+				final int first = meshStart[k];
+				final int offset = k * EXTIRPOLATION_ORDER;
+				for (int l = 0; l < EXTIRPOLATION_ORDER; l++) {
+					final int m = (first + l) & mask;
+					MeshReal[m] = MeshReal[m] + Real * meshWeights[offset + l];
+					MeshImag[m] = MeshImag[m] + Imag * meshWeights[offset + l];
+				}
+			}
+
+			transform(MeshReal, MeshImag);
+
+			for (int f = 0; f < freqSize; f++) {
+				final int m = (f - centerFrequency) & mask;
+				final double CosResidSum = MeshReal[m] * rotationCos[f] - MeshImag[m] * rotationSin[f];
+				final double SinResidSum = MeshReal[m] * rotationSin[f] + MeshImag[m] * rotationCos[f];
+
+				SpectralDensity[f] = CosResidSum * CosResidSum * inverseCosSquareSum[f]
+						+ SinResidSum * SinResidSum * inverseSinSquareSum[f];
+			}
+		} finally {
+			arena.release(mark);
+		}
+	}
+
+	/**
+	 * peak calculates the largest value of the periodogram of the time series
+	 *
+	 * @param TimeSeries
+	 * @return
+	 */
+	@Override
+	public double peak(final double[] TimeSeries) {
+		final ScratchArena arena = ScratchArena.get();
+		final int mark = arena.mark();
+
+		try {
+			final double[] SpectralDensity = arena.doubles(freqSize);
+			computeLombScargle(TimeSeries, SpectralDensity);
+			return LombScargle.MaxOneDim(SpectralDensity, freqSize);
+		} finally {
+			arena.release(mark);
+		}
+	}
+
+	/**
+	 * transform replaces the first meshSize values with sum_m x_m * exp(2 pi i
+	 * k m / meshSize), radix 2 in place.
+	 *
+	 * @param Real
+	 * @param Imag
+	 */
+	void transform(final double[] Real, final double[] Imag) {
+		for (int m = 0; m < meshSize; m++) {
+			final int r = bitReversal[m];
+			if (r > m) {
+				final double tempReal = Real[m];
+				final double tempImag = Imag[m];
+				Real[m] = Real[r];
+				Imag[m] = Imag[r];
+				Real[r] = tempReal;
+				Imag[r] = tempImag;
+			}
+		}
+
+		for (int half = 1; half < meshSize; half = half * 2) {
+			final int stride = meshSize / (2 * half);
+			for (int start = 0; start < meshSize; start = start + 2 * half) {
+				for (int j = 0; j < half; j++) {
+					final double wCos = twiddleCos[j * stride];
+					final double wSin = twiddleSin[j * stride];
+					final int a = start + j;
+					final int b = a + half;
+					final double bReal = Real[b] * wCos - Imag[b] * wSin;
+					final double bImag = Real[b] * wSin + Imag[b] * wCos;
+					Real[b] = Real[a] - bReal;
+					Imag[b] = Imag[a] - bImag;
+					Real[a] = Real[a] + bReal;
+					Imag[a] = Imag[a] + bImag;
+				}
+			}
+		}
+	}
+
+	/**
+	 * meshSize returns the number of points of the mesh, the smallest power of
+	 * two which holds the oversampled offsets of the test frequencies from
+	 * the center frequency
+	 *
+	 * @param freqSize
+	 * @return
+	 */
+	static int meshSize(final int freqSize) {
+		final int centerFrequency = (freqSize - 1) / 2;
+		final int maxOffset = Math.max(centerFrequency, freqSize - 1 - centerFrequency);
+		int size = 1;
+		while (size < Math.max(2 * EXTIRPOLATION_ORDER, MESH_OVERSAMPLING * maxOffset)) {
+			size = size * 2;
+		}
+		return size;
+	}
+
+	/**
+	 * estimateBytes returns the heap size of the arrays of the FastLombScargle
+	 * of a window
+	 *
+	 * @param freqSize
+	 * @param SIZE
+	 * @return
+	 */
+	static long estimateBytes(final int freqSize, final int SIZE) {
+		final int meshSize = meshSize(freqSize);
+		return 4L * SIZE + 8L * SIZE * (EXTIRPOLATION_ORDER + 2) + 8L * 4 * freqSize + 4L * meshSize
+				+ 8L * meshSize;
+	}
+
+	/**
+	 * lagrangeDenominators returns prod_{q != l} (l - q) for the nodes 0 to
+	 * EXTIRPOLATION_ORDER - 1
+	 *
+	 * @return
+	 */
+	private static double[] lagrangeDenominators() {
+		final double[] denominators = new double[EXTIRPOLATION_ORDER];
+		for (int l = 0; l < EXTIRPOLATION_ORDER; l++) {
+			double product = 1.0;
+			for (int q = 0; q < EXTIRPOLATION_ORDER; q++) {
+				if (q != l) {
+					product = product * (l - q);
+				}
+			}
+			denominators[l] = product;
+		}
+		return denominators;
+	}
+}
@@ -0,0 +1,21 @@
+package org.thebubbleindex.math;
+
+/**
+ * FloatHQDerivativeEngine is the single precision counterpart of
+ * {@link HQDerivativeEngine}, used when the run context selects single
+ * precision. It matches the precision of the GPU kernel.
+ * 
+ * @author thebubbleindex
+ */
+public interface FloatHQDerivativeEngine {
+
+	/**
+	 * hqDerivative calculates the largest value of the periodogram given
+	 * all test values of H and Q.
+	 * 
+	 * @param Coef
+	 *            The fitted coefficients of the date
+	 * @return
+	 */
+	float hqDerivative(final float[] Coef);
+}
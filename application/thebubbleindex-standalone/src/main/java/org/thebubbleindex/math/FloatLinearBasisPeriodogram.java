@@ -0,0 +1,91 @@
+package org.thebubbleindex.math;
+
+/**
+ * FloatLinearBasisPeriodogram evaluates the projections of a
+ * {@link LinearBasisPeriodogram} in single precision. The projections of the
+ * window are computed once in double precision and stored as floats, which
+ * halves the memory read per date.
+ * 
+ * @author thebubbleindex
+ */
+public class FloatLinearBasisPeriodogram implements FloatHQDerivativeEngine {
+
+	private final int cellSize;
+	private final int freqSize;
+
+	private final float[] cosProjectionOne;
+	private final float[] cosProjectionTwo;
+	private final float[] sinProjectionOne;
+	private final float[] sinProjectionTwo;
+
+	private final float[] inverseCosSquareSum;
+	private final float[] inverseSinSquareSum;
+
+	/**
+	 * FloatLinearBasisPeriodogram constructor
+	 * 
+	 * @param linearBasisPeriodogram
+	 */
+	public FloatLinearBasisPeriodogram(final LinearBasisPeriodogram linearBasisPeriodogram) {
+		this.cellSize = linearBasisPeriodogram.qSize * linearBasisPeriodogram.hSize;
+		this.freqSize = linearBasisPeriodogram.freqSize;
+
+		cosProjectionOne = toFloat(linearBasisPeriodogram.cosProjectionOne);
+		cosProjectionTwo = toFloat(linearBasisPeriodogram.cosProjectionTwo);
+		sinProjectionOne = toFloat(linearBasisPeriodogram.sinProjectionOne);
+		sinProjectionTwo = toFloat(linearBasisPeriodogram.sinProjectionTwo);
+		inverseCosSquareSum = toFloat(linearBasisPeriodogram.inverseCosSquareSum);
+		inverseSinSquareSum = toFloat(linearBasisPeriodogram.inverseSinSquareSum);
+	}
+
+	/**
+	 * estimateBytes returns the heap size of the single precision projections
+	 * of a window
+	 *
+	 * @param lombScargle
+	 * @return
+	 */
+	static long estimateBytes(final LombScargle lombScargle) {
+		return LinearBasisPeriodogram.estimateBytes(lombScargle) / 2;
+	}
+
+	/**
+	 * hqDerivative calculates the largest value of the periodogram given
+	 * all test values of H and Q.
+	 * 
+	 * @param Coef
+	 *            The fitted coefficients of the date
+	 * @return
+	 */
+	@Override
+	public float hqDerivative(final float[] Coef) {
+		final float coefOne = Coef[1];
+		final float coefTwo = Coef[2];
+
+		float value = 0.0f;
+		int cell = 0;
+
+		for (int cellIndex = 0; cellIndex < cellSize; cellIndex++) {
+			for (int f = 0; f < freqSize; f++) {
+				final float CosResidSum = coefOne * cosProjectionOne[cell] + coefTwo * cosProjectionTwo[cell];
+				final float SinResidSum = coefOne * sinProjectionOne[cell] + coefTwo * sinProjectionTwo[cell];
+
+				final float Temp = CosResidSum * CosResidSum * inverseCosSquareSum[f]
+						+ SinResidSum * SinResidSum * inverseSinSquareSum[f];
+				if (Temp > value)
+					value = Temp;
+				cell++;
+			}
+		}
+
+		return value;
+	}
+
+	private static float[] toFloat(final double[] values) {
+		final float[] floats = new float[values.length];
+		for (int k = 0; k < values.length; k++) {
+			floats[k] = (float) values[k];
+		}
+		return floats;
+	}
+}
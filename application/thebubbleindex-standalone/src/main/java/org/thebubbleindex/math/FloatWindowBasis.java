@@ -0,0 +1,55 @@
+package org.thebubbleindex.math;
+
+/**
+ * FloatWindowBasis holds single precision copies of the arrays of a
+ * {@link WindowBasis} which are used by the single precision periodogram.
+ * 
+ * @author thebubbleindex
+ */
+public class FloatWindowBasis {
+
+	public final int numberOfDays;
+	public final float[] LogTimeValues;
+	public final float[][] gFunction;
+	public final float[][] timePowerMH;
+
+	/**
+	 * FloatWindowBasis constructor
+	 * 
+	 * @param windowBasis
+	 */
+	public FloatWindowBasis(final WindowBasis windowBasis) {
+		this.numberOfDays = windowBasis.numberOfDays;
+		this.LogTimeValues = toFloat(windowBasis.LogTimeValues);
+
+		gFunction = new float[windowBasis.gFunction.length][];
+		for (int i = 0; i < gFunction.length; i++) {
+			gFunction[i] = toFloat(windowBasis.gFunction[i]);
+		}
+
+		timePowerMH = new float[windowBasis.timePowerMH.length][];
+		for (int j = 0; j < timePowerMH.length; j++) {
+			timePowerMH[j] = toFloat(windowBasis.timePowerMH[j]);
+		}
+	}
+
+	/**
+	 * estimateBytes returns the heap size of the single precision copies of a
+	 * window basis
+	 *
+	 * @param lombScargle
+	 * @param numberOfDays
+	 * @return
+	 */
+	static long estimateBytes(final LombScargle lombScargle, final int numberOfDays) {
+		return 4L * numberOfDays * (1 + lombScargle.qSize + lombScargle.hSize);
+	}
+
+	private static float[] toFloat(final double[] values) {
+		final float[] floats = new float[values.length];
+		for (int k = 0; k < values.length; k++) {
+			floats[k] = (float) values[k];
+		}
+		return floats;
+	}
+}
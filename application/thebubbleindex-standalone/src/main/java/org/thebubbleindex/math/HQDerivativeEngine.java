@@ -0,0 +1,21 @@
+package org.thebubbleindex.math;
+
+/**
+ * HQDerivativeEngine evaluates the largest value of the periodogram over all
+ * test values of H and Q for the fitted coefficients of a single date. An
+ * instance is bound to one window and is shared by every date of that window.
+ * 
+ * @author thebubbleindex
+ */
+public interface HQDerivativeEngine {
+
+	/**
+	 * hqDerivative calculates the largest value of the periodogram given
+	 * all test values of H and Q.
+	 * 
+	 * @param Coef
+	 *            The fitted coefficients of the date
+	 * @return
+	 */
+	double hqDerivative(final double[] Coef);
+}
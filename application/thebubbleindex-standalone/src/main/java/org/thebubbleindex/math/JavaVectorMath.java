@@ -0,0 +1,79 @@
+package org.thebubbleindex.math;
+
+/**
+ * JavaVectorMath is the pure Java backend. It needs no native library.
+ * <p>
+ * The arithmetic loops are simple counted loops which HotSpot compiles to
+ * SIMD instructions. The transcendental functions use java.lang.Math, whose
+ * log, cos and sin are compiler intrinsics accurate to 1 ulp.
+ * 
+ * @author thebubbleindex
+ */
+public class JavaVectorMath implements VectorMath {
+
+	@Override
+	public String getName() {
+		return "Java";
+	}
+
+	@Override
+	public void add(final double[] x, final int xOffset, final double[] y, final int yOffset, final double[] sum,
+			final int sumOffset, final int length) {
+		for (int i = 0; i < length; i++) {
+			sum[sumOffset + i] = x[xOffset + i] + y[yOffset + i];
+		}
+	}
+
+	@Override
+	public void add(final double[] x, final int xOffset, final double y, final double[] sum, final int sumOffset,
+			final int length) {
+		for (int i = 0; i < length; i++) {
+			sum[sumOffset + i] = x[xOffset + i] + y;
+		}
+	}
+
+	@Override
+	public void subtract(final double[] x, final int xOffset, final double[] y, final int yOffset,
+			final double[] difference, final int differenceOffset, final int length) {
+		for (int i = 0; i < length; i++) {
+			difference[differenceOffset + i] = x[xOffset + i] - y[yOffset + i];
+		}
+	}
+
+	@Override
+	public void multiply(final double[] x, final int xOffset, final double[] y, final int yOffset,
+			final double[] product, final int productOffset, final int length) {
+		for (int i = 0; i < length; i++) {
+			product[productOffset + i] = x[xOffset + i] * y[yOffset + i];
+		}
+	}
+
+	@Override
+	public void multiply(final double[] x, final int xOffset, final double y, final double[] product,
+			final int productOffset, final int length) {
+		for (int i = 0; i < length; i++) {
+			product[productOffset + i] = x[xOffset + i] * y;
+		}
+	}
+
+	@Override
+	public void log(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length) {
+		for (int i = 0; i < length; i++) {
+			y[yOffset + i] = Math.log(x[xOffset + i]);
+		}
+	}
+
+	@Override
+	public void cos(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length) {
+		for (int i = 0; i < length; i++) {
+			y[yOffset + i] = Math.cos(x[xOffset + i]);
+		}
+	}
+
+	@Override
+	public void sin(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length) {
+		for (int i = 0; i < length; i++) {
+			y[yOffset + i] = Math.sin(x[xOffset + i]);
+		}
+	}
+}
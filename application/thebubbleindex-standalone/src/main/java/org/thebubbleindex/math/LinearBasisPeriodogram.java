@@ -0,0 +1,271 @@
+package org.thebubbleindex.math;
+
+import org.thebubbleindex.util.ScratchArena;
+
+/**
+ * LinearBasisPeriodogram is a closed form evaluation of
+ * {@link LombScargle#hqDerivative(WindowBasis, double[])}.
+ * <p>
+ * For the (Q_i, H_j) cell the series given to the periodogram is
+ * <p>
+ * t^(m-H_j) * (B' + C' * g_i(t))
+ * <p>
+ * which is linear in the two per date scalars B' = Coef[1] * (1 - Q_i^m) /
+ * (1 - Q_i)^H_j and C' = Coef[2] / (1 - Q_i)^H_j. The time grid, and with it
+ * Tau and the shifted cosine and sine series of every test frequency, is fixed
+ * for the window. The constructor therefore projects the mean removed basis
+ * series t^(m-H_j), t^(m-H_j) * cos(omega * log(t)) and t^(m-H_j) * sin(omega
+ * * log(t)) onto the shifted cosine and sine series once per window. The
+ * periodogram of a date is then a handful of multiply-adds per (Q, H,
+ * frequency) instead of a full pass over the window.
+ * <p>
+ * The result equals the direct evaluation up to floating point rounding, since
+ * only the order of the sums changes. On the sample data the relative
+ * difference to the direct evaluation is below 1e-14; the tests accept 1e-9.
+ * 
+ * @author thebubbleindex
+ */
+public class LinearBasisPeriodogram implements HQDerivativeEngine {
+
+	final int qSize;
+	final int hSize;
+	final int freqSize;
+
+	/**
+	 * Projections of the residual per unit of Coef[1] and Coef[2] onto the
+	 * shifted cosine and sine series. Indexed by ((i * hSize) + j) * freqSize +
+	 * f.
+	 */
+	final double[] cosProjectionOne;
+	final double[] cosProjectionTwo;
+	final double[] sinProjectionOne;
+	final double[] sinProjectionTwo;
+
+	final double[] inverseCosSquareSum;
+	final double[] inverseSinSquareSum;
+
+	final CellEnergyBound cellBound;
+
+	/**
+	 * LinearBasisPeriodogram constructor
+	 * 
+	 * @param lombScargle
+	 * @param windowBasis
+	 */
+	public LinearBasisPeriodogram(final LombScargle lombScargle, final WindowBasis windowBasis) {
+		this(lombScargle, windowBasis, null);
+	}
+
+	/**
+	 * LinearBasisPeriodogram constructor which prunes the (Q, H) grid with
+	 * cellBound if it is not null
+	 * 
+	 * @param lombScargle
+	 * @param windowBasis
+	 * @param cellBound
+	 */
+	public LinearBasisPeriodogram(final LombScargle lombScargle, final WindowBasis windowBasis,
+			final CellEnergyBound cellBound) {
+		this.cellBound = cellBound;
+		this.qSize = lombScargle.qSize;
+		this.hSize = lombScargle.hSize;
+		this.freqSize = lombScargle.freqSize;
+
+		final int SIZE = windowBasis.numberOfDays;
+
+		// Mean removed basis series for each H
+		final double[][] basisPower = new double[hSize][SIZE];
+		final double[][] basisCos = new double[hSize][SIZE];
+		final double[][] basisSin = new double[hSize][SIZE];
+
+		for (int j = 0; j < hSize; j++) {
+			final double[] TimePowerMH = windowBasis.timePowerMH[j];
+			for (int k = 0; k < SIZE; k++) {
+				basisPower[j][k] = TimePowerMH[k];
+				basisCos[j][k] = TimePowerMH[k] * windowBasis.CosLogTimeValues[k];
+				basisSin[j][k] = TimePowerMH[k] * windowBasis.SinLogTimeValues[k];
+			}
+			removeMean(basisPower[j], SIZE);
+			removeMean(basisCos[j], SIZE);
+			removeMean(basisSin[j], SIZE);
+		}
+
+		final int cells = qSize * hSize * freqSize;
+		cosProjectionOne = new double[cells];
+		cosProjectionTwo = new double[cells];
+		sinProjectionOne = new double[cells];
+		sinProjectionTwo = new double[cells];
+		inverseCosSquareSum = new double[freqSize];
+		inverseSinSquareSum = new double[freqSize];
+
+		final double[] WorkArray = new double[SIZE];
+		final double[] CosValues = new double[SIZE];
+		final double[] SinValues = new double[SIZE];
+
+		for (int f = 0; f < freqSize; f++) {
+			final double Omega = 2.0 * 3.14159 * lombScargle.testFrequencies[f];
+
+			lombScargle.computeTrigBasis(windowBasis.LogTimeValues, Omega, WorkArray, CosValues, SinValues, SIZE);
+
+			double CosSum = 0.0;
+			double SinSum = 0.0;
+			for (int k = 0; k < SIZE; k++) {
+				CosSum = CosSum + CosValues[k] * CosValues[k];
+				SinSum = SinSum + SinValues[k] * SinValues[k];
+			}
+			inverseCosSquareSum[f] = 1.0 / CosSum;
+			inverseSinSquareSum[f] = 1.0 / SinSum;
+
+			for (int j = 0; j < hSize; j++) {
+				final double cosPower = dot(CosValues, basisPower[j], SIZE);
+				final double cosCos = dot(CosValues, basisCos[j], SIZE);
+				final double cosSin = dot(CosValues, basisSin[j], SIZE);
+				final double sinPower = dot(SinValues, basisPower[j], SIZE);
+				final double sinCos = dot(SinValues, basisCos[j], SIZE);
+				final double sinSin = dot(SinValues, basisSin[j], SIZE);
+
+				for (int i = 0; i < qSize; i++) {
+					final double tempVar = lombScargle.powTempVar[i][j];
+					final double bScale = (1.0 - lombScargle.QiM[i]) / tempVar;
+					final double cScale = 1.0 / tempVar;
+					final double C_one = lombScargle.cOne[i];
+					final double C_two = lombScargle.cTwo[i];
+
+					final int cell = (i * hSize + j) * freqSize + f;
+					cosProjectionOne[cell] = bScale * cosPower;
+					cosProjectionTwo[cell] = cScale * (C_one * cosCos + C_two * cosSin);
+					sinProjectionOne[cell] = bScale * sinPower;
+					sinProjectionTwo[cell] = cScale * (C_one * sinCos + C_two * sinSin);
+				}
+			}
+		}
+	}
+
+	/**
+	 * estimateBytes returns the heap size of the projections of a window,
+	 * without its cell bound
+	 *
+	 * @param lombScargle
+	 * @return
+	 */
+	static long estimateBytes(final LombScargle lombScargle) {
+		return 8L * (4L * lombScargle.qSize * lombScargle.hSize * lombScargle.freqSize + 2 * lombScargle.freqSize);
+	}
+
+	/**
+	 * hqDerivative calculates the largest value of the periodogram given
+	 * all test values of H and Q from the precomputed projections.
+	 * 
+	 * @param Coef
+	 * @return
+	 */
+	@Override
+	public double hqDerivative(final double[] Coef) {
+		final double coefOne = Coef[1];
+		final double coefTwo = Coef[2];
+
+		double value = 0.0;
+
+		if (cellBound == null) {
+			for (int cellIndex = 0; cellIndex < qSize * hSize; cellIndex++) {
+				final double Temp = cellMaximum(cellIndex, coefOne, coefTwo);
+				if (Temp > value)
+					value = Temp;
+			}
+			return value;
+		}
+
+		final ScratchArena arena = ScratchArena.get();
+		final int mark = arena.mark();
+
+		try {
+			final double[] Bounds = arena.doubles(qSize * hSize);
+			final int largest = cellBound.bounds(Coef, Bounds);
+
+			final double First = cellMaximum(largest, coefOne, coefTwo);
+			if (First > value)
+				value = First;
+
+			int evaluated = 1;
+			int pruned = 0;
+			for (int cellIndex = 0; cellIndex < qSize * hSize; cellIndex++) {
+				if (cellIndex == largest) {
+					continue;
+				}
+				if (Bounds[cellIndex] <= value) {
+					pruned++;
+					continue;
+				}
+				final double Temp = cellMaximum(cellIndex, coefOne, coefTwo);
+				evaluated++;
+				if (Temp > value)
+					value = Temp;
+			}
+			cellBound.record(evaluated, pruned);
+		} finally {
+			arena.release(mark);
+		}
+
+		return value;
+	}
+
+	/**
+	 * cellMaximum calculates the largest value of the periodogram of the cell
+	 * i * hSize + j
+	 * 
+	 * @param cellIndex
+	 * @param coefOne
+	 * @param coefTwo
+	 * @return
+	 */
+	private double cellMaximum(final int cellIndex, final double coefOne, final double coefTwo) {
+		double value = 0.0;
+		int cell = cellIndex * freqSize;
+
+		for (int f = 0; f < freqSize; f++) {
+			final double CosResidSum = coefOne * cosProjectionOne[cell] + coefTwo * cosProjectionTwo[cell];
+			final double SinResidSum = coefOne * sinProjectionOne[cell] + coefTwo * sinProjectionTwo[cell];
+
+			final double Temp = CosResidSum * CosResidSum * inverseCosSquareSum[f]
+					+ SinResidSum * SinResidSum * inverseSinSquareSum[f];
+			if (Temp > value)
+				value = Temp;
+			cell++;
+		}
+
+		return value;
+	}
+
+	/**
+	 * removeMean subtracts the mean of the array from every element
+	 * 
+	 * @param Array
+	 * @param SIZE
+	 */
+	static void removeMean(final double[] Array, final int SIZE) {
+		double Sum = 0.0;
+		for (int k = 0; k < SIZE; k++) {
+			Sum = Sum + Array[k];
+		}
+		final double Mean = Sum / SIZE;
+		for (int k = 0; k < SIZE; k++) {
+			Array[k] = Array[k] - Mean;
+		}
+	}
+
+	/**
+	 * dot computes the inner product of the first SIZE elements of two arrays
+	 * 
+	 * @param ArrayOne
+	 * @param ArrayTwo
+	 * @param SIZE
+	 * @return
+	 */
+	static double dot(final double[] ArrayOne, final double[] ArrayTwo, final int SIZE) {
+		double Sum = 0.0;
+		for (int k = 0; k < SIZE; k++) {
+			Sum = Sum + ArrayOne[k] * ArrayTwo[k];
+		}
+		return Sum;
+	}
+}
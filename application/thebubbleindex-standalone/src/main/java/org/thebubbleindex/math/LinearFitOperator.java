@@ -0,0 +1,114 @@
+package org.thebubbleindex.math;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.QR;
+import no.uib.cipr.matrix.UpperTriangDenseMatrix;
+
+/**
+ * LinearFitOperator is the least squares solution operator of the linear
+ * regression performed by
+ * {@link org.thebubbleindex.util.Utilities#LinearFit(double[], double[], double[], double[], int)}.
+ * <p>
+ * The design matrix (1, TimeValues_M_Power, LogCosTimeValues) is the same for
+ * every date of a window. The operator factorizes it once with a QR
+ * decomposition, A = QR, and keeps the pseudo-inverse R^-1 Q^T. Fitting a
+ * date is then three inner products of length SIZE without any allocation.
+ *
+ * @author thebubbleindex
+ */
+public class LinearFitOperator {
+
+	private final int SIZE;
+	private final double[][] pseudoInverse;
+	private final float[][] pseudoInverseFloat;
+
+	/**
+	 * LinearFitOperator constructor
+	 *
+	 * @param TimeValues_M_Power
+	 *            Array of time values raised to the M power
+	 * @param LogCosTimeValues
+	 *            Array of logcos time values
+	 * @param SIZE
+	 *            Size of the data window (days)
+	 */
+	public LinearFitOperator(final double[] TimeValues_M_Power, final double[] LogCosTimeValues, final int SIZE) {
+		this.SIZE = SIZE;
+
+		final DenseMatrix A = new DenseMatrix(SIZE, 3);
+		for (int i = 0; i < SIZE; i++) {
+			A.set(i, 0, 1.0);
+			A.set(i, 1, TimeValues_M_Power[i]);
+			A.set(i, 2, LogCosTimeValues[i]);
+		}
+
+		final QR qr = QR.factorize(A);
+		final DenseMatrix Q = qr.getQ();
+		final UpperTriangDenseMatrix R = qr.getR();
+
+		final DenseMatrix QTranspose = new DenseMatrix(3, SIZE);
+		Q.transpose(QTranspose);
+
+		final DenseMatrix P = new DenseMatrix(3, SIZE);
+		R.solve(QTranspose, P);
+
+		pseudoInverse = new double[3][SIZE];
+		pseudoInverseFloat = new float[3][SIZE];
+		for (int i = 0; i < 3; i++) {
+			for (int k = 0; k < SIZE; k++) {
+				pseudoInverse[i][k] = P.get(i, k);
+				pseudoInverseFloat[i][k] = (float) pseudoInverse[i][k];
+			}
+		}
+	}
+
+	/**
+	 * fit solves the least squares problem for the given data window, in the
+	 * same way as Utilities.LinearFit.
+	 *
+	 * @param Data
+	 *            The array containing the log prices
+	 * @param Coef
+	 *            Array containing the models fitted coefficients
+	 */
+	public void fit(final double[] Data, final double[] Coef) {
+		for (int i = 0; i < 3; i++) {
+			final double[] row = pseudoInverse[i];
+			double Sum = 0.0;
+			for (int k = 0; k < SIZE; k++) {
+				Sum = Sum + row[k] * Data[k];
+			}
+			Coef[i] = Sum;
+		}
+	}
+
+	/**
+	 * fit solves the least squares problem for the given data window in single
+	 * precision.
+	 *
+	 * @param Data
+	 *            The array containing the log prices
+	 * @param Coef
+	 *            Array containing the models fitted coefficients
+	 */
+	public void fit(final float[] Data, final float[] Coef) {
+		for (int i = 0; i < 3; i++) {
+			final float[] row = pseudoInverseFloat[i];
+			float Sum = 0.0f;
+			for (int k = 0; k < SIZE; k++) {
+				Sum = Sum + row[k] * Data[k];
+			}
+			Coef[i] = Sum;
+		}
+	}
+
+	/**
+	 * getPseudoInverse returns the rows of the 3 x SIZE pseudo-inverse of the
+	 * design matrix
+	 *
+	 * @return
+	 */
+	public double[][] getPseudoInverse() {
+		return pseudoInverse;
+	}
+}
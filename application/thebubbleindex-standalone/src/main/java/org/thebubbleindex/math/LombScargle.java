@@ -1,12 +1,5 @@
 package org.thebubbleindex.math;
 
-import static info.yeppp.Core.Add_V64fS64f_V64f;
-import static info.yeppp.Core.Add_V64fV64f_V64f;
-import static info.yeppp.Core.Multiply_V64fS64f_V64f;
-import static info.yeppp.Core.Multiply_V64fV64f_V64f;
-import static info.yeppp.Math.Cos_V64f_V64f;
-import static info.yeppp.Math.Log_V64f_V64f;
-import static info.yeppp.Math.Sin_V64f_V64f;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -15,6 +8,7 @@ import java.util.Properties;
 import org.apache.commons.math3.util.FastMath;
 import org.thebubbleindex.inputs.Indices;
 import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.util.ScratchArena;
 
 /**
  * LombScargle class provides the values and calculations which are needed to
@@ -28,10 +22,83 @@ import org.thebubbleindex.logging.Logs;
  */
 public class LombScargle {
 
+	/**
+	 * Engine selects how the H,Q derivative scan of a window is evaluated.
+	 * Direct computes the periodogram of every (Q, H) cell for every date.
+	 * LinearBasis precomputes the projections of the window once, see
+	 * {@link LinearBasisPeriodogram}. trigEvaluation, periodogram and
+	 * frequencySearch only apply to the Direct engine.
+	 */
+	public enum Engine {
+		Direct, LinearBasis
+	}
+
+	public Engine engine = Engine.LinearBasis;
+
+	/**
+	 * TrigEvaluation selects how the Direct engine evaluates the cosine and
+	 * sine series of the test frequencies. Direct calls cos and sin for every
+	 * frequency. Recurrence walks the equally spaced frequency grid with the
+	 * angle addition formulas, see {@link #rotateTrigBasis}.
+	 */
+	public enum TrigEvaluation {
+		Direct, Recurrence
+	}
+
+	public TrigEvaluation trigEvaluation = TrigEvaluation.Direct;
+
+	/**
+	 * Periodogram selects how the Direct engine evaluates the periodogram of
+	 * a series. Direct sums over the window for every test frequency. Fast
+	 * extirpolates the series onto a regular mesh and evaluates every
+	 * frequency with one FFT, see {@link FastLombScargle}. Fast pays off for
+	 * long windows and large freqsize.
+	 */
+	public enum Periodogram {
+		Direct, Fast
+	}
+
+	public Periodogram periodogram = Periodogram.Direct;
+
+	/**
+	 * FrequencySearch selects how the Direct engine finds the peak of the
+	 * periodogram. Grid takes the largest value over the test frequencies.
+	 * Adaptive evaluates every coarseStep-th test frequency and refines the
+	 * refinedPeaks largest local peaks with a golden section search between
+	 * their coarse neighbours, see {@link AdaptiveFrequencySearch}. The peak
+	 * is found between the grid frequencies, so the result differs slightly
+	 * from Grid. Ignored with periodogram=Fast.
+	 */
+	public enum FrequencySearch {
+		Grid, Adaptive
+	}
+
+	public FrequencySearch frequencySearch = FrequencySearch.Grid;
+	public int coarseStep = 4;
+	public int refinedPeaks = 2;
+
+	/**
+	 * reanchorInterval is the number of frequencies after which the
+	 * recurrence is restarted from directly evaluated values.
+	 */
+	public int reanchorInterval = 16;
+
+	/**
+	 * batchFit computes the fitted coefficients of every date of a window at
+	 * once, see {@link BatchLinearFit}.
+	 */
+	public boolean batchFit = true;
+
+	/**
+	 * pruning skips the (Q, H) cells which cannot beat the running maximum of
+	 * a date, see {@link CellEnergyBound}. The result is unchanged.
+	 */
+	public boolean pruning = false;
 	public int freqSize;
 	public int qSize;
 	public int hSize;
 	public final double[] testFrequencies;
+	public final double frequencyIncrement = 0.01;
 	public final double[] Q;
 	public final double[] H;
 
@@ -80,6 +147,87 @@ public class LombScargle {
 			this.qSize = Integer.parseInt(lsProperties.getProperty("qsize").trim());
 			this.hSize = Integer.parseInt(lsProperties.getProperty("hsize").trim());
 
+			final String engineProperty = lsProperties.getProperty("engine");
+			if (engineProperty != null) {
+				try {
+					this.engine = Engine.valueOf(engineProperty.trim());
+				} catch (final IllegalArgumentException ex) {
+					Logs.myLogger.error("Invalid engine in lombscargle.properties. Using {} engine. {}", engine, ex);
+				}
+			}
+
+			final String trigEvaluationProperty = lsProperties.getProperty("trigevaluation");
+			if (trigEvaluationProperty != null) {
+				try {
+					this.trigEvaluation = TrigEvaluation.valueOf(trigEvaluationProperty.trim());
+				} catch (final IllegalArgumentException ex) {
+					Logs.myLogger.error("Invalid trigevaluation in lombscargle.properties. Using {}. {}",
+							trigEvaluation, ex);
+				}
+			}
+
+			final String periodogramProperty = lsProperties.getProperty("periodogram");
+			if (periodogramProperty != null) {
+				try {
+					this.periodogram = Periodogram.valueOf(periodogramProperty.trim());
+				} catch (final IllegalArgumentException ex) {
+					Logs.myLogger.error("Invalid periodogram in lombscargle.properties. Using {}. {}", periodogram,
+							ex);
+				}
+			}
+
+			final String frequencySearchProperty = lsProperties.getProperty("frequencysearch");
+			if (frequencySearchProperty != null) {
+				try {
+					this.frequencySearch = FrequencySearch.valueOf(frequencySearchProperty.trim());
+				} catch (final IllegalArgumentException ex) {
+					Logs.myLogger.error("Invalid frequencysearch in lombscargle.properties. Using {}. {}",
+							frequencySearch, ex);
+				}
+			}
+
+			final String coarseStepProperty = lsProperties.getProperty("coarsestep");
+			if (coarseStepProperty != null) {
+				try {
+					this.coarseStep = Math.max(1, Integer.parseInt(coarseStepProperty.trim()));
+				} catch (final NumberFormatException ex) {
+					Logs.myLogger.error("Invalid coarsestep in lombscargle.properties. Using {}. {}", coarseStep,
+							ex);
+				}
+			}
+
+			final String refinedPeaksProperty = lsProperties.getProperty("refinedpeaks");
+			if (refinedPeaksProperty != null) {
+				try {
+					this.refinedPeaks = Math.max(1, Integer.parseInt(refinedPeaksProperty.trim()));
+				} catch (final NumberFormatException ex) {
+					Logs.myLogger.error("Invalid refinedpeaks in lombscargle.properties. Using {}. {}",
+							refinedPeaks, ex);
+				}
+			}
+
+			final String reanchorProperty = lsProperties.getProperty("reanchor");
+			if (reanchorProperty != null) {
+				try {
+					this.reanchorInterval = Math.max(1, Integer.parseInt(reanchorProperty.trim()));
+				} catch (final NumberFormatException ex) {
+					Logs.myLogger.error("Invalid reanchor in lombscargle.properties. Using {}. {}",
+							reanchorInterval, ex);
+				}
+			}
+
+			final String batchFitProperty = lsProperties.getProperty("batchfit");
+			if (batchFitProperty != null) {
+				this.batchFit = Boolean.parseBoolean(batchFitProperty.trim());
+			}
+
+			final String pruningProperty = lsProperties.getProperty("pruning");
+			if (pruningProperty != null) {
+				this.pruning = Boolean.parseBoolean(pruningProperty.trim());
+			}
+
+			warnDirectSettings();
+
 		} catch (final FileNotFoundException ex) {
 			Logs.myLogger.error("Using constructor values. Could not find lombscargle.properties file. {}", ex);
 		} catch (final IOException ex) {
@@ -104,8 +252,83 @@ public class LombScargle {
 		cTwo = new double[this.qSize];
 		powTempVar = new double[this.qSize][this.hSize];
 
+		computeGrid();
+	}
+
+	/**
+	 * LombScargle constructor with the settings of another instance and new
+	 * omega and m values. The grid sizes and the properties are taken from
+	 * settings, so lombscargle.properties is read only once when several
+	 * parameter values are calculated.
+	 * 
+	 * @param settings
+	 * @param omegaDouble
+	 * @param mCoeffDouble
+	 */
+	public LombScargle(final LombScargle settings, final double omegaDouble, final double mCoeffDouble) {
+		this.freqSize = settings.freqSize;
+		this.qSize = settings.qSize;
+		this.hSize = settings.hSize;
+		this.omegaDouble = omegaDouble;
+		this.omegaFloat = (float) omegaDouble;
+		this.mCoeffDouble = mCoeffDouble;
+		this.mCoeffFloat = (float) mCoeffDouble;
+
+		this.engine = settings.engine;
+		this.trigEvaluation = settings.trigEvaluation;
+		this.periodogram = settings.periodogram;
+		this.frequencySearch = settings.frequencySearch;
+		this.coarseStep = settings.coarseStep;
+		this.refinedPeaks = settings.refinedPeaks;
+		this.reanchorInterval = settings.reanchorInterval;
+		this.batchFit = settings.batchFit;
+		this.pruning = settings.pruning;
+
+		testFrequencies = new double[this.freqSize];
+		Q = new double[this.qSize];
+		H = new double[this.hSize];
+
+		logQi = new double[this.qSize];
+		QiM = new double[this.qSize];
+		cOne = new double[this.qSize];
+		cTwo = new double[this.qSize];
+		powTempVar = new double[this.qSize][this.hSize];
+
+		computeGrid();
+	}
+
+	/**
+	 * warnDirectSettings logs a warning for each of trigevaluation,
+	 * periodogram and frequencysearch which is set to something other than
+	 * its default while the LinearBasis engine is selected. These settings
+	 * only select how the Direct engine evaluates a periodogram and are
+	 * ignored by the LinearBasis engine.
+	 */
+	private void warnDirectSettings() {
+		if (engine != Engine.LinearBasis) {
+			return;
+		}
+		if (trigEvaluation != TrigEvaluation.Direct) {
+			Logs.myLogger.warn("trigevaluation={} in lombscargle.properties is ignored by the {} engine. "
+					+ "Set engine=Direct to use it.", trigEvaluation, engine);
+		}
+		if (periodogram != Periodogram.Direct) {
+			Logs.myLogger.warn("periodogram={} in lombscargle.properties is ignored by the {} engine. "
+					+ "Set engine=Direct to use it.", periodogram, engine);
+		}
+		if (frequencySearch != FrequencySearch.Grid) {
+			Logs.myLogger.warn("frequencysearch={} in lombscargle.properties is ignored by the {} engine. "
+					+ "Set engine=Direct to use it.", frequencySearch, engine);
+		}
+	}
+
+	/**
+	 * computeGrid fills the test frequencies, the Q and H grids and the
+	 * omega and m dependent tables of the grid
+	 */
+	private void computeGrid() {
 		double StartingPoint = omegaDouble / (2.0 * 3.14159) - 0.2;
-		double Increments = 0.01;
+		double Increments = frequencyIncrement;
 
 		for (int i = 0; i < freqSize; i++) {
 			testFrequencies[i] = StartingPoint + i * Increments;
@@ -136,78 +359,263 @@ public class LombScargle {
 				powTempVar[i][j] = FastMath.pow((1.0 - Q[i]), H[j]);
 			}
 		}
+	}
 
+	/**
+	 * createEngine creates the H,Q derivative engine of a window as selected
+	 * by the engine property.
+	 * 
+	 * @param windowBasis
+	 *            The precomputed time dependent arrays of the window
+	 * @return
+	 */
+	public HQDerivativeEngine createEngine(final WindowBasis windowBasis) {
+		return createEngine(windowBasis, null);
 	}
 
 	/**
-	 * hqDerivative calculates the the largest value of the periodogram given
-	 * all test values of H and Q.
+	 * createEngine creates the H,Q derivative engine of a window as selected
+	 * by the engine property, pruning the (Q, H) grid with cellBound if it is
+	 * not null.
 	 * 
-	 * @param TimeValues
-	 * @param Coef
-	 * @param SIZE
+	 * @param windowBasis
+	 *            The precomputed time dependent arrays of the window
+	 * @param cellBound
+	 *            The cell bound of the window or null
 	 * @return
 	 */
-	public double hqDerivative(final double[] TimeValues, final double[] Coef, final int SIZE) {
+	public HQDerivativeEngine createEngine(final WindowBasis windowBasis, final CellEnergyBound cellBound) {
+		if (engine == Engine.LinearBasis) {
+			return new LinearBasisPeriodogram(this, windowBasis, cellBound);
+		}
 
-		double value = 0.0;
+		final PeriodogramPeak periodogramPeak;
+		if (periodogram == Periodogram.Fast) {
+			periodogramPeak = new FastLombScargle(this, windowBasis.LogTimeValues, windowBasis.numberOfDays);
+		} else if (frequencySearch == FrequencySearch.Adaptive) {
+			periodogramPeak = new AdaptiveFrequencySearch(this, windowBasis.LogTimeValues, windowBasis.numberOfDays);
+		} else {
+			periodogramPeak = null;
+		}
 
-		final double[] LogTimeValues = new double[SIZE];
-		final double[] tempFour = new double[SIZE];
+		return new HQDerivativeEngine() {
+			@Override
+			public double hqDerivative(final double[] Coef) {
+				return LombScargle.this.hqDerivative(windowBasis, periodogramPeak, cellBound, Coef);
+			}
+		};
+	}
+
+	/**
+	 * createFloatEngine creates the single precision H,Q derivative engine of a
+	 * window as selected by the engine property.
+	 * 
+	 * @param windowBasis
+	 * @return
+	 */
+	public FloatHQDerivativeEngine createFloatEngine(final WindowBasis windowBasis) {
+		if (engine == Engine.LinearBasis) {
+			return new FloatLinearBasisPeriodogram(new LinearBasisPeriodogram(this, windowBasis));
+		}
 
-		Log_V64f_V64f(TimeValues, 0, tempFour, 0, SIZE);
+		final FloatWindowBasis floatWindowBasis = new FloatWindowBasis(windowBasis);
+		return new FloatHQDerivativeEngine() {
+			@Override
+			public float hqDerivative(final float[] Coef) {
+				return LombScargle.this.hqDerivative(floatWindowBasis, Coef);
+			}
+		};
+	}
+
+	/**
+	 * estimateEngineBytes returns the heap size of the arrays which the engine
+	 * of a window holds beside its window basis, as created by createEngine
+	 * with the cell bound of the pruning property or by createFloatEngine.
+	 * The single precision projections are built from double precision ones,
+	 * which are counted as well. The other arrays which are only used while
+	 * the engine is built are not counted, and the per thread scratch arrays
+	 * are estimated by estimateScratchBytes.
+	 * 
+	 * @param numberOfDays
+	 *            Size of the window (days)
+	 * @param singlePrecision
+	 *            True for the engine of createFloatEngine
+	 * @return
+	 */
+	public long estimateEngineBytes(final int numberOfDays, final boolean singlePrecision) {
+		if (singlePrecision) {
+			return engine == Engine.LinearBasis
+					? FloatLinearBasisPeriodogram.estimateBytes(this) + LinearBasisPeriodogram.estimateBytes(this)
+					: FloatWindowBasis.estimateBytes(this, numberOfDays);
+		}
 
-		System.arraycopy(tempFour, 0, LogTimeValues, 0, SIZE);
+		long bytes = pruning ? CellEnergyBound.estimateBytes(this) : 0;
+		if (engine == Engine.LinearBasis) {
+			bytes += LinearBasisPeriodogram.estimateBytes(this);
+		} else if (periodogram == Periodogram.Fast) {
+			bytes += FastLombScargle.estimateBytes(freqSize, numberOfDays);
+		} else if (frequencySearch == FrequencySearch.Adaptive) {
+			bytes += AdaptiveFrequencySearch.estimateBytes(this, numberOfDays);
+		}
+		return bytes;
+	}
 
-		double[] tempFive = new double[SIZE];
-		double[] tempSix = new double[SIZE];
+	/**
+	 * estimateScratchBytes returns an upper bound of the heap size of the
+	 * {@link ScratchArena} arrays which a thread keeps once it calculated a
+	 * date of a window: the prices and fit of the date, the arrays of
+	 * hqDerivative and those of the periodogram of the engine. The arena of a
+	 * thread keeps the largest arrays of every window it calculated.
+	 * 
+	 * @param numberOfDays
+	 *            Size of the window (days)
+	 * @param singlePrecision
+	 *            True for the engine of createFloatEngine
+	 * @return
+	 */
+	public long estimateScratchBytes(final int numberOfDays, final boolean singlePrecision) {
+		final long SIZE = numberOfDays;
+		long doubles = SIZE + 3 + 5 * SIZE + SIZE + freqSize + (long) qSize * hSize;
+		if (engine == Engine.LinearBasis) {
+			doubles += (long) qSize * hSize;
+		} else if (periodogram == Periodogram.Fast) {
+			doubles += 2L * FastLombScargle.meshSize(freqSize) + freqSize;
+		} else if (frequencySearch == FrequencySearch.Adaptive) {
+			doubles += 4 * SIZE + 2L * AdaptiveFrequencySearch.coarseSize(freqSize, coarseStep);
+		} else {
+			doubles += 10 * SIZE;
+		}
+		final long floats = singlePrecision ? 3 + 2 * SIZE + freqSize : 0;
+		return 8 * doubles + 4 * floats;
+	}
 
-		Multiply_V64fS64f_V64f(LogTimeValues, 0, omegaDouble, tempFour, 0, SIZE);
+	/**
+	 * hqDerivative calculates the largest value of the periodogram given
+	 * all test values of H and Q.
+	 * 
+	 * @param windowBasis
+	 *            The precomputed time dependent arrays of the window
+	 * @param Coef
+	 * @return
+	 */
+	public double hqDerivative(final WindowBasis windowBasis, final double[] Coef) {
+		return hqDerivative(windowBasis, null, null, Coef);
+	}
 
-		Cos_V64f_V64f(tempFour, 0, tempFive, 0, SIZE);
-		Sin_V64f_V64f(tempFour, 0, tempSix, 0, SIZE);
+	/**
+	 * hqDerivative calculates the largest value of the periodogram given
+	 * all test values of H and Q, evaluating the periodogram with
+	 * periodogramPeak and skipping cells with cellBound if they are not null.
+	 * 
+	 * @param windowBasis
+	 *            The precomputed time dependent arrays of the window
+	 * @param periodogramPeak
+	 *            The peak search of the window or null for the exhaustive
+	 *            direct scan
+	 * @param cellBound
+	 *            The cell bound of the window or null
+	 * @param Coef
+	 * @return
+	 */
+	public double hqDerivative(final WindowBasis windowBasis, final PeriodogramPeak periodogramPeak,
+			final CellEnergyBound cellBound, final double[] Coef) {
 
-		for (int i = 0; i < qSize; i++) {
+		final int SIZE = windowBasis.numberOfDays;
+		double value = 0.0;
 
-			final double Qi_M = QiM[i];
-			final double C_one = cOne[i];
-			final double C_two = cTwo[i];
-			final double[] tempSeven = new double[SIZE];
-			final double[] tempEight = new double[SIZE];
-			final double[] tempNine = new double[SIZE];
-			Multiply_V64fS64f_V64f(tempFive, 0, C_one, tempSeven, 0, SIZE);
-			Multiply_V64fS64f_V64f(tempSix, 0, C_two, tempEight, 0, SIZE);
-			Add_V64fV64f_V64f(tempSeven, 0, tempEight, 0, tempNine, 0, SIZE);
+		final ScratchArena arena = ScratchArena.get();
+		final int mark = arena.mark();
 
-			for (int j = 0; j < hSize; j++) {
+		try {
+			final double[] HQDerivativeData = arena.doubles(SIZE);
+			final double[] SpectralDensity = arena.doubles(freqSize);
+
+			if (cellBound == null) {
+				for (int i = 0; i < qSize; i++) {
+					for (int j = 0; j < hSize; j++) {
+						final double Temp = cellMaximum(windowBasis, periodogramPeak, i, j, Coef, HQDerivativeData,
+								SpectralDensity);
+						if (Temp > value)
+							value = Temp;
+					}
+				}
+			} else {
+				final double[] Bounds = arena.doubles(qSize * hSize);
+				final int largest = cellBound.bounds(Coef, Bounds);
+
+				// the cell with the largest bound sets the first maximum
+				final double First = cellMaximum(windowBasis, periodogramPeak, largest / hSize, largest % hSize, Coef,
+						HQDerivativeData, SpectralDensity);
+				if (First > value)
+					value = First;
+
+				int evaluated = 1;
+				int pruned = 0;
+				for (int cell = 0; cell < qSize * hSize; cell++) {
+					if (cell == largest) {
+						continue;
+					}
+					if (Bounds[cell] <= value) {
+						pruned++;
+						continue;
+					}
+					final double Temp = cellMaximum(windowBasis, periodogramPeak, cell / hSize, cell % hSize, Coef,
+							HQDerivativeData, SpectralDensity);
+					evaluated++;
+					if (Temp > value)
+						value = Temp;
+				}
+				cellBound.record(evaluated, pruned);
+			}
+		} finally {
+			arena.release(mark);
+		}
 
-				final double tempVar = powTempVar[i][j];
+		return value;
+	}
 
-				final double B_prime = 1.0 * (Coef[1]) * (1.0 - Qi_M) * 1.0 / tempVar;
+	/**
+	 * cellMaximum calculates the largest value of the periodogram of the (Q_i,
+	 * H_j) cell
+	 * 
+	 * @param windowBasis
+	 * @param periodogramPeak
+	 * @param i
+	 * @param j
+	 * @param Coef
+	 * @param HQDerivativeData
+	 *            Scratch array of at least numberOfDays elements
+	 * @param SpectralDensity
+	 *            Scratch array of at least freqSize elements
+	 * @return
+	 */
+	private double cellMaximum(final WindowBasis windowBasis, final PeriodogramPeak periodogramPeak, final int i,
+			final int j, final double[] Coef, final double[] HQDerivativeData, final double[] SpectralDensity) {
 
-				// Took out the negative sign for B_Prime
+		final int SIZE = windowBasis.numberOfDays;
+		final double Qi_M = QiM[i];
+		final double[] tempNine = windowBasis.gFunction[i];
+		final double tempVar = powTempVar[i][j];
 
-				final double C_prime = (Coef[2]) * 1.0 / tempVar;
+		final double B_prime = 1.0 * (Coef[1]) * (1.0 - Qi_M) * 1.0 / tempVar;
 
-				final double[] HQDerivativeData = new double[SIZE];
+		// Took out the negative sign for B_Prime
 
-				for (int k = 0; k < SIZE; k++) {
+		final double C_prime = (Coef[2]) * 1.0 / tempVar;
 
-					HQDerivativeData[k] = FastMath.pow(TimeValues[k], mCoeffDouble - H[j])
-							* (B_prime + C_prime * tempNine[k]);
-				}
+		final double[] TimePowerMH = windowBasis.timePowerMH[j];
 
-				final double[] SpectralDensity = new double[freqSize];
+		for (int k = 0; k < SIZE; k++) {
 
-				computeLombScargle(LogTimeValues, HQDerivativeData, SpectralDensity, SIZE);
+			HQDerivativeData[k] = TimePowerMH[k] * (B_prime + C_prime * tempNine[k]);
+		}
 
-				final double Temp = MaxOneDim(SpectralDensity, freqSize);
-				if (Temp > value)
-					value = Temp;
-			}
+		if (periodogramPeak != null) {
+			return periodogramPeak.peak(HQDerivativeData);
 		}
 
-		return value;
+		computeLombScargle(windowBasis.LogTimeValues, HQDerivativeData, SpectralDensity, SIZE);
+		return MaxOneDim(SpectralDensity, freqSize);
 	}
 
 	/**
@@ -241,69 +649,313 @@ public class LombScargle {
 			final int SIZE) {
 
 		double SinSum, CosSum, CosResidSum, SinResidSum;
-		final double[] TwoOmegaT = new double[SIZE];
-		final double[] OmegaTMinusTau = new double[SIZE];
-		final double[] Residual = new double[SIZE];
 
-		// Find mean of Time Series
-		double Sum = 0;
-		for (int i = 0; i < SIZE; i++) {
-			Sum = Sum + TimeSeries[i];
+		final VectorMath vectorMath = VectorMaths.get();
+		final ScratchArena arena = ScratchArena.get();
+		final int mark = arena.mark();
+
+		try {
+			final double[] WorkArray = arena.doubles(SIZE);
+			final double[] Residual = arena.doubles(SIZE);
+			final double[] tempArrayOne = arena.doubles(SIZE);
+			final double[] tempArrayTwo = arena.doubles(SIZE);
+			final double[] tempArrayThree = arena.doubles(SIZE);
+			final double[] tempArrayFour = arena.doubles(SIZE);
+
+			final boolean recurrence = trigEvaluation == TrigEvaluation.Recurrence;
+			final double[] PhaseCos = recurrence ? arena.doubles(SIZE) : null;
+			final double[] PhaseSin = recurrence ? arena.doubles(SIZE) : null;
+			final double[] StepCos = recurrence ? arena.doubles(SIZE) : null;
+			final double[] StepSin = recurrence ? arena.doubles(SIZE) : null;
+
+			if (recurrence) {
+				vectorMath.multiply(TimeValues, 0, 2.0 * 3.14159 * frequencyIncrement, WorkArray, 0, SIZE);
+				vectorMath.cos(WorkArray, 0, StepCos, 0, SIZE);
+				vectorMath.sin(WorkArray, 0, StepSin, 0, SIZE);
+			}
+
+			// Find mean of Time Series
+			double Sum = 0;
+			for (int i = 0; i < SIZE; i++) {
+				Sum = Sum + TimeSeries[i];
+			}
+
+			final double Mean = -1.0 * Sum * 1.0 / SIZE;
+
+			// TimeSeries becomes the residual
+			vectorMath.add(TimeSeries, 0, Mean, Residual, 0, SIZE);
+
+			for (int i = 0; i < freqSize; i++) {
+
+				final double Omega = 2.0 * 3.14159 * testFrequencies[i];
+				CosResidSum = 0.0;
+				SinResidSum = 0.0;
+				SinSum = 0.0;
+				CosSum = 0.0;
+
+				if (!recurrence) {
+					computeTrigBasis(TimeValues, Omega, WorkArray, tempArrayOne, tempArrayTwo, SIZE);
+				} else {
+					if (i % reanchorInterval == 0) {
+						vectorMath.multiply(TimeValues, 0, Omega, WorkArray, 0, SIZE);
+						vectorMath.cos(WorkArray, 0, PhaseCos, 0, SIZE);
+						vectorMath.sin(WorkArray, 0, PhaseSin, 0, SIZE);
+					} else {
+						rotateTrigBasis(PhaseCos, PhaseSin, StepCos, StepSin, SIZE);
+					}
+					computeShiftedTrigBasis(PhaseCos, PhaseSin, Omega, tempArrayOne, tempArrayTwo, SIZE);
+				}
+
+				vectorMath.multiply(tempArrayOne, 0, Residual, 0, tempArrayThree, 0, SIZE);
+				vectorMath.multiply(tempArrayTwo, 0, Residual, 0, tempArrayFour, 0, SIZE);
+
+				for (int j = 0; j < SIZE; j++) {
+					CosResidSum = CosResidSum + tempArrayThree[j];
+					SinResidSum = SinResidSum + tempArrayFour[j];
+					SinSum = SinSum + tempArrayTwo[j] * tempArrayTwo[j];
+					CosSum = CosSum + tempArrayOne[j] * tempArrayOne[j];
+				}
+
+				// FastMath.pow allocates for integer powers, squares are exact
+				CosResidSum = CosResidSum * CosResidSum;
+				SinResidSum = SinResidSum * SinResidSum;
+
+				SpectralDensity[i] = CosResidSum * 1.0 / CosSum + SinResidSum * 1.0 / SinSum;
+			}
+		} finally {
+			arena.release(mark);
+		}
+	}
+
+	/**
+	 * rotateTrigBasis advances cos(Omega * t) and sin(Omega * t) to the next
+	 * frequency of the grid with the angle addition formulas
+	 * <p>
+	 * cos(a + b) = cos(a)cos(b) - sin(a)sin(b), sin(a + b) = sin(a)cos(b) +
+	 * cos(a)sin(b)
+	 * <p>
+	 * where b = 2 * pi * frequencyIncrement * t is fixed for the window. Every
+	 * step adds at most about 4 * 2^-52 to the absolute error of the values,
+	 * so r steps after an anchor the drift is below 4 * r * 2^-52 (1.5e-14
+	 * for the default interval of 16, measured about 2e-16 at window 1000).
+	 * The direct evaluation itself is off by about |Omega * t| * 2^-52 from
+	 * the rounding of its argument. The drift grows linearly, which is why
+	 * computeLombScargle re-anchors every reanchorInterval frequencies.
+	 *
+	 * @param PhaseCos
+	 *            cos(Omega * t), advanced in place
+	 * @param PhaseSin
+	 *            sin(Omega * t), advanced in place
+	 * @param StepCos
+	 *            cos(2 * pi * frequencyIncrement * t)
+	 * @param StepSin
+	 *            sin(2 * pi * frequencyIncrement * t)
+	 * @param SIZE
+	 */
+	public static void rotateTrigBasis(final double[] PhaseCos, final double[] PhaseSin, final double[] StepCos,
+			final double[] StepSin, final int SIZE) {
+		for (int k = 0; k < SIZE; k++) {
+			final double Cos = PhaseCos[k];
+			final double Sin = PhaseSin[k];
+			PhaseCos[k] = Cos * StepCos[k] - Sin * StepSin[k];
+			PhaseSin[k] = Sin * StepCos[k] + Cos * StepSin[k];
 		}
+	}
+
+	/**
+	 * computeShiftedTrigBasis computes the same values as computeTrigBasis from
+	 * cos(Omega * t) and sin(Omega * t) without evaluating cos and sin per
+	 * element. The double angle values which define Tau are formed as cos^2 -
+	 * sin^2 and 2 cos sin, and the shift by Omega * Tau is a rotation by a
+	 * single angle.
+	 * 
+	 * @param PhaseCos
+	 *            cos(Omega * t)
+	 * @param PhaseSin
+	 *            sin(Omega * t)
+	 * @param Omega
+	 *            The angular test frequency
+	 * @param CosValues
+	 *            Output array of cos(Omega * (t + Tau))
+	 * @param SinValues
+	 *            Output array of sin(Omega * (t + Tau))
+	 * @param SIZE
+	 */
+	public static void computeShiftedTrigBasis(final double[] PhaseCos, final double[] PhaseSin, final double Omega,
+			final double[] CosValues, final double[] SinValues, final int SIZE) {
 
-		final double Mean = -1.0 * Sum * 1.0 / SIZE;
+		double SinSum = 0.0;
+		double CosSum = 0.0;
 
-		// TimeSeries becomes the residual
-		Add_V64fS64f_V64f(TimeSeries, 0, Mean, Residual, 0, SIZE);
+		for (int k = 0; k < SIZE; k++) {
+			final double Cos = PhaseCos[k];
+			final double Sin = PhaseSin[k];
+			CosSum = CosSum + (Cos * Cos - Sin * Sin);
+			SinSum = SinSum + 2.0 * Cos * Sin;
+		}
 
-		for (int i = 0; i < freqSize; i++) {
+		final double Tau = -1.0 * FastMath.atan2(SinSum, CosSum) * 1.0 / (2.0 * Omega);
 
-			final double Omega = 2.0 * 3.14159 * testFrequencies[i];
-			SinSum = 0.0;
-			CosSum = 0.0;
+		final double ShiftCos = FastMath.cos(Omega * Tau);
+		final double ShiftSin = FastMath.sin(Omega * Tau);
 
-			final double tempValue = 2.0 * Omega;
-			final double[] tempArrayOne = new double[SIZE];
-			final double[] tempArrayTwo = new double[SIZE];
+		for (int k = 0; k < SIZE; k++) {
+			final double Cos = PhaseCos[k];
+			final double Sin = PhaseSin[k];
+			CosValues[k] = Cos * ShiftCos - Sin * ShiftSin;
+			SinValues[k] = Sin * ShiftCos + Cos * ShiftSin;
+		}
+	}
+
+	/**
+	 * hqDerivative calculates the largest value of the periodogram given
+	 * all test values of H and Q in single precision.
+	 * 
+	 * @param floatWindowBasis
+	 *            The single precision time dependent arrays of the window
+	 * @param Coef
+	 * @return
+	 */
+	public float hqDerivative(final FloatWindowBasis floatWindowBasis, final float[] Coef) {
 
-			Multiply_V64fS64f_V64f(TimeValues, 0, tempValue, TwoOmegaT, 0, SIZE);
-			Cos_V64f_V64f(TwoOmegaT, 0, tempArrayOne, 0, SIZE);
-			Sin_V64f_V64f(TwoOmegaT, 0, tempArrayTwo, 0, SIZE);
+		final int SIZE = floatWindowBasis.numberOfDays;
+		float value = 0.0f;
 
-			for (int j = 0; j < SIZE; j++) {
-				SinSum = SinSum + tempArrayTwo[j];
-				CosSum = CosSum + tempArrayOne[j];
+		final ScratchArena arena = ScratchArena.get();
+		final int mark = arena.mark();
+
+		try {
+			final float[] HQDerivativeData = arena.floats(SIZE);
+			final float[] SpectralDensity = arena.floats(freqSize);
+
+			for (int i = 0; i < qSize; i++) {
+
+				final float Qi_M = (float) QiM[i];
+				final float[] tempNine = floatWindowBasis.gFunction[i];
+
+				for (int j = 0; j < hSize; j++) {
+
+					final float tempVar = (float) powTempVar[i][j];
+
+					final float B_prime = Coef[1] * (1.0f - Qi_M) / tempVar;
+
+					final float C_prime = Coef[2] / tempVar;
+
+					final float[] TimePowerMH = floatWindowBasis.timePowerMH[j];
+
+					for (int k = 0; k < SIZE; k++) {
+						HQDerivativeData[k] = TimePowerMH[k] * (B_prime + C_prime * tempNine[k]);
+					}
+
+					computeLombScargle(floatWindowBasis.LogTimeValues, HQDerivativeData, SpectralDensity, SIZE);
+
+					for (int f = 0; f < freqSize; f++) {
+						if (SpectralDensity[f] > value)
+							value = SpectralDensity[f];
+					}
+				}
 			}
+		} finally {
+			arena.release(mark);
+		}
 
-			final double Tau = -1.0 * FastMath.atan2(SinSum, CosSum) * 1.0 / (2.0 * Omega);
-			CosResidSum = 0.0;
-			SinResidSum = 0.0;
-			SinSum = 0.0;
-			CosSum = 0.0;
+		return value;
+	}
 
-			final double[] tempArrayThree = new double[SIZE];
-			final double[] tempArrayFour = new double[SIZE];
+	/**
+	 * computeLombScargle computes the Lomb-Scargle periodogram in single
+	 * precision, in the same way as the GPU kernel.
+	 * 
+	 * @param TimeValues
+	 * @param TimeSeries
+	 * @param SpectralDensity
+	 * @param SIZE
+	 */
+	public void computeLombScargle(final float[] TimeValues, final float[] TimeSeries, final float[] SpectralDensity,
+			final int SIZE) {
 
-			Add_V64fS64f_V64f(TimeValues, 0, Tau, tempArrayOne, 0, SIZE);
-			Multiply_V64fS64f_V64f(tempArrayOne, 0, Omega, OmegaTMinusTau, 0, SIZE);
+		float Sum = 0.0f;
+		for (int k = 0; k < SIZE; k++) {
+			Sum = Sum + TimeSeries[k];
+		}
+		final float Mean = Sum / SIZE;
 
-			Cos_V64f_V64f(OmegaTMinusTau, 0, tempArrayOne, 0, SIZE);
-			Sin_V64f_V64f(OmegaTMinusTau, 0, tempArrayTwo, 0, SIZE);
+		for (int i = 0; i < freqSize; i++) {
 
-			Multiply_V64fV64f_V64f(tempArrayOne, 0, Residual, 0, tempArrayThree, 0, SIZE);
-			Multiply_V64fV64f_V64f(tempArrayTwo, 0, Residual, 0, tempArrayFour, 0, SIZE);
+			final float Omega = 2.0f * 3.14159f * (float) testFrequencies[i];
 
-			for (int j = 0; j < SIZE; j++) {
-				CosResidSum = CosResidSum + tempArrayThree[j];
-				SinResidSum = SinResidSum + tempArrayFour[j];
-				SinSum = SinSum + FastMath.pow(tempArrayTwo[j], 2.0);
-				CosSum = CosSum + FastMath.pow(tempArrayOne[j], 2.0);
+			float SinSum = 0.0f;
+			float CosSum = 0.0f;
+			for (int k = 0; k < SIZE; k++) {
+				final float tempValue = 2.0f * Omega * TimeValues[k];
+				SinSum = SinSum + (float) Math.sin(tempValue);
+				CosSum = CosSum + (float) Math.cos(tempValue);
 			}
 
-			CosResidSum = FastMath.pow(CosResidSum, 2.0);
-			SinResidSum = FastMath.pow(SinResidSum, 2.0);
+			final float Tau = (float) Math.atan2(SinSum, CosSum) / (2.0f * Omega);
+
+			float CosResidSum = 0.0f;
+			float SinResidSum = 0.0f;
+			float SinSquareSum = 0.0f;
+			float CosSquareSum = 0.0f;
+
+			for (int k = 0; k < SIZE; k++) {
+				final float Residual = TimeSeries[k] - Mean;
+				final float Angle = Omega * (TimeValues[k] - Tau);
+				final float Cos = (float) Math.cos(Angle);
+				final float Sin = (float) Math.sin(Angle);
+
+				CosResidSum = CosResidSum + Residual * Cos;
+				SinResidSum = SinResidSum + Residual * Sin;
+				SinSquareSum = SinSquareSum + Sin * Sin;
+				CosSquareSum = CosSquareSum + Cos * Cos;
+			}
 
-			SpectralDensity[i] = CosResidSum * 1.0 / CosSum + SinResidSum * 1.0 / SinSum;
+			SpectralDensity[i] = CosResidSum * CosResidSum / CosSquareSum + SinResidSum * SinResidSum / SinSquareSum;
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * computeTrigBasis computes the cosine and sine of Omega * (t + Tau) for
+	 * every time value, where Tau is the Lomb-Scargle time offset which makes
+	 * the two series orthogonal. The result depends only on the time values and
+	 * the test frequency, not on the time series.
+	 * 
+	 * @param TimeValues
+	 * @param Omega
+	 *            The angular test frequency
+	 * @param WorkArray
+	 *            Scratch array of at least SIZE elements
+	 * @param CosValues
+	 *            Output array of cos(Omega * (t + Tau))
+	 * @param SinValues
+	 *            Output array of sin(Omega * (t + Tau))
+	 * @param SIZE
+	 */
+	public void computeTrigBasis(final double[] TimeValues, final double Omega, final double[] WorkArray,
+			final double[] CosValues, final double[] SinValues, final int SIZE) {
+
+		final VectorMath vectorMath = VectorMaths.get();
+		double SinSum = 0.0;
+		double CosSum = 0.0;
+
+		final double tempValue = 2.0 * Omega;
+
+		vectorMath.multiply(TimeValues, 0, tempValue, WorkArray, 0, SIZE);
+		vectorMath.cos(WorkArray, 0, CosValues, 0, SIZE);
+		vectorMath.sin(WorkArray, 0, SinValues, 0, SIZE);
+
+		for (int j = 0; j < SIZE; j++) {
+			SinSum = SinSum + SinValues[j];
+			CosSum = CosSum + CosValues[j];
+		}
+
+		final double Tau = -1.0 * FastMath.atan2(SinSum, CosSum) * 1.0 / (2.0 * Omega);
+
+		vectorMath.add(TimeValues, 0, Tau, CosValues, 0, SIZE);
+		vectorMath.multiply(CosValues, 0, Omega, WorkArray, 0, SIZE);
+
+		vectorMath.cos(WorkArray, 0, CosValues, 0, SIZE);
+		vectorMath.sin(WorkArray, 0, SinValues, 0, SIZE);
+	}
+}
@@ -0,0 +1,20 @@
+package org.thebubbleindex.math;
+
+/**
+ * PeriodogramPeak evaluates the largest value of the Lomb-Scargle periodogram
+ * of a series over the test frequencies. An instance is bound to the time
+ * values of one window and is shared by every date of that window.
+ * 
+ * @author thebubbleindex
+ */
+public interface PeriodogramPeak {
+
+	/**
+	 * peak calculates the largest value of the periodogram of the series
+	 * 
+	 * @param TimeSeries
+	 *            The series at the time values of the window
+	 * @return
+	 */
+	double peak(final double[] TimeSeries);
+}
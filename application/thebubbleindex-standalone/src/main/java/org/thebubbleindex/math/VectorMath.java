@@ -0,0 +1,66 @@
+package org.thebubbleindex.math;
+
+/**
+ * VectorMath is the element-wise array arithmetic used by the CPU
+ * calculation. Every method reads length elements of its inputs starting at
+ * the given offsets and writes length elements of its output. The output may
+ * be one of the inputs.
+ * <p>
+ * The backend of a run is chosen once at startup, see {@link VectorMaths}.
+ * 
+ * @author thebubbleindex
+ */
+public interface VectorMath {
+
+	/**
+	 * getName returns the name of the backend
+	 * 
+	 * @return
+	 */
+	String getName();
+
+	/**
+	 * add computes sum = x + y
+	 */
+	void add(final double[] x, final int xOffset, final double[] y, final int yOffset, final double[] sum,
+			final int sumOffset, final int length);
+
+	/**
+	 * add computes sum = x + y for a scalar y
+	 */
+	void add(final double[] x, final int xOffset, final double y, final double[] sum, final int sumOffset,
+			final int length);
+
+	/**
+	 * subtract computes difference = x - y
+	 */
+	void subtract(final double[] x, final int xOffset, final double[] y, final int yOffset,
+			final double[] difference, final int differenceOffset, final int length);
+
+	/**
+	 * multiply computes product = x * y
+	 */
+	void multiply(final double[] x, final int xOffset, final double[] y, final int yOffset, final double[] product,
+			final int productOffset, final int length);
+
+	/**
+	 * multiply computes product = x * y for a scalar y
+	 */
+	void multiply(final double[] x, final int xOffset, final double y, final double[] product,
+			final int productOffset, final int length);
+
+	/**
+	 * log computes y = log(x)
+	 */
+	void log(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length);
+
+	/**
+	 * cos computes y = cos(x)
+	 */
+	void cos(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length);
+
+	/**
+	 * sin computes y = sin(x)
+	 */
+	void sin(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length);
+}
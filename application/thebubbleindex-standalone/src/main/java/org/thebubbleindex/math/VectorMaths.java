@@ -0,0 +1,86 @@
+package org.thebubbleindex.math;
+
+import org.thebubbleindex.logging.Logs;
+
+/**
+ * VectorMaths selects the {@link VectorMath} backend of the application.
+ * <p>
+ * The backend is chosen with the system property vectormath, for example
+ * -Dvectormath=Java. Yeppp is the default. If the Yeppp native library fails
+ * to load the Java backend is used instead.
+ *
+ * @author thebubbleindex
+ */
+public class VectorMaths {
+
+	public enum Backend {
+		Yeppp, Java
+	}
+
+	public static final String PROPERTY = "vectormath";
+
+	private static volatile VectorMath vectorMath;
+
+	/**
+	 * get returns the backend of the application, selecting it on first use
+	 *
+	 * @return
+	 */
+	public static VectorMath get() {
+		VectorMath current = vectorMath;
+		if (current == null) {
+			synchronized (VectorMaths.class) {
+				current = vectorMath;
+				if (current == null) {
+					current = create(backendFromProperty());
+					Logs.myLogger.info("Using {} vector math backend.", current.getName());
+					vectorMath = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * set replaces the backend of the application
+	 *
+	 * @param backend
+	 */
+	public static void set(final Backend backend) {
+		vectorMath = create(backend);
+		Logs.myLogger.info("Using {} vector math backend.", vectorMath.getName());
+	}
+
+	/**
+	 * create returns a new instance of the backend. Yeppp falls back to Java
+	 * when its native library is not available.
+	 *
+	 * @param backend
+	 * @return
+	 */
+	public static VectorMath create(final Backend backend) {
+		if (backend == Backend.Yeppp) {
+			try {
+				final VectorMath yeppp = new YepppVectorMath();
+				final double[] probe = new double[] { 1.0 };
+				yeppp.log(probe, 0, probe, 0, 1);
+				return yeppp;
+			} catch (final LinkageError ex) {
+				Logs.myLogger.error("Failed to load Yeppp native library. Using Java vector math. {}", ex);
+			}
+		}
+		return new JavaVectorMath();
+	}
+
+	private static Backend backendFromProperty() {
+		final String property = System.getProperty(PROPERTY);
+		if (property != null) {
+			try {
+				return Backend.valueOf(property.trim());
+			} catch (final IllegalArgumentException ex) {
+				Logs.myLogger.error("Invalid {} property: {}. Using Yeppp. {}", PROPERTY, property, ex);
+			}
+		}
+		return Backend.Yeppp;
+	}
+}
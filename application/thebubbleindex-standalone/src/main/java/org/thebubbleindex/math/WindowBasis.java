@@ -0,0 +1,213 @@
+package org.thebubbleindex.math;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * WindowBasis holds every time dependent array of The Bubble Index
+ * calculation. These arrays depend only on the window, the critical time and
+ * the LombScargle grid (omega, m, H and Q), not on the date being calculated.
+ * A single instance is therefore built once per window and shared by every
+ * callable of the run.
+ * <p>
+ * The arrays are computed with exactly the same operations as the per date
+ * calculation they replace, so results are unchanged.
+ * <p>
+ * The time values, their powers and timePowerMH do not depend on omega. When
+ * several omega values are calculated for the same window, critical time and
+ * m, they can be taken from the basis of another omega.
+ * <p>
+ * The engine of the window is built on first use and kept with the basis, so
+ * every run which shares the basis, such as the runs of a cached basis, also
+ * shares its engine and cell bound.
+ *
+ * @author thebubbleindex
+ */
+public class WindowBasis {
+
+	public final int numberOfDays;
+	public final double tCritDouble;
+	public final double mCoeffDouble;
+
+	public final double[] TimeValues;
+	public final double[] TimeValues_M_Power;
+	public final double[] LogTimeValues;
+	public final double[] LogCosTimeValues;
+	public final double[] CosLogTimeValues;
+	public final double[] SinLogTimeValues;
+
+	/**
+	 * gFunction[i][k] = cOne[i] * cos(omega * log(t_k)) + cTwo[i] * sin(omega *
+	 * log(t_k))
+	 */
+	public final double[][] gFunction;
+
+	/**
+	 * timePowerMH[j][k] = t_k ^ (m - H[j])
+	 */
+	public final double[][] timePowerMH;
+
+	/**
+	 * Least squares operator of the fit with the design matrix (1,
+	 * TimeValues_M_Power, LogCosTimeValues)
+	 */
+	public final LinearFitOperator linearFitOperator;
+
+	private LombScargle engineLombScargle;
+	private HQDerivativeEngine engine;
+	private CellEnergyBound cellBound;
+	private LombScargle floatEngineLombScargle;
+	private FloatHQDerivativeEngine floatEngine;
+
+	/**
+	 * WindowBasis constructor
+	 *
+	 * @param lombScargle
+	 * @param numberOfDays
+	 * @param tCritDouble
+	 */
+	public WindowBasis(final LombScargle lombScargle, final int numberOfDays, final double tCritDouble) {
+		this(lombScargle, numberOfDays, tCritDouble, null);
+	}
+
+	/**
+	 * WindowBasis constructor which takes the omega independent arrays from
+	 * the basis of another omega with the same window, critical time, m and H
+	 * grid. The arrays are shared, not copied.
+	 *
+	 * @param lombScargle
+	 * @param omegaIndependentBasis
+	 */
+	public WindowBasis(final LombScargle lombScargle, final WindowBasis omegaIndependentBasis) {
+		this(lombScargle, omegaIndependentBasis.numberOfDays, omegaIndependentBasis.tCritDouble,
+				omegaIndependentBasis);
+	}
+
+	/**
+	 * estimateBytes returns the heap size of the arrays of a window basis of
+	 * the window: the time arrays, gFunction, timePowerMH and the three rows
+	 * of the linear fit operator in double and single precision. The engine
+	 * of the window is estimated by {@link LombScargle#estimateEngineBytes}.
+	 *
+	 * @param lombScargle
+	 * @param numberOfDays
+	 * @return
+	 */
+	public static long estimateBytes(final LombScargle lombScargle, final int numberOfDays) {
+		return 8L * numberOfDays * (lombScargle.qSize + lombScargle.hSize + 9) + 4L * 3 * numberOfDays;
+	}
+
+	private WindowBasis(final LombScargle lombScargle, final int numberOfDays, final double tCritDouble,
+			final WindowBasis shared) {
+		this.numberOfDays = numberOfDays;
+		this.tCritDouble = tCritDouble;
+		this.mCoeffDouble = lombScargle.mCoeffDouble;
+
+		final VectorMath vectorMath = VectorMaths.get();
+		final double omegaDouble = lombScargle.omegaDouble;
+
+		if (shared != null && (shared.mCoeffDouble != mCoeffDouble
+				|| shared.timePowerMH.length != lombScargle.hSize)) {
+			throw new IllegalArgumentException("Window basis of m = " + shared.mCoeffDouble + " and "
+					+ shared.timePowerMH.length + " H values cannot be shared with m = " + mCoeffDouble);
+		}
+
+		LogCosTimeValues = new double[numberOfDays];
+		CosLogTimeValues = new double[numberOfDays];
+		SinLogTimeValues = new double[numberOfDays];
+
+		if (shared != null) {
+			TimeValues = shared.TimeValues;
+			TimeValues_M_Power = shared.TimeValues_M_Power;
+			LogTimeValues = shared.LogTimeValues;
+		} else {
+			TimeValues = new double[numberOfDays];
+			TimeValues_M_Power = new double[numberOfDays];
+			LogTimeValues = new double[numberOfDays];
+
+			for (int k = 0; k < numberOfDays; k++) {
+				TimeValues[k] = numberOfDays + tCritDouble - k;
+				TimeValues_M_Power[k] = FastMath.pow(TimeValues[k], mCoeffDouble);
+			}
+
+			vectorMath.log(TimeValues, 0, LogTimeValues, 0, numberOfDays);
+		}
+
+		final double[] omegaLogTime = new double[numberOfDays];
+
+		vectorMath.multiply(LogTimeValues, 0, omegaDouble, omegaLogTime, 0, numberOfDays);
+		vectorMath.cos(omegaLogTime, 0, CosLogTimeValues, 0, numberOfDays);
+		vectorMath.sin(omegaLogTime, 0, SinLogTimeValues, 0, numberOfDays);
+		vectorMath.multiply(CosLogTimeValues, 0, TimeValues_M_Power, 0, LogCosTimeValues, 0, numberOfDays);
+
+		gFunction = new double[lombScargle.qSize][numberOfDays];
+
+		final double[] tempOne = new double[numberOfDays];
+		final double[] tempTwo = new double[numberOfDays];
+
+		for (int i = 0; i < lombScargle.qSize; i++) {
+			vectorMath.multiply(CosLogTimeValues, 0, lombScargle.cOne[i], tempOne, 0, numberOfDays);
+			vectorMath.multiply(SinLogTimeValues, 0, lombScargle.cTwo[i], tempTwo, 0, numberOfDays);
+			vectorMath.add(tempOne, 0, tempTwo, 0, gFunction[i], 0, numberOfDays);
+		}
+
+		if (shared != null) {
+			timePowerMH = shared.timePowerMH;
+		} else {
+			timePowerMH = new double[lombScargle.hSize][numberOfDays];
+
+			for (int j = 0; j < lombScargle.hSize; j++) {
+				final double exponent = mCoeffDouble - lombScargle.H[j];
+				for (int k = 0; k < numberOfDays; k++) {
+					timePowerMH[j][k] = FastMath.pow(TimeValues[k], exponent);
+				}
+			}
+		}
+
+		linearFitOperator = new LinearFitOperator(TimeValues_M_Power, LogCosTimeValues, numberOfDays);
+	}
+
+	/**
+	 * getEngine returns the H,Q derivative engine of the window for
+	 * lombScargle, with the cell bound of its pruning property, see
+	 * {@link LombScargle#createEngine}. The engine is built once and reused
+	 * while it is asked for with the same LombScargle.
+	 *
+	 * @param lombScargle
+	 * @return
+	 */
+	public synchronized HQDerivativeEngine getEngine(final LombScargle lombScargle) {
+		if (engineLombScargle != lombScargle) {
+			cellBound = lombScargle.pruning ? new CellEnergyBound(lombScargle, this) : null;
+			engine = lombScargle.createEngine(this, cellBound);
+			engineLombScargle = lombScargle;
+		}
+		return engine;
+	}
+
+	/**
+	 * getCellBound returns the cell bound of the engine which getEngine
+	 * returned last, or null if it does not prune
+	 *
+	 * @return
+	 */
+	public synchronized CellEnergyBound getCellBound() {
+		return cellBound;
+	}
+
+	/**
+	 * getFloatEngine returns the single precision H,Q derivative engine of
+	 * the window for lombScargle, see {@link LombScargle#createFloatEngine}.
+	 * The engine is built once and reused while it is asked for with the same
+	 * LombScargle.
+	 *
+	 * @param lombScargle
+	 * @return
+	 */
+	public synchronized FloatHQDerivativeEngine getFloatEngine(final LombScargle lombScargle) {
+		if (floatEngineLombScargle != lombScargle) {
+			floatEngine = lombScargle.createFloatEngine(this);
+			floatEngineLombScargle = lombScargle;
+		}
+		return floatEngine;
+	}
+}
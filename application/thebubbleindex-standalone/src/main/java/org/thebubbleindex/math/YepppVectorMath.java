@@ -0,0 +1,63 @@
+package org.thebubbleindex.math;
+
+import info.yeppp.Core;
+import info.yeppp.Math;
+
+/**
+ * YepppVectorMath delegates to the native Yeppp! library bundled in
+ * yeppp-bundle.jar.
+ * 
+ * @author thebubbleindex
+ */
+public class YepppVectorMath implements VectorMath {
+
+	@Override
+	public String getName() {
+		return "Yeppp";
+	}
+
+	@Override
+	public void add(final double[] x, final int xOffset, final double[] y, final int yOffset, final double[] sum,
+			final int sumOffset, final int length) {
+		Core.Add_V64fV64f_V64f(x, xOffset, y, yOffset, sum, sumOffset, length);
+	}
+
+	@Override
+	public void add(final double[] x, final int xOffset, final double y, final double[] sum, final int sumOffset,
+			final int length) {
+		Core.Add_V64fS64f_V64f(x, xOffset, y, sum, sumOffset, length);
+	}
+
+	@Override
+	public void subtract(final double[] x, final int xOffset, final double[] y, final int yOffset,
+			final double[] difference, final int differenceOffset, final int length) {
+		Core.Subtract_V64fV64f_V64f(x, xOffset, y, yOffset, difference, differenceOffset, length);
+	}
+
+	@Override
+	public void multiply(final double[] x, final int xOffset, final double[] y, final int yOffset,
+			final double[] product, final int productOffset, final int length) {
+		Core.Multiply_V64fV64f_V64f(x, xOffset, y, yOffset, product, productOffset, length);
+	}
+
+	@Override
+	public void multiply(final double[] x, final int xOffset, final double y, final double[] product,
+			final int productOffset, final int length) {
+		Core.Multiply_V64fS64f_V64f(x, xOffset, y, product, productOffset, length);
+	}
+
+	@Override
+	public void log(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length) {
+		Math.Log_V64f_V64f(x, xOffset, y, yOffset, length);
+	}
+
+	@Override
+	public void cos(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length) {
+		Math.Cos_V64f_V64f(x, xOffset, y, yOffset, length);
+	}
+
+	@Override
+	public void sin(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length) {
+		Math.Sin_V64f_V64f(x, xOffset, y, yOffset, length);
+	}
+}
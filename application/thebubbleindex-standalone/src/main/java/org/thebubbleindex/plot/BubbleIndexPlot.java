@@ -47,6 +47,7 @@ import org.jfree.ui.RectangleInsets;
 import org.thebubbleindex.exception.FailedToRunIndex;
 import org.thebubbleindex.inputs.Indices;
 import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.runnable.ResultStore;
 import org.thebubbleindex.runnable.RunContext;
 import org.thebubbleindex.swing.BubbleIndexWorker;
 import org.thebubbleindex.util.Utilities;
@@ -335,24 +336,30 @@ public class BubbleIndexPlot {
 					+ categoryName + indices.getFilePathSymbol() + selectionName + indices.getFilePathSymbol()
 					+ selectionName + Integer.toString(backtestDayLengths.get(i)) + "days.csv";
 
-			if (new File(previousFilePath).exists()) {
+			final boolean inResultStore = runContext.isResultStore() && ResultStore.readWindow(
+					indices.getUserDir() + "ProgramData" + indices.getFilePathSymbol() + categoryName
+							+ indices.getFilePathSymbol() + selectionName + indices.getFilePathSymbol(),
+					selectionName, backtestDayLengths.get(i), DateList, DataListDouble);
 
-				Logs.myLogger.info("Found previous file = {}", previousFilePath);
-				if (runContext.isGUI()) {
-					bubbleIndexWorker.publishText("Found previous file: " + previousFilePath);
-				} else {
-					System.out.println("Found previous file: " + previousFilePath);
-				}
-				try {
-					Utilities.ReadValues(previousFilePath, DataListString, DateList, true, true);
-				} catch (final FailedToRunIndex ex) {
+			if (inResultStore || new File(previousFilePath).exists()) {
+				if (!inResultStore) {
+					Logs.myLogger.info("Found previous file = {}", previousFilePath);
 					if (runContext.isGUI()) {
-						bubbleIndexWorker.publishText("Failed to read previous file: " + previousFilePath);
+						bubbleIndexWorker.publishText("Found previous file: " + previousFilePath);
 					} else {
-						System.out.println("Failed to read previous file: " + previousFilePath);
+						System.out.println("Found previous file: " + previousFilePath);
+					}
+					try {
+						Utilities.ReadValues(previousFilePath, DataListString, DateList, true, true);
+					} catch (final FailedToRunIndex ex) {
+						if (runContext.isGUI()) {
+							bubbleIndexWorker.publishText("Failed to read previous file: " + previousFilePath);
+						} else {
+							System.out.println("Failed to read previous file: " + previousFilePath);
+						}
 					}
+					listToDouble(DataListString, DataListDouble);
 				}
-				listToDouble(DataListString, DataListDouble);
 
 				final double stdWindowValue = getStandardValue(backtestDayLengths.get(i));
 
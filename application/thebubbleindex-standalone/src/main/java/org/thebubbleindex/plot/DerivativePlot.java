@@ -46,6 +46,7 @@ import org.jfree.ui.RectangleInsets;
 import org.thebubbleindex.exception.FailedToRunIndex;
 import org.thebubbleindex.inputs.Indices;
 import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.runnable.ResultStore;
 import org.thebubbleindex.runnable.RunContext;
 import org.thebubbleindex.swing.BubbleIndexWorker;
 import org.thebubbleindex.util.Utilities;
@@ -330,20 +331,27 @@ public class DerivativePlot {
 					+ categoryName + indices.getFilePathSymbol() + selectionName + indices.getFilePathSymbol()
 					+ selectionName + Integer.toString(backtestDayLengths.get(i)) + "days.csv";
 
-			if (new File(previousFilePath).exists()) {
-				Logs.myLogger.info("Found previous file = {}", previousFilePath);
-
-				try {
-					Utilities.ReadValues(previousFilePath, DataListString, DateList, true, true);
-				} catch (final FailedToRunIndex ex) {
-					if (runContext.isGUI()) {
-						bubbleIndexWorker.publishText("Failed to read previous file: " + previousFilePath);
-					} else {
-						System.out.println("Failed to read previous file: " + previousFilePath);
+			final boolean inResultStore = runContext.isResultStore() && ResultStore.readWindow(
+					indices.getUserDir() + "ProgramData" + indices.getFilePathSymbol() + categoryName
+							+ indices.getFilePathSymbol() + selectionName + indices.getFilePathSymbol(),
+					selectionName, backtestDayLengths.get(i), DateList, DataListDouble);
+
+			if (inResultStore || new File(previousFilePath).exists()) {
+				if (!inResultStore) {
+					Logs.myLogger.info("Found previous file = {}", previousFilePath);
+
+					try {
+						Utilities.ReadValues(previousFilePath, DataListString, DateList, true, true);
+					} catch (final FailedToRunIndex ex) {
+						if (runContext.isGUI()) {
+							bubbleIndexWorker.publishText("Failed to read previous file: " + previousFilePath);
+						} else {
+							System.out.println("Failed to read previous file: " + previousFilePath);
+						}
 					}
+					listToDouble(DataListString, DataListDouble);
 				}
 				DataListDeriv.add(0.0);
-				listToDouble(DataListString, DataListDouble);
 
 				for (int j = 1; j < DataListDouble.size(); j++) {
 					DataListDeriv.add(DataListDouble.get(j) / DataListDouble.get(j - 1) - 1.0);
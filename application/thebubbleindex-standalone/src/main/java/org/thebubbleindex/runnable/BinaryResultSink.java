@@ -0,0 +1,95 @@
+package org.thebubbleindex.runnable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * BinaryResultSink writes the values of a window run to a binary file: the
+ * int MAGIC and the int index of the date of the first value, followed by
+ * one big endian double per date. Every write is flushed, so the values of
+ * the completed dates can be read while the run continues. The values of a
+ * file are read back with read.
+ *
+ * @author thebubbleindex
+ */
+public class BinaryResultSink implements ResultSink {
+
+	/**
+	 * "BIX1"
+	 */
+	public static final int MAGIC = 0x42495831;
+
+	private final String filePath;
+	private DataOutputStream output;
+
+	/**
+	 * BinaryResultSink constructor
+	 *
+	 * @param filePath
+	 *            The file which is created or replaced
+	 */
+	public BinaryResultSink(final String filePath) {
+		this.filePath = filePath;
+	}
+
+	@Override
+	public void open(final int firstIndex) throws IOException {
+		output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath, false)));
+		output.writeInt(MAGIC);
+		output.writeInt(firstIndex);
+	}
+
+	@Override
+	public void write(final double[] values, final int offset, final int length) throws IOException {
+		for (int i = offset; i < offset + length; i++) {
+			output.writeDouble(values[i]);
+		}
+		output.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (output != null) {
+			output.close();
+			output = null;
+		}
+	}
+
+	/**
+	 * read returns the values of a binary result file. A value which was
+	 * only partly written is ignored.
+	 *
+	 * @param filePath
+	 * @return
+	 * @throws IOException
+	 *             if the file cannot be read or is not a binary result file
+	 */
+	public static MemoryResultSink read(final String filePath) throws IOException {
+		final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)));
+		try {
+			if (input.readInt() != MAGIC) {
+				throw new IOException(filePath + " is not a binary result file");
+			}
+			final MemoryResultSink memoryResultSink = new MemoryResultSink();
+			memoryResultSink.open(input.readInt());
+			while (true) {
+				final double value;
+				try {
+					value = input.readDouble();
+				} catch (final EOFException ex) {
+					break;
+				}
+				memoryResultSink.add(value);
+			}
+			return memoryResultSink;
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package org.thebubbleindex.runnable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.logging.Logs;
+
+/**
+ * CheckpointedWindow is the submitted CPU calculation of a window. Its dates
+ * are submitted to the compute scheduler as batches of CHECKPOINT_DATES
+ * dates, all at once so the pool does not wait between batches. The batches
+ * are collected in date order and written to the {@link ResultSink} of the
+ * window as they complete. If the window is journaled, each batch is first
+ * appended to its {@link ResultJournal}, so a killed run loses at most the
+ * batches which had not completed.
+ * <p>
+ * The values which were recovered from the journal are written to the sink
+ * when the window is submitted and their dates are not calculated again.
+ *
+ * @author thebubbleindex
+ */
+public class CheckpointedWindow {
+
+	public static final int CHECKPOINT_DATES = 256;
+
+	private final List<String> dailyPriceDate;
+	private final int window;
+	private final ResultSink resultSink;
+	private final RunContext runContext;
+	private final double[] batchValues = new double[CHECKPOINT_DATES];
+	private final List<ForkJoinTask<List<Double>>> batches = new ArrayList<ForkJoinTask<List<Double>>>();
+	private final int recoveredDates;
+	private ResultJournal resultJournal;
+	private int nextIndex;
+
+	/**
+	 * CheckpointedWindow constructor recovers the journal and submits the
+	 * remaining dates
+	 *
+	 * @param scheduler
+	 * @param callables
+	 *            The callables of the dates from startIndex in date order
+	 * @param startIndex
+	 * @param window
+	 * @param dailyPriceDate
+	 * @param resultJournal
+	 *            The journal of the window or null
+	 * @param resultSink
+	 * @param runContext
+	 * @throws IOException
+	 *             if the sink cannot be opened
+	 */
+	CheckpointedWindow(final ComputeScheduler scheduler, final List<Callable<Double>> callables, final int startIndex,
+			final int window, final List<String> dailyPriceDate, final ResultJournal resultJournal,
+			final ResultSink resultSink, final RunContext runContext) throws IOException {
+		this.dailyPriceDate = dailyPriceDate;
+		this.window = window;
+		this.resultSink = resultSink;
+		this.runContext = runContext;
+		this.resultJournal = resultJournal;
+
+		final List<Double> recovered = new ArrayList<Double>();
+		if (resultJournal != null) {
+			resultJournal.recover(dailyPriceDate, window, startIndex, recovered);
+		}
+		this.recoveredDates = Math.min(callables.size(), recovered.size());
+		this.nextIndex = startIndex;
+
+		try {
+			resultSink.open(startIndex);
+			for (int r = 0; r < recoveredDates; r += CHECKPOINT_DATES) {
+				write(recovered.subList(r, Math.min(recoveredDates, r + CHECKPOINT_DATES)));
+			}
+		} catch (final IOException ex) {
+			resultSink.close();
+			throw ex;
+		}
+
+		runContext.getProgress().addDates(callables.size() - recoveredDates);
+		for (int b = recoveredDates; b < callables.size(); b += CHECKPOINT_DATES) {
+			batches.add(scheduler.submit(callables.subList(b, Math.min(callables.size(), b + CHECKPOINT_DATES))));
+		}
+	}
+
+	/**
+	 * getRecoveredDates returns the number of dates which were recovered from
+	 * the journal
+	 *
+	 * @return
+	 */
+	public int getRecoveredDates() {
+		return recoveredDates;
+	}
+
+	/**
+	 * finish waits for every batch, journals it and writes its values to the
+	 * sink, then closes the sink. A batch which completes after the run was
+	 * stopped may hold the values of skipped dates, so it is not written and
+	 * the window fails.
+	 *
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws FailedToRunIndex
+	 */
+	public void finish() throws InterruptedException, ExecutionException, FailedToRunIndex {
+		try {
+			while (!batches.isEmpty()) {
+				final List<Double> values = batches.get(0).get();
+				if (runContext.isStop()) {
+					throw new FailedToRunIndex("Stopped window " + window + ". Completed dates are kept.");
+				}
+				journal(values);
+				write(values);
+				batches.remove(0);
+			}
+		} catch (final IOException ex) {
+			throw new FailedToRunIndex(ex);
+		} finally {
+			cancel();
+		}
+	}
+
+	/**
+	 * cancel cancels every batch which has not been collected and closes the
+	 * sink
+	 */
+	public void cancel() {
+		for (final ForkJoinTask<List<Double>> batch : batches) {
+			batch.cancel(false);
+		}
+		batches.clear();
+		try {
+			resultSink.close();
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to close the results of window {}. {}", window, ex);
+		}
+	}
+
+	private void write(final List<Double> values) throws IOException {
+		for (int i = 0; i < values.size(); i++) {
+			batchValues[i] = values.get(i);
+		}
+		resultSink.write(batchValues, 0, values.size());
+		nextIndex += values.size();
+	}
+
+	private void journal(final List<Double> values) {
+		if (resultJournal == null) {
+			return;
+		}
+		try {
+			resultJournal.append(dailyPriceDate, window, nextIndex, values);
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to append to journal {}. The window continues without checkpoints. {}",
+					resultJournal.getJournalPath(), ex);
+			resultJournal = null;
+		}
+	}
+}
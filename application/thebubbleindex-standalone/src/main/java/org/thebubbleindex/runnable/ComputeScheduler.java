@@ -0,0 +1,229 @@
+package org.thebubbleindex.runnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ComputeScheduler is the long lived thread pool of the application. It is
+ * owned by the {@link RunContext} and created once for its thread number, so
+ * runs, windows and updates reuse the same worker threads instead of creating
+ * a pool for every batch.
+ * <p>
+ * A list of callables is run as one fork/join task over its index range. The
+ * range is split in halves down to ranges of about 1 / SPLITS_PER_THREAD of
+ * a thread's share, and idle workers steal the unstarted halves, so there is
+ * no barrier between fixed size batches and a slow date does not hold up the
+ * rest of a batch.
+ * <p>
+ * Tasks which wait for the batches they submit, such as the coordination of
+ * a window, run on the coordinator threads instead of the pool, so a worker
+ * never blocks on other tasks of the pool and the pool only runs the
+ * callables. Blocking input and output, such as the downloads of an update,
+ * runs on the IO threads, so a slow connection does not hold a worker.
+ * <p>
+ * The workers, coordinators and IO threads are daemon threads and need not be
+ * shut down on exit.
+ *
+ * @author thebubbleindex
+ */
+public class ComputeScheduler {
+
+	static final int SPLITS_PER_THREAD = 8;
+
+	private final ForkJoinPool pool;
+	private final ExecutorService coordinator;
+	private ExecutorService io;
+
+	/**
+	 * ComputeScheduler constructor
+	 *
+	 * @param threadNumber
+	 */
+	public ComputeScheduler(final int threadNumber) {
+		pool = new ForkJoinPool(Math.max(1, threadNumber));
+		coordinator = Executors.newFixedThreadPool(pool.getParallelism(), daemonThreads("compute-coordinator-"));
+	}
+
+	/**
+	 * getParallelism returns the number of worker threads
+	 *
+	 * @return
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * getExecutor returns the pool as an execution service, for tasks which
+	 * are submitted one by one
+	 *
+	 * @return
+	 */
+	public ExecutorService getExecutor() {
+		return pool;
+	}
+
+	/**
+	 * getCoordinator returns the coordinator threads as an execution service,
+	 * one per worker of the pool, for tasks which submit callables to the
+	 * pool and wait for them
+	 *
+	 * @return
+	 */
+	public ExecutorService getCoordinator() {
+		return coordinator;
+	}
+
+	/**
+	 * getIO returns the IO threads as an execution service, one per worker of
+	 * the pool, for tasks which block on input and output. They are created on
+	 * first use.
+	 *
+	 * @return
+	 */
+	public synchronized ExecutorService getIO() {
+		if (io == null) {
+			io = Executors.newFixedThreadPool(pool.getParallelism(), daemonThreads("compute-io-"));
+		}
+		return io;
+	}
+
+	/**
+	 * submit starts the callables as one work stealing task. The result of
+	 * the task is the list of their values in the order of the callables.
+	 *
+	 * @param callables
+	 * @return
+	 */
+	public <T> ForkJoinTask<List<T>> submit(final List<? extends Callable<T>> callables) {
+		final int grain = Math.max(1, callables.size() / (SPLITS_PER_THREAD * pool.getParallelism()));
+		return pool.submit(new CallableRange<T>(callables, grain));
+	}
+
+	/**
+	 * invokeAll runs the callables as one work stealing task and returns their
+	 * values in the order of the callables
+	 *
+	 * @param callables
+	 * @return
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             If any callable throws, with the first exception as cause
+	 */
+	public <T> List<T> invokeAll(final List<? extends Callable<T>> callables)
+			throws InterruptedException, ExecutionException {
+		return submit(callables).get();
+	}
+
+	/**
+	 * shutdown lets the submitted tasks finish and stops the workers
+	 */
+	public synchronized void shutdown() {
+		coordinator.shutdown();
+		if (io != null) {
+			io.shutdown();
+		}
+		pool.shutdown();
+	}
+
+	private static ThreadFactory daemonThreads(final String prefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger threads = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, prefix + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * CallableRange computes every callable of the list and returns their
+	 * values. The values are written by the range tasks into one shared
+	 * array; join makes the writes visible to the caller.
+	 */
+	private static class CallableRange<T> extends ForkJoinTask<List<T>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends Callable<T>> callables;
+		private final int grain;
+		private final Object[] values;
+		private List<T> result;
+
+		CallableRange(final List<? extends Callable<T>> callables, final int grain) {
+			this.callables = callables;
+			this.grain = grain;
+			this.values = new Object[callables.size()];
+		}
+
+		@Override
+		public List<T> getRawResult() {
+			return result;
+		}
+
+		@Override
+		protected void setRawResult(final List<T> value) {
+			result = value;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		protected boolean exec() {
+			new Split(0, callables.size()).invoke();
+			final List<T> list = new ArrayList<T>(values.length);
+			for (final Object value : values) {
+				list.add((T) value);
+			}
+			result = list;
+			Arrays.fill(values, null);
+			return true;
+		}
+
+		/**
+		 * Split computes the callables of the index range [start, end)
+		 */
+		private class Split extends RecursiveAction {
+
+			private static final long serialVersionUID = 1L;
+
+			private final int start;
+			private final int end;
+
+			Split(final int start, final int end) {
+				this.start = start;
+				this.end = end;
+			}
+
+			@Override
+			protected void compute() {
+				if (end - start <= grain) {
+					for (int i = start; i < end; i++) {
+						try {
+							values[i] = callables.get(i).call();
+						} catch (final RuntimeException ex) {
+							throw ex;
+						} catch (final Exception ex) {
+							throw new RuntimeException(ex);
+						}
+					}
+				} else {
+					final int middle = (start + end) >>> 1;
+					invokeAll(new Split(start, middle), new Split(middle, end));
+				}
+			}
+		}
+	}
+}
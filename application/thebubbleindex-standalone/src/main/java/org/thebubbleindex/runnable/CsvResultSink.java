@@ -0,0 +1,172 @@
+package org.thebubbleindex.runnable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.util.Utilities;
+
+/**
+ * CsvResultSink streams the values of a window run to its output file, in
+ * the format of Utilities.WriteCSV. A new file starts with the header and an
+ * existing file is appended to. The rows of every write are flushed, so the
+ * output of the completed dates can be read while the run continues; a
+ * durable sink also syncs them to disk, which makes the output file its own
+ * checkpoint.
+ *
+ * @author thebubbleindex
+ */
+public class CsvResultSink implements ResultSink {
+
+	private final String filePath;
+	private final List<String> dailyPriceDate;
+	private final int window;
+	private final boolean durable;
+
+	private FileOutputStream stream;
+	private Writer writer;
+	private int nextIndex;
+	private int rows;
+
+	/**
+	 * CsvResultSink constructor
+	 *
+	 * @param filePath
+	 *            The output file
+	 * @param dailyPriceDate
+	 * @param window
+	 * @param durable
+	 *            Sync every write to disk
+	 */
+	public CsvResultSink(final String filePath, final List<String> dailyPriceDate, final int window,
+			final boolean durable) {
+		this.filePath = filePath;
+		this.dailyPriceDate = dailyPriceDate;
+		this.window = window;
+		this.durable = durable;
+	}
+
+	@Override
+	public void open(final int firstIndex) throws IOException {
+		final File file = new File(filePath);
+		if (file.exists()) {
+			truncateTornLine(filePath);
+		}
+		final boolean append = file.exists() && file.length() > 0;
+		stream = new FileOutputStream(file, append);
+		writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+		if (!append) {
+			Utilities.addHeader(writer);
+		}
+		nextIndex = firstIndex;
+	}
+
+	@Override
+	public void write(final double[] values, final int offset, final int length) throws IOException {
+		for (int i = offset; i < offset + length; i++) {
+			writer.append(Integer.toString(nextIndex + 1));
+			writer.append(',');
+			writer.append(String.valueOf(values[i]));
+			writer.append(',');
+			writer.append(dailyPriceDate.get(nextIndex + window));
+			writer.append('\n');
+			nextIndex++;
+		}
+		writer.flush();
+		if (durable) {
+			stream.getFD().sync();
+		}
+		rows += length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+			writer = null;
+		}
+	}
+
+	/**
+	 * getRows returns the number of rows which have been written
+	 *
+	 * @return
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * truncateRows keeps the header and the first rows rows of an output
+	 * file and removes the rest
+	 *
+	 * @param filePath
+	 * @param rows
+	 * @throws IOException
+	 */
+	public static void truncateRows(final String filePath, final int rows) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(filePath, "rw");
+		try {
+			final byte[] buffer = new byte[8192];
+			long position = 0;
+			int lines = 0;
+			int read;
+			while (lines <= rows && (read = file.read(buffer)) > 0) {
+				for (int i = 0; i < read && lines <= rows; i++) {
+					if (buffer[i] == '\n') {
+						lines++;
+						if (lines > rows) {
+							file.setLength(position + i + 1);
+						}
+					}
+				}
+				position += read;
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * truncateTornLine removes the last line of a file if it does not end
+	 * with a new line, such as a row which was being written when the run
+	 * was killed
+	 *
+	 * @param filePath
+	 */
+	public static void truncateTornLine(final String filePath) {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(filePath, "rw");
+			long length = file.length();
+			while (length > 0) {
+				file.seek(length - 1);
+				if (file.read() == '\n') {
+					break;
+				}
+				length--;
+			}
+			if (length < file.length()) {
+				Logs.myLogger.info("Truncating torn last line of {}.", filePath);
+				file.setLength(length);
+			}
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to check last line of {}. {}", filePath, ex);
+		} finally {
+			if (file != null) {
+				try {
+					file.close();
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to close {}. {}", filePath, ex);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package org.thebubbleindex.runnable;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MemoryResultSink keeps the values of a run in a primitive buffer which
+ * grows as they are written.
+ *
+ * @author thebubbleindex
+ */
+public class MemoryResultSink implements ResultSink {
+
+	private double[] values;
+	private int size;
+	private int firstIndex;
+
+	public MemoryResultSink() {
+		this(256);
+	}
+
+	/**
+	 * MemoryResultSink constructor
+	 *
+	 * @param capacity
+	 *            The expected number of values
+	 */
+	public MemoryResultSink(final int capacity) {
+		this.values = new double[Math.max(16, capacity)];
+	}
+
+	@Override
+	public void open(final int firstIndex) {
+		this.firstIndex = firstIndex;
+	}
+
+	@Override
+	public void write(final double[] values, final int offset, final int length) {
+		ensureCapacity(size + length);
+		System.arraycopy(values, offset, this.values, size, length);
+		size += length;
+	}
+
+	/**
+	 * add appends one value
+	 *
+	 * @param value
+	 */
+	public void add(final double value) {
+		ensureCapacity(size + 1);
+		values[size++] = value;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * clear discards the values
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	public int getFirstIndex() {
+		return firstIndex;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public double get(final int i) {
+		if (i >= size) {
+			throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+		}
+		return values[i];
+	}
+
+	/**
+	 * toArray returns a copy of the values
+	 *
+	 * @return
+	 */
+	public double[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * asList returns a read only view of the values
+	 *
+	 * @return
+	 */
+	public List<Double> asList() {
+		return new AbstractList<Double>() {
+			@Override
+			public Double get(final int i) {
+				return MemoryResultSink.this.get(i);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * writeTo writes the values to another sink, such as an output file, and
+	 * closes it
+	 *
+	 * @param resultSink
+	 * @throws IOException
+	 */
+	public void writeTo(final ResultSink resultSink) throws IOException {
+		try {
+			resultSink.open(firstIndex);
+			resultSink.write(values, 0, size);
+		} finally {
+			resultSink.close();
+		}
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if (capacity > values.length) {
+			values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+		}
+	}
+}
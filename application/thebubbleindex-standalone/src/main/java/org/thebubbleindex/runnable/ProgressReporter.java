@@ -0,0 +1,255 @@
+package org.thebubbleindex.runnable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.thebubbleindex.driver.JobCostModel;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.util.Utilities;
+
+/**
+ * ProgressReporter counts the dates which are calculated by the runs of a
+ * {@link RunContext} and reports them from one thread at a fixed interval,
+ * instead of every worker formatting and printing a line per date.
+ * <p>
+ * The workers only add to lock free counters. Every interval the reporter
+ * thread displays the number of completed dates, the throughput and the
+ * estimated time remaining. If date lines are on, it also displays the line
+ * of one date which completed since the previous report, so the output is
+ * sampled rather than one line per date. The counts start again once every
+ * added date has completed, or when the run is reset.
+ * <p>
+ * The reporter thread is a daemon thread which is started when the first
+ * dates are added.
+ *
+ * @author thebubbleindex
+ */
+public class ProgressReporter {
+
+	public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+	private static final double RATE_SMOOTHING = 0.3;
+
+	private final RunContext runContext;
+	private final LongAdder completedDates = new LongAdder();
+	private final AtomicLong totalDates = new AtomicLong();
+	private final AtomicBoolean dateLineRequested = new AtomicBoolean(true);
+	private volatile DateLine dateLine;
+	private volatile boolean dateLines = true;
+	private volatile long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+	private Thread reporter;
+
+	// state of the reports, guarded by this
+	private long baseCompleted;
+	private long baseTotal;
+	private long lastCompleted;
+	private long lastNanos;
+	private double rate;
+
+	/**
+	 * ProgressReporter constructor
+	 *
+	 * @param runContext
+	 *            The context whose output displays the reports
+	 */
+	public ProgressReporter(final RunContext runContext) {
+		this.runContext = runContext;
+	}
+
+	/**
+	 * addDates adds dates which are about to be calculated and starts the
+	 * reporter thread if it is not running
+	 *
+	 * @param dates
+	 */
+	public void addDates(final int dates) {
+		totalDates.addAndGet(dates);
+		start();
+	}
+
+	/**
+	 * dateCompleted counts a calculated date. It is called by the workers and
+	 * formats nothing; the date is only kept if the reporter has asked for a
+	 * sample since it was last kept.
+	 *
+	 * @param selectionName
+	 * @param date
+	 * @param value
+	 * @param window
+	 */
+	public void dateCompleted(final String selectionName, final String date, final double value, final int window) {
+		completedDates.increment();
+		if (dateLines && dateLineRequested.get() && dateLineRequested.compareAndSet(true, false)) {
+			dateLine = new DateLine(selectionName, date, value, window);
+		}
+	}
+
+	/**
+	 * report returns the lines of a report: the progress of the run if any
+	 * date has completed since the previous report, and the line of a sampled
+	 * date. It is called by the reporter thread.
+	 *
+	 * @return
+	 */
+	public synchronized List<String> report() {
+		final List<String> lines = new ArrayList<String>(2);
+		final DateLine sample = dateLine;
+		dateLine = null;
+		dateLineRequested.set(true);
+		if (sample != null) {
+			lines.add(String.format("Name: %s    Date: %s    Value: %15.2f    Window: %d", sample.selectionName,
+					sample.date, sample.value, sample.window));
+		}
+
+		// completed dates never exceed the total dates which were read after
+		// them
+		final long completed = completedDates.sum();
+		final long total = totalDates.get();
+		final long now = System.nanoTime();
+		if (completed == lastCompleted) {
+			lastNanos = now;
+			return lines;
+		}
+
+		final double intervalRate = (completed - lastCompleted) * 1.0E9 / Math.max(1L, now - lastNanos);
+		rate = rate == 0.0 ? intervalRate : RATE_SMOOTHING * intervalRate + (1.0 - RATE_SMOOTHING) * rate;
+		lastCompleted = completed;
+		lastNanos = now;
+
+		final long runTotal = total - baseTotal;
+		if (runTotal <= 0) {
+			// dates of a run which was reset
+			restart(completed, total);
+			return lines;
+		}
+		final long runCompleted = Math.min(completed - baseCompleted, runTotal);
+		final StringBuilder line = new StringBuilder("Progress: ");
+		line.append(runCompleted).append(" of ").append(runTotal).append(" dates");
+		if (rate > 0.0) {
+			line.append(", ").append(Math.round(rate)).append(" dates/s");
+		}
+		if (runCompleted < runTotal) {
+			if (rate > 0.0) {
+				line.append(", about ")
+						.append(JobCostModel.formatDuration((long) ((runTotal - runCompleted) * 1.0E9 / rate)))
+						.append(" remaining");
+			}
+		} else {
+			line.append(", done");
+			restart(completed, total);
+		}
+		line.append('.');
+		lines.add(line.toString());
+		return lines;
+	}
+
+	/**
+	 * reset starts the counts of a new run. Dates of a stopped run which
+	 * never complete are no longer counted as remaining.
+	 */
+	public synchronized void reset() {
+		restart(completedDates.sum(), totalDates.get());
+		lastCompleted = baseCompleted;
+		dateLine = null;
+	}
+
+	/**
+	 * stop displays a last report and stops the reporter thread. It is
+	 * started again when dates are added.
+	 */
+	public void stop() {
+		final Thread thread;
+		synchronized (this) {
+			thread = reporter;
+			reporter = null;
+		}
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (final InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			display(report());
+		}
+	}
+
+	public long getCompletedDates() {
+		return completedDates.sum();
+	}
+
+	public long getTotalDates() {
+		return totalDates.get();
+	}
+
+	public boolean isDateLines() {
+		return dateLines;
+	}
+
+	/**
+	 * setDateLines turns the sampled date lines on or off
+	 *
+	 * @param dateLines
+	 */
+	public void setDateLines(final boolean dateLines) {
+		this.dateLines = dateLines;
+	}
+
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+	public void setIntervalMillis(final long intervalMillis) {
+		this.intervalMillis = Math.max(1L, intervalMillis);
+	}
+
+	private void restart(final long completed, final long total) {
+		baseCompleted = completed;
+		baseTotal = total;
+		rate = 0.0;
+	}
+
+	private synchronized void start() {
+		if (reporter != null) {
+			return;
+		}
+		lastNanos = System.nanoTime();
+		reporter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (!Thread.currentThread().isInterrupted()) {
+						Thread.sleep(intervalMillis);
+						display(report());
+					}
+				} catch (final InterruptedException ex) {
+					Logs.myLogger.debug("Progress reporter stopped.");
+				}
+			}
+		}, "progress-reporter");
+		reporter.setDaemon(true);
+		reporter.start();
+	}
+
+	private void display(final List<String> lines) {
+		for (final String line : lines) {
+			Utilities.displayOutput(runContext, line, false);
+		}
+	}
+
+	private static class DateLine {
+		final String selectionName;
+		final String date;
+		final double value;
+		final int window;
+
+		DateLine(final String selectionName, final String date, final double value, final int window) {
+			this.selectionName = selectionName;
+			this.date = date;
+			this.value = value;
+			this.window = window;
+		}
+	}
+}
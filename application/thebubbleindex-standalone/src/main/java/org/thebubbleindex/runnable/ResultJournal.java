@@ -0,0 +1,191 @@
+package org.thebubbleindex.runnable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.thebubbleindex.logging.Logs;
+
+/**
+ * ResultJournal is the checkpoint of a window run which has not been written
+ * to its output file yet. It is an append only file beside the output file,
+ * such as BITSTAMPUSD52days.journal for BITSTAMPUSD52days.csv, with one line
+ * per calculated date in the format of the output file: period number, value
+ * and date.
+ * <p>
+ * Every batch of dates is appended and synced to disk as it completes. A run
+ * which is restarted after it was killed recovers the values of the journal
+ * which continue its output file and only calculates the remaining dates. A
+ * line which was torn by the kill, or which does not continue the output
+ * file, ends the recovery and is truncated. The journal is deleted once the
+ * output file has been written.
+ *
+ * @author thebubbleindex
+ */
+public class ResultJournal {
+
+	static final String EXTENSION = ".journal";
+
+	private final String journalPath;
+
+	/**
+	 * ResultJournal constructor
+	 *
+	 * @param outputFilePath
+	 *            The path of the output file of the window
+	 */
+	public ResultJournal(final String outputFilePath) {
+		this.journalPath = journalPath(outputFilePath);
+	}
+
+	/**
+	 * journalPath returns the path of the journal of an output file
+	 *
+	 * @param outputFilePath
+	 * @return
+	 */
+	public static String journalPath(final String outputFilePath) {
+		final String base = outputFilePath.endsWith(".csv")
+				? outputFilePath.substring(0, outputFilePath.length() - ".csv".length()) : outputFilePath;
+		return base + EXTENSION;
+	}
+
+	public String getJournalPath() {
+		return journalPath;
+	}
+
+	public boolean exists() {
+		return new File(journalPath).exists();
+	}
+
+	/**
+	 * recover adds the journaled values which continue the output file to
+	 * results and returns their number. The lines after the last recovered
+	 * value are truncated, and a journal without any is deleted.
+	 *
+	 * @param dailyPriceDate
+	 * @param window
+	 * @param startIndex
+	 *            The index of the first date which is not in the output file
+	 * @param results
+	 * @return
+	 */
+	public int recover(final List<String> dailyPriceDate, final int window, final int startIndex,
+			final List<Double> results) {
+		final File file = new File(journalPath);
+		if (!file.exists()) {
+			return 0;
+		}
+
+		final String text;
+		try {
+			text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to read journal {}. {}", journalPath, ex);
+			delete();
+			return 0;
+		}
+
+		final List<Double> values = new ArrayList<Double>();
+		int recoveredLength = 0;
+		int lineStart = 0;
+		int lineEnd;
+		while ((lineEnd = text.indexOf('\n', lineStart)) >= 0) {
+			final int j = startIndex + values.size();
+			if (j + window >= dailyPriceDate.size()) {
+				break;
+			}
+			final String[] fields = text.substring(lineStart, lineEnd).split(",");
+			if (fields.length != 3 || !fields[2].equals(dailyPriceDate.get(j + window))) {
+				break;
+			}
+			try {
+				if (Integer.parseInt(fields[0]) != j + 1) {
+					break;
+				}
+				values.add(Double.parseDouble(fields[1]));
+			} catch (final NumberFormatException ex) {
+				break;
+			}
+			lineStart = lineEnd + 1;
+			recoveredLength = lineStart;
+		}
+
+		if (values.isEmpty()) {
+			Logs.myLogger.info("Journal {} does not continue the output file. Deleting it.", journalPath);
+			delete();
+			return 0;
+		}
+		if (recoveredLength < text.length()) {
+			truncate(recoveredLength);
+		}
+		Logs.myLogger.info("Recovered {} dates from journal {}.", values.size(), journalPath);
+		results.addAll(values);
+		return values.size();
+	}
+
+	/**
+	 * append writes the values of a batch of dates to the journal and syncs
+	 * it to disk
+	 *
+	 * @param dailyPriceDate
+	 * @param window
+	 * @param firstIndex
+	 *            The index of the date of the first value
+	 * @param values
+	 * @throws IOException
+	 */
+	public void append(final List<String> dailyPriceDate, final int window, final int firstIndex,
+			final List<Double> values) throws IOException {
+		final StringBuilder lines = new StringBuilder(values.size() * 40);
+		for (int i = 0; i < values.size(); i++) {
+			final int j = firstIndex + i;
+			lines.append(j + 1).append(',').append(String.valueOf(values.get(i))).append(',')
+					.append(dailyPriceDate.get(j + window)).append('\n');
+		}
+
+		final FileOutputStream output = new FileOutputStream(journalPath, true);
+		try {
+			output.write(lines.toString().getBytes(StandardCharsets.US_ASCII));
+			output.flush();
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * delete deletes the journal if it exists
+	 */
+	public void delete() {
+		try {
+			Files.deleteIfExists(new File(journalPath).toPath());
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to delete journal {}. {}", journalPath, ex);
+		}
+	}
+
+	private void truncate(final long length) {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(journalPath, "rw");
+			file.getChannel().truncate(length);
+			file.getFD().sync();
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to truncate journal {}. {}", journalPath, ex);
+		} finally {
+			if (file != null) {
+				try {
+					file.close();
+				} catch (final IOException ex) {
+					Logs.myLogger.error("Failed to close journal {}. {}", journalPath, ex);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package org.thebubbleindex.runnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.VectorMaths;
+
+/**
+ * ResultManifest records what the output file of a window was calculated
+ * from, beside the output file, such as BITSTAMPUSD52days.manifest for
+ * BITSTAMPUSD52days.csv: a SHA-256 key of the parameters, see
+ * {@link #parametersKey}, and the SHA-256 of every block of BLOCK_DATES
+ * daily dates and prices.
+ * <p>
+ * The value of a date only depends on the parameters and the prices of its
+ * window, so before a window is run the rows of its output file are checked
+ * against the manifest. If the parameters changed, no row is valid. If a
+ * price or date of the history was revised, the rows whose window reaches
+ * the first revised block are no longer valid and are calculated again, and
+ * the rows before them are kept. Prices which were only appended invalidate
+ * nothing. The manifest is then written for the current prices as soon as
+ * the output file exists: before the window is calculated if the file has
+ * rows, or else once its first rows were written, so no manifest is left
+ * for an output file which is never created.
+ * <p>
+ * An output file without a manifest, written by an older version, is
+ * trusted as before.
+ *
+ * @author thebubbleindex
+ */
+public class ResultManifest {
+
+	public static final int BLOCK_DATES = 64;
+	static final String EXTENSION = ".manifest";
+	static final String VERSION = "manifest 1";
+
+	private final String outputFilePath;
+	private final String manifestPath;
+	private boolean changed;
+
+	// the manifest which update keeps until the output file exists
+	private String pendingKey;
+	private List<String> pendingDates;
+	private double[] pendingValues;
+	private int pendingDataSize;
+
+	/**
+	 * ResultManifest constructor
+	 *
+	 * @param outputFilePath
+	 *            The path of the output file of the window
+	 */
+	public ResultManifest(final String outputFilePath) {
+		this.outputFilePath = outputFilePath;
+		final String base = outputFilePath.endsWith(".csv")
+				? outputFilePath.substring(0, outputFilePath.length() - ".csv".length()) : outputFilePath;
+		this.manifestPath = base + EXTENSION;
+	}
+
+	public String getManifestPath() {
+		return manifestPath;
+	}
+
+	public boolean exists() {
+		return new File(manifestPath).exists();
+	}
+
+	/**
+	 * isChanged returns true if validRows found changed parameters or revised
+	 * prices, rather than only appended prices
+	 *
+	 * @return
+	 */
+	public boolean isChanged() {
+		return changed;
+	}
+
+	/**
+	 * parametersKey returns the key of the parameters which the values of a
+	 * window depend on: the window, omega, M, critical time, the LombScargle
+	 * grid sizes and evaluation settings, where the window is calculated and
+	 * the vector math backend. Settings which leave the values unchanged, such
+	 * as pruning, are left out.
+	 *
+	 * @param window
+	 * @param omega
+	 * @param mCoeff
+	 * @param tCrit
+	 * @param lombScargle
+	 * @param calculation
+	 *            GPU, or the precision of the CPU calculation
+	 * @return
+	 */
+	public static String parametersKey(final int window, final double omega, final double mCoeff,
+			final double tCrit, final LombScargle lombScargle, final String calculation) {
+		final String parameters = VERSION + "\t" + window + "\t" + omega + "\t" + mCoeff + "\t" + tCrit + "\t"
+				+ lombScargle.freqSize + "\t" + lombScargle.qSize + "\t" + lombScargle.hSize + "\t"
+				+ lombScargle.engine + "\t" + lombScargle.trigEvaluation + "\t" + lombScargle.reanchorInterval
+				+ "\t" + lombScargle.periodogram + "\t" + lombScargle.frequencySearch + "\t"
+				+ lombScargle.coarseStep + "\t" + lombScargle.refinedPeaks + "\t" + lombScargle.batchFit + "\t"
+				+ calculation + "\t" + VectorMaths.get().getName();
+		final MessageDigest digest = sha256();
+		return hex(digest.digest(parameters.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * validRows returns the number of leading rows of the output file which
+	 * are still valid for the parameters and prices, or -1 if there is no
+	 * manifest
+	 *
+	 * @param parametersKey
+	 * @param dailyPriceDate
+	 * @param dailyPriceValues
+	 * @param dataSize
+	 * @param window
+	 * @return
+	 */
+	public int validRows(final String parametersKey, final List<String> dailyPriceDate,
+			final double[] dailyPriceValues, final int dataSize, final int window) {
+		changed = false;
+		if (!exists()) {
+			return -1;
+		}
+
+		final List<String> lines;
+		try {
+			lines = Files.readAllLines(new File(manifestPath).toPath(), StandardCharsets.US_ASCII);
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to read manifest {}. {}", manifestPath, ex);
+			return -1;
+		}
+		if (lines.size() < 4 || !lines.get(0).equals(VERSION) || !lines.get(2).startsWith("dates\t")) {
+			Logs.myLogger.error("Manifest {} is invalid. Ignoring it.", manifestPath);
+			return -1;
+		}
+		if (!lines.get(1).equals("parameters\t" + parametersKey)) {
+			Logs.myLogger.info("Parameters of {} changed.", manifestPath);
+			changed = true;
+			return 0;
+		}
+
+		final int dates;
+		try {
+			dates = Integer.parseInt(lines.get(2).substring("dates\t".length()));
+		} catch (final NumberFormatException ex) {
+			Logs.myLogger.error("Manifest {} is invalid. Ignoring it.", manifestPath);
+			return -1;
+		}
+
+		// the first date of a block which differs, or dates if none does
+		int revised = dates;
+		final MessageDigest digest = sha256();
+		for (int from = 0; from < dates; from += BLOCK_DATES) {
+			final int to = Math.min(dates, from + BLOCK_DATES);
+			final int line = 3 + from / BLOCK_DATES;
+			if (to > dataSize || line >= lines.size()
+					|| !lines.get(line).equals(blockHash(digest, dailyPriceDate, dailyPriceValues, from, to))) {
+				revised = from;
+				break;
+			}
+		}
+		if (revised < dates) {
+			changed = true;
+			Logs.myLogger.info("Prices of {} were revised from date {}.", manifestPath,
+					revised < dataSize ? dailyPriceDate.get(revised) : revised);
+		}
+		return Math.max(0, revised - window);
+	}
+
+	/**
+	 * write replaces the manifest with the parameters and the current prices
+	 *
+	 * @param parametersKey
+	 * @param dailyPriceDate
+	 * @param dailyPriceValues
+	 * @param dataSize
+	 * @throws IOException
+	 */
+	public void write(final String parametersKey, final List<String> dailyPriceDate, final double[] dailyPriceValues,
+			final int dataSize) throws IOException {
+		final List<String> lines = new ArrayList<String>(3 + dataSize / BLOCK_DATES + 1);
+		lines.add(VERSION);
+		lines.add("parameters\t" + parametersKey);
+		lines.add("dates\t" + dataSize);
+		final MessageDigest digest = sha256();
+		for (int from = 0; from < dataSize; from += BLOCK_DATES) {
+			lines.add(blockHash(digest, dailyPriceDate, dailyPriceValues, from,
+					Math.min(dataSize, from + BLOCK_DATES)));
+		}
+
+		final File temporary = new File(manifestPath + ".tmp");
+		Files.write(temporary.toPath(), lines, StandardCharsets.US_ASCII);
+		Files.move(temporary.toPath(), new File(manifestPath).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * update writes the manifest for the parameters and the current prices if
+	 * the output file exists, or keeps it until writePending is called once
+	 * the first rows of the output file were written
+	 *
+	 * @param parametersKey
+	 * @param dailyPriceDate
+	 * @param dailyPriceValues
+	 * @param dataSize
+	 */
+	public void update(final String parametersKey, final List<String> dailyPriceDate,
+			final double[] dailyPriceValues, final int dataSize) {
+		pendingKey = parametersKey;
+		pendingDates = dailyPriceDate;
+		pendingValues = dailyPriceValues;
+		pendingDataSize = dataSize;
+		writePending();
+	}
+
+	/**
+	 * writePending writes the manifest which update kept, if the output file
+	 * exists now. A manifest which fails to be written is deleted, so the
+	 * output file is trusted like one of an older version rather than checked
+	 * against stale prices.
+	 */
+	public void writePending() {
+		if (pendingKey == null || !new File(outputFilePath).exists()) {
+			return;
+		}
+		try {
+			write(pendingKey, pendingDates, pendingValues, pendingDataSize);
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to write manifest {}. {}", manifestPath, ex);
+			delete();
+		}
+		pendingKey = null;
+		pendingDates = null;
+		pendingValues = null;
+	}
+
+	/**
+	 * delete deletes the manifest if it exists
+	 */
+	public void delete() {
+		try {
+			Files.deleteIfExists(new File(manifestPath).toPath());
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to delete manifest {}. {}", manifestPath, ex);
+		}
+	}
+
+	private static String blockHash(final MessageDigest digest, final List<String> dailyPriceDate,
+			final double[] dailyPriceValues, final int from, final int to) {
+		final ByteBuffer price = ByteBuffer.allocate(8);
+		digest.reset();
+		for (int i = from; i < to; i++) {
+			digest.update(dailyPriceDate.get(i).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '\t');
+			price.clear();
+			price.putLong(Double.doubleToLongBits(dailyPriceValues[i]));
+			digest.update(price.array());
+		}
+		return hex(digest.digest());
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static String hex(final byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,42 @@
+package org.thebubbleindex.runnable;
+
+import java.io.IOException;
+
+/**
+ * ResultSink receives the values of a window run in date order, in
+ * contiguous ranges of dates as they complete. The value of the date with
+ * index j of the daily data is the value of period j + 1, dated
+ * dailyPriceDate.get(j + window).
+ *
+ * @author thebubbleindex
+ */
+public interface ResultSink {
+
+	/**
+	 * open is called once before the first values
+	 *
+	 * @param firstIndex
+	 *            The index of the date of the first value
+	 * @throws IOException
+	 */
+	void open(int firstIndex) throws IOException;
+
+	/**
+	 * write receives the values of the dates which follow the previous
+	 * values
+	 *
+	 * @param values
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 */
+	void write(double[] values, int offset, int length) throws IOException;
+
+	/**
+	 * close is called after the last values, or when the run fails or is
+	 * stopped. The values which were written before are kept.
+	 *
+	 * @throws IOException
+	 */
+	void close() throws IOException;
+}
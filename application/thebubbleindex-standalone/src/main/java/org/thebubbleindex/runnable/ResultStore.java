@@ -0,0 +1,734 @@
+package org.thebubbleindex.runnable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.inputs.InputCategory;
+import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.util.Utilities;
+
+/**
+ * ResultStore holds the values of every window of a selection in one file
+ * beside its output files, such as BITSTAMPUSDresults.bin. The values are a
+ * matrix with one row per daily date and one column per window, so a date
+ * row or a slice of dates is a sequential read and a whole selection is read
+ * in one scan. A date before the first value of a window is NaN.
+ * <p>
+ * The file is little endian: a header of HEADER_BYTES with the magic number,
+ * the version, the number of windows, the number of rows the file has room
+ * for and the number of rows, followed by the ascending windows, the dates
+ * of the rows as days since 1970-01-01 and the rows of values. New dates are
+ * appended in place, and the file is laid out again when a window is added
+ * or the rows outgrow it.
+ * <p>
+ * The output files remain the working files of the runs: once a run has
+ * written new rows to the output file of a window, the same values are
+ * written to the rows of its column, see
+ * {@link #updateWindow(String, String, int, List, int, double[], int, int)},
+ * so a daily update only writes its new dates. If the column does not hold
+ * the rows of the output file before the new values, such as after a run
+ * which did not keep the store, the column is replaced with the rows of the
+ * file instead, see {@link #updateWindow(String, String, int, List)}. Rows
+ * of dates which are no longer in the daily data are dropped. The updates of
+ * a store are serialized, within a process and through a file lock between
+ * processes.
+ *
+ * @author thebubbleindex
+ */
+public class ResultStore {
+
+	public static final String FILE_ENDING = "results.bin";
+	public static final int HEADER_BYTES = 32;
+	static final int MAGIC = 0x31535242;
+	static final int VERSION = 1;
+
+	/**
+	 * The rows of dates which a store has room for beyond its current dates
+	 * when it is laid out, about a year of daily updates
+	 */
+	static final int ROW_SLACK = 256;
+
+	private final String storePath;
+	private final ByteBuffer buffer;
+	private final int[] windows;
+	private final int rowCount;
+	private final Layout layout;
+
+	private ResultStore(final String storePath, final ByteBuffer buffer) throws IOException {
+		this.storePath = storePath;
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Not a result store: " + storePath);
+		}
+		this.layout = new Layout(buffer.getInt(8), buffer.getInt(12));
+		this.rowCount = buffer.getInt(16);
+		if (layout.windowCount < 0 || layout.rowCapacity < 0 || rowCount < 0 || rowCount > layout.rowCapacity
+				|| buffer.capacity() != layout.length()) {
+			throw new IOException("Truncated result store: " + storePath);
+		}
+		this.windows = new int[layout.windowCount];
+		for (int w = 0; w < windows.length; w++) {
+			windows[w] = buffer.getInt(HEADER_BYTES + 4 * w);
+		}
+	}
+
+	/**
+	 * storePath returns the path of the store of a selection
+	 *
+	 * @param savePath
+	 *            The folder of the selection, ending with the file separator
+	 * @param selectionName
+	 * @return
+	 */
+	public static String storePath(final String savePath, final String selectionName) {
+		return savePath + selectionName + FILE_ENDING;
+	}
+
+	/**
+	 * open maps a store to read it
+	 *
+	 * @param storePath
+	 * @return
+	 * @throws IOException
+	 */
+	public static ResultStore open(final String storePath) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(storePath, "r");
+		try {
+			final FileChannel channel = file.getChannel();
+			return new ResultStore(storePath, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			file.close();
+		}
+	}
+
+	public String getStorePath() {
+		return storePath;
+	}
+
+	/**
+	 * getWindows returns the ascending windows of the columns
+	 *
+	 * @return
+	 */
+	public int[] getWindows() {
+		return windows.clone();
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * indexOfWindow returns the column of a window, or a negative number if
+	 * the store has no values of the window
+	 *
+	 * @param window
+	 * @return
+	 */
+	public int indexOfWindow(final int window) {
+		return Arrays.binarySearch(windows, window);
+	}
+
+	public int getEpochDay(final int row) {
+		return buffer.getInt(layout.datesOffset + 4 * row);
+	}
+
+	/**
+	 * getDate returns the date of a row formatted as YYYY-MM-DD
+	 *
+	 * @param row
+	 * @return
+	 */
+	public String getDate(final int row) {
+		return LocalDate.ofEpochDay(getEpochDay(row)).toString();
+	}
+
+	/**
+	 * indexOfDate returns the row of a date formatted as YYYY-MM-DD, or a
+	 * negative number if the store has no row of the date
+	 *
+	 * @param date
+	 * @return
+	 */
+	public int indexOfDate(final String date) {
+		final long epochDay;
+		try {
+			epochDay = LocalDate.parse(date).toEpochDay();
+		} catch (final DateTimeParseException ex) {
+			return -1;
+		}
+		int low = 0;
+		int high = rowCount - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int middleDay = getEpochDay(middle);
+			if (middleDay < epochDay) {
+				low = middle + 1;
+			} else if (middleDay > epochDay) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	public double getValue(final int row, final int column) {
+		return buffer.getDouble(layout.valueOffset(row, column));
+	}
+
+	/**
+	 * readColumn returns the values of a window for every row, or null if the
+	 * store has no values of the window
+	 *
+	 * @param window
+	 * @return
+	 */
+	public double[] readColumn(final int window) {
+		final int column = indexOfWindow(window);
+		if (column < 0) {
+			return null;
+		}
+		final double[] values = new double[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			values[row] = getValue(row, column);
+		}
+		return values;
+	}
+
+	/**
+	 * readRow returns the values of every window at a row, in the order of
+	 * getWindows
+	 *
+	 * @param row
+	 * @return
+	 */
+	public double[] readRow(final int row) {
+		return readSlice(row, row + 1, 0, windows.length)[0];
+	}
+
+	/**
+	 * readSlice returns the values of the rows fromRow (inclusive) to toRow
+	 * (exclusive) and the columns fromColumn (inclusive) to toColumn
+	 * (exclusive)
+	 *
+	 * @param fromRow
+	 * @param toRow
+	 * @param fromColumn
+	 * @param toColumn
+	 * @return slice[row - fromRow][column - fromColumn]
+	 */
+	public double[][] readSlice(final int fromRow, final int toRow, final int fromColumn, final int toColumn) {
+		if (fromRow < 0 || toRow > rowCount || fromRow > toRow || fromColumn < 0 || toColumn > windows.length
+				|| fromColumn > toColumn) {
+			throw new IndexOutOfBoundsException("Rows " + fromRow + " to " + toRow + " and columns " + fromColumn
+					+ " to " + toColumn + " of " + rowCount + " rows and " + windows.length + " columns");
+		}
+		final double[][] slice = new double[toRow - fromRow][toColumn - fromColumn];
+		final ByteBuffer rows = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		for (int row = fromRow; row < toRow; row++) {
+			rows.position(layout.valueOffset(row, fromColumn));
+			rows.asDoubleBuffer().get(slice[row - fromRow]);
+		}
+		return slice;
+	}
+
+	/**
+	 * readWindow adds the dates and values of a window, as its output file
+	 * holds them, and returns false if the store has no values of the window
+	 *
+	 * @param window
+	 * @param dates
+	 * @param values
+	 * @return
+	 */
+	public boolean readWindow(final int window, final List<String> dates, final List<Double> values) {
+		final double[] column = readColumn(window);
+		if (column == null) {
+			return false;
+		}
+		for (int row = 0; row < rowCount; row++) {
+			if (!Double.isNaN(column[row])) {
+				dates.add(getDate(row));
+				values.add(column[row]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * readWindow adds the dates and values of a window from the store of a
+	 * selection, and returns false if there is no store or it has no values
+	 * of the window
+	 *
+	 * @param savePath
+	 *            The folder of the selection, ending with the file separator
+	 * @param selectionName
+	 * @param window
+	 * @param dates
+	 * @param values
+	 * @return
+	 */
+	public static boolean readWindow(final String savePath, final String selectionName, final int window,
+			final List<String> dates, final List<Double> values) {
+		final String storePath = storePath(savePath, selectionName);
+		if (!new File(storePath).exists()) {
+			return false;
+		}
+		try {
+			return open(storePath).readWindow(window, dates, values);
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to read result store {}. {}", storePath, ex);
+			return false;
+		}
+	}
+
+	/**
+	 * exportWindow writes the output file of a window from its column
+	 *
+	 * @param window
+	 * @param filePath
+	 * @throws IOException
+	 */
+	public void exportWindow(final int window, final String filePath) throws IOException {
+		final double[] column = readColumn(window);
+		if (column == null) {
+			throw new IOException(storePath + " has no values of window " + window);
+		}
+		final Writer writer = new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(new File(filePath).toPath()), StandardCharsets.UTF_8));
+		try {
+			Utilities.addHeader(writer);
+			for (int row = window; row < rowCount; row++) {
+				if (!Double.isNaN(column[row])) {
+					writer.append(Integer.toString(row - window + 1));
+					writer.append(',');
+					writer.append(String.valueOf(column[row]));
+					writer.append(',');
+					writer.append(getDate(row));
+					writer.append('\n');
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * updateWindow writes the values which a run appended to the output file
+	 * of a window to the rows of its column, and the dates with the daily
+	 * dates. The rows after the values are cleared. If the column does not
+	 * hold the rows of the output file before firstIndex, the column is read
+	 * from the output file instead. A failed update is logged and leaves the
+	 * output file as it is.
+	 *
+	 * @param savePath
+	 *            The folder of the selection, ending with the file separator
+	 * @param selectionName
+	 * @param window
+	 * @param dailyPriceDate
+	 * @param firstIndex
+	 *            The index of the date of the first value, as given to
+	 *            ResultSink.open
+	 * @param values
+	 * @param offset
+	 * @param length
+	 * @return true if the store was updated
+	 */
+	public static boolean updateWindow(final String savePath, final String selectionName, final int window,
+			final List<String> dailyPriceDate, final int firstIndex, final double[] values, final int offset,
+			final int length) {
+		final String storePath = storePath(savePath, selectionName);
+		try {
+			if (new File(storePath).exists()
+					&& putRows(storePath, window, dailyPriceDate, firstIndex + window, values, offset, length, false)) {
+				return true;
+			}
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to update result store {}. {}", storePath, ex);
+			return false;
+		}
+		Logs.myLogger.info("Reading window {} of {} into result store {}.", window, selectionName, storePath);
+		return updateWindow(savePath, selectionName, window, dailyPriceDate);
+	}
+
+	/**
+	 * updateWindow writes the values which a run appended to the output file
+	 * of a window to the rows of its column, see
+	 * {@link #updateWindow(String, String, int, List, int, double[], int, int)}
+	 *
+	 * @param savePath
+	 *            The folder of the selection, ending with the file separator
+	 * @param selectionName
+	 * @param window
+	 * @param dailyPriceDate
+	 * @param firstIndex
+	 *            The index of the date of the first value
+	 * @param values
+	 * @return true if the store was updated
+	 */
+	public static boolean updateWindow(final String savePath, final String selectionName, final int window,
+			final List<String> dailyPriceDate, final int firstIndex, final List<Double> values) {
+		final double[] array = new double[values.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = values.get(i);
+		}
+		return updateWindow(savePath, selectionName, window, dailyPriceDate, firstIndex, array, 0, array.length);
+	}
+
+	/**
+	 * updateWindow replaces the column of a window with the rows of its
+	 * output file and the dates with the daily dates, for Results Consolidate
+	 * or a column which is behind its output file. A failed update is logged
+	 * and leaves the output file as it is.
+	 *
+	 * @param savePath
+	 *            The folder of the selection, ending with the file separator
+	 * @param selectionName
+	 * @param window
+	 * @param dailyPriceDate
+	 * @return true if the store was updated
+	 */
+	public static boolean updateWindow(final String savePath, final String selectionName, final int window,
+			final List<String> dailyPriceDate) {
+		final String outputPath = savePath + selectionName + window + "days.csv";
+		final String storePath = storePath(savePath, selectionName);
+		if (!new File(outputPath).exists()) {
+			return false;
+		}
+		final List<String> periods = new ArrayList<String>(dailyPriceDate.size());
+		final List<String> values = new ArrayList<String>(dailyPriceDate.size());
+		try {
+			Utilities.ReadValues(outputPath, periods, values, true, false);
+		} catch (final FailedToRunIndex ex) {
+			return false;
+		}
+
+		final double[] column = new double[dailyPriceDate.size()];
+		Arrays.fill(column, Double.NaN);
+		try {
+			for (int i = 0; i < periods.size(); i++) {
+				final int row = Integer.parseInt(periods.get(i)) - 1 + window;
+				if (row < 0 || row >= column.length) {
+					throw new NumberFormatException("Period " + periods.get(i) + " is not a daily date");
+				}
+				column[row] = Double.parseDouble(values.get(i));
+			}
+			putColumn(storePath, window, dailyPriceDate, column);
+			return true;
+		} catch (final NumberFormatException ex) {
+			Logs.myLogger.error("Failed to read {} into result store. {}", outputPath, ex);
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to update result store {}. {}", storePath, ex);
+		}
+		return false;
+	}
+
+	/**
+	 * convert consolidates the output files of every selection of the
+	 * categories into their result stores, or exports the output file of
+	 * every window of the stores
+	 *
+	 * @param indices
+	 * @param categoryNames
+	 * @param export
+	 * @param runContext
+	 * @return The number of windows converted
+	 */
+	public static int convert(final Indices indices, final List<String> categoryNames, final boolean export,
+			final RunContext runContext) {
+		int converted = 0;
+		for (final String categoryName : categoryNames) {
+			final InputCategory category = indices.getCategoriesAndComponents().get(categoryName);
+			if (category == null) {
+				Logs.myLogger.error("Unknown category {}.", categoryName);
+				continue;
+			}
+			for (final String selectionName : category.getComponents()) {
+				if (runContext.isStop()) {
+					return converted;
+				}
+				final String savePath = indices.getUserDir() + indices.getProgramDataFolder()
+						+ indices.getFilePathSymbol() + categoryName + indices.getFilePathSymbol() + selectionName
+						+ indices.getFilePathSymbol();
+				converted += export ? exportSelection(savePath, selectionName)
+						: consolidateSelection(savePath, selectionName, runContext);
+			}
+		}
+		return converted;
+	}
+
+	private static int consolidateSelection(final String savePath, final String selectionName,
+			final RunContext runContext) {
+		final String[] outputNames = new File(savePath).list();
+		if (outputNames == null) {
+			return 0;
+		}
+		final DailyDataCache dailyDataCache = new DailyDataCache();
+		try {
+			dailyDataCache.load(selectionName, savePath + selectionName + "dailydata.csv", runContext);
+		} catch (final FailedToRunIndex ex) {
+			return 0;
+		}
+		int consolidated = 0;
+		for (final String outputName : outputNames) {
+			if (outputName.startsWith(selectionName) && outputName.endsWith("days.csv")) {
+				final String window = outputName.substring(selectionName.length(),
+						outputName.length() - "days.csv".length());
+				if (!window.isEmpty() && window.matches("[0-9]+") && updateWindow(savePath, selectionName,
+						Integer.parseInt(window), dailyDataCache.getDailyPriceDate())) {
+					consolidated++;
+				}
+			}
+		}
+		return consolidated;
+	}
+
+	private static int exportSelection(final String savePath, final String selectionName) {
+		final String storePath = storePath(savePath, selectionName);
+		if (!new File(storePath).exists()) {
+			return 0;
+		}
+		int exported = 0;
+		try {
+			final ResultStore store = open(storePath);
+			for (final int window : store.windows) {
+				store.exportWindow(window, savePath + selectionName + window + "days.csv");
+				exported++;
+			}
+		} catch (final IOException ex) {
+			Logs.myLogger.error("Failed to export result store {}. {}", storePath, ex);
+		}
+		return exported;
+	}
+
+	/**
+	 * putColumn replaces the dates of a store with dates and the column of a
+	 * window with values, which holds a value or NaN for every date. The
+	 * store is created if it does not exist, and rows of other windows whose
+	 * dates changed are dropped.
+	 *
+	 * @param storePath
+	 * @param window
+	 * @param dates
+	 *            The daily dates, formatted as YYYY-MM-DD
+	 * @param values
+	 * @throws IOException
+	 */
+	public static void putColumn(final String storePath, final int window, final List<String> dates,
+			final double[] values) throws IOException {
+		putRows(storePath, window, dates, 0, values, 0, dates.size(), true);
+	}
+
+	/**
+	 * putRows replaces the dates of a store with dates and the rows firstRow
+	 * to firstRow + length of the column of a window with the values from
+	 * offset. The rows of the column after them are cleared to NaN and the
+	 * rows before them are kept. Rows of other windows whose dates changed
+	 * are dropped.
+	 * <p>
+	 * With create, the store and the column are created if they do not exist.
+	 * Otherwise nothing is written and false is returned if there is no
+	 * column of the window, if a date before firstRow changed, or if the row
+	 * before firstRow of a window which starts earlier has no value, as the
+	 * rows before firstRow are then not known.
+	 *
+	 * @param storePath
+	 * @param window
+	 * @param dates
+	 *            The daily dates, formatted as YYYY-MM-DD
+	 * @param firstRow
+	 * @param values
+	 * @param offset
+	 * @param length
+	 * @param create
+	 * @return true if the rows were written
+	 * @throws IOException
+	 */
+	public static synchronized boolean putRows(final String storePath, final int window, final List<String> dates,
+			final int firstRow, final double[] values, final int offset, final int length, final boolean create)
+			throws IOException {
+		if (firstRow < 0 || firstRow + length > dates.size()) {
+			throw new IndexOutOfBoundsException(
+					"Rows " + firstRow + " to " + (firstRow + length) + " of " + dates.size() + " dates");
+		}
+		final int[] epochDays = new int[dates.size()];
+		for (int row = 0; row < epochDays.length; row++) {
+			try {
+				epochDays[row] = (int) LocalDate.parse(dates.get(row)).toEpochDay();
+			} catch (final DateTimeParseException ex) {
+				throw new IOException("Invalid date " + dates.get(row), ex);
+			}
+		}
+
+		final RandomAccessFile file = new RandomAccessFile(storePath, "rw");
+		try {
+			final FileChannel channel = file.getChannel();
+			final FileLock lock = channel.lock();
+			try {
+				ResultStore store = null;
+				if (channel.size() > 0) {
+					try {
+						store = new ResultStore(storePath,
+								channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+					} catch (final IOException ex) {
+						if (!create) {
+							return false;
+						}
+						Logs.myLogger.error("Replacing invalid result store {}. {}", storePath, ex);
+					}
+				}
+
+				// the rows whose dates did not change
+				int keptRows = 0;
+				if (store != null) {
+					while (keptRows < Math.min(store.rowCount, epochDays.length)
+							&& store.getEpochDay(keptRows) == epochDays[keptRows]) {
+						keptRows++;
+					}
+				}
+
+				if (!create && (store == null || store.indexOfWindow(window) < 0 || keptRows < firstRow
+						|| (firstRow > window
+								&& Double.isNaN(store.getValue(firstRow - 1, store.indexOfWindow(window)))))) {
+					return false;
+				}
+
+				if (store == null || store.indexOfWindow(window) < 0 || epochDays.length > store.layout.rowCapacity) {
+					store = layOut(storePath, channel, store, keptRows, window, epochDays.length + ROW_SLACK);
+				}
+
+				final ByteBuffer buffer = store.buffer;
+				final int column = store.indexOfWindow(window);
+				for (int row = keptRows; row < epochDays.length; row++) {
+					buffer.putInt(store.layout.datesOffset + 4 * row, epochDays[row]);
+					for (int w = 0; w < store.windows.length; w++) {
+						buffer.putDouble(store.layout.valueOffset(row, w), Double.NaN);
+					}
+				}
+				// unchanged values are not written, so an update of the last
+				// dates only touches their pages
+				for (int row = firstRow; row < epochDays.length; row++) {
+					final double value = row < firstRow + length ? values[offset + row - firstRow] : Double.NaN;
+					final int valueOffset = store.layout.valueOffset(row, column);
+					if (Double.doubleToRawLongBits(buffer.getDouble(valueOffset)) != Double
+							.doubleToRawLongBits(value)) {
+						buffer.putDouble(valueOffset, value);
+					}
+				}
+				buffer.putInt(16, epochDays.length);
+				((MappedByteBuffer) buffer).force();
+				// a write through a mapping does not update the modification
+				// time on every platform, which readers compare with the
+				// output files
+				new File(storePath).setLastModified(System.currentTimeMillis());
+				return true;
+			} finally {
+				lock.release();
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * layOut writes the store again with room for at least rowCapacity rows
+	 * and a column of window, keeping the first keptRows rows of the old store.
+	 * The number of rows is 0 until the values are written, so a store which
+	 * is interrupted while it is laid out is empty rather than invalid. A valid
+	 * store never shrinks, as its rows and windows are kept, but an invalid
+	 * store which is replaced may be longer than the new layout; the file is
+	 * truncated to the layout, or readers would find it truncated.
+	 */
+	private static ResultStore layOut(final String storePath, final FileChannel channel, final ResultStore old,
+			final int keptRows, final int window, final int rowCapacity) throws IOException {
+		int[] windows = old == null ? new int[0] : old.windows;
+		if (Arrays.binarySearch(windows, window) < 0) {
+			windows = Arrays.copyOf(windows, windows.length + 1);
+			windows[windows.length - 1] = window;
+			Arrays.sort(windows);
+		}
+
+		final Layout layout = new Layout(windows.length,
+				old == null ? rowCapacity : Math.max(rowCapacity, old.layout.rowCapacity));
+		final ByteBuffer content = ByteBuffer.allocate((int) layout.length()).order(ByteOrder.LITTLE_ENDIAN);
+		content.putInt(0, MAGIC);
+		content.putInt(4, VERSION);
+		content.putInt(8, windows.length);
+		content.putInt(12, layout.rowCapacity);
+		content.putInt(16, 0);
+		for (int w = 0; w < windows.length; w++) {
+			content.putInt(HEADER_BYTES + 4 * w, windows[w]);
+		}
+		for (int row = 0; row < keptRows; row++) {
+			content.putInt(layout.datesOffset + 4 * row, old.getEpochDay(row));
+			for (int w = 0; w < windows.length; w++) {
+				final int oldColumn = old.indexOfWindow(windows[w]);
+				content.putDouble(layout.valueOffset(row, w),
+						oldColumn < 0 ? Double.NaN : old.getValue(row, oldColumn));
+			}
+		}
+
+		if (old != null) {
+			old.buffer.putInt(16, 0);
+			((MappedByteBuffer) old.buffer).force();
+		}
+		long position = 0;
+		while (content.hasRemaining()) {
+			position += channel.write(content, position);
+		}
+		if (channel.size() > layout.length()) {
+			channel.truncate(layout.length());
+		}
+		channel.force(true);
+		return new ResultStore(storePath, channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.length()));
+	}
+
+	/**
+	 * Layout holds the offsets of the sections of a store
+	 */
+	private static class Layout {
+		final int windowCount;
+		final int rowCapacity;
+		final int datesOffset;
+		final long valuesOffset;
+
+		Layout(final int windowCount, final int rowCapacity) {
+			this.windowCount = windowCount;
+			this.rowCapacity = rowCapacity;
+			this.datesOffset = HEADER_BYTES + align(4 * windowCount);
+			this.valuesOffset = datesOffset + align(4 * rowCapacity);
+		}
+
+		int valueOffset(final int row, final int column) {
+			return (int) (valuesOffset + 8L * ((long) row * windowCount + column));
+		}
+
+		long length() {
+			return valuesOffset + 8L * rowCapacity * windowCount;
+		}
+
+		private static int align(final int bytes) {
+			return (bytes + 7) & ~7;
+		}
+	}
+}
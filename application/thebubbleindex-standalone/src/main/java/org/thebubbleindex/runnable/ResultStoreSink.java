@@ -0,0 +1,65 @@
+package org.thebubbleindex.runnable;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * ResultStoreSink passes the values of a window run to another sink, such as
+ * the output file of the window, and keeps the values which that sink
+ * accepted. When the sink is closed, the kept values are written to the rows
+ * of the window in the result store of the selection, so only the new dates
+ * of a run are written to the store.
+ *
+ * @author thebubbleindex
+ */
+public class ResultStoreSink implements ResultSink {
+
+	private final ResultSink resultSink;
+	private final String savePath;
+	private final String selectionName;
+	private final int window;
+	private final List<String> dailyPriceDate;
+	private final MemoryResultSink values = new MemoryResultSink();
+
+	/**
+	 * ResultStoreSink constructor
+	 *
+	 * @param resultSink
+	 *            The sink which receives the values first
+	 * @param savePath
+	 *            The folder of the selection, ending with the file separator
+	 * @param selectionName
+	 * @param window
+	 * @param dailyPriceDate
+	 */
+	public ResultStoreSink(final ResultSink resultSink, final String savePath, final String selectionName,
+			final int window, final List<String> dailyPriceDate) {
+		this.resultSink = resultSink;
+		this.savePath = savePath;
+		this.selectionName = selectionName;
+		this.window = window;
+		this.dailyPriceDate = dailyPriceDate;
+	}
+
+	@Override
+	public void open(final int firstIndex) throws IOException {
+		resultSink.open(firstIndex);
+		values.open(firstIndex);
+	}
+
+	@Override
+	public void write(final double[] values, final int offset, final int length) throws IOException {
+		resultSink.write(values, offset, length);
+		this.values.write(values, offset, length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		resultSink.close();
+		if (!values.isEmpty()) {
+			ResultStore.updateWindow(savePath, selectionName, window, dailyPriceDate, values.getFirstIndex(),
+					values.toArray(), 0, values.size());
+			values.clear();
+		}
+	}
+}
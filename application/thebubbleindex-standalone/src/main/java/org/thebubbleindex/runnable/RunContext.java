@@ -11,8 +11,14 @@ public class RunContext {
 	private int threadNumber = 1;
 	private boolean isGUI;
 	private boolean forceCPU;
+	private boolean singlePrecision;
+	private boolean binaryDailyData = true;
+	private boolean resultStore;
+	private long memoryBudget;
 	private volatile boolean stop;
 	private final AtomicInteger numberOfLines = new AtomicInteger();
+	private ComputeScheduler scheduler;
+	private final ProgressReporter progress = new ProgressReporter(this);
 
 	public RunContext() {
 	}
@@ -31,6 +37,63 @@ public class RunContext {
 		this.forceCPU = forceCPU;
 	}
 
+	/**
+	 * isSinglePrecision returns true if the CPU calculation runs in single
+	 * precision, like the GPU kernel.
+	 * 
+	 * @return
+	 */
+	public boolean isSinglePrecision() {
+		return singlePrecision;
+	}
+
+	public void setSinglePrecision(final boolean singlePrecision) {
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * isBinaryDailyData returns true if the daily data is read from the memory
+	 * mapped store beside each dailydata.csv file, see DailyDataStore.
+	 * 
+	 * @return
+	 */
+	public boolean isBinaryDailyData() {
+		return binaryDailyData;
+	}
+
+	public void setBinaryDailyData(final boolean binaryDailyData) {
+		this.binaryDailyData = binaryDailyData;
+	}
+
+	/**
+	 * isResultStore returns true if the values of every window which is
+	 * written are also kept in the result store of its selection, see
+	 * ResultStore.
+	 * 
+	 * @return
+	 */
+	public boolean isResultStore() {
+		return resultStore;
+	}
+
+	public void setResultStore(final boolean resultStore) {
+		this.resultStore = resultStore;
+	}
+
+	/**
+	 * getMemoryBudget returns the number of bytes which concurrent jobs may
+	 * hold at once. Half of the maximum heap is used unless a budget is set.
+	 * 
+	 * @return
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget > 0 ? memoryBudget : Runtime.getRuntime().maxMemory() / 2;
+	}
+
+	public void setMemoryBudget(final long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
 	public boolean isStop() {
 		return stop;
 	}
@@ -43,6 +106,34 @@ public class RunContext {
 		return threadNumber;
 	}
 
+	/**
+	 * getScheduler returns the compute scheduler of the application. It is
+	 * created with threadNumber workers on first use and kept for every later
+	 * run; a change of threadNumber replaces it once the running tasks of the
+	 * previous scheduler have finished.
+	 * 
+	 * @return
+	 */
+	public synchronized ComputeScheduler getScheduler() {
+		if (scheduler == null || scheduler.getParallelism() != Math.max(1, threadNumber)) {
+			if (scheduler != null) {
+				scheduler.shutdown();
+			}
+			scheduler = new ComputeScheduler(threadNumber);
+		}
+		return scheduler;
+	}
+
+	/**
+	 * getProgress returns the reporter which counts and displays the dates
+	 * calculated by the runs of the context
+	 * 
+	 * @return
+	 */
+	public ProgressReporter getProgress() {
+		return progress;
+	}
+
 	public boolean isGUI() {
 		return isGUI;
 	}
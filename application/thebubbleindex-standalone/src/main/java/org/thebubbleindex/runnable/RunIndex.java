@@ -21,10 +21,6 @@ import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 import org.thebubbleindex.callable.MyCPUCallable;
 import org.thebubbleindex.callable.MyGPUCallable;
@@ -32,7 +28,12 @@ import org.thebubbleindex.exception.FailedToRunIndex;
 import org.thebubbleindex.exception.InvalidData;
 import org.thebubbleindex.inputs.Indices;
 import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.BatchLinearFit;
+import org.thebubbleindex.math.CellEnergyBound;
+import org.thebubbleindex.math.FloatHQDerivativeEngine;
+import org.thebubbleindex.math.HQDerivativeEngine;
 import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
 import org.thebubbleindex.swing.BubbleIndexWorker;
 import org.thebubbleindex.util.Utilities;
 
@@ -44,6 +45,7 @@ import org.thebubbleindex.util.Utilities;
 public class RunIndex {
 	final private String openCLSrc;
 	final private double[] dailyPriceValues;
+	final private double[] dailyPriceLogValues;
 	final private int dataSize;
 	final private int window;
 	final private List<Double> results;
@@ -56,6 +58,13 @@ public class RunIndex {
 	final private BubbleIndexWorker bubbleIndexWorker;
 	final private Indices indices;
 	final private RunContext runContext;
+	final private LombScargle sharedLombScargle;
+	private CellEnergyBound cellBound;
+	private long evaluatedCellsAtStart;
+	private long prunedCellsAtStart;
+	private int startIndex;
+	private ResultManifest resultManifest;
+	private boolean readOnly;
 
 	/**
 	 * RunIndex constructor
@@ -77,7 +86,71 @@ public class RunIndex {
 			final String previousFilePath, final String selectionName, final double omegaDouble,
 			final double mCoeffDouble, final double tCritDouble, final Indices indices, final String openCLSrc,
 			final RunContext runContext) {
+		this(bubbleIndexWorker, dailyPriceValues, null, dataSize, window, results, dailyPriceDate, previousFilePath,
+				selectionName, omegaDouble, mCoeffDouble, tCritDouble, indices, openCLSrc, runContext);
+	}
+
+	/**
+	 * RunIndex constructor with the log prices of the selection, which are
+	 * computed here if dailyPriceLogValues is null
+	 * 
+	 * @param bubbleIndexWorker
+	 * @param dailyPriceValues
+	 * @param dailyPriceLogValues
+	 * @param dataSize
+	 * @param window
+	 * @param results
+	 * @param dailyPriceDate
+	 * @param previousFilePath
+	 * @param selectionName
+	 * @param omegaDouble
+	 * @param mCoeffDouble
+	 * @param tCritDouble
+	 */
+	public RunIndex(final BubbleIndexWorker bubbleIndexWorker, final double[] dailyPriceValues,
+			final double[] dailyPriceLogValues, final int dataSize, final int window, final List<Double> results,
+			final List<String> dailyPriceDate, final String previousFilePath, final String selectionName,
+			final double omegaDouble, final double mCoeffDouble, final double tCritDouble, final Indices indices,
+			final String openCLSrc, final RunContext runContext) {
+		this(bubbleIndexWorker, dailyPriceValues, dailyPriceLogValues, dataSize, window, results, dailyPriceDate,
+				previousFilePath, selectionName, omegaDouble, mCoeffDouble, tCritDouble, indices, openCLSrc,
+				runContext, null);
+	}
+
+	/**
+	 * RunIndex constructor with a LombScargle shared by every window of the
+	 * selection, so lombscargle.properties is read and the grid tables are
+	 * computed only once. A new LombScargle is created for the run if
+	 * lombScargle is null.
+	 * 
+	 * @param bubbleIndexWorker
+	 * @param dailyPriceValues
+	 * @param dailyPriceLogValues
+	 * @param dataSize
+	 * @param window
+	 * @param results
+	 *            The results of execIndexWithCPU and execIndexWithGPU. May be
+	 *            null if the run only uses submitCPUCallables.
+	 * @param dailyPriceDate
+	 * @param previousFilePath
+	 * @param selectionName
+	 * @param omegaDouble
+	 * @param mCoeffDouble
+	 * @param tCritDouble
+	 * @param lombScargle
+	 */
+	public RunIndex(final BubbleIndexWorker bubbleIndexWorker, final double[] dailyPriceValues,
+			final double[] dailyPriceLogValues, final int dataSize, final int window, final List<Double> results,
+			final List<String> dailyPriceDate, final String previousFilePath, final String selectionName,
+			final double omegaDouble, final double mCoeffDouble, final double tCritDouble, final Indices indices,
+			final String openCLSrc, final RunContext runContext, final LombScargle lombScargle) {
 		this.dailyPriceValues = dailyPriceValues;
+		if (dailyPriceLogValues != null) {
+			this.dailyPriceLogValues = dailyPriceLogValues;
+		} else {
+			this.dailyPriceLogValues = new double[dataSize];
+			Utilities.LogPrices(dailyPriceValues, this.dailyPriceLogValues, dataSize);
+		}
 		this.dataSize = dataSize;
 		this.window = window;
 		this.results = results;
@@ -91,6 +164,7 @@ public class RunIndex {
 		this.indices = indices;
 		this.openCLSrc = openCLSrc;
 		this.runContext = runContext;
+		this.sharedLombScargle = lombScargle;
 	}
 
 	/**
@@ -98,62 +172,75 @@ public class RunIndex {
 	 * by JavaCL.
 	 * <p>
 	 * The Run essentially prepares a list of callables containing the numerical
-	 * calculation. It then gives these callables to the execution service.
+	 * calculation. It then gives these callables to the compute scheduler of
+	 * the run context as one task over the whole date range.
 	 * 
 	 * @throws FailedToRunIndex
 	 */
 	public void execIndexWithGPU() throws FailedToRunIndex {
 
-		final LombScargle lombScargle = new LombScargle(70, 18, 19, omegaDouble, mCoeffDouble, indices);
+		final LombScargle lombScargle = createLombScargle();
 
-		final List<String> DateList = new ArrayList<String>(10000);
-		final List<String> DataList = new ArrayList<String>(10000);
+		final List<CLPlatform> platforms = new ArrayList<CLPlatform>(5);
+		final List<CLContext> contexts = new ArrayList<CLContext>(5);
+		final List<Integer> maxComputeUnits = new ArrayList<Integer>(5);
+		final List<CLQueue> queues = new ArrayList<CLQueue>(5);
+		final List<CLProgram> programs = new ArrayList<CLProgram>(5);
+		final List<CLKernel> addFloatsKernels = new ArrayList<CLKernel>(5);
+		final List<ByteOrder> byteOrders = new ArrayList<ByteOrder>(5);
 
-		if (dataSize - window <= 1) {
-			throw new FailedToRunIndex("Window larger than Data. Data Size = " + dataSize + " :: Window = " + window);
+		if (!createGPUKernels(platforms, contexts, maxComputeUnits, queues, programs, addFloatsKernels,
+				byteOrders)) {
+			releaseGPUs(platforms, contexts, programs, addFloatsKernels, queues);
+			Logs.myLogger.info("Unable to create GPU context. Executing with CPUs only.");
+			execIndexWithCPU();
+			return;
 		}
 
-		final int START_INDEX;
-
-		if (new File(previousFilePath).exists()) {
-			Utilities.ReadValues(previousFilePath, DataList, DateList, true, true);
-		}
+		try {
+			// the manifest is keyed on the calculation which runs, so it is
+			// only checked once the kernel has been built
+			final int START_INDEX = findStartIndex(lombScargle, "GPU");
+			final WindowBasis windowBasis = new WindowBasis(lombScargle, window, tCritDouble);
 
-		if (DataList.size() == 0 || DateList.size() == 0) {
-			Logs.myLogger.info("Previous file: {} is blank. Trying to delete it.", previousFilePath);
-			try {
-				Files.delete(new File(previousFilePath).toPath());
-			} catch (final IOException e) {
-				Logs.myLogger.info("Previous file: {} is blank. Failed to delete it.", previousFilePath);
-			}
-		}
+			final List<Callable<Float>> callables = new ArrayList<Callable<Float>>(dataSize - window - START_INDEX);
+			createGPUCallables(contexts, programs, addFloatsKernels, queues, byteOrders, maxComputeUnits, callables,
+					START_INDEX, dataSize - window, lombScargle, windowBasis);
 
-		if (new File(previousFilePath).exists()) {
-			int UpdateLength = 0;
-			try {
-				UpdateLength = dailyPriceDate.size() - updateDateMatch(DateList) - 1;
-				if (UpdateLength == 0) {
-					throw new FailedToRunIndex("No need to run window " + window + ". Fully Updated.");
-				}
-			} catch (final InvalidData ex) {
-				throw new FailedToRunIndex("Error with data while calculating update length..." + ex);
+			runContext.getProgress().addDates(callables.size());
+			for (final Float value : runContext.getScheduler().invokeAll(callables)) {
+				results.add((double) value);
 			}
+		} catch (final InterruptedException | ExecutionException ex) {
+			Logs.myLogger.error("Execution exception. Selection Name = {}. {}", selectionName, ex);
+			releaseGPUs(platforms, contexts, programs, addFloatsKernels, queues);
 
-			START_INDEX = dataSize - window - UpdateLength;
-		} else {
-			START_INDEX = 0;
+			throw new FailedToRunIndex(ex);
+		} catch (final FailedToRunIndex er) {
+			releaseGPUs(platforms, contexts, programs, addFloatsKernels, queues);
+			throw er;
 		}
+		releaseGPUs(platforms, contexts, programs, addFloatsKernels, queues);
+		Logs.myLogger.info("Finished GPU execution.");
+	}
 
-		final int numBatches = (int) Math.ceil((dataSize - window - START_INDEX) / 500.0);
-
-		final List<CLPlatform> platforms = new ArrayList<CLPlatform>(5);
-		final List<CLContext> contexts = new ArrayList<CLContext>(5);
-		final List<Integer> maxComputeUnits = new ArrayList<Integer>(5);
-		final List<CLQueue> queues = new ArrayList<CLQueue>(5);
-		final List<CLProgram> programs = new ArrayList<CLProgram>(5);
-		final List<CLKernel> addFloatsKernels = new ArrayList<CLKernel>(5);
-		final List<ByteOrder> byteOrders = new ArrayList<ByteOrder>(5);
-
+	/**
+	 * createGPUKernels creates a context, queue and hq_derivative kernel for
+	 * every GPU device. Returns false if the kernel cannot be built, in which
+	 * case execIndexWithGPU releases what was created and runs on the CPU.
+	 * 
+	 * @param platforms
+	 * @param contexts
+	 * @param maxComputeUnits
+	 * @param queues
+	 * @param programs
+	 * @param addFloatsKernels
+	 * @param byteOrders
+	 * @return
+	 */
+	protected boolean createGPUKernels(final List<CLPlatform> platforms, final List<CLContext> contexts,
+			final List<Integer> maxComputeUnits, final List<CLQueue> queues, final List<CLProgram> programs,
+			final List<CLKernel> addFloatsKernels, final List<ByteOrder> byteOrders) {
 		try {
 			final CLPlatform[] platformsArray = JavaCL.listGPUPoweredPlatforms();
 			for (final CLPlatform platform : platformsArray) {
@@ -187,7 +274,7 @@ public class RunIndex {
 					byteOrders.add(byteOrder);
 				}
 			}
-
+			return true;
 		} catch (final CLBuildException th) {
 			Logs.myLogger.error("CLBuildException. Selection Name = {}. {}", selectionName, th);
 			if (runContext.isGUI()) {
@@ -195,123 +282,315 @@ public class RunIndex {
 			} else {
 				System.out.println("No GPU found. Using CPU.");
 			}
-			releaseGPUs(platforms, contexts, programs, addFloatsKernels, queues);
-			Logs.myLogger.info("Unable to create GPU context. Executing with CPUs only.");
-			execIndexWithCPU();
-
+			return false;
 		}
+	}
+
+	/**
+	 * execIndexWithCPU executes The Bubble Index run with only CPU resources.
+	 * <p>
+	 * The Run essentially prepares a list of callables containing the numerical
+	 * calculation. It then gives these callables to the compute scheduler of
+	 * the run context as one task over the whole date range.
+	 * 
+	 * @throws FailedToRunIndex
+	 */
+	public void execIndexWithCPU() throws FailedToRunIndex {
 
-		for (int batch = 0; batch < numBatches; batch++) {
-			final int batchStartIndex = batch * 500 + START_INDEX;
-			final int batchEndIndex = (batch + 1) * 500 + START_INDEX;
-			final ExecutorService executor = Executors.newFixedThreadPool(runContext.getThreadNumber());
+		try {
+			final List<Callable<Double>> callables = createCPUCallables();
+			runContext.getProgress().addDates(callables.size());
+			results.addAll(runContext.getScheduler().invokeAll(callables));
+		} catch (final InterruptedException | ExecutionException ex) {
+			Logs.myLogger.error("Execution exception. Selection Name = {}. {}", selectionName, ex);
 
-			final List<Callable<Float>> callables = new ArrayList<Callable<Float>>(dataSize);
+			throw new FailedToRunIndex(ex);
+		}
+		logStatistics();
+		Logs.myLogger.info("Finished CPU execution.");
 
-			createGPUCallables(contexts, programs, addFloatsKernels, queues, byteOrders, maxComputeUnits, callables,
-					batchStartIndex, Math.min(dataSize - window, batchEndIndex), lombScargle);
-			try {
-				final List<Future<Float>> tempResults = executor.invokeAll(callables);
+	}
 
-				for (final Future<Float> futures : tempResults) {
-					results.add((double) futures.get());
-				}
+	/**
+	 * createCPUCallables prepares the CPU calculation of the window and
+	 * returns one callable for every date which has not been calculated yet,
+	 * in date order. The result of each callable is the value of its date.
+	 * <p>
+	 * The callables may be given to any execution service, which allows
+	 * several windows to share one pool. Each callable counts its date as
+	 * completed with the progress reporter of the run context, so the caller
+	 * adds the number of callables to it before they are run.
+	 * 
+	 * @return
+	 * @throws FailedToRunIndex
+	 */
+	public List<Callable<Double>> createCPUCallables() throws FailedToRunIndex {
+		return createCPUCallables(null);
+	}
 
-				executor.shutdown();
-				executor.awaitTermination(5, TimeUnit.SECONDS);
-			} catch (final InterruptedException | ExecutionException ex) {
-				executor.shutdownNow();
-				Logs.myLogger.error("Execution exception. Selection Name = {}. {}", selectionName, ex);
-				releaseGPUs(platforms, contexts, programs, addFloatsKernels, queues);
+	/**
+	 * createCPUCallables prepares the CPU calculation of the window with a
+	 * window basis built by the caller for the shared LombScargle of the run,
+	 * or builds it if windowBasis is null
+	 * 
+	 * @param windowBasis
+	 * @return
+	 * @throws FailedToRunIndex
+	 */
+	public List<Callable<Double>> createCPUCallables(final WindowBasis windowBasis) throws FailedToRunIndex {
 
-				throw new FailedToRunIndex(ex);
+		final LombScargle lombScargle = createLombScargle();
+		final int START_INDEX = findStartIndex(lombScargle, runContext.isSinglePrecision() ? "single" : "double");
+		startIndex = START_INDEX;
+
+		if (windowBasis != null && (windowBasis.numberOfDays != window || windowBasis.tCritDouble != tCritDouble)) {
+			throw new FailedToRunIndex("Window basis of window " + windowBasis.numberOfDays + " does not match window "
+					+ window);
+		}
+		final WindowBasis basis = windowBasis != null ? windowBasis
+				: new WindowBasis(lombScargle, window, tCritDouble);
+		final HQDerivativeEngine hqDerivativeEngine;
+		final FloatHQDerivativeEngine floatHQDerivativeEngine;
+		if (runContext.isSinglePrecision()) {
+			hqDerivativeEngine = null;
+			floatHQDerivativeEngine = basis.getFloatEngine(lombScargle);
+			cellBound = null;
+		} else {
+			hqDerivativeEngine = basis.getEngine(lombScargle);
+			cellBound = basis.getCellBound();
+			floatHQDerivativeEngine = null;
+			if (cellBound != null) {
+				// the bound is shared by every run of a cached basis
+				evaluatedCellsAtStart = cellBound.getEvaluatedCells();
+				prunedCellsAtStart = cellBound.getPrunedCells();
 			}
 		}
-		releaseGPUs(platforms, contexts, programs, addFloatsKernels, queues);
-		Logs.myLogger.info("Finished GPU execution.");
+
+		final double[][] batchCoefs;
+		if (lombScargle.batchFit && BatchLinearFit.isBatchable(dailyPriceValues, dataSize)) {
+			batchCoefs = BatchLinearFit.fitAll(basis.linearFitOperator, dailyPriceLogValues, dataSize, window,
+					START_INDEX, dataSize - window);
+		} else {
+			batchCoefs = null;
+		}
+
+		final List<Callable<Double>> callables = new ArrayList<Callable<Double>>(dataSize - window - START_INDEX);
+		for (int j = START_INDEX; j < dataSize - window; j++) {
+			callables.add(new MyCPUCallable(j, hqDerivativeEngine, floatHQDerivativeEngine, basis,
+					dailyPriceLogValues, batchCoefs == null ? null : batchCoefs[j - START_INDEX],
+					dailyPriceDate.get(j + window), selectionName, runContext));
+		}
+		return callables;
 	}
 
 	/**
-	 * execIndexWithCPU executes The Bubble Index run with only CPU resources.
-	 * <p>
-	 * The Run essentially prepares a list of callables containing the numerical
-	 * calculation. It then gives these callables to the execution service.
+	 * submitCPUCallables prepares the CPU calculation of the window like
+	 * createCPUCallables and submits its dates to the scheduler as
+	 * checkpointed batches whose values are written to resultSink. If journal
+	 * is true and the window has an output file, the dates which were
+	 * journaled beside it by an interrupted run are written to the sink and
+	 * not calculated again.
 	 * 
+	 * @param scheduler
+	 * @param windowBasis
+	 * @param resultSink
+	 * @param journal
+	 * @return
 	 * @throws FailedToRunIndex
 	 */
-	public void execIndexWithCPU() throws FailedToRunIndex {
+	public CheckpointedWindow submitCPUCallables(final ComputeScheduler scheduler, final WindowBasis windowBasis,
+			final ResultSink resultSink, final boolean journal) throws FailedToRunIndex {
+		final List<Callable<Double>> callables = createCPUCallables(windowBasis);
+		try {
+			return new CheckpointedWindow(scheduler, callables, startIndex, window, dailyPriceDate,
+					journal && previousFilePath != null ? new ResultJournal(previousFilePath) : null, resultSink,
+					runContext);
+		} catch (final IOException ex) {
+			throw new FailedToRunIndex(ex);
+		}
+	}
 
-		final LombScargle lombScargle = new LombScargle(70, 18, 19, omegaDouble, mCoeffDouble, indices);
+	/**
+	 * logStatistics logs the statistics of the CPU calculation of the window
+	 * once all of its callables have completed. The cells of a bound which is
+	 * shared with concurrent runs of the window are counted for every run.
+	 */
+	public void logStatistics() {
+		if (cellBound != null) {
+			final long pruned = cellBound.getPrunedCells() - prunedCellsAtStart;
+			final long total = pruned + cellBound.getEvaluatedCells() - evaluatedCellsAtStart;
+			Logs.myLogger.info("{} window {}: pruned {} of {} H,Q cells ({}%).", selectionName, window, pruned,
+					total, String.format("%.1f", total == 0 ? 0.0 : 100.0 * pruned / total));
+		}
+	}
 
-		final List<String> DateList = new ArrayList<String>(10000);
-		final List<String> DataList = new ArrayList<String>(10000);
+	/**
+	 * getResultManifest returns the manifest of the output file which the run
+	 * checked, whose writePending is called once the results were written, or
+	 * null if the run has no output file
+	 * 
+	 * @return
+	 */
+	public ResultManifest getResultManifest() {
+		return resultManifest;
+	}
 
-		if (dataSize - window <= 1) {
-			throw new FailedToRunIndex("Window larger than Data. Data Size = " + dataSize + " :: Window = " + window);
+	/**
+	 * setReadOnly sets whether the run only reads the previous file. A read
+	 * only run, such as the run of a cluster worker, skips the rows which are
+	 * still valid but leaves the previous file, its journal and its manifest
+	 * to the writer of the output file, which prepares them with
+	 * prepareOutputFile first.
+	 * 
+	 * @param readOnly
+	 */
+	public void setReadOnly(final boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * prepareOutputFile prepares the previous file of the window for a run: a
+	 * torn last row, left by a killed run which streamed its output, is
+	 * removed and a blank previous file is deleted. The rows which its
+	 * {@link ResultManifest} no longer vouches for are removed with the
+	 * journal of the window, and the manifest is updated for the current
+	 * prices. If the window has no output file yet, the manifest is written
+	 * by {@link ResultManifest#writePending} once the first rows are.
+	 * 
+	 * @param calculation
+	 *            GPU, or the precision of the CPU calculation, see
+	 *            {@link ResultManifest#parametersKey}
+	 * @throws FailedToRunIndex
+	 */
+	public void prepareOutputFile(final String calculation) throws FailedToRunIndex {
+		if (previousFilePath != null) {
+			readValidDates(createLombScargle(), calculation, true);
 		}
+	}
 
-		final int START_INDEX;
+	/**
+	 * createLombScargle returns the shared LombScargle of the selection or a
+	 * new one for this run
+	 * 
+	 * @return
+	 */
+	private LombScargle createLombScargle() {
+		if (sharedLombScargle != null) {
+			return sharedLombScargle;
+		}
+		return new LombScargle(70, 18, 19, omegaDouble, mCoeffDouble, indices);
+	}
 
-		if (new File(previousFilePath).exists()) {
-			Utilities.ReadValues(previousFilePath, DataList, DateList, true, true);
+	/**
+	 * findStartIndex helper method to find the first date which needs to be
+	 * calculated, after the rows of the previous file which are still valid,
+	 * see {@link #prepareOutputFile}. The window is calculated from the
+	 * beginning if previousFilePath is null or the previous file is missing or
+	 * blank.
+	 * <p>
+	 * A read only run leaves the previous file, its journal and its manifest
+	 * as they are and only skips the rows which are still valid.
+	 * 
+	 * @param lombScargle
+	 * @param calculation
+	 *            GPU, or the precision of the CPU calculation, see
+	 *            {@link ResultManifest#parametersKey}
+	 * @return
+	 * @throws FailedToRunIndex
+	 */
+	private int findStartIndex(final LombScargle lombScargle, final String calculation) throws FailedToRunIndex {
+		if (dataSize - window <= 1) {
+			throw new FailedToRunIndex("Window larger than Data. Data Size = " + dataSize + " :: Window = " + window);
 		}
 
-		if (DataList.size() == 0 || DateList.size() == 0) {
-			Logs.myLogger.info("Previous file: {} is blank. Trying to delete it.", previousFilePath);
-			try {
-				Files.delete(new File(previousFilePath).toPath());
-				execIndexWithCPU();
-			} catch (final IOException e) {
-				Logs.myLogger.info("Previous file: {} is blank. Failed to delete it.", previousFilePath);
-			}
+		if (previousFilePath == null) {
+			return 0;
 		}
 
-		if (new File(previousFilePath).exists()) {
+		final List<String> DateList = readValidDates(lombScargle, calculation, !readOnly);
+		if (!DateList.isEmpty()) {
 			int UpdateLength = 0;
-
 			try {
 				UpdateLength = dailyPriceDate.size() - updateDateMatch(DateList) - 1;
 				if (UpdateLength == 0) {
-					throw new FailedToRunIndex("No need to run index. Fully Updated.");
+					throw new FailedToRunIndex("No need to run window " + window + ". Fully Updated.");
 				}
 			} catch (final InvalidData ex) {
-				throw new FailedToRunIndex(ex);
+				throw new FailedToRunIndex("Error with data while calculating update length..." + ex);
 			}
 
-			START_INDEX = dataSize - window - UpdateLength;
-		} else {
-			START_INDEX = 0;
+			return dataSize - window - UpdateLength;
 		}
-		final int numBatches = (int) Math.ceil((dataSize - window - START_INDEX) / 500.0);
-		for (int batch = 0; batch < numBatches; batch++) {
-			final int batchStartIndex = batch * 500 + START_INDEX;
-			final int batchEndIndex = (batch + 1) * 500 + START_INDEX;
-			final ExecutorService executor = Executors.newFixedThreadPool(runContext.getThreadNumber());
+		return 0;
+	}
 
-			final List<Callable<Double>> callables = new ArrayList<Callable<Double>>(dataSize);
+	/**
+	 * readValidDates helper method to read the dates of the rows of the
+	 * previous file which its {@link ResultManifest} still vouches for: all
+	 * of them, unless the parameters changed or the prices of their window
+	 * were revised.
+	 * <p>
+	 * If prepare is true, the previous file is prepared for the run as by
+	 * {@link #prepareOutputFile}.
+	 * 
+	 * @param lombScargle
+	 * @param calculation
+	 * @param prepare
+	 * @return
+	 * @throws FailedToRunIndex
+	 */
+	private List<String> readValidDates(final LombScargle lombScargle, final String calculation,
+			final boolean prepare) throws FailedToRunIndex {
+		List<String> DateList = new ArrayList<String>(10000);
+		final List<String> DataList = new ArrayList<String>(10000);
 
-			for (int j = batchStartIndex; j < Math.min(dataSize - window, batchEndIndex); j++) {
-				callables.add(new MyCPUCallable(bubbleIndexWorker, j, window, lombScargle, tCritDouble,
-						dailyPriceValues, dailyPriceDate.get(j + window), selectionName, runContext));
+		if (new File(previousFilePath).exists()) {
+			if (prepare) {
+				CsvResultSink.truncateTornLine(previousFilePath);
 			}
-			try {
-				final List<Future<Double>> tempResults = executor.invokeAll(callables);
+			Utilities.ReadValues(previousFilePath, DataList, DateList, true, true);
+		}
 
-				for (final Future<Double> futures : tempResults) {
-					results.add(futures.get());
+		if (DataList.size() == 0 || DateList.size() == 0) {
+			DateList.clear();
+			if (prepare) {
+				Logs.myLogger.info("Previous file: {} is blank. Trying to delete it.", previousFilePath);
+				try {
+					Files.delete(new File(previousFilePath).toPath());
+				} catch (final IOException e) {
+					Logs.myLogger.info("Previous file: {} is blank. Failed to delete it.", previousFilePath);
 				}
-
-				executor.shutdown();
-				executor.awaitTermination(5, TimeUnit.SECONDS);
-			} catch (final InterruptedException | ExecutionException ex) {
-				executor.shutdownNow();
-				Logs.myLogger.error("Execution exception. Selection Name = {}. {}", selectionName, ex);
-
-				throw new FailedToRunIndex(ex);
 			}
 		}
-		Logs.myLogger.info("Finished CPU execution.");
 
+		final ResultManifest manifest = new ResultManifest(previousFilePath);
+		final String parametersKey = ResultManifest.parametersKey(window, omegaDouble, mCoeffDouble, tCritDouble,
+				lombScargle, calculation);
+		final int validRows = manifest.validRows(parametersKey, dailyPriceDate, dailyPriceValues, dataSize, window);
+		if (prepare && manifest.isChanged()) {
+			new ResultJournal(previousFilePath).delete();
+		}
+		if (validRows >= 0 && validRows < DateList.size()) {
+			if (prepare) {
+				Logs.myLogger.info("Recalculating {} of {} rows of {} which are no longer valid.",
+						DateList.size() - validRows, DateList.size(), previousFilePath);
+				try {
+					if (validRows == 0) {
+						Files.delete(new File(previousFilePath).toPath());
+					} else {
+						CsvResultSink.truncateRows(previousFilePath, validRows);
+					}
+				} catch (final IOException ex) {
+					throw new FailedToRunIndex(ex);
+				}
+			}
+			DateList = DateList.subList(0, validRows);
+		}
+		if (prepare) {
+			manifest.update(parametersKey, dailyPriceDate, dailyPriceValues, dataSize);
+			resultManifest = manifest;
+		}
+		return DateList;
 	}
 
 	/**
@@ -335,11 +614,12 @@ public class RunIndex {
 	 * @param START
 	 * @param SIZE
 	 * @param lombScargle
+	 * @param windowBasis
 	 */
 	private void createGPUCallables(final List<CLContext> contexts, final List<CLProgram> programs,
 			final List<CLKernel> addFloatsKernels, final List<CLQueue> queues, final List<ByteOrder> byteOrders,
 			final List<Integer> maxComputeUnits, final List<Callable<Float>> callables, final int START, final int SIZE,
-			final LombScargle lombScargle) {
+			final LombScargle lombScargle, final WindowBasis windowBasis) {
 
 		final int numberGPUContexts = contexts.size();
 
@@ -349,9 +629,9 @@ public class RunIndex {
 
 		else if (numberGPUContexts == 1) {
 			for (int j = START; j < SIZE; j++) {
-				callables.add(new MyGPUCallable(bubbleIndexWorker, j, window, lombScargle, contexts.get(0),
-						queues.get(0), programs.get(0), addFloatsKernels.get(0), byteOrders.get(0), tCritDouble,
-						dailyPriceValues, selectionName, dailyPriceDate.get(j + window), runContext));
+				callables.add(new MyGPUCallable(j, lombScargle, contexts.get(0), queues.get(0), programs.get(0),
+						addFloatsKernels.get(0), byteOrders.get(0), windowBasis, dailyPriceLogValues, selectionName,
+						dailyPriceDate.get(j + window), runContext));
 			}
 		}
 
@@ -385,10 +665,10 @@ public class RunIndex {
 
 					if (randomValue <= entry.getValue()) {
 						final int contextIndex = contextOrder.get(entry.getKey());
-						callables.add(new MyGPUCallable(bubbleIndexWorker, j, window, lombScargle,
-								contexts.get(contextIndex), queues.get(contextIndex), programs.get(contextIndex),
-								addFloatsKernels.get(contextIndex), byteOrders.get(contextIndex), tCritDouble,
-								dailyPriceValues, selectionName, dailyPriceDate.get(j + window), runContext));
+						callables.add(new MyGPUCallable(j, lombScargle, contexts.get(contextIndex),
+								queues.get(contextIndex), programs.get(contextIndex), addFloatsKernels.get(contextIndex),
+								byteOrders.get(contextIndex), windowBasis, dailyPriceLogValues, selectionName,
+								dailyPriceDate.get(j + window), runContext));
 						break;
 					}
 				}
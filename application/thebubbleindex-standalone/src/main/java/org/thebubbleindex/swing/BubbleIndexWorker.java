@@ -1,16 +1,15 @@
 package org.thebubbleindex.swing;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import javax.swing.SwingWorker;
 
 import org.thebubbleindex.driver.BubbleIndex;
 import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.driver.JobScheduler;
+import org.thebubbleindex.driver.MultiWindowRun;
 import org.thebubbleindex.driver.noGUI.RunType;
 import org.thebubbleindex.inputs.Indices;
-import org.thebubbleindex.inputs.InputCategory;
 import org.thebubbleindex.logging.Logs;
 import org.thebubbleindex.runnable.RunContext;
 import org.thebubbleindex.util.Utilities;
@@ -37,6 +36,7 @@ public class BubbleIndexWorker extends SwingWorker<Boolean, String> {
 	final private Indices indices;
 	final private String openCLSrc;
 	final private RunContext runContext;
+	private String shownCategory;
 
 	public BubbleIndexWorker(final RunType type, final GUI gui, final String windowsInput, final Double omega,
 			final Double mCoeff, final Double tCrit, final String categoryName, final String selectionName,
@@ -84,6 +84,19 @@ public class BubbleIndexWorker extends SwingWorker<Boolean, String> {
 		publish(text);
 	}
 
+	/**
+	 * showCategory selects the category which is being run in the drop down
+	 * boxes of the GUI, when it differs from the category shown last
+	 *
+	 * @param category
+	 */
+	public void showCategory(final String category) {
+		if (!category.equals(shownCategory)) {
+			shownCategory = category;
+			gui.updateDropDownSelection(category);
+		}
+	}
+
 	@Override
 	protected void process(final List<String> textList) {
 		for (final String text : textList)
@@ -99,15 +112,13 @@ public class BubbleIndexWorker extends SwingWorker<Boolean, String> {
 	private void runSingle() {
 		Logs.myLogger.info("Run Single Selection Button Clicked.");
 		publish("Running category: " + categoryName + " Name: " + selectionName);
-		final String[] windowInputArray = windowsInput.split(",");
-		for (final String windowString : windowInputArray) {
-			final BubbleIndex bubbleIndex = new BubbleIndex(omega, mCoeff, tCrit, Integer.parseInt(windowString.trim()),
-					categoryName, selectionName, dailyDataCache, indices, openCLSrc, runContext);
-			if (!runContext.isStop())
-				bubbleIndex.runBubbleIndex(this);
-			if (!runContext.isStop())
-				bubbleIndex.outputResults(this);
-		}
+		final MultiWindowRun multiWindowRun = new MultiWindowRun(omega, mCoeff, tCrit,
+				MultiWindowRun.parseWindows(windowsInput), categoryName, selectionName, dailyDataCache, indices,
+				openCLSrc, runContext);
+		if (!runContext.isStop())
+			multiWindowRun.run(this);
+		if (!runContext.isStop())
+			multiWindowRun.outputResults(this);
 
 		if (GRAPH_ON) {
 			Logs.myLogger.info("Graph selection box checked. Plotting first four time windows.");
@@ -122,56 +133,22 @@ public class BubbleIndexWorker extends SwingWorker<Boolean, String> {
 	private void runAllNames() {
 		Logs.myLogger.info("Run entire category button clicked");
 		publish("Running category: " + categoryName);
-		// categoryName = (String)DropDownCategory.getSelectedItem();
-		final ArrayList<String> updateNames = indices.getCategoriesAndComponents().get(categoryName).getComponents();
-		final String[] windowInputArray = windowsInput.split(",");
-
-		for (final String updateName : updateNames) {
-			for (final String windowString : windowInputArray) {
-				final BubbleIndex bubbleIndex = new BubbleIndex(omega, mCoeff, tCrit,
-						Integer.parseInt(windowString.trim()), categoryName, updateName, dailyDataCache, indices,
-						openCLSrc, runContext);
-				if (!runContext.isStop())
-					bubbleIndex.runBubbleIndex(this);
-				if (!runContext.isStop())
-					bubbleIndex.outputResults(this);
-				if (runContext.isStop())
-					break;
-			}
-			if (runContext.isStop())
-				break;
-		}
+		final JobScheduler jobScheduler = new JobScheduler(omega, mCoeff, tCrit,
+				MultiWindowRun.parseWindows(windowsInput), indices, openCLSrc, runContext);
+		jobScheduler.addCategory(categoryName);
+		jobScheduler.run(this);
 	}
 
 	private void runAllTypes() {
 		Logs.myLogger.info("Run all categories button clicked.");
 
 		publish("Running all categories.");
+		final JobScheduler jobScheduler = new JobScheduler(omega, mCoeff, tCrit,
+				MultiWindowRun.parseWindows(windowsInput), indices, openCLSrc, runContext);
 
-		for (final Map.Entry<String, InputCategory> myEntry : indices.getCategoriesAndComponents().entrySet()) {
-
-			final String category = myEntry.getKey();
-			gui.updateDropDownSelection(category);
-			final ArrayList<String> updateNames = myEntry.getValue().getComponents();
-			final String[] windowInputArray = windowsInput.split(",");
-
-			for (final String updateName : updateNames) {
-				for (final String windowString : windowInputArray) {
-					final BubbleIndex bubbleIndex = new BubbleIndex(omega, mCoeff, tCrit,
-							Integer.parseInt(windowString.trim()), category, updateName, dailyDataCache, indices,
-							openCLSrc, runContext);
-					if (!runContext.isStop())
-						bubbleIndex.runBubbleIndex(this);
-					if (!runContext.isStop())
-						bubbleIndex.outputResults(this);
-					if (runContext.isStop())
-						break;
-				}
-				if (runContext.isStop())
-					break;
-			}
-			if (runContext.isStop())
-				break;
+		for (final String category : indices.getCategoriesAndComponents().keySet()) {
+			jobScheduler.addCategory(category);
 		}
+		jobScheduler.run(this);
 	}
 }
@@ -506,6 +506,8 @@ public class GUI extends JFrame {
 		dailyDataCache.reset();
 		runContext.setThreadNumber(Integer.parseInt(ThreadNumber.getText().trim()));
 		runContext.setStop(false);
+		runContext.getProgress().reset();
+		runContext.setForceCPU(forceCPUBox.isSelected());
 		GRAPH_ON = GraphCheckBox.isSelected();
 		isCustomRange = customDates.isSelected();
 		categoryName = (String) DropDownCategory.getSelectedItem();
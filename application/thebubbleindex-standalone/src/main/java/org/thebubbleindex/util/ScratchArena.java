@@ -0,0 +1,124 @@
+package org.thebubbleindex.util;
+
+/**
+ * ScratchArena hands out reusable double and float arrays to the numerical
+ * code of a worker thread, so that the per date calculation does not
+ * allocate.
+ * <p>
+ * Arrays are taken in stack order. A method records the position of the
+ * arena with {@link #mark()}, takes the arrays it needs with
+ * {@link #doubles(int)} or {@link #floats(int)} and returns them with
+ * {@link #release(int)} when it is finished, usually in a finally block. The
+ * same call sequence takes the same arrays on the next date, so after the
+ * first date of a window no new arrays are created. The arrays are kept for
+ * the life of the thread, see {@link #getRetainedBytes()}.
+ * <p>
+ * The contents of a taken array are undefined and it may be longer than
+ * requested. Callers must write every element they read and must use their
+ * own size rather than the length of the array.
+ *
+ * @author thebubbleindex
+ */
+public class ScratchArena {
+
+	private static final ThreadLocal<ScratchArena> threadArena = new ThreadLocal<ScratchArena>() {
+		@Override
+		protected ScratchArena initialValue() {
+			return new ScratchArena();
+		}
+	};
+
+	private Object[] slots = new Object[16];
+	private int position = 0;
+
+	/**
+	 * get returns the arena of the current thread
+	 *
+	 * @return
+	 */
+	public static ScratchArena get() {
+		return threadArena.get();
+	}
+
+	/**
+	 * mark returns the current position of the arena
+	 *
+	 * @return
+	 */
+	public int mark() {
+		return position;
+	}
+
+	/**
+	 * release returns every array taken since the given mark to the arena
+	 *
+	 * @param mark
+	 */
+	public void release(final int mark) {
+		position = mark;
+	}
+
+	/**
+	 * doubles takes the next array of the arena with at least size elements
+	 *
+	 * @param size
+	 * @return
+	 */
+	public double[] doubles(final int size) {
+		ensureSlot();
+
+		final Object slot = slots[position];
+		double[] array = slot instanceof double[] ? (double[]) slot : null;
+		if (array == null || array.length < size) {
+			array = new double[size];
+			slots[position] = array;
+		}
+		position++;
+		return array;
+	}
+
+	/**
+	 * floats takes the next array of the arena with at least size elements
+	 *
+	 * @param size
+	 * @return
+	 */
+	public float[] floats(final int size) {
+		ensureSlot();
+
+		final Object slot = slots[position];
+		float[] array = slot instanceof float[] ? (float[]) slot : null;
+		if (array == null || array.length < size) {
+			array = new float[size];
+			slots[position] = array;
+		}
+		position++;
+		return array;
+	}
+
+	/**
+	 * getRetainedBytes returns the heap size of the arrays which the arena
+	 * keeps for the next dates
+	 *
+	 * @return
+	 */
+	public long getRetainedBytes() {
+		long bytes = 0;
+		for (final Object slot : slots) {
+			if (slot instanceof double[]) {
+				bytes += 8L * ((double[]) slot).length;
+			} else if (slot instanceof float[]) {
+				bytes += 4L * ((float[]) slot).length;
+			}
+		}
+		return bytes;
+	}
+
+	private void ensureSlot() {
+		if (position == slots.length) {
+			final Object[] newSlots = new Object[slots.length * 2];
+			System.arraycopy(slots, 0, newSlots, 0, slots.length);
+			slots = newSlots;
+		}
+	}
+}
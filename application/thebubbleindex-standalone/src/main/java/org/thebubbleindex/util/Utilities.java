@@ -1,11 +1,9 @@
 package org.thebubbleindex.util;
 
-import static info.yeppp.Core.Multiply_V64fV64f_V64f;
-import static info.yeppp.Core.Subtract_V64fV64f_V64f;
-
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -16,6 +14,8 @@ import javax.swing.SwingUtilities;
 import org.apache.commons.math3.util.FastMath;
 import org.thebubbleindex.exception.FailedToRunIndex;
 import org.thebubbleindex.logging.Logs;
+import org.thebubbleindex.math.VectorMath;
+import org.thebubbleindex.math.VectorMaths;
 import org.thebubbleindex.runnable.RunContext;
 import org.thebubbleindex.swing.GUI;
 
@@ -72,36 +72,87 @@ public class Utilities {
 		}
 	}
 
+	/**
+	 * LogPrices takes the natural log of every daily price. It is computed
+	 * once per selection and shared by every window and date, see
+	 * {@link #NormalizeLogPrices(double[], int, double[], int)}. Prices which
+	 * are not positive give -Infinity or NaN.
+	 * 
+	 * @param dailyPriceValues
+	 * @param LogPrices
+	 *            Output array of the log prices
+	 * @param dataSize
+	 */
+	public static void LogPrices(final double[] dailyPriceValues, final double[] LogPrices, final int dataSize) {
+		VectorMaths.get().log(dailyPriceValues, 0, LogPrices, 0, dataSize);
+	}
+
+	/**
+	 * NormalizeLogPrices writes the log prices of the window starting at START
+	 * normalized to begin at a price of 100.0, which is log(100) + log(P[START
+	 * + k]) - log(P[START]). This is the result of Normalize on the prices of
+	 * the window, up to rounding, without its log evaluations and temporary
+	 * arrays.
+	 * 
+	 * @param LogPrices
+	 *            The log prices of the selection, see LogPrices
+	 * @param START
+	 *            Index of the first price of the window
+	 * @param SelectedData
+	 *            Output array of the normalized log prices
+	 * @param NumberOfDays
+	 */
+	public static void NormalizeLogPrices(final double[] LogPrices, final int START, final double[] SelectedData,
+			final int NumberOfDays) {
+		VectorMaths.get().add(LogPrices, START, FastMath.log(100.0) - LogPrices[START], SelectedData, 0,
+				NumberOfDays);
+	}
+
 	/**
 	 * Normalize takes the data, calculates the returns. Then normalizes the
 	 * price data series to begin at a value of 100.0 and takes the log
+	 * <p>
+	 * The CPU and GPU callables use NormalizeLogPrices on the log prices of
+	 * the selection instead.
 	 * 
 	 * @param SelectedData
 	 * @param NumberOfDays
 	 */
 	public static void Normalize(final double[] SelectedData, final int NumberOfDays) {
 
-		final double[] tempOne = new double[NumberOfDays];
-		final double[] tempTwo = new double[NumberOfDays];
-		final double[] tempThree = new double[NumberOfDays];
-		final double[] tempFour = new double[NumberOfDays];
-		final double[] tempFive = new double[NumberOfDays];
+		final VectorMath vectorMath = VectorMaths.get();
+		final ScratchArena arena = ScratchArena.get();
+		final int mark = arena.mark();
 
-		for (int i = 1; i < NumberOfDays; i++) {
-			tempOne[i] = SelectedData[i];
-			tempTwo[i] = SelectedData[i - 1];
-			tempThree[i] = 1.0 / SelectedData[i - 1];
-		}
+		try {
+			final double[] tempOne = arena.doubles(NumberOfDays);
+			final double[] tempTwo = arena.doubles(NumberOfDays);
+			final double[] tempThree = arena.doubles(NumberOfDays);
+			final double[] tempFour = arena.doubles(NumberOfDays);
+			final double[] tempFive = arena.doubles(NumberOfDays);
 
-		Subtract_V64fV64f_V64f(tempOne, 0, tempTwo, 0, tempFour, 0, NumberOfDays);
+			tempOne[0] = 0.0;
+			tempTwo[0] = 0.0;
+			tempThree[0] = 0.0;
 
-		Multiply_V64fV64f_V64f(tempFour, 0, tempThree, 0, tempFive, 0, NumberOfDays);
+			for (int i = 1; i < NumberOfDays; i++) {
+				tempOne[i] = SelectedData[i];
+				tempTwo[i] = SelectedData[i - 1];
+				tempThree[i] = 1.0 / SelectedData[i - 1];
+			}
+
+			vectorMath.subtract(tempOne, 0, tempTwo, 0, tempFour, 0, NumberOfDays);
+
+			vectorMath.multiply(tempFour, 0, tempThree, 0, tempFive, 0, NumberOfDays);
 
-		SelectedData[0] = FastMath.log(100.0);
-		double tempVar = 100.0;
-		for (int i = 1; i < NumberOfDays; i++) {
-			tempVar = tempVar * tempFive[i] + tempVar;
-			SelectedData[i] = FastMath.log(tempVar);
+			SelectedData[0] = FastMath.log(100.0);
+			double tempVar = 100.0;
+			for (int i = 1; i < NumberOfDays; i++) {
+				tempVar = tempVar * tempFive[i] + tempVar;
+				SelectedData[i] = FastMath.log(tempVar);
+			}
+		} finally {
+			arena.release(mark);
 		}
 	}
 
@@ -191,7 +242,7 @@ public class Utilities {
 	
 
 	/**
-	 * WriteCSV writes an output file
+	 * WriteCSV writes an output file. A failed write is logged and thrown.
 	 * 
 	 * @param savePath
 	 * @param Results
@@ -228,6 +279,7 @@ public class Utilities {
 
 		} catch (final IOException ex) {
 			Logs.myLogger.error("save path = {}. {}", savePath, ex);
+			throw ex;
 		} finally {
 			if (writer != null) {
 				writer.close();
@@ -241,7 +293,7 @@ public class Utilities {
 	 * @param writer
 	 * @throws IOException
 	 */
-	private static void addHeader(final FileWriter writer) throws IOException {
+	public static void addHeader(final Writer writer) throws IOException {
 		writer.append("Period Number");
 		writer.append(',');
 		writer.append("Value");
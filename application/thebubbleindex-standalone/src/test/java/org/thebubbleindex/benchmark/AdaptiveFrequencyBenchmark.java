@@ -0,0 +1,123 @@
+package org.thebubbleindex.benchmark;
+
+import java.util.Random;
+
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.AdaptiveFrequencySearch;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+
+/**
+ * AdaptiveFrequencyBenchmark compares the exhaustive grid scan and the
+ * adaptive frequency search on the (Q, H) cell series of random dates. It
+ * prints the periodogram evaluations per peak, the time per peak and the
+ * error of both peaks relative to a reference peak from a grid twenty times
+ * finer than the test frequencies.
+ * <p>
+ * Usage: AdaptiveFrequencyBenchmark [dates]
+ *
+ * @author thebubbleindex
+ */
+public class AdaptiveFrequencyBenchmark {
+
+	private static final int[] windows = new int[] { 52, 256, 1260 };
+	private static final int fineFactor = 20;
+
+	public static void main(final String[] args) {
+		final int dates = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+		System.out.println(String.format("%6s %6s  %10s %10s  %10s %10s  %10s %10s %10s", "window", "peaks",
+				"grid evals", "adapt evals", "grid us", "adapt us", "grid err", "adapt err", "adapt-grid"));
+
+		for (final int window : windows) {
+			final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+			final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+			final AdaptiveFrequencySearch adaptive = new AdaptiveFrequencySearch(lombScargle,
+					windowBasis.LogTimeValues, window);
+
+			final double[] series = new double[window];
+			final double[] spectralDensity = new double[lombScargle.freqSize];
+			final Random random = new Random(31);
+
+			long gridTime = 0;
+			long adaptiveTime = 0;
+			double gridError = 0.0;
+			double adaptiveError = 0.0;
+			double adaptiveGain = 0.0;
+			int peaks = 0;
+
+			for (int date = 0; date < dates; date++) {
+				final double coefOne = random.nextGaussian();
+				final double coefTwo = random.nextGaussian() * 0.1;
+
+				for (int i = 0; i < lombScargle.qSize; i += 3) {
+					for (int j = 0; j < lombScargle.hSize; j += 3) {
+						final double tempVar = lombScargle.powTempVar[i][j];
+						final double bPrime = coefOne * (1.0 - lombScargle.QiM[i]) / tempVar;
+						final double cPrime = coefTwo / tempVar;
+						for (int k = 0; k < window; k++) {
+							series[k] = windowBasis.timePowerMH[j][k]
+									* (bPrime + cPrime * windowBasis.gFunction[i][k]);
+						}
+
+						long start = System.nanoTime();
+						lombScargle.computeLombScargle(windowBasis.LogTimeValues, series, spectralDensity, window);
+						final double grid = LombScargle.MaxOneDim(spectralDensity, lombScargle.freqSize);
+						gridTime = gridTime + System.nanoTime() - start;
+
+						start = System.nanoTime();
+						final double peak = adaptive.peak(series);
+						adaptiveTime = adaptiveTime + System.nanoTime() - start;
+
+						final double reference = finePeak(lombScargle, windowBasis, series);
+						gridError = Math.max(gridError, Math.abs(grid - reference) / reference);
+						adaptiveError = Math.max(adaptiveError, Math.abs(peak - reference) / reference);
+						adaptiveGain = adaptiveGain + (peak - grid) / grid;
+						peaks++;
+					}
+				}
+			}
+
+			System.out.println(String.format("%6d %6d  %10d %10.1f  %10.1f %10.1f  %10.2e %10.2e %10.2e", window,
+					peaks, lombScargle.freqSize, adaptive.getEvaluations() * 1.0 / adaptive.getSearches(),
+					gridTime / 1.0e3 / peaks, adaptiveTime / 1.0e3 / peaks, gridError, adaptiveError,
+					adaptiveGain / peaks));
+		}
+	}
+
+	private static double finePeak(final LombScargle lombScargle, final WindowBasis windowBasis,
+			final double[] series) {
+		final int window = windowBasis.numberOfDays;
+		final double[] work = new double[window];
+		final double[] cosValues = new double[window];
+		final double[] sinValues = new double[window];
+
+		double mean = 0.0;
+		for (int k = 0; k < window; k++) {
+			mean = mean + series[k];
+		}
+		mean = mean / window;
+
+		double peak = 0.0;
+		final int fineSize = (lombScargle.freqSize - 1) * fineFactor + 1;
+		for (int f = 0; f < fineSize; f++) {
+			final double frequency = lombScargle.testFrequencies[0]
+					+ f * lombScargle.frequencyIncrement / fineFactor;
+			lombScargle.computeTrigBasis(windowBasis.LogTimeValues, 2.0 * 3.14159 * frequency, work, cosValues,
+					sinValues, window);
+
+			double cosResid = 0.0;
+			double sinResid = 0.0;
+			double cosSquare = 0.0;
+			double sinSquare = 0.0;
+			for (int k = 0; k < window; k++) {
+				cosResid = cosResid + cosValues[k] * (series[k] - mean);
+				sinResid = sinResid + sinValues[k] * (series[k] - mean);
+				cosSquare = cosSquare + cosValues[k] * cosValues[k];
+				sinSquare = sinSquare + sinValues[k] * sinValues[k];
+			}
+			peak = Math.max(peak, cosResid * cosResid / cosSquare + sinResid * sinResid / sinSquare);
+		}
+		return peak;
+	}
+}
@@ -0,0 +1,117 @@
+package org.thebubbleindex.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.apache.commons.math3.util.FastMath;
+import org.thebubbleindex.callable.MyCPUCallable;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.BatchLinearFit;
+import org.thebubbleindex.math.HQDerivativeEngine;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.util.Utilities;
+
+/**
+ * AllocationBenchmark measures the heap allocated per date by MyCPUCallable
+ * and the number of garbage collections during the run.
+ * <p>
+ * Usage: AllocationBenchmark [window] [dates] [directDates]
+ * <p>
+ * The bytes per date include the formatting of the output line of the date,
+ * which is a few hundred bytes.
+ *
+ * @author thebubbleindex
+ */
+public class AllocationBenchmark {
+
+	public static void main(final String[] args) {
+		final int window = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		final int dates = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		final int directDates = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+		final int dataSize = window + dates + 1;
+		final double[] prices = new double[dataSize];
+		final Random random = new Random(2017);
+		prices[0] = 100.0;
+		for (int i = 1; i < dataSize; i++) {
+			prices[i] = prices[i - 1] * FastMath.exp(random.nextGaussian() * 0.02);
+		}
+
+		final double[] logPrices = new double[dataSize];
+		Utilities.LogPrices(prices, logPrices, dataSize);
+
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+		final double[][] batchCoefs = BatchLinearFit.fitAll(windowBasis.linearFitOperator, logPrices, dataSize, window,
+				0, dates);
+
+		lombScargle.engine = LombScargle.Engine.Direct;
+		measure("Direct engine, per date fit", lombScargle.createEngine(windowBasis), windowBasis, logPrices, null,
+				directDates);
+
+		lombScargle.engine = LombScargle.Engine.LinearBasis;
+		final HQDerivativeEngine linearBasis = lombScargle.createEngine(windowBasis);
+		measure("LinearBasis engine, per date fit", linearBasis, windowBasis, logPrices, null, dates);
+		measure("LinearBasis engine, batch fit", linearBasis, windowBasis, logPrices, batchCoefs, dates);
+	}
+
+	private static void measure(final String name, final HQDerivativeEngine hqDerivativeEngine,
+			final WindowBasis windowBasis, final double[] prices, final double[][] batchCoefs, final int dates) {
+		final RunContext runContext = new RunContext(false, true, 1);
+		final PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(final int b) {
+			}
+		}));
+
+		try {
+			// warm up the scratch arena of this thread
+			callableFor(hqDerivativeEngine, windowBasis, prices, batchCoefs, 0, runContext).call();
+
+			final long gcBefore = collectionCount();
+			final long bytesBefore = allocatedBytes();
+			final long timeBefore = System.nanoTime();
+
+			for (int index = 0; index < dates; index++) {
+				callableFor(hqDerivativeEngine, windowBasis, prices, batchCoefs, index, runContext).call();
+			}
+
+			final long elapsed = System.nanoTime() - timeBefore;
+			final long bytes = allocatedBytes() - bytesBefore;
+			final long collections = collectionCount() - gcBefore;
+
+			console.println(String.format("%-34s window %5d  dates %5d  bytes/date %12.1f  gc %4d  ms/date %9.3f",
+					name, windowBasis.numberOfDays, dates, bytes * 1.0 / dates, collections,
+					elapsed / 1.0e6 / dates));
+		} finally {
+			System.setOut(console);
+		}
+	}
+
+	private static MyCPUCallable callableFor(final HQDerivativeEngine hqDerivativeEngine,
+			final WindowBasis windowBasis, final double[] prices, final double[][] batchCoefs, final int index,
+			final RunContext runContext) {
+		return new MyCPUCallable(index, hqDerivativeEngine, null, windowBasis, prices,
+				batchCoefs == null ? null : batchCoefs[index], "2017-01-01", "Benchmark", runContext);
+	}
+
+	private static long allocatedBytes() {
+		final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static long collectionCount() {
+		long count = 0;
+		for (final GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count = count + Math.max(0, bean.getCollectionCount());
+		}
+		return count;
+	}
+}
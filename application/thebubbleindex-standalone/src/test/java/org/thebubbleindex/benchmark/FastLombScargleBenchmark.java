@@ -0,0 +1,84 @@
+package org.thebubbleindex.benchmark;
+
+import java.util.Random;
+
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.FastLombScargle;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+
+/**
+ * FastLombScargleBenchmark compares the time per periodogram and the largest
+ * difference relative to the maximum of the direct, the recurrence and the
+ * fast Lomb-Scargle evaluation for several windows and frequency grids.
+ * <p>
+ * Usage: FastLombScargleBenchmark [repetitions]
+ *
+ * @author thebubbleindex
+ */
+public class FastLombScargleBenchmark {
+
+	private static final int[] freqSizes = new int[] { 70, 500, 2000 };
+	private static final int[] windows = new int[] { 52, 256, 1260, 3000 };
+
+	public static void main(final String[] args) {
+		final int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+		System.out.println(String.format("%8s %6s  %12s %12s %12s  %10s", "freqsize", "window", "direct us",
+				"recurrence us", "fast us", "fast error"));
+
+		for (final int freqSize : freqSizes) {
+			for (final int window : windows) {
+				final LombScargle lombScargle = new LombScargle(freqSize, 18, 19, 6.28, 0.38, new Indices());
+				final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+				final FastLombScargle fastLombScargle = new FastLombScargle(lombScargle, windowBasis.LogTimeValues,
+						window);
+
+				final double[] series = new double[window];
+				final Random random = new Random(11);
+				for (int k = 0; k < window; k++) {
+					series[k] = windowBasis.timePowerMH[3][k] * (1.0 + 0.3 * windowBasis.gFunction[5][k])
+							+ 0.001 * random.nextGaussian();
+				}
+
+				final double[] expected = new double[freqSize];
+				final double[] actual = new double[freqSize];
+
+				lombScargle.trigEvaluation = LombScargle.TrigEvaluation.Direct;
+				final double direct = timeDirect(lombScargle, windowBasis, series, expected, repetitions);
+				lombScargle.trigEvaluation = LombScargle.TrigEvaluation.Recurrence;
+				final double recurrence = timeDirect(lombScargle, windowBasis, series, actual, repetitions);
+
+				for (int n = 0; n < repetitions; n++) {
+					fastLombScargle.computeLombScargle(series, actual);
+				}
+				final long start = System.nanoTime();
+				for (int n = 0; n < repetitions; n++) {
+					fastLombScargle.computeLombScargle(series, actual);
+				}
+				final double fast = (System.nanoTime() - start) / 1.0e3 / repetitions;
+
+				double error = 0.0;
+				for (int f = 0; f < freqSize; f++) {
+					error = Math.max(error, Math.abs(actual[f] - expected[f]));
+				}
+
+				System.out.println(String.format("%8d %6d  %12.1f %12.1f %12.1f  %10.2e", freqSize, window, direct,
+						recurrence, fast, error / LombScargle.MaxOneDim(expected, freqSize)));
+			}
+		}
+	}
+
+	private static double timeDirect(final LombScargle lombScargle, final WindowBasis windowBasis,
+			final double[] series, final double[] spectralDensity, final int repetitions) {
+		final int window = windowBasis.numberOfDays;
+		for (int n = 0; n < repetitions; n++) {
+			lombScargle.computeLombScargle(windowBasis.LogTimeValues, series, spectralDensity, window);
+		}
+		final long start = System.nanoTime();
+		for (int n = 0; n < repetitions; n++) {
+			lombScargle.computeLombScargle(windowBasis.LogTimeValues, series, spectralDensity, window);
+		}
+		return (System.nanoTime() - start) / 1.0e3 / repetitions;
+	}
+}
@@ -0,0 +1,129 @@
+package org.thebubbleindex.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+import org.thebubbleindex.testutil.TestUtil;
+
+/**
+ * SinglePrecisionAccuracyReport runs every selection and window of the
+ * sample-results fixtures in double and in single precision and prints the
+ * relative errors of both against the fixture and of single against double
+ * precision, together with the run times.
+ * <p>
+ * Usage: SinglePrecisionAccuracyReport [selection ...]
+ *
+ * @author thebubbleindex
+ */
+public class SinglePrecisionAccuracyReport {
+
+	private static final int[] windows = new int[] { 52, 104, 153, 256, 512, 1260 };
+
+	public static void main(final String[] args) throws IOException, URISyntaxException {
+		final String[] selections = args.length > 0 ? args : new String[] { "BITSTAMPUSD", "TSLA", "DTWEXM" };
+
+		System.out.println(String.format("%-12s %6s %6s  %-23s  %-23s  %-23s  %8s %8s", "selection", "window",
+				"dates", "double vs fixture", "float vs fixture", "float vs double", "double", "float"));
+		System.out.println(String.format("%-12s %6s %6s  %-23s  %-23s  %-23s  %8s %8s", "", "", "",
+				"max rel     mean rel", "max rel     mean rel", "max rel     mean rel", "ms", "ms"));
+
+		for (final String selectionName : selections) {
+			final List<Double> priceValues = new ArrayList<Double>();
+			final List<String> dailyPriceDate = new ArrayList<String>();
+			TestUtil.parseDailyDataDoubles(readLines(selectionName + "/" + selectionName + "dailydata.csv"),
+					priceValues, dailyPriceDate);
+
+			final int dataSize = dailyPriceDate.size();
+			final double[] dailyPriceValues = new double[dataSize];
+			for (int i = 0; i < dataSize; i++) {
+				dailyPriceValues[i] = priceValues.get(i);
+			}
+
+			for (final int window : windows) {
+				final List<Double> expected = readResults(
+						readLines(selectionName + "/" + selectionName + String.valueOf(window) + "days.csv"));
+
+				final List<Double> doubleResults = new ArrayList<Double>();
+				final List<Double> floatResults = new ArrayList<Double>();
+				final long doubleTime = run(dailyPriceValues, dataSize, window, doubleResults, dailyPriceDate,
+						selectionName, false);
+				final long floatTime = run(dailyPriceValues, dataSize, window, floatResults, dailyPriceDate,
+						selectionName, true);
+
+				System.out.println(String.format("%-12s %6d %6d  %s  %s  %s  %8d %8d", selectionName, window,
+						expected.size(), errors(expected, doubleResults), errors(expected, floatResults),
+						errors(doubleResults, floatResults), doubleTime, floatTime));
+			}
+		}
+	}
+
+	private static long run(final double[] dailyPriceValues, final int dataSize, final int window,
+			final List<Double> results, final List<String> dailyPriceDate, final String selectionName,
+			final boolean singlePrecision) {
+		final RunContext runContext = new RunContext(false, true, Runtime.getRuntime().availableProcessors());
+		runContext.setSinglePrecision(singlePrecision);
+
+		final PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(final int b) {
+			}
+		}));
+
+		try {
+			final long start = System.nanoTime();
+			final RunIndex runIndex = new RunIndex(null, dailyPriceValues, dataSize, window, results, dailyPriceDate,
+					"", selectionName, 6.28, 0.38, 21.0, new Indices(), null, runContext);
+			runIndex.execIndexWithCPU();
+			return (System.nanoTime() - start) / 1000000;
+		} finally {
+			System.setOut(console);
+		}
+	}
+
+	private static String errors(final List<Double> expected, final List<Double> actual) {
+		double max = 0.0;
+		double sum = 0.0;
+		int count = 0;
+		for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+			final double reference = Math.abs(expected.get(i));
+			if (reference < 1.0) {
+				continue; // relative error is meaningless near zero
+			}
+			final double error = Math.abs(actual.get(i) - expected.get(i)) / reference;
+			max = Math.max(max, error);
+			sum = sum + error;
+			count++;
+		}
+		return String.format("%10.3e  %10.3e", max, count == 0 ? 0.0 : sum / count);
+	}
+
+	private static List<String> readLines(final String name) throws IOException, URISyntaxException {
+		final URL url = SinglePrecisionAccuracyReport.class.getClassLoader().getResource("sample-results/" + name);
+		return Files.readAllLines(new File(url.toURI()).toPath(), Charset.defaultCharset());
+	}
+
+	private static List<Double> readResults(final List<String> lines) {
+		final List<Double> values = new ArrayList<Double>();
+		for (int i = 1; i < lines.size(); i++) {
+			final Scanner lineScan = new Scanner(lines.get(i));
+			lineScan.useDelimiter(",|\t");
+			lineScan.next();// index
+			values.add(Double.parseDouble(lineScan.next()));
+			lineScan.close();
+		}
+		return values;
+	}
+}
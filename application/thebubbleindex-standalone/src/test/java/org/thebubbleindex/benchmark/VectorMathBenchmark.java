@@ -0,0 +1,114 @@
+package org.thebubbleindex.benchmark;
+
+import java.util.Random;
+
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.JavaVectorMath;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.VectorMath;
+import org.thebubbleindex.math.VectorMaths;
+import org.thebubbleindex.math.WindowBasis;
+
+/**
+ * VectorMathBenchmark compares the throughput of the Yeppp and Java vector
+ * math backends, for each operation and for the Direct Lomb-Scargle scan of a
+ * date.
+ * <p>
+ * Usage: VectorMathBenchmark [size] [repetitions]
+ *
+ * @author thebubbleindex
+ */
+public class VectorMathBenchmark {
+
+	private interface Operation {
+		void run(VectorMath vectorMath);
+	}
+
+	public static void main(final String[] args) {
+		final int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		final int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		final VectorMath[] backends = new VectorMath[] { VectorMaths.create(VectorMaths.Backend.Yeppp),
+				new JavaVectorMath() };
+
+		final double[] x = new double[size];
+		final double[] y = new double[size];
+		final double[] z = new double[size];
+		final Random random = new Random(5);
+		for (int i = 0; i < size; i++) {
+			x[i] = 1.0 + random.nextDouble() * 100.0;
+			y[i] = random.nextDouble();
+		}
+
+		final String[] names = new String[] { "add", "add scalar", "multiply", "multiply scalar", "log", "cos", "sin" };
+		final Operation[] operations = new Operation[] { new Operation() {
+			@Override
+			public void run(final VectorMath vectorMath) {
+				vectorMath.add(x, 0, y, 0, z, 0, size);
+			}
+		}, new Operation() {
+			@Override
+			public void run(final VectorMath vectorMath) {
+				vectorMath.add(x, 0, 0.5, z, 0, size);
+			}
+		}, new Operation() {
+			@Override
+			public void run(final VectorMath vectorMath) {
+				vectorMath.multiply(x, 0, y, 0, z, 0, size);
+			}
+		}, new Operation() {
+			@Override
+			public void run(final VectorMath vectorMath) {
+				vectorMath.multiply(x, 0, 0.5, z, 0, size);
+			}
+		}, new Operation() {
+			@Override
+			public void run(final VectorMath vectorMath) {
+				vectorMath.log(x, 0, z, 0, size);
+			}
+		}, new Operation() {
+			@Override
+			public void run(final VectorMath vectorMath) {
+				vectorMath.cos(x, 0, z, 0, size);
+			}
+		}, new Operation() {
+			@Override
+			public void run(final VectorMath vectorMath) {
+				vectorMath.sin(x, 0, z, 0, size);
+			}
+		} };
+
+		for (int o = 0; o < operations.length; o++) {
+			final StringBuilder line = new StringBuilder(String.format("%-16s", names[o]));
+			for (final VectorMath vectorMath : backends) {
+				// warm up
+				for (int r = 0; r < repetitions / 10; r++) {
+					operations[o].run(vectorMath);
+				}
+				final long start = System.nanoTime();
+				for (int r = 0; r < repetitions; r++) {
+					operations[o].run(vectorMath);
+				}
+				final double nanosPerElement = (System.nanoTime() - start) * 1.0 / repetitions / size;
+				line.append(String.format("  %s %8.3f ns/element", vectorMath.getName(), nanosPerElement));
+			}
+			System.out.println(line);
+		}
+
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		lombScargle.engine = LombScargle.Engine.Direct;
+		final double[] Coef = new double[] { 4.6, -0.4, 0.02 };
+		final StringBuilder line = new StringBuilder(String.format("%-16s", "direct scan"));
+		for (final VectorMath vectorMath : backends) {
+			VectorMaths.set(vectorMath.getName().equals("Yeppp") ? VectorMaths.Backend.Yeppp
+					: VectorMaths.Backend.Java);
+			final WindowBasis windowBasis = new WindowBasis(lombScargle, Math.min(size, 512), 21.0);
+			lombScargle.hqDerivative(windowBasis, Coef);
+			final long start = System.nanoTime();
+			final double value = lombScargle.hqDerivative(windowBasis, Coef);
+			line.append(String.format("  %s %8.1f ms/date (%.6f)", vectorMath.getName(),
+					(System.nanoTime() - start) / 1.0e6, value));
+		}
+		System.out.println(line);
+	}
+}
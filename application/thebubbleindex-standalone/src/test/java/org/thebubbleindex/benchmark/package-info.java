@@ -0,0 +1,9 @@
+/**
+ * Stand-alone benchmarks run with their main method. They are not unit tests
+ * and are not run by the build.
+ */
+/**
+ * @author thebubbleindex
+ *
+ */
+package org.thebubbleindex.benchmark;
@@ -121,6 +121,54 @@ public class MyCPUCallableTest {
 
 	}
 
+	@Test
+	public void singlePrecisionResultsShouldMatchBITSTAMPUSD() throws IOException, URISyntaxException {
+		final Indices indices = new Indices();
+		final RunContext runContext = new RunContext();
+
+		final String selectionName = "BITSTAMPUSD";
+		final String folder = "ProgramData";
+		final String folderType = "Currencies";
+		final double omegaDouble = 6.28;
+		final double mCoeffDouble = 0.38;
+		final double tCritDouble = 21.0;
+		final String pathRoot = folder + fileSep + folderType + fileSep + selectionName + fileSep + selectionName;
+
+		final URL dailyDataUrl = getClass().getClassLoader().getResource(pathRoot + "dailydata.csv");
+		final Path dailyDataPath = new File(dailyDataUrl.toURI()).toPath();
+
+		final List<String> lines = Files.readAllLines(dailyDataPath, Charset.defaultCharset());
+		final List<String> dailyPriceDate = new ArrayList<String>();
+		final List<Double> priceValues = new ArrayList<Double>();
+		final List<Double> results = new ArrayList<Double>();
+
+		parseDailyData(lines, priceValues, dailyPriceDate);
+
+		final int dataSize = dailyPriceDate.size();
+		final double[] dailyPriceValues = new double[dataSize];
+		for (int i = 0; i < dataSize; i++) {
+			dailyPriceValues[i] = priceValues.get(i);
+		}
+
+		runContext.setThreadNumber(4);
+		runContext.setGUI(false);
+		runContext.setForceCPU(true);
+		runContext.setSinglePrecision(true);
+
+		final List<Integer> testWindows = new ArrayList<Integer>(5);
+		testWindows.add(52);
+		testWindows.add(104);
+		testWindows.add(153);
+		testWindows.add(256);
+		testWindows.add(512);
+
+		for (final Integer window : testWindows) {
+			testWindow(pathRoot, dailyPriceValues, dataSize, window, results, dailyPriceDate, selectionName,
+					omegaDouble, mCoeffDouble, tCritDouble, indices, null, runContext);
+		}
+
+	}
+
 	@Test
 	public void shouldUpdateExistingDataCorrectly() throws IOException, URISyntaxException {
 
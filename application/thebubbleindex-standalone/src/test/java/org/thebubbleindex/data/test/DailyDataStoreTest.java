@@ -0,0 +1,164 @@
+package org.thebubbleindex.data.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.data.DailyDataStore;
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.util.Utilities;
+
+public class DailyDataStoreTest {
+
+	final String selectionName = "BITSTAMPUSD";
+	final int dataSize = 300;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void importedStoreShouldMatchTextAndExportBack() throws IOException, URISyntaxException {
+		final File tsv = createDailyData(temporaryFolder.newFolder("import"));
+		final List<String> dates = new ArrayList<String>();
+		final List<String> prices = new ArrayList<String>();
+		Utilities.ReadValues(tsv.getPath(), dates, prices, false, false);
+
+		assertFalse(DailyDataStore.isFresh(tsv.getPath()));
+		final DailyDataStore store = DailyDataStore.importTsv(tsv.getPath());
+		assertTrue(DailyDataStore.isFresh(tsv.getPath()));
+		assertEquals(dataSize, DailyDataStore.countDates(tsv.getPath()));
+		assertEquals(dates, store.getDates());
+		final double[] storePrices = new double[store.size()];
+		store.copyPrices(storePrices);
+		for (int i = 0; i < dataSize; i++) {
+			assertEquals(Double.parseDouble(prices.get(i)), storePrices[i], 0.0);
+		}
+
+		final File exported = new File(temporaryFolder.newFolder("export"), selectionName + "dailydata.csv");
+		DailyDataStore.exportTsv(store.getStorePath(), exported.getPath());
+		assertTrue(DailyDataStore.isFresh(exported.getPath()));
+		final List<String> exportedDates = new ArrayList<String>();
+		final List<String> exportedPrices = new ArrayList<String>();
+		Utilities.ReadValues(exported.getPath(), exportedDates, exportedPrices, false, false);
+		assertEquals(dates, exportedDates);
+		for (int i = 0; i < dataSize; i++) {
+			assertEquals(Double.parseDouble(prices.get(i)), Double.parseDouble(exportedPrices.get(i)), 0.0);
+		}
+	}
+
+	@Test
+	public void cacheShouldMatchTextAndImportStaleOrCorruptStores() throws IOException, URISyntaxException {
+		final File tsv = createDailyData(temporaryFolder.getRoot());
+		final DailyDataCache textCache = new DailyDataCache();
+		final RunContext textContext = new RunContext(false, true, 1);
+		textContext.setBinaryDailyData(false);
+		textCache.load(selectionName, tsv.getPath(), textContext);
+		assertFalse(new File(DailyDataStore.storePath(tsv.getPath())).exists());
+
+		final RunContext runContext = new RunContext(false, true, 1);
+		assertBinaryLoadEquals(textCache, tsv, runContext);
+		assertTrue(DailyDataStore.isFresh(tsv.getPath()));
+
+		final List<String> lines = Files.readAllLines(tsv.toPath(), Charset.defaultCharset());
+		lines.set(10, lines.get(10).split("\t")[0] + "\t123.25");
+		Files.write(tsv.toPath(), lines, Charset.defaultCharset());
+		assertTrue(tsv.setLastModified(tsv.lastModified() + 2000));
+		assertFalse(DailyDataStore.isFresh(tsv.getPath()));
+		textCache.load(selectionName, tsv.getPath(), textContext);
+		assertEquals(123.25, textCache.getDailyPriceDoubleValues()[10], 0.0);
+		assertBinaryLoadEquals(textCache, tsv, runContext);
+
+		final RandomAccessFile store = new RandomAccessFile(DailyDataStore.storePath(tsv.getPath()), "rw");
+		try {
+			store.seek(DailyDataStore.HEADER_BYTES + 8 * 10);
+			store.write(0x7f);
+		} finally {
+			store.close();
+		}
+		try {
+			DailyDataStore.open(DailyDataStore.storePath(tsv.getPath()));
+			fail("A corrupt store should not open");
+		} catch (final IOException ex) {
+			assertTrue(ex.getMessage().startsWith("Checksum"));
+		}
+		assertBinaryLoadEquals(textCache, tsv, runContext);
+	}
+
+	@Test
+	public void concurrentImportsShouldEachWriteTheirOwnTemporaryFile() throws Exception {
+		final File tsv = createDailyData(temporaryFolder.newFolder("concurrent"));
+		final List<String> dates = new ArrayList<String>();
+		final List<String> prices = new ArrayList<String>();
+		Utilities.ReadValues(tsv.getPath(), dates, prices, false, false);
+
+		final int writers = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(writers);
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Future<DailyDataStore>> imports = new ArrayList<Future<DailyDataStore>>();
+		try {
+			for (int w = 0; w < writers; w++) {
+				imports.add(executor.submit(new Callable<DailyDataStore>() {
+					@Override
+					public DailyDataStore call() throws Exception {
+						start.await();
+						return DailyDataStore.importTsv(tsv.getPath());
+					}
+				}));
+			}
+			start.countDown();
+			for (final Future<DailyDataStore> future : imports) {
+				assertEquals(dataSize, future.get().size());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		final DailyDataStore store = DailyDataStore.open(DailyDataStore.storePath(tsv.getPath()));
+		assertEquals(dates, store.getDates());
+		final String[] files = tsv.getParentFile().list();
+		for (final String file : files) {
+			assertFalse(file, file.endsWith(".tmp"));
+		}
+	}
+
+	private void assertBinaryLoadEquals(final DailyDataCache expected, final File tsv, final RunContext runContext) {
+		final DailyDataCache binaryCache = new DailyDataCache();
+		binaryCache.load(selectionName, tsv.getPath(), runContext);
+		assertEquals(expected.getDailyPriceDate(), binaryCache.getDailyPriceDate());
+		assertArrayEquals(expected.getDailyPriceDoubleValues(), binaryCache.getDailyPriceDoubleValues(), 0.0);
+		assertArrayEquals(expected.getDailyPriceLogValues(), binaryCache.getDailyPriceLogValues(), 0.0);
+		assertEquals(expected.getDailyPriceData().size(), binaryCache.getDailyPriceData().size());
+	}
+
+	private File createDailyData(final File folder) throws IOException, URISyntaxException {
+		final String resource = "ProgramData" + File.separator + "Currencies" + File.separator + selectionName
+				+ File.separator + selectionName + "dailydata.csv";
+		final URL dailyDataUrl = getClass().getClassLoader().getResource(resource);
+		final List<String> lines = Files.readAllLines(new File(dailyDataUrl.toURI()).toPath(),
+				Charset.defaultCharset());
+		final File tsv = new File(folder, selectionName + "dailydata.csv");
+		Files.write(tsv.toPath(), lines.subList(0, dataSize), Charset.defaultCharset());
+		return tsv;
+	}
+}
@@ -0,0 +1,192 @@
+package org.thebubbleindex.driver.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.driver.ClusterCoordinator;
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.driver.MultiWindowRun;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.VectorMaths;
+import org.thebubbleindex.runnable.ResultStore;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.testutil.TestUtil;
+import org.thebubbleindex.util.Utilities;
+
+public class ClusterCoordinatorTest {
+
+	final String[] selectionNames = new String[] { "BITSTAMPUSD", "EURJPY" };
+	final int[] dataSizes = new int[] { 420, 300 };
+	final int[] windows = new int[] { 52, 104, 153, 350 };
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void outputShouldMatchMultiWindowRun() throws IOException, URISyntaxException {
+		final Indices expectedIndices = runExpected();
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("cluster"), selectionNames,
+				dataSizes);
+
+		final ClusterCoordinator clusterCoordinator = createCoordinator(indices, true);
+		clusterCoordinator.start("127.0.0.1", 0);
+		clusterCoordinator.launchWorkers(2, 1);
+		clusterCoordinator.run();
+
+		assertEquals(7, clusterCoordinator.getCompletedJobs());
+		assertEquals(0, clusterCoordinator.getFailedJobs());
+		assertEquals(0, clusterCoordinator.getReassignedJobs());
+		assertOutputEquals(expectedIndices, indices);
+		assertResultStoreEquals(indices);
+	}
+
+	@Test
+	public void jobOfDeadWorkerShouldBeReassigned() throws IOException, URISyntaxException, InterruptedException {
+		final Indices expectedIndices = runExpected();
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("cluster"), selectionNames,
+				dataSizes);
+
+		final ClusterCoordinator clusterCoordinator = createCoordinator(indices, false);
+		clusterCoordinator.start("127.0.0.1", 0);
+
+		// a worker which dies after it has been given a job
+		final Socket socket = new Socket("127.0.0.1", clusterCoordinator.getPort());
+		final Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+		writer.write("HELLO\tdying\n");
+		writer.flush();
+		final String job = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+				.readLine();
+		assertTrue(job.startsWith("JOB\t"));
+		socket.close();
+
+		final long deadline = System.currentTimeMillis() + 60000;
+		while (clusterCoordinator.getReassignedJobs() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, clusterCoordinator.getReassignedJobs());
+
+		clusterCoordinator.launchWorkers(1, 2);
+		clusterCoordinator.run();
+
+		assertEquals(7, clusterCoordinator.getCompletedJobs());
+		assertEquals(0, clusterCoordinator.getFailedJobs());
+		assertOutputEquals(expectedIndices, indices);
+	}
+
+	@Test
+	public void outputOfChangedParametersShouldBePreparedByTheCoordinator() throws IOException, URISyntaxException {
+		final Indices expectedIndices = runExpected();
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("cluster"), selectionNames,
+				dataSizes);
+		// output files and manifests of another critical time, which the read only workers leave to the
+		// coordinator
+		for (final String selectionName : selectionNames) {
+			final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 20.0, windows, "Currencies",
+					selectionName, new DailyDataCache(), indices, null, new RunContext(false, true, 2));
+			multiWindowRun.run(null);
+			multiWindowRun.outputResults(null);
+		}
+
+		final ClusterCoordinator clusterCoordinator = createCoordinator(indices, false);
+		clusterCoordinator.start("127.0.0.1", 0);
+		clusterCoordinator.launchWorkers(1, 2);
+		clusterCoordinator.run();
+
+		assertEquals(7, clusterCoordinator.getCompletedJobs());
+		assertEquals(0, clusterCoordinator.getFailedJobs());
+		assertOutputEquals(expectedIndices, indices);
+	}
+
+	@Test
+	public void localWorkersShouldGetTheSettingsOfTheRun() {
+		final RunContext runContext = new RunContext(false, true, 1);
+		runContext.setSinglePrecision(true);
+		runContext.setBinaryDailyData(false);
+		System.setProperty("progressinterval", "250");
+		try {
+			final List<String> properties = ClusterCoordinator.workerProperties(runContext);
+			assertTrue(properties.contains("-D" + VectorMaths.PROPERTY + "=" + VectorMaths.get().getName()));
+			assertTrue(properties.contains("-Dsingleprecision=true"));
+			assertTrue(properties.contains("-Ddailydatabinary=false"));
+			assertTrue(properties.contains("-Dprogressinterval=250"));
+		} finally {
+			System.clearProperty("progressinterval");
+		}
+	}
+
+	private ClusterCoordinator createCoordinator(final Indices indices, final boolean resultStore) {
+		final RunContext runContext = new RunContext(false, true, 1);
+		runContext.setResultStore(resultStore);
+		final ClusterCoordinator clusterCoordinator = new ClusterCoordinator(6.28, 0.38, 21.0, windows, indices,
+				runContext);
+		for (final String selectionName : selectionNames) {
+			clusterCoordinator.addSelection("Currencies", selectionName);
+		}
+		return clusterCoordinator;
+	}
+
+	private Indices runExpected() throws IOException, URISyntaxException {
+		final Indices expectedIndices = TestUtil.createProgramData(temporaryFolder.newFolder("expected"),
+				selectionNames, dataSizes);
+		final RunContext runContext = new RunContext(false, true, 2);
+		for (final String selectionName : selectionNames) {
+			final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 21.0, windows, "Currencies",
+					selectionName, new DailyDataCache(), expectedIndices, null, runContext);
+			multiWindowRun.run(null);
+			multiWindowRun.outputResults(null);
+		}
+		return expectedIndices;
+	}
+
+	private void assertOutputEquals(final Indices expectedIndices, final Indices indices) throws IOException {
+		for (int s = 0; s < selectionNames.length; s++) {
+			for (final int window : windows) {
+				final File expected = TestUtil.outputFile(expectedIndices, selectionNames[s], window);
+				final File actual = TestUtil.outputFile(indices, selectionNames[s], window);
+				assertEquals(expected.exists(), actual.exists());
+				if (window < dataSizes[s]) {
+					assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+				}
+			}
+		}
+	}
+
+	private void assertResultStoreEquals(final Indices indices) throws IOException {
+		for (int s = 0; s < selectionNames.length; s++) {
+			final ResultStore store = ResultStore
+					.open(ResultStore.storePath(TestUtil.savePath(indices, selectionNames[s]), selectionNames[s]));
+			for (final int window : windows) {
+				if (window < dataSizes[s]) {
+					final List<String> values = new ArrayList<String>();
+					final List<String> dates = new ArrayList<String>();
+					final File outputFile = TestUtil.outputFile(indices, selectionNames[s], window);
+					Utilities.ReadValues(outputFile.getPath(), values, dates, true, true);
+					final List<String> storeDates = new ArrayList<String>();
+					final List<Double> storeValues = new ArrayList<Double>();
+					assertTrue(store.readWindow(window, storeDates, storeValues));
+					assertEquals(dates, storeDates);
+					for (int i = 0; i < values.size(); i++) {
+						assertEquals(Double.parseDouble(values.get(i)), storeValues.get(i), 0.0);
+					}
+				}
+			}
+		}
+	}
+}
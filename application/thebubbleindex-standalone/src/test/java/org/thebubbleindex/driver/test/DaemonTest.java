@@ -0,0 +1,155 @@
+package org.thebubbleindex.driver.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.driver.Daemon;
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.driver.MultiWindowRun;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.inputs.InputCategory;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.testutil.TestUtil;
+
+public class DaemonTest {
+
+	final String fileSep = File.separator;
+	final String selectionName = "BITSTAMPUSD";
+	final int dataSize = 420;
+	final int[] windows = new int[] { 52, 104 };
+	final String singleJob = "/jobs?type=Single&category=Currencies&selection=BITSTAMPUSD&windows=52,104"
+			+ "&tcrit=21.0&m=0.38&omega=6.28";
+	final String categoryJob = "/jobs?type=Category&category=Currencies&windows=52,104&tcrit=21.0&m=0.38&omega=6.28";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void repeatedJobsShouldMatchMultiWindowRunAndReuseWindowBases()
+			throws IOException, URISyntaxException, InterruptedException {
+		final Indices expectedIndices = TestUtil.createProgramData(temporaryFolder.newFolder("expected"),
+				new String[] { selectionName }, new int[] { dataSize });
+		final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 21.0, windows, "Currencies",
+				selectionName, new DailyDataCache(), expectedIndices, null, new RunContext(false, true, 2));
+		multiWindowRun.run(null);
+		multiWindowRun.outputResults(null);
+
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("daemon"),
+				new String[] { selectionName }, new int[] { dataSize });
+		addCategory(indices, selectionName);
+		final Daemon daemon = new Daemon(indices, null, new RunContext(false, true, 2));
+		daemon.start("127.0.0.1", 0);
+		try {
+			assertTrue(request(daemon, "POST", singleJob, 202).contains("\"id\":1"));
+			awaitDone(daemon, 1);
+			assertOutputEquals(expectedIndices, indices);
+			assertEquals(0, daemon.getWindowBasisCache().getHits());
+
+			for (final int window : windows) {
+				assertTrue(TestUtil.outputFile(indices, selectionName, window).delete());
+			}
+			assertTrue(request(daemon, "POST", singleJob, 202).contains("\"id\":2"));
+			awaitDone(daemon, 2);
+			assertOutputEquals(expectedIndices, indices);
+			assertEquals(windows.length, daemon.getWindowBasisCache().getHits());
+
+			// the jobs of a category share the same cache
+			for (final int window : windows) {
+				assertTrue(TestUtil.outputFile(indices, selectionName, window).delete());
+			}
+			assertTrue(request(daemon, "POST", categoryJob, 202).contains("\"id\":3"));
+			awaitDone(daemon, 3);
+			assertOutputEquals(expectedIndices, indices);
+			assertEquals(2 * windows.length, daemon.getWindowBasisCache().getHits());
+
+			final String list = request(daemon, "GET", "/jobs", 200);
+			assertTrue(list, list.startsWith("[{\"id\":1,\"type\":\"Single\""));
+		} finally {
+			request(daemon, "POST", "/shutdown", 200);
+			daemon.awaitShutdown();
+		}
+	}
+
+	@Test
+	public void invalidRequestsShouldBeRejected() throws IOException, InterruptedException {
+		final Indices indices = new Indices();
+		indices.setUserDir(temporaryFolder.getRoot() + fileSep);
+		addCategory(indices, selectionName);
+		final Daemon daemon = new Daemon(indices, null, new RunContext(false, true, 1));
+		daemon.start("127.0.0.1", 0);
+		try {
+			assertTrue(request(daemon, "POST", "/jobs?type=Bogus", 400).contains("Unknown type Bogus"));
+			assertTrue(request(daemon, "POST", "/jobs?type=Single&category=Currencies&windows=52&tcrit=21.0"
+					+ "&m=0.38&omega=6.28", 400).contains("Missing parameter selection"));
+			assertTrue(request(daemon, "POST", "/jobs?type=Category&category=Stocks&windows=52&tcrit=21.0"
+					+ "&m=0.38&omega=6.28", 400).contains("Unknown category Stocks"));
+			assertTrue(request(daemon, "POST", "/jobs?type=Single&category=Currencies&selection=..%2F"
+					+ selectionName + "&windows=52&tcrit=21.0&m=0.38&omega=6.28", 400)
+					.contains("Unknown selection ../" + selectionName));
+			assertTrue(request(daemon, "POST", "/jobs?type=All&windows=52,x&tcrit=21.0&m=0.38&omega=6.28", 400)
+					.contains("Invalid number"));
+			request(daemon, "GET", "/jobs/7", 404);
+			assertEquals("[]\n", request(daemon, "GET", "/jobs", 200));
+		} finally {
+			request(daemon, "POST", "/shutdown", 200);
+			daemon.awaitShutdown();
+		}
+	}
+
+	private void addCategory(final Indices indices, final String... selectionNames) {
+		final InputCategory inputCategory = new InputCategory("Currencies", indices);
+		inputCategory.getComponents().addAll(Arrays.asList(selectionNames));
+		indices.getCategoriesAndComponents().put("Currencies", inputCategory);
+	}
+
+	private void awaitDone(final Daemon daemon, final int id) throws IOException, InterruptedException {
+		final long deadline = System.currentTimeMillis() + 120000;
+		String job = request(daemon, "GET", "/jobs/" + id, 200);
+		while (!job.contains("\"state\":\"DONE\"") && System.currentTimeMillis() < deadline) {
+			assertTrue(job, job.contains("\"state\":\"QUEUED\"") || job.contains("\"state\":\"RUNNING\""));
+			Thread.sleep(20);
+			job = request(daemon, "GET", "/jobs/" + id, 200);
+		}
+		assertTrue(job, job.contains("\"state\":\"DONE\""));
+	}
+
+	private String request(final Daemon daemon, final String method, final String path, final int status)
+			throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + daemon.getPort() + path).openConnection();
+		connection.setRequestMethod(method);
+		assertEquals(status, connection.getResponseCode());
+		final InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			body.write(buffer, 0, read);
+		}
+		input.close();
+		return new String(body.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private void assertOutputEquals(final Indices expectedIndices, final Indices indices) throws IOException {
+		for (final int window : windows) {
+			assertArrayEquals(
+					Files.readAllBytes(TestUtil.outputFile(expectedIndices, selectionName, window).toPath()),
+					Files.readAllBytes(TestUtil.outputFile(indices, selectionName, window).toPath()));
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package org.thebubbleindex.driver.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.driver.JobCostModel;
+import org.thebubbleindex.driver.JobTiming;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.LombScargle;
+
+public class JobCostModelTest {
+
+	final double epsilon = 0.000000001;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void unitsShouldScaleWithWindowDatesAndGrid() {
+		final Indices indices = createIndices();
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, indices);
+		final JobCostModel jobCostModel = new JobCostModel(lombScargle, indices);
+
+		assertFalse(jobCostModel.isCalibrated());
+		assertEquals(52.0 * 100 * 70 * 18 * 19, jobCostModel.units(52, 100), epsilon);
+		assertEquals(0.0, jobCostModel.units(52, 0), epsilon);
+		assertEquals(4 * jobCostModel.estimateNanos(jobCostModel.units(52, 100), 4),
+				jobCostModel.estimateNanos(jobCostModel.units(52, 100), 1), 4.0);
+	}
+
+	@Test
+	public void calibrationShouldBeSmoothedAndSaved() {
+		final Indices indices = createIndices();
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, indices);
+		final JobCostModel jobCostModel = new JobCostModel(lombScargle, indices);
+		final double units = jobCostModel.units(100, 200) + jobCostModel.units(50, 200);
+
+		final List<JobTiming> jobTimings = new ArrayList<JobTiming>();
+		jobTimings.add(new JobTiming("Currencies", "A", 100, 200, 0, 1000, true));
+		jobTimings.add(new JobTiming("Currencies", "A", 50, 200, 0, 1000, true));
+		jobTimings.add(new JobTiming("Currencies", "B", 500, 0, 0, 1000, false));
+
+		// too short to calibrate
+		jobCostModel.calibrate(jobTimings, 1000, 2);
+		assertFalse(jobCostModel.isCalibrated());
+
+		final long elapsedNanos = 4000000000L;
+		jobCostModel.calibrate(jobTimings, elapsedNanos, 2);
+		assertTrue(jobCostModel.isCalibrated());
+		assertEquals(2.0 * elapsedNanos / units, jobCostModel.getNanosPerUnit(), epsilon);
+
+		final JobCostModel savedModel = new JobCostModel(lombScargle, indices);
+		assertTrue(savedModel.isCalibrated());
+		assertEquals(jobCostModel.getNanosPerUnit(), savedModel.getNanosPerUnit(), epsilon);
+
+		savedModel.calibrate(jobTimings, 2 * elapsedNanos, 2);
+		assertEquals(1.5 * 2.0 * elapsedNanos / units, savedModel.getNanosPerUnit(), epsilon);
+
+		lombScargle.engine = LombScargle.Engine.Direct;
+		assertFalse(new JobCostModel(lombScargle, indices).isCalibrated());
+	}
+
+	@Test
+	public void durationShouldBeFormatted() {
+		assertEquals("0s", JobCostModel.formatDuration(-5));
+		assertEquals("59s", JobCostModel.formatDuration(59999999999L));
+		assertEquals("2m 05s", JobCostModel.formatDuration(125000000000L));
+		assertEquals("1h 01m 01s", JobCostModel.formatDuration(3661000000000L));
+	}
+
+	private Indices createIndices() {
+		assertTrue(new File(temporaryFolder.getRoot(), "ProgramData").mkdirs());
+		final Indices indices = new Indices();
+		indices.setUserDir(temporaryFolder.getRoot() + File.separator);
+		return indices;
+	}
+}
@@ -0,0 +1,116 @@
+package org.thebubbleindex.driver.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.driver.JobScheduler;
+import org.thebubbleindex.driver.JobTiming;
+import org.thebubbleindex.driver.MultiWindowRun;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.testutil.TestUtil;
+
+public class JobSchedulerTest {
+
+	final String[] selectionNames = new String[] { "BITSTAMPUSD", "EURJPY" };
+	final int[] dataSizes = new int[] { 420, 300 };
+	final int[] windows = new int[] { 52, 104, 153, 350 };
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void outputShouldMatchMultiWindowRun() throws IOException, URISyntaxException {
+		final Indices expectedIndices = TestUtil.createProgramData(temporaryFolder.newFolder("expected"),
+				selectionNames, dataSizes);
+		final RunContext runContext = new RunContext(false, true, 2);
+		for (final String selectionName : selectionNames) {
+			final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 21.0, windows, "Currencies",
+					selectionName, new DailyDataCache(), expectedIndices, null, runContext);
+			multiWindowRun.run(null);
+			multiWindowRun.outputResults(null);
+		}
+
+		for (final long memoryBudget : new long[] { 1, 0 }) {
+			final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("budget" + memoryBudget),
+					selectionNames, dataSizes);
+			runContext.setMemoryBudget(memoryBudget);
+
+			final JobScheduler jobScheduler = createJobScheduler(indices, runContext);
+			jobScheduler.run(null);
+			assertEquals(7, jobScheduler.getCompletedJobs());
+			assertEquals(0, jobScheduler.getFailedJobs());
+
+			for (int s = 0; s < selectionNames.length; s++) {
+				for (final int window : windows) {
+					final File expected = TestUtil.outputFile(expectedIndices, selectionNames[s], window);
+					final File actual = TestUtil.outputFile(indices, selectionNames[s], window);
+					assertEquals(expected.exists(), actual.exists());
+					if (window < dataSizes[s]) {
+						assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void everyJobShouldBeTimed() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.getRoot(), selectionNames, dataSizes);
+		final RunContext runContext = new RunContext(false, true, 2);
+
+		final JobScheduler jobScheduler = createJobScheduler(indices, runContext);
+		jobScheduler.run(null);
+		final List<JobTiming> jobTimings = jobScheduler.getJobTimings();
+		assertEquals(7, jobTimings.size());
+		for (final JobTiming jobTiming : jobTimings) {
+			assertTrue(jobTiming.completed);
+			assertEquals(dataSizes[selectionNames[0].equals(jobTiming.selectionName) ? 0 : 1] - jobTiming.window,
+					jobTiming.dates);
+			assertTrue(jobTiming.runNanos > 0);
+			assertTrue(jobTiming.queuedNanos >= 0);
+		}
+
+		final JobScheduler updateScheduler = createJobScheduler(indices, runContext);
+		updateScheduler.run(null);
+		assertEquals(0, updateScheduler.getCompletedJobs());
+		assertEquals(7, updateScheduler.getFailedJobs());
+		assertEquals(dataSizes[0] - 52 + 1,
+				Files.readAllLines(TestUtil.outputFile(indices, selectionNames[0], 52).toPath(),
+						Charset.defaultCharset())
+						.size());
+	}
+
+	@Test
+	public void jobsShouldBeStartedLongestFirst() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.getRoot(), selectionNames, dataSizes);
+		final RunContext runContext = new RunContext(false, true, 2);
+
+		final JobScheduler jobScheduler = createJobScheduler(indices, runContext);
+		jobScheduler.run(null);
+		// ordered by window * (dataSize - window)
+		assertEquals(Arrays.asList("BITSTAMPUSD153", "BITSTAMPUSD104", "BITSTAMPUSD350", "EURJPY153", "EURJPY104",
+				"BITSTAMPUSD52", "EURJPY52"), jobScheduler.getDispatchOrder());
+	}
+
+	private JobScheduler createJobScheduler(final Indices indices, final RunContext runContext) {
+		final JobScheduler jobScheduler = new JobScheduler(6.28, 0.38, 21.0, windows, indices, null, runContext);
+		for (final String selectionName : selectionNames) {
+			jobScheduler.addSelection("Currencies", selectionName);
+		}
+		return jobScheduler;
+	}
+}
@@ -0,0 +1,98 @@
+package org.thebubbleindex.driver.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.driver.MultiWindowRun;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+import org.thebubbleindex.testutil.TestUtil;
+
+public class MultiWindowRunTest {
+
+	final double epsilon = 0.000000001;
+	final String fileSep = File.separator;
+	final String selectionName = "BITSTAMPUSD";
+	final int dataSize = 420;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void everyWindowShouldMatchSingleWindowRun() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.getRoot(), new String[] { selectionName },
+				new int[] { dataSize });
+		final RunContext runContext = new RunContext(false, true, 2);
+		final int[] windows = new int[] { 52, 104, 153, 1000 };
+
+		final List<String> dailyPriceDate = new ArrayList<String>();
+		final List<Double> priceValues = new ArrayList<Double>();
+		TestUtil.parseDailyDataDoubles(
+				Files.readAllLines(TestUtil.dailyDataFile(indices, selectionName).toPath(), Charset.defaultCharset()),
+				priceValues, dailyPriceDate);
+		final double[] dailyPriceValues = new double[dataSize];
+		for (int i = 0; i < dataSize; i++) {
+			dailyPriceValues[i] = priceValues.get(i);
+		}
+
+		final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 21.0, windows, "Currencies",
+				selectionName, new DailyDataCache(), indices, null, runContext);
+		multiWindowRun.run(null);
+
+		for (int w = 0; w < windows.length; w++) {
+			final List<Double> expected = new ArrayList<Double>();
+			if (windows[w] < dataSize) {
+				new RunIndex(null, dailyPriceValues, dataSize, windows[w], expected, dailyPriceDate,
+						temporaryFolder.getRoot() + fileSep + "none.csv", selectionName, 6.28, 0.38, 21.0, indices,
+						null, runContext).execIndexWithCPU();
+			}
+
+			final List<Double> actual = multiWindowRun.getResults(w);
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i), actual.get(i), epsilon * Math.max(1.0, Math.abs(expected.get(i))));
+			}
+		}
+	}
+
+	@Test
+	public void outputShouldBeWrittenOncePerWindowAndUpdated() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.getRoot(), new String[] { selectionName },
+				new int[] { dataSize });
+		final RunContext runContext = new RunContext(false, true, 2);
+		final int[] windows = MultiWindowRun.parseWindows("52, 104");
+
+		final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 21.0, windows, "Currencies",
+				selectionName, new DailyDataCache(), indices, null, runContext);
+		multiWindowRun.run(null);
+		multiWindowRun.outputResults(null);
+
+		for (final int window : windows) {
+			final Path output = TestUtil.outputFile(indices, selectionName, window).toPath();
+			assertTrue(output.toFile().exists());
+			// header and one line per date
+			assertEquals(dataSize - window + 1, Files.readAllLines(output, Charset.defaultCharset()).size());
+		}
+
+		final MultiWindowRun updateRun = new MultiWindowRun(6.28, 0.38, 21.0, windows, "Currencies", selectionName,
+				new DailyDataCache(), indices, null, runContext);
+		updateRun.run(null);
+		for (int w = 0; w < windows.length; w++) {
+			assertTrue(updateRun.getResults(w).isEmpty());
+		}
+	}
+}
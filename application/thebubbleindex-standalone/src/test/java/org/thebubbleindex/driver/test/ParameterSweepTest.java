@@ -0,0 +1,111 @@
+package org.thebubbleindex.driver.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.driver.MultiWindowRun;
+import org.thebubbleindex.driver.ParameterSweep;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+import org.thebubbleindex.testutil.TestUtil;
+
+public class ParameterSweepTest {
+
+	final double epsilon = 0.000000001;
+	final String fileSep = File.separator;
+	final String selectionName = "BITSTAMPUSD";
+	final int dataSize = 300;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void rangesShouldBeParsed() {
+		assertArrayEquals(new double[] { 5.5, 6.0, 6.5, 7.0 }, ParameterSweep.parseRange("5.5:7.0:0.5"), epsilon);
+		assertArrayEquals(new double[] { 0.3, 0.38, 0.5 }, ParameterSweep.parseRange("0.3, 0.38,0.5"), epsilon);
+		assertArrayEquals(new double[] { 21.0 }, ParameterSweep.parseRange("21.0"), epsilon);
+		assertArrayEquals(new double[] { 0.1, 0.2, 0.3 }, ParameterSweep.parseRange("0.1:0.3:0.1"), epsilon);
+	}
+
+	@Test
+	public void everyCombinationShouldMatchSingleRun() throws IOException, URISyntaxException {
+		final String folder = "ProgramData" + fileSep + "Currencies" + fileSep + selectionName;
+		final URL dailyDataUrl = getClass().getClassLoader()
+				.getResource(folder + fileSep + selectionName + "dailydata.csv");
+		final List<String> lines = Files.readAllLines(new File(dailyDataUrl.toURI()).toPath(),
+				Charset.defaultCharset()).subList(0, dataSize);
+
+		final File selectionFolder = new File(temporaryFolder.getRoot(), folder);
+		assertTrue(selectionFolder.mkdirs());
+		Files.write(new File(selectionFolder, selectionName + "dailydata.csv").toPath(), lines,
+				Charset.defaultCharset());
+
+		final Indices indices = new Indices();
+		indices.setUserDir(temporaryFolder.getRoot() + fileSep);
+		final RunContext runContext = new RunContext(false, true, 2);
+
+		final double[] omegas = new double[] { 6.28, 7.0 };
+		final double[] mCoeffs = new double[] { 0.38 };
+		final double[] tCrits = new double[] { 21.0, 30.0 };
+		final int[] windows = MultiWindowRun.parseWindows("52,104");
+
+		final ParameterSweep parameterSweep = new ParameterSweep(omegas, mCoeffs, tCrits, windows, "Currencies",
+				selectionName, new DailyDataCache(), indices, runContext);
+		parameterSweep.run(null);
+		assertEquals(8, parameterSweep.getCompletedRuns());
+		assertEquals(0, parameterSweep.getFailedRuns());
+
+		final List<String> cube = Files.readAllLines(new File(selectionFolder, selectionName + "sweep.csv").toPath(),
+				Charset.defaultCharset());
+		assertEquals("Omega,M,TCrit,Window,Date,Value", cube.get(0));
+		assertEquals(1 + 4 * (dataSize - 52) + 4 * (dataSize - 104), cube.size());
+
+		final List<String> dailyPriceDate = new ArrayList<String>();
+		final List<Double> priceValues = new ArrayList<Double>();
+		TestUtil.parseDailyDataDoubles(lines, priceValues, dailyPriceDate);
+		final double[] dailyPriceValues = new double[dataSize];
+		for (int i = 0; i < dataSize; i++) {
+			dailyPriceValues[i] = priceValues.get(i);
+		}
+
+		int row = 1;
+		for (final double tCrit : tCrits) {
+			for (final double mCoeff : mCoeffs) {
+				for (final int window : windows) {
+					for (final double omega : omegas) {
+						final List<Double> expected = new ArrayList<Double>();
+						new RunIndex(null, dailyPriceValues, null, dataSize, window, expected, dailyPriceDate, null,
+								selectionName, omega, mCoeff, tCrit, indices, null, runContext).execIndexWithCPU();
+
+						assertEquals(dataSize - window, expected.size());
+						for (int i = 0; i < expected.size(); i++) {
+							final String[] values = cube.get(row++).split(",");
+							assertEquals(omega, Double.parseDouble(values[0]), epsilon);
+							assertEquals(mCoeff, Double.parseDouble(values[1]), epsilon);
+							assertEquals(tCrit, Double.parseDouble(values[2]), epsilon);
+							assertEquals(window, Integer.parseInt(values[3]));
+							assertEquals(dailyPriceDate.get(i + window), values[4]);
+							assertEquals(expected.get(i), Double.parseDouble(values[5]),
+									epsilon * Math.max(1.0, Math.abs(expected.get(i))));
+						}
+					}
+				}
+			}
+		}
+	}
+}
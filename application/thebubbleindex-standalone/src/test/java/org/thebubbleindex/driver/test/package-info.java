@@ -0,0 +1,5 @@
+/**
+ * @author thebubbleindex
+ *
+ */
+package org.thebubbleindex.driver.test;
\ No newline at end of file
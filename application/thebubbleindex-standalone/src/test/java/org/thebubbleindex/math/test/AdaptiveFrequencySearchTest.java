@@ -0,0 +1,90 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.AdaptiveFrequencySearch;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+import org.thebubbleindex.testutil.TestUtil;
+
+public class AdaptiveFrequencySearchTest {
+	final double epsilon = 0.000000001;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void adaptivePeakShouldNotFallBelowGridPeak() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		final Random random = new Random(97531);
+
+		for (final int window : new int[] { 52, 512 }) {
+			final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+			final AdaptiveFrequencySearch adaptive = new AdaptiveFrequencySearch(lombScargle,
+					windowBasis.LogTimeValues, window);
+
+			final double[] series = new double[window];
+			final double[] spectralDensity = new double[lombScargle.freqSize];
+
+			for (int n = 0; n < 20; n++) {
+				final int i = random.nextInt(lombScargle.qSize);
+				final int j = random.nextInt(lombScargle.hSize);
+				final double cPrime = random.nextGaussian() * 0.1;
+				for (int k = 0; k < window; k++) {
+					series[k] = windowBasis.timePowerMH[j][k] * (1.0 + cPrime * windowBasis.gFunction[i][k]);
+				}
+
+				lombScargle.computeLombScargle(windowBasis.LogTimeValues, series, spectralDensity, window);
+				final double grid = LombScargle.MaxOneDim(spectralDensity, lombScargle.freqSize);
+				final double peak = adaptive.peak(series);
+
+				assertTrue(peak >= grid * (1.0 - epsilon));
+				assertTrue(peak <= grid * 1.01);
+			}
+
+			assertTrue(adaptive.getEvaluations() < adaptive.getSearches() * lombScargle.freqSize);
+		}
+	}
+
+	@Test
+	public void createEngineShouldFollowFrequencySearchSetting() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		lombScargle.engine = LombScargle.Engine.Direct;
+		final WindowBasis windowBasis = new WindowBasis(lombScargle, 153, 21.0);
+		final double[] coef = new double[] { 4.6, -0.8, 0.05 };
+
+		final double grid = lombScargle.createEngine(windowBasis).hqDerivative(coef);
+		lombScargle.frequencySearch = LombScargle.FrequencySearch.Adaptive;
+		final double adaptive = lombScargle.createEngine(windowBasis).hqDerivative(coef);
+
+		assertEquals(grid, adaptive, 0.01 * grid);
+		assertTrue(adaptive >= grid * (1.0 - epsilon));
+	}
+
+	@Test
+	public void runIndexShouldUseAdaptiveSearchWithDirectEngine() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.getRoot(), new String[] { "BITSTAMPUSD" },
+				new int[] { 120 });
+		TestUtil.writeLombScargleProperties(indices, "engine=Direct");
+		final List<Double> grid = TestUtil.runWindow(indices, "BITSTAMPUSD", 52);
+		TestUtil.writeLombScargleProperties(indices, "engine=Direct", "frequencysearch=Adaptive");
+		final List<Double> adaptive = TestUtil.runWindow(indices, "BITSTAMPUSD", 52);
+
+		assertEquals(120 - 52, adaptive.size());
+		assertFalse(grid.equals(adaptive));
+		for (int i = 0; i < grid.size(); i++) {
+			assertEquals(grid.get(i), adaptive.get(i), 0.01 * Math.abs(grid.get(i)));
+		}
+	}
+}
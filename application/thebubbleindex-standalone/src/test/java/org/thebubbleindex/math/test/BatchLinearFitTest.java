@@ -0,0 +1,64 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Test;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.BatchLinearFit;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+import org.thebubbleindex.util.Utilities;
+
+public class BatchLinearFitTest {
+	final double epsilon = 0.000000001;
+
+	@Test
+	public void batchFitShouldMatchPerDateFit() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+
+		final int dataSize = 3000;
+		final double[] prices = new double[dataSize];
+		final Random random = new Random(4321);
+		prices[0] = 15000.0;
+		for (int i = 1; i < dataSize; i++) {
+			prices[i] = prices[i - 1] * FastMath.exp(random.nextGaussian() * 0.02 + 0.0005);
+		}
+
+		final double[] logPrices = new double[dataSize];
+		Utilities.LogPrices(prices, logPrices, dataSize);
+
+		for (final int window : new int[] { 52, 256, 1260 }) {
+			final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+			final int start = 17;
+			final double[][] coefs = BatchLinearFit.fitAll(windowBasis.linearFitOperator, logPrices, dataSize, window,
+					start, dataSize - window);
+
+			final double[] selectedData = new double[window];
+			final double[] expected = new double[3];
+
+			for (int index = start; index < dataSize - window; index++) {
+				System.arraycopy(prices, index + 1, selectedData, 0, window);
+				Utilities.Normalize(selectedData, window);
+				Utilities.DataReverse(selectedData, window);
+				windowBasis.linearFitOperator.fit(selectedData, expected);
+
+				for (int i = 0; i < 3; i++) {
+					assertEquals(expected[i], coefs[index - start][i],
+							epsilon * Math.max(1.0, Math.abs(expected[i])));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void nonPositivePricesShouldNotBeBatched() {
+		final double[] prices = new double[] { 1.0, 2.0, 3.0, 0.0, 4.0 };
+		assertTrue(BatchLinearFit.isBatchable(prices, 3));
+		assertFalse(BatchLinearFit.isBatchable(prices, 5));
+	}
+}
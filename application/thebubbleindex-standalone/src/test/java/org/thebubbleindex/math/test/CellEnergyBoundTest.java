@@ -0,0 +1,75 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.CellEnergyBound;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+
+public class CellEnergyBoundTest {
+
+	@Test
+	public void boundShouldExceedThePeriodogramOfEveryCell() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		final int window = 153;
+		final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+		final CellEnergyBound cellBound = new CellEnergyBound(lombScargle, windowBasis);
+
+		final double[] coef = new double[] { 4.6, -0.8, 0.05 };
+		final double[] bounds = new double[lombScargle.qSize * lombScargle.hSize];
+		cellBound.bounds(coef, bounds);
+
+		final double[] series = new double[window];
+		final double[] spectralDensity = new double[lombScargle.freqSize];
+
+		for (int i = 0; i < lombScargle.qSize; i++) {
+			for (int j = 0; j < lombScargle.hSize; j++) {
+				final double tempVar = lombScargle.powTempVar[i][j];
+				final double bPrime = coef[1] * (1.0 - lombScargle.QiM[i]) / tempVar;
+				final double cPrime = coef[2] / tempVar;
+				for (int k = 0; k < window; k++) {
+					series[k] = windowBasis.timePowerMH[j][k] * (bPrime + cPrime * windowBasis.gFunction[i][k]);
+				}
+				lombScargle.computeLombScargle(windowBasis.LogTimeValues, series, spectralDensity, window);
+
+				final double cellMaximum = LombScargle.MaxOneDim(spectralDensity, lombScargle.freqSize);
+				assertTrue(cellMaximum <= bounds[i * lombScargle.hSize + j]);
+			}
+		}
+	}
+
+	@Test
+	public void prunedScanShouldEqualExhaustiveScan() {
+		final Random random = new Random(8642);
+		final double[] coef = new double[3];
+
+		for (final LombScargle.Engine engine : LombScargle.Engine.values()) {
+			final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+			lombScargle.engine = engine;
+
+			for (final int window : new int[] { 52, 153 }) {
+				final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+				final CellEnergyBound cellBound = new CellEnergyBound(lombScargle, windowBasis);
+
+				for (int n = 0; n < 5; n++) {
+					coef[0] = 4.0 + random.nextDouble();
+					coef[1] = random.nextGaussian();
+					coef[2] = random.nextGaussian() * 0.1;
+
+					final double expected = lombScargle.createEngine(windowBasis).hqDerivative(coef);
+					final double actual = lombScargle.createEngine(windowBasis, cellBound).hqDerivative(coef);
+					assertEquals(expected, actual, 0.0);
+				}
+
+				final long cells = 5L * lombScargle.qSize * lombScargle.hSize;
+				assertEquals(cells, cellBound.getEvaluatedCells() + cellBound.getPrunedCells());
+				assertTrue(cellBound.getPrunedCells() > 0);
+			}
+		}
+	}
+}
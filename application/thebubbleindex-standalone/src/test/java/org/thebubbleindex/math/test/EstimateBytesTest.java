@@ -0,0 +1,123 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.Test;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.AdaptiveFrequencySearch;
+import org.thebubbleindex.math.CellEnergyBound;
+import org.thebubbleindex.math.FastLombScargle;
+import org.thebubbleindex.math.FloatLinearBasisPeriodogram;
+import org.thebubbleindex.math.FloatWindowBasis;
+import org.thebubbleindex.math.LinearBasisPeriodogram;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+
+public class EstimateBytesTest {
+
+	final int[] windows = new int[] { 52, 153, 1000 };
+
+	@Test
+	public void windowBasisEstimateShouldMatchItsArrays() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		for (final int window : windows) {
+			final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+			assertEquals(arrayBytes(windowBasis), WindowBasis.estimateBytes(lombScargle, window));
+		}
+	}
+
+	@Test
+	public void engineEstimateShouldMatchItsArrays() {
+		for (final int window : windows) {
+			final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+			final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+
+			lombScargle.pruning = true;
+			final CellEnergyBound cellBound = new CellEnergyBound(lombScargle, windowBasis);
+			assertEquals(arrayBytes(new LinearBasisPeriodogram(lombScargle, windowBasis, cellBound)),
+					lombScargle.estimateEngineBytes(window, false));
+
+			lombScargle.pruning = false;
+			final LinearBasisPeriodogram linearBasisPeriodogram = new LinearBasisPeriodogram(lombScargle, windowBasis);
+			assertEquals(arrayBytes(linearBasisPeriodogram), lombScargle.estimateEngineBytes(window, false));
+			assertEquals(
+					arrayBytes(new FloatLinearBasisPeriodogram(linearBasisPeriodogram))
+							+ arrayBytes(linearBasisPeriodogram),
+					lombScargle.estimateEngineBytes(window, true));
+
+			lombScargle.engine = LombScargle.Engine.Direct;
+			assertEquals(0, lombScargle.estimateEngineBytes(window, false));
+			assertEquals(arrayBytes(new FloatWindowBasis(windowBasis)), lombScargle.estimateEngineBytes(window, true));
+
+			lombScargle.frequencySearch = LombScargle.FrequencySearch.Adaptive;
+			assertEquals(arrayBytes(new AdaptiveFrequencySearch(lombScargle, windowBasis.LogTimeValues, window),
+					windowBasis.LogTimeValues), lombScargle.estimateEngineBytes(window, false));
+
+			lombScargle.periodogram = LombScargle.Periodogram.Fast;
+			assertEquals(arrayBytes(new FastLombScargle(lombScargle, windowBasis.LogTimeValues, window)),
+					lombScargle.estimateEngineBytes(window, false));
+		}
+	}
+
+	/**
+	 * arrayBytes returns the size of the elements of the arrays which an
+	 * object holds, directly or through the objects of the math package other
+	 * than LombScargle, counting each array once and not the shared arrays
+	 */
+	private static long arrayBytes(final Object object, final Object... shared) {
+		final Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		Collections.addAll(counted, shared);
+		counted.add(object);
+		return fieldBytes(object, counted);
+	}
+
+	private static long fieldBytes(final Object object, final Set<Object> counted) {
+		long bytes = 0;
+		for (Class<?> type = object.getClass(); type != Object.class; type = type.getSuperclass()) {
+			for (final Field field : type.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+				field.setAccessible(true);
+				try {
+					bytes += valueBytes(field.get(object), counted);
+				} catch (final IllegalAccessException ex) {
+					throw new AssertionError(ex);
+				}
+			}
+		}
+		return bytes;
+	}
+
+	private static long valueBytes(final Object value, final Set<Object> counted) {
+		if (value == null || !counted.add(value)) {
+			return 0;
+		}
+		if (value instanceof double[]) {
+			return 8L * ((double[]) value).length;
+		}
+		if (value instanceof float[]) {
+			return 4L * ((float[]) value).length;
+		}
+		if (value instanceof int[]) {
+			return 4L * ((int[]) value).length;
+		}
+		if (value instanceof Object[]) {
+			long bytes = 0;
+			for (final Object element : (Object[]) value) {
+				bytes += valueBytes(element, counted);
+			}
+			return bytes;
+		}
+		if (value.getClass().getPackage() == LombScargle.class.getPackage() && !(value instanceof LombScargle)) {
+			return fieldBytes(value, counted);
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,86 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.FastLombScargle;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+import org.thebubbleindex.testutil.TestUtil;
+
+public class FastLombScargleTest {
+	final double epsilon = 0.000000001;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void fastPeriodogramShouldMatchDirectEvaluation() {
+		final Random random = new Random(1357);
+
+		for (final int freqSize : new int[] { 70, 501 }) {
+			final LombScargle lombScargle = new LombScargle(freqSize, 18, 19, 6.28, 0.38, new Indices());
+
+			for (final int window : new int[] { 52, 1260 }) {
+				final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+				final FastLombScargle fastLombScargle = new FastLombScargle(lombScargle, windowBasis.LogTimeValues,
+						window);
+
+				final double[] series = new double[window];
+				for (int k = 0; k < window; k++) {
+					series[k] = windowBasis.timePowerMH[4][k] * (1.0 + 0.5 * windowBasis.gFunction[7][k])
+							+ 0.01 * random.nextGaussian();
+				}
+
+				final double[] expected = new double[freqSize];
+				final double[] actual = new double[freqSize];
+				lombScargle.computeLombScargle(windowBasis.LogTimeValues, series, expected, window);
+				fastLombScargle.computeLombScargle(series, actual);
+
+				final double maxValue = LombScargle.MaxOneDim(expected, freqSize);
+				for (int f = 0; f < freqSize; f++) {
+					assertEquals(expected[f], actual[f], epsilon * maxValue);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void createEngineShouldFollowPeriodogramSetting() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		lombScargle.engine = LombScargle.Engine.Direct;
+		final WindowBasis windowBasis = new WindowBasis(lombScargle, 153, 21.0);
+		final double[] coef = new double[] { 4.6, -0.8, 0.05 };
+
+		final double direct = lombScargle.createEngine(windowBasis).hqDerivative(coef);
+		lombScargle.periodogram = LombScargle.Periodogram.Fast;
+		final double fast = lombScargle.createEngine(windowBasis).hqDerivative(coef);
+
+		assertEquals(direct, fast, epsilon * direct);
+	}
+
+	@Test
+	public void runIndexShouldUseFastPeriodogramWithDirectEngine() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.getRoot(), new String[] { "BITSTAMPUSD" },
+				new int[] { 120 });
+		TestUtil.writeLombScargleProperties(indices, "engine=Direct");
+		final List<Double> direct = TestUtil.runWindow(indices, "BITSTAMPUSD", 52);
+		TestUtil.writeLombScargleProperties(indices, "engine=Direct", "periodogram=Fast");
+		final List<Double> fast = TestUtil.runWindow(indices, "BITSTAMPUSD", 52);
+
+		assertEquals(120 - 52, fast.size());
+		assertFalse(direct.equals(fast));
+		for (int i = 0; i < direct.size(); i++) {
+			assertEquals(direct.get(i), fast.get(i), epsilon * Math.abs(direct.get(i)));
+		}
+	}
+}
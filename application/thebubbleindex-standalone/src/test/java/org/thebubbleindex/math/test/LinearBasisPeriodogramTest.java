@@ -0,0 +1,50 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.LinearBasisPeriodogram;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+
+public class LinearBasisPeriodogramTest {
+	final double epsilon = 0.000000001;
+
+	@Test
+	public void linearBasisShouldMatchDirectEvaluation() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		final Random random = new Random(4455);
+		final double[] coef = new double[3];
+
+		for (final int window : new int[] { 52, 153 }) {
+			final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+			final LinearBasisPeriodogram periodogram = new LinearBasisPeriodogram(lombScargle, windowBasis);
+
+			for (int n = 0; n < 5; n++) {
+				coef[0] = 4.0 + random.nextDouble();
+				coef[1] = random.nextGaussian();
+				coef[2] = random.nextGaussian() * 0.1;
+
+				final double expected = lombScargle.hqDerivative(windowBasis, coef);
+				assertEquals(expected, periodogram.hqDerivative(coef), epsilon * expected);
+			}
+		}
+	}
+
+	@Test
+	public void createEngineShouldFollowEngineSetting() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		final WindowBasis windowBasis = new WindowBasis(lombScargle, 52, 21.0);
+		final double[] coef = new double[] { 4.6, -0.8, 0.05 };
+
+		final double linearBasis = lombScargle.createEngine(windowBasis).hqDerivative(coef);
+		lombScargle.engine = LombScargle.Engine.Direct;
+		final double direct = lombScargle.createEngine(windowBasis).hqDerivative(coef);
+
+		assertEquals(direct, lombScargle.hqDerivative(windowBasis, coef), 0.0);
+		assertEquals(direct, linearBasis, epsilon * direct);
+	}
+}
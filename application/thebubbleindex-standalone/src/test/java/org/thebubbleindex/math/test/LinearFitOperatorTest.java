@@ -0,0 +1,73 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Test;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.LinearFitOperator;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+import org.thebubbleindex.util.Utilities;
+
+public class LinearFitOperatorTest {
+	final double epsilon = 0.00000001;
+
+	@Test
+	public void operatorShouldMatchLinearFit() {
+		final int size = 512;
+		final double[] arrayDoublesOne = new double[size];
+		final double[] arrayDoublesTwo = new double[size];
+		final double[] arrayDoublesThree = new double[size];
+
+		final Random random = new Random(8899);
+		for (int i = 0; i < size; i++) {
+			arrayDoublesOne[i] = random.nextDouble() * 1000.0;
+			arrayDoublesTwo[i] = FastMath.pow(arrayDoublesOne[i], 0.4);
+			arrayDoublesThree[i] = FastMath.cos(arrayDoublesOne[i]);
+		}
+
+		final double[] coef = new double[3];
+		final LinearFitOperator linearFitOperator = new LinearFitOperator(arrayDoublesTwo, arrayDoublesThree, size);
+		linearFitOperator.fit(arrayDoublesOne, coef);
+
+		assertEquals(-441.3594627276007, coef[0], epsilon);
+		assertEquals(83.76623921085569, coef[1], epsilon);
+		assertEquals(-1.7254895273344615, coef[2], epsilon);
+	}
+
+	@Test
+	public void operatorShouldMatchLinearFitForEveryDateOfWindow() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		final int window = 256;
+		final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+
+		final int dataSize = 1000;
+		final double[] prices = new double[dataSize];
+		final Random random = new Random(1234);
+		prices[0] = 250.0;
+		for (int i = 1; i < dataSize; i++) {
+			prices[i] = prices[i - 1] * FastMath.exp(random.nextGaussian() * 0.03);
+		}
+
+		final double[] selectedData = new double[window];
+		final double[] expected = new double[3];
+		final double[] coef = new double[3];
+
+		for (int index = 0; index < dataSize - window - 1; index++) {
+			System.arraycopy(prices, index + 1, selectedData, 0, window);
+			Utilities.Normalize(selectedData, window);
+			Utilities.DataReverse(selectedData, window);
+
+			Utilities.LinearFit(selectedData, windowBasis.TimeValues_M_Power, windowBasis.LogCosTimeValues, expected,
+					window);
+			windowBasis.linearFitOperator.fit(selectedData, coef);
+
+			for (int i = 0; i < 3; i++) {
+				assertEquals(expected[i], coef[i], epsilon * Math.max(1.0, Math.abs(expected[i])));
+			}
+		}
+	}
+}
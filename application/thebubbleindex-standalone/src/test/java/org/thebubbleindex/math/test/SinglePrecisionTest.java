@@ -0,0 +1,72 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.FloatHQDerivativeEngine;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+
+public class SinglePrecisionTest {
+	final double epsilon = 0.001;
+
+	@Test
+	public void floatEnginesShouldMatchDoubleEngine() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		final Random random = new Random(6060);
+		final double[] coef = new double[3];
+		final float[] floatCoef = new float[3];
+
+		for (final int window : new int[] { 52, 153 }) {
+			final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+
+			lombScargle.engine = LombScargle.Engine.LinearBasis;
+			final FloatHQDerivativeEngine linearBasis = lombScargle.createFloatEngine(windowBasis);
+			lombScargle.engine = LombScargle.Engine.Direct;
+			final FloatHQDerivativeEngine direct = lombScargle.createFloatEngine(windowBasis);
+
+			for (int n = 0; n < 3; n++) {
+				coef[0] = 4.0 + random.nextDouble();
+				coef[1] = random.nextGaussian();
+				coef[2] = random.nextGaussian() * 0.1;
+				for (int i = 0; i < 3; i++) {
+					floatCoef[i] = (float) coef[i];
+				}
+
+				final double expected = lombScargle.hqDerivative(windowBasis, coef);
+				assertEquals(expected, linearBasis.hqDerivative(floatCoef), epsilon * expected);
+				assertEquals(expected, direct.hqDerivative(floatCoef), epsilon * expected);
+			}
+		}
+	}
+
+	@Test
+	public void floatFitShouldMatchDoubleFit() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		final int window = 512;
+		final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+
+		final double[] data = new double[window];
+		final float[] floatData = new float[window];
+		final Random random = new Random(99);
+		data[0] = Math.log(100.0);
+		for (int k = 1; k < window; k++) {
+			data[k] = data[k - 1] + random.nextGaussian() * 0.02;
+		}
+		for (int k = 0; k < window; k++) {
+			floatData[k] = (float) data[k];
+		}
+
+		final double[] coef = new double[3];
+		final float[] floatCoef = new float[3];
+		windowBasis.linearFitOperator.fit(data, coef);
+		windowBasis.linearFitOperator.fit(floatData, floatCoef);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(coef[i], floatCoef[i], epsilon * Math.max(1.0, Math.abs(coef[i])));
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+
+public class TrigRecurrenceTest {
+	final double epsilon = 0.0000000001;
+
+	@Test
+	public void recurrenceShouldMatchDirectTrigEvaluation() {
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		final int window = 1260;
+		final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+
+		final double[] series = new double[window];
+		final Random random = new Random(2468);
+		for (int k = 0; k < window; k++) {
+			series[k] = random.nextGaussian();
+		}
+
+		final double[] expected = new double[lombScargle.freqSize];
+		lombScargle.computeLombScargle(windowBasis.LogTimeValues, series, expected, window);
+
+		for (final int reanchorInterval : new int[] { 1, 16, 70 }) {
+			lombScargle.trigEvaluation = LombScargle.TrigEvaluation.Recurrence;
+			lombScargle.reanchorInterval = reanchorInterval;
+			final double[] actual = new double[lombScargle.freqSize];
+			lombScargle.computeLombScargle(windowBasis.LogTimeValues, series, actual, window);
+
+			double maxValue = 0.0;
+			for (int f = 0; f < lombScargle.freqSize; f++) {
+				maxValue = Math.max(maxValue, expected[f]);
+			}
+			for (int f = 0; f < lombScargle.freqSize; f++) {
+				assertEquals(expected[f], actual[f], epsilon * maxValue);
+			}
+		}
+	}
+
+	@Test
+	public void rotationDriftShouldStayWithinBound() {
+		final int size = 1000;
+		final double[] time = new double[size];
+		final double[] phaseCos = new double[size];
+		final double[] phaseSin = new double[size];
+		final double[] stepCos = new double[size];
+		final double[] stepSin = new double[size];
+		final double omega = 2.0 * 3.14159 * 0.8;
+		final double step = 2.0 * 3.14159 * 0.01;
+
+		for (int k = 0; k < size; k++) {
+			time[k] = Math.log(size + 21.0 - k);
+			phaseCos[k] = Math.cos(omega * time[k]);
+			phaseSin[k] = Math.sin(omega * time[k]);
+			stepCos[k] = Math.cos(step * time[k]);
+			stepSin[k] = Math.sin(step * time[k]);
+		}
+
+		final int steps = 16;
+		for (int r = 1; r <= steps; r++) {
+			LombScargle.rotateTrigBasis(phaseCos, phaseSin, stepCos, stepSin, size);
+			for (int k = 0; k < size; k++) {
+				final double angle = (omega + r * step) * time[k];
+				// both sides carry the rounding of their own arguments
+				final double bound = (2.0 * Math.abs(angle) + 4.0 * r) * Math.ulp(1.0);
+				assertTrue(Math.abs(phaseCos[k] - Math.cos(angle)) <= bound);
+				assertTrue(Math.abs(phaseSin[k] - Math.sin(angle)) <= bound);
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.thebubbleindex.math.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.thebubbleindex.math.JavaVectorMath;
+import org.thebubbleindex.math.VectorMath;
+import org.thebubbleindex.math.VectorMaths;
+
+public class VectorMathTest {
+	final double epsilon = 0.00000000000001;
+
+	@Test
+	public void javaShouldMatchYeppp() {
+		final VectorMath yeppp = VectorMaths.create(VectorMaths.Backend.Yeppp);
+		final VectorMath java = new JavaVectorMath();
+
+		final int size = 1000;
+		final int offset = 3;
+		final double[] x = new double[size + offset];
+		final double[] y = new double[size + offset];
+		final Random random = new Random(77);
+		for (int i = 0; i < size + offset; i++) {
+			x[i] = 0.001 + random.nextDouble() * 500.0;
+			y[i] = random.nextDouble() * 2.0 - 1.0;
+		}
+
+		final double[] expected = new double[size];
+		final double[] actual = new double[size];
+
+		yeppp.add(x, offset, y, 0, expected, 0, size);
+		java.add(x, offset, y, 0, actual, 0, size);
+		assertArrayClose(expected, actual);
+
+		yeppp.add(x, offset, 2.5, expected, 0, size);
+		java.add(x, offset, 2.5, actual, 0, size);
+		assertArrayClose(expected, actual);
+
+		yeppp.subtract(x, 0, y, offset, expected, 0, size);
+		java.subtract(x, 0, y, offset, actual, 0, size);
+		assertArrayClose(expected, actual);
+
+		yeppp.multiply(x, 0, y, offset, expected, 0, size);
+		java.multiply(x, 0, y, offset, actual, 0, size);
+		assertArrayClose(expected, actual);
+
+		yeppp.multiply(x, offset, -0.75, expected, 0, size);
+		java.multiply(x, offset, -0.75, actual, 0, size);
+		assertArrayClose(expected, actual);
+
+		yeppp.log(x, offset, expected, 0, size);
+		java.log(x, offset, actual, 0, size);
+		assertArrayClose(expected, actual);
+
+		yeppp.cos(x, offset, expected, 0, size);
+		java.cos(x, offset, actual, 0, size);
+		assertArrayClose(expected, actual);
+
+		yeppp.sin(x, offset, expected, 0, size);
+		java.sin(x, offset, actual, 0, size);
+		assertArrayClose(expected, actual);
+	}
+
+	@Test
+	public void javaShouldNotTouchOutsideOfRange() {
+		final VectorMath java = new JavaVectorMath();
+		final double[] x = new double[] { 1.0, 2.0, 3.0, 4.0 };
+		final double[] product = new double[] { -1.0, -1.0, -1.0, -1.0 };
+		java.multiply(x, 1, 2.0, product, 1, 2);
+
+		assertEquals(-1.0, product[0], 0.0);
+		assertEquals(4.0, product[1], 0.0);
+		assertEquals(6.0, product[2], 0.0);
+		assertEquals(-1.0, product[3], 0.0);
+	}
+
+	private void assertArrayClose(final double[] expected, final double[] actual) {
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], epsilon * Math.max(1.0, Math.abs(expected[i])));
+		}
+	}
+}
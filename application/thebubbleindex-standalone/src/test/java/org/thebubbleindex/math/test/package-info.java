@@ -0,0 +1,8 @@
+/**
+ * 
+ */
+/**
+ * @author thebubbleindex
+ *
+ */
+package org.thebubbleindex.math.test;
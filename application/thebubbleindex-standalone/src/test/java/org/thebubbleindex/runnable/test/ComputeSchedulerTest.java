@@ -0,0 +1,146 @@
+package org.thebubbleindex.runnable.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+import org.thebubbleindex.runnable.ComputeScheduler;
+import org.thebubbleindex.runnable.RunContext;
+
+public class ComputeSchedulerTest {
+
+	final double epsilon = 0.000000001;
+
+	@Test
+	public void resultsShouldBeInCallableOrder() throws InterruptedException, ExecutionException {
+		final ComputeScheduler scheduler = new ComputeScheduler(3);
+		try {
+			for (final int size : new int[] { 0, 1, 7, 1001 }) {
+				final List<Double> results = scheduler.invokeAll(createCallables(size, -1));
+				assertEquals(size, results.size());
+				for (int i = 0; i < size; i++) {
+					assertEquals(Math.sqrt(i), results.get(i), epsilon);
+				}
+			}
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void exceptionShouldFailTheTask() throws InterruptedException {
+		final ComputeScheduler scheduler = new ComputeScheduler(2);
+		try {
+			scheduler.invokeAll(createCallables(600, 431));
+			fail("Expected an ExecutionException");
+		} catch (final ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void schedulerShouldBeReusedUntilThreadNumberChanges() {
+		final RunContext runContext = new RunContext(false, true, 2);
+		final ComputeScheduler scheduler = runContext.getScheduler();
+		assertSame(scheduler, runContext.getScheduler());
+		assertEquals(2, scheduler.getParallelism());
+
+		runContext.setThreadNumber(3);
+		final ComputeScheduler resized = runContext.getScheduler();
+		assertNotSame(scheduler, resized);
+		assertEquals(3, resized.getParallelism());
+		assertTrue(scheduler.getExecutor().isShutdown());
+	}
+
+	@Test
+	public void coordinatorsShouldWaitOutsideThePool()
+			throws InterruptedException, ExecutionException, TimeoutException {
+		final ComputeScheduler scheduler = new ComputeScheduler(1);
+		try {
+			final List<Future<Boolean>> coordinators = new ArrayList<Future<Boolean>>();
+			for (int c = 0; c < 4; c++) {
+				coordinators.add(scheduler.getCoordinator().submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws InterruptedException, ExecutionException {
+						assertEquals(300, scheduler.invokeAll(createCallables(300, -1)).size());
+						return Thread.currentThread() instanceof ForkJoinWorkerThread;
+					}
+				}));
+			}
+			for (final Future<Boolean> coordinator : coordinators) {
+				assertFalse(coordinator.get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void blockingTasksShouldNotHoldThePool()
+			throws InterruptedException, ExecutionException, TimeoutException {
+		final ComputeScheduler scheduler = new ComputeScheduler(1);
+		try {
+			final CountDownLatch latch = new CountDownLatch(1);
+			final List<Callable<Boolean>> downloads = new ArrayList<Callable<Boolean>>();
+			for (int d = 0; d < 4; d++) {
+				downloads.add(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws InterruptedException {
+						latch.await();
+						return Thread.currentThread() instanceof ForkJoinWorkerThread;
+					}
+				});
+			}
+			final Future<List<Future<Boolean>>> update = scheduler.getCoordinator().submit(
+					new Callable<List<Future<Boolean>>>() {
+						@Override
+						public List<Future<Boolean>> call() throws InterruptedException {
+							return scheduler.getIO().invokeAll(downloads);
+						}
+					});
+
+			// the pool calculates while the downloads wait
+			assertEquals(300, scheduler.submit(createCallables(300, -1)).get(30, TimeUnit.SECONDS).size());
+			assertFalse(update.isDone());
+			latch.countDown();
+			for (final Future<Boolean> download : update.get(30, TimeUnit.SECONDS)) {
+				assertFalse(download.get());
+			}
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	private List<Callable<Double>> createCallables(final int size, final int failingIndex) {
+		final List<Callable<Double>> callables = new ArrayList<Callable<Double>>(size);
+		for (int i = 0; i < size; i++) {
+			final int index = i;
+			callables.add(new Callable<Double>() {
+				@Override
+				public Double call() {
+					if (index == failingIndex) {
+						throw new IllegalStateException("Failed at " + index);
+					}
+					return Math.sqrt(index);
+				}
+			});
+		}
+		return callables;
+	}
+}
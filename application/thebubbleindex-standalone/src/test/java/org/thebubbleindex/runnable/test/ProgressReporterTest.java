@@ -0,0 +1,105 @@
+package org.thebubbleindex.runnable.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.runnable.ProgressReporter;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+
+public class ProgressReporterTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void everyDateOfARunShouldBeCounted() {
+		final RunContext runContext = new RunContext(false, true, 2);
+		final ProgressReporter progress = runContext.getProgress();
+		progress.setIntervalMillis(10);
+		final Indices indices = new Indices();
+		indices.setUserDir(temporaryFolder.getRoot().getPath() + File.separator);
+
+		final int dataSize = 300;
+		final int window = 52;
+		final double[] dailyPriceValues = new double[dataSize];
+		final List<String> dailyPriceDate = new ArrayList<String>();
+		for (int i = 0; i < dataSize; i++) {
+			dailyPriceValues[i] = 100.0 + 10.0 * Math.sin(i / 7.0) + i * 0.1;
+			dailyPriceDate.add("d" + i);
+		}
+
+		final List<Double> results = new ArrayList<Double>();
+		new RunIndex(null, dailyPriceValues, dataSize, window, results, dailyPriceDate,
+				temporaryFolder.getRoot() + File.separator + "none.csv", "TEST", 6.28, 0.38, 21.0, indices, null,
+				runContext).execIndexWithCPU();
+		progress.stop();
+
+		assertEquals(dataSize - window, results.size());
+		assertEquals(dataSize - window, progress.getTotalDates());
+		assertEquals(dataSize - window, progress.getCompletedDates());
+	}
+
+	@Test
+	public void reportShouldSampleOneDateLine() throws InterruptedException {
+		final ProgressReporter progress = new RunContext().getProgress();
+		progress.setIntervalMillis(60000);
+		progress.addDates(4000);
+
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int thread = t;
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						progress.dateCompleted("TEST", "d" + thread + "-" + i, i, 52);
+					}
+				}
+			}));
+		}
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		List<String> lines = progress.report();
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0), lines.get(0).startsWith("Name: TEST    Date: d"));
+		assertTrue(lines.get(1), lines.get(1).startsWith("Progress: 4000 of 4000 dates"));
+		assertTrue(lines.get(1), lines.get(1).endsWith(", done."));
+
+		// nothing has completed since the last report
+		assertEquals(0, progress.report().size());
+
+		progress.setDateLines(false);
+		progress.addDates(10);
+		for (int i = 0; i < 5; i++) {
+			progress.dateCompleted("TEST", "d" + i, i, 52);
+		}
+		lines = progress.report();
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0), lines.get(0).startsWith("Progress: 5 of 10 dates"));
+
+		// the dates of a stopped run are not remaining after a reset
+		progress.reset();
+		progress.addDates(3);
+		for (int i = 0; i < 3; i++) {
+			progress.dateCompleted("TEST", "d" + i, i, 52);
+		}
+		lines = progress.report();
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0), lines.get(0).startsWith("Progress: 3 of 3 dates"));
+		progress.stop();
+	}
+}
@@ -0,0 +1,174 @@
+package org.thebubbleindex.runnable.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.driver.MultiWindowRun;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.runnable.CheckpointedWindow;
+import org.thebubbleindex.runnable.ResultJournal;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.testutil.TestUtil;
+
+public class ResultJournalTest {
+
+	final String fileSep = File.separator;
+	final String selectionName = "BITSTAMPUSD";
+	final int dataSize = 900;
+	final int window = 52;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void killedRunShouldResumeFromJournal() throws IOException, URISyntaxException, InterruptedException {
+		final Indices killedIndices = TestUtil.createProgramData(temporaryFolder.newFolder("killed"),
+				new String[] { selectionName }, new int[] { dataSize });
+		final File outputFile = TestUtil.outputFile(killedIndices, selectionName, window);
+		final File journalFile = new File(ResultJournal.journalPath(outputFile.getPath()));
+		final File markerFile = new File(temporaryFolder.getRoot(), "journaled");
+
+		final String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+		final ProcessBuilder processBuilder = new ProcessBuilder(
+				System.getProperty("java.home") + fileSep + "bin" + fileSep + "java", "-cp", classPath,
+				KilledRun.class.getName(), killedIndices.getUserDir(), Integer.toString(window),
+				journalFile.getPath(), markerFile.getPath());
+		processBuilder.redirectErrorStream(true);
+		processBuilder.redirectOutput(temporaryFolder.newFile("killed.log"));
+		final Process process = processBuilder.start();
+		try {
+			final long deadline = System.currentTimeMillis() + 120000;
+			while (!markerFile.exists() && process.isAlive() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(markerFile.exists());
+		} finally {
+			process.destroyForcibly();
+			process.waitFor();
+		}
+
+		final int journaledDates = countLines(journalFile);
+		assertTrue(journaledDates >= CheckpointedWindow.CHECKPOINT_DATES);
+		assertTrue(journaledDates < dataSize - window);
+		assertFalse(outputFile.exists());
+
+		final Indices expectedIndices = TestUtil.createProgramData(temporaryFolder.newFolder("expected"),
+				new String[] { selectionName }, new int[] { dataSize });
+		final MultiWindowRun expectedRun = runWindow(expectedIndices);
+		final List<Double> expectedResults = expectedRun.getResults(0);
+
+		final DailyDataCache dailyDataCache = new DailyDataCache();
+		dailyDataCache.load(selectionName, TestUtil.dailyDataFile(killedIndices, selectionName).getPath(),
+				new RunContext(false, true, 1));
+		final List<Double> recovered = new ArrayList<Double>();
+		assertEquals(journaledDates, new ResultJournal(outputFile.getPath())
+				.recover(dailyDataCache.getDailyPriceDate(), window, 0, recovered));
+		assertEquals(expectedResults.subList(0, journaledDates), recovered);
+
+		runWindow(killedIndices);
+		assertFalse(journalFile.exists());
+		assertArrayEquals(Files.readAllBytes(TestUtil.outputFile(expectedIndices, selectionName, window).toPath()),
+				Files.readAllBytes(outputFile.toPath()));
+	}
+
+	@Test
+	public void tornAndStaleLinesShouldNotBeRecovered() throws IOException {
+		final List<String> dailyPriceDate = Arrays.asList("d0", "d1", "d2", "d3", "d4", "d5", "d6", "d7", "d8");
+		final File journalFile = new File(temporaryFolder.getRoot(), "TEST3days.journal");
+		final ResultJournal resultJournal = new ResultJournal(
+				temporaryFolder.getRoot() + fileSep + "TEST3days.csv");
+		assertEquals(journalFile.getPath(), resultJournal.getJournalPath());
+
+		final String recoverable = "3,0.5,d5\n4,0.25,d6\n";
+		Files.write(journalFile.toPath(), (recoverable + "5,0.1").getBytes("US-ASCII"));
+		final List<Double> results = new ArrayList<Double>();
+		assertEquals(2, resultJournal.recover(dailyPriceDate, 3, 2, results));
+		assertEquals(Arrays.asList(0.5, 0.25), results);
+		assertEquals(recoverable, new String(Files.readAllBytes(journalFile.toPath()), "US-ASCII"));
+
+		resultJournal.append(dailyPriceDate, 3, 4, Arrays.asList(0.125, 1.0E-9));
+		results.clear();
+		assertEquals(4, resultJournal.recover(dailyPriceDate, 3, 2, results));
+		assertEquals(Arrays.asList(0.5, 0.25, 0.125, 1.0E-9), results);
+
+		// the output file has been updated since the journal was written
+		results.clear();
+		assertEquals(0, resultJournal.recover(dailyPriceDate, 3, 3, results));
+		assertTrue(results.isEmpty());
+		assertFalse(resultJournal.exists());
+	}
+
+	private MultiWindowRun runWindow(final Indices indices) {
+		final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 21.0, new int[] { window }, "Currencies",
+				selectionName, new DailyDataCache(), indices, null, new RunContext(false, true, 1));
+		multiWindowRun.run(null);
+		multiWindowRun.outputResults(null);
+		return multiWindowRun;
+	}
+
+	private static int countLines(final File file) throws IOException {
+		if (!file.exists()) {
+			return 0;
+		}
+		int lines = 0;
+		for (final byte b : Files.readAllBytes(file.toPath())) {
+			if (b == '\n') {
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * KilledRun runs a window of the program data of a user directory in its
+	 * own JVM. Once the first batch is journaled, it stops the run, so the
+	 * journal stays incomplete, creates the marker file and waits for the test
+	 * to kill it.
+	 */
+	public static class KilledRun {
+		public static void main(final String[] args) throws InterruptedException {
+			final Indices indices = new Indices();
+			indices.setUserDir(args[0]);
+			final File journalFile = new File(args[2]);
+			final File markerFile = new File(args[3]);
+			final RunContext runContext = new RunContext(false, true, 1);
+
+			final Thread watcher = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (countLines(journalFile) < CheckpointedWindow.CHECKPOINT_DATES) {
+							Thread.sleep(5);
+						}
+						runContext.setStop(true);
+						markerFile.createNewFile();
+					} catch (final IOException | InterruptedException ex) {
+						System.out.println(ex);
+					}
+				}
+			};
+			watcher.setDaemon(true);
+			watcher.start();
+
+			final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 21.0,
+					new int[] { Integer.parseInt(args[1]) }, "Currencies", "BITSTAMPUSD", new DailyDataCache(),
+					indices, null, runContext);
+			multiWindowRun.run(null);
+			Thread.sleep(Long.MAX_VALUE);
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package org.thebubbleindex.runnable.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.driver.MultiWindowRun;
+import org.thebubbleindex.exception.FailedToRunIndex;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.runnable.CsvResultSink;
+import org.thebubbleindex.runnable.ResultManifest;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+import org.thebubbleindex.testutil.TestUtil;
+
+import com.nativelibs4java.opencl.CLContext;
+import com.nativelibs4java.opencl.CLKernel;
+import com.nativelibs4java.opencl.CLPlatform;
+import com.nativelibs4java.opencl.CLProgram;
+import com.nativelibs4java.opencl.CLQueue;
+
+public class ResultManifestTest {
+
+	final String selectionName = "BITSTAMPUSD";
+	final int dataSize = 400;
+	final int window = 52;
+	final int revisedDate = 250;
+	final double epsilon = 1e-9;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void unchangedWindowShouldNotBeRecalculated() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("unchanged"),
+				new String[] { selectionName }, new int[] { dataSize });
+		assertEquals(dataSize - window, run(indices, 21.0));
+		final File outputFile = TestUtil.outputFile(indices, selectionName, window);
+		final byte[] output = Files.readAllBytes(outputFile.toPath());
+		assertTrue(new ResultManifest(outputFile.getPath()).exists());
+
+		assertEquals(0, run(indices, 21.0));
+		assertArrayEquals(output, Files.readAllBytes(outputFile.toPath()));
+	}
+
+	@Test
+	public void revisedPriceShouldOnlyRecalculateItsDates() throws IOException, URISyntaxException {
+		final Indices expectedIndices = TestUtil.createProgramData(temporaryFolder.newFolder("expected"),
+				new String[] { selectionName }, new int[] { dataSize });
+		reviseDate(expectedIndices);
+		run(expectedIndices, 21.0);
+
+		final File root = temporaryFolder.newFolder("revised");
+		final Indices indices = TestUtil.createProgramData(root, new String[] { selectionName },
+				new int[] { dataSize });
+		run(indices, 21.0);
+		reviseDate(indices);
+
+		final int firstRevisedBlock = revisedDate / ResultManifest.BLOCK_DATES * ResultManifest.BLOCK_DATES;
+		assertEquals(dataSize - firstRevisedBlock, run(indices, 21.0));
+		assertRowsEqual(TestUtil.outputFile(expectedIndices, selectionName, window),
+				TestUtil.outputFile(indices, selectionName, window));
+	}
+
+	@Test
+	public void changedParametersShouldRecalculateEveryDate() throws IOException, URISyntaxException {
+		final Indices expectedIndices = TestUtil.createProgramData(temporaryFolder.newFolder("expected"),
+				new String[] { selectionName }, new int[] { dataSize });
+		run(expectedIndices, 24.0);
+
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("changed"),
+				new String[] { selectionName }, new int[] { dataSize });
+		run(indices, 21.0);
+		assertEquals(dataSize - window, run(indices, 24.0));
+		assertArrayEquals(Files.readAllBytes(TestUtil.outputFile(expectedIndices, selectionName, window).toPath()),
+				Files.readAllBytes(TestUtil.outputFile(indices, selectionName, window).toPath()));
+	}
+
+	@Test
+	public void changedSettingsShouldInvalidateEveryRow() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("settings"),
+				new String[] { selectionName }, new int[] { dataSize });
+		run(indices, 21.0);
+		final DailyDataCache dailyDataCache = new DailyDataCache();
+		dailyDataCache.load(selectionName, TestUtil.dailyDataFile(indices, selectionName).getPath(),
+				new RunContext(false, true, 1));
+		final ResultManifest resultManifest = new ResultManifest(
+				TestUtil.outputFile(indices, selectionName, window).getPath());
+
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, indices);
+		assertEquals(dataSize - window, validRows(resultManifest, lombScargle, "double", dailyDataCache));
+		assertEquals(0, validRows(resultManifest, lombScargle, "single", dailyDataCache));
+		assertTrue(resultManifest.isChanged());
+
+		lombScargle.frequencySearch = LombScargle.FrequencySearch.Adaptive;
+		assertEquals(0, validRows(resultManifest, lombScargle, "double", dailyDataCache));
+		lombScargle.frequencySearch = LombScargle.FrequencySearch.Grid;
+		lombScargle.periodogram = LombScargle.Periodogram.Fast;
+		assertEquals(0, validRows(resultManifest, lombScargle, "double", dailyDataCache));
+		lombScargle.periodogram = LombScargle.Periodogram.Direct;
+		lombScargle.engine = LombScargle.Engine.Direct;
+		assertEquals(0, validRows(resultManifest, lombScargle, "double", dailyDataCache));
+	}
+
+	@Test
+	public void gpuFallbackShouldKeepTheCpuManifest() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("fallback"),
+				new String[] { selectionName }, new int[] { dataSize });
+		assertEquals(dataSize - window, runGPUFallback(indices));
+		final File outputFile = TestUtil.outputFile(indices, selectionName, window);
+		final byte[] output = Files.readAllBytes(outputFile.toPath());
+
+		try {
+			runGPUFallback(indices);
+			fail("A fully updated window should not be calculated again");
+		} catch (final FailedToRunIndex er) {
+			assertTrue(er.getMessage().contains("Fully Updated"));
+		}
+		assertArrayEquals(output, Files.readAllBytes(outputFile.toPath()));
+	}
+
+	@Test
+	public void manifestShouldOnlyBeWrittenOnceTheOutputFileExists() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.newFolder("created"),
+				new String[] { selectionName }, new int[] { dataSize });
+		final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 21.0, new int[] { window },
+				"Currencies", selectionName, new DailyDataCache(), indices, null, new RunContext(false, true, 2));
+		multiWindowRun.run(null);
+		final ResultManifest resultManifest = new ResultManifest(
+				TestUtil.outputFile(indices, selectionName, window).getPath());
+		assertFalse(resultManifest.exists());
+		multiWindowRun.outputResults(null);
+		assertTrue(resultManifest.exists());
+
+		// a window whose output folder does not exist leaves no manifest
+		final File missingFile = new File(temporaryFolder.getRoot(), "missing" + File.separator + "52days.csv");
+		final DailyDataCache dailyDataCache = new DailyDataCache();
+		final RunContext runContext = new RunContext(false, true, 2);
+		dailyDataCache.load(selectionName, TestUtil.dailyDataFile(indices, selectionName).getPath(), runContext);
+		new RunIndex(null, dailyDataCache.getDailyPriceDoubleValues(), dataSize, window, new ArrayList<Double>(),
+				dailyDataCache.getDailyPriceDate(), missingFile.getPath(), selectionName, 6.28, 0.38, 21.0, indices,
+				null, runContext).execIndexWithCPU();
+		assertFalse(missingFile.getParentFile().exists());
+	}
+
+	private int validRows(final ResultManifest resultManifest, final LombScargle lombScargle,
+			final String calculation, final DailyDataCache dailyDataCache) {
+		final String parametersKey = ResultManifest.parametersKey(window, 6.28, 0.38, 21.0, lombScargle, calculation);
+		return resultManifest.validRows(parametersKey, dailyDataCache.getDailyPriceDate(),
+				dailyDataCache.getDailyPriceDoubleValues(), dataSize, window);
+	}
+
+	/**
+	 * run runs the window with a new cache, as a new process would, and
+	 * returns the number of calculated dates
+	 */
+	private int run(final Indices indices, final double tCrit) {
+		final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, tCrit, new int[] { window },
+				"Currencies", selectionName, new DailyDataCache(), indices, null, new RunContext(false, true, 2));
+		multiWindowRun.run(null);
+		multiWindowRun.outputResults(null);
+		return multiWindowRun.getResults(0).size();
+	}
+
+	/**
+	 * runGPUFallback runs the window on the GPU path of a host whose kernel
+	 * fails to build, writes the results and returns the number of calculated
+	 * dates
+	 */
+	private int runGPUFallback(final Indices indices) throws IOException {
+		final String outputPath = TestUtil.outputFile(indices, selectionName, window).getPath();
+		final DailyDataCache dailyDataCache = new DailyDataCache();
+		final RunContext runContext = new RunContext(false, false, 2);
+		dailyDataCache.load(selectionName, TestUtil.dailyDataFile(indices, selectionName).getPath(), runContext);
+		final List<Double> results = new ArrayList<Double>();
+		final RunIndex runIndex = new RunIndex(null, dailyDataCache.getDailyPriceDoubleValues(),
+				dailyDataCache.getDailyPriceLogValues(), dataSize, window, results,
+				dailyDataCache.getDailyPriceDate(), outputPath, selectionName, 6.28, 0.38, 21.0, indices, null,
+				runContext) {
+			@Override
+			protected boolean createGPUKernels(final List<CLPlatform> platforms, final List<CLContext> contexts,
+					final List<Integer> maxComputeUnits, final List<CLQueue> queues, final List<CLProgram> programs,
+					final List<CLKernel> addFloatsKernels, final List<ByteOrder> byteOrders) {
+				return false;
+			}
+		};
+		runIndex.execIndexWithGPU();
+
+		final CsvResultSink csvResultSink = new CsvResultSink(outputPath, dailyDataCache.getDailyPriceDate(), window,
+				false);
+		final double[] values = new double[results.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = results.get(i);
+		}
+		csvResultSink.open(dataSize - window - values.length);
+		csvResultSink.write(values, 0, values.length);
+		csvResultSink.close();
+		return values.length;
+	}
+
+	/**
+	 * reviseDate raises the price of revisedDate in the daily data by 10%
+	 */
+	private void reviseDate(final Indices indices) throws IOException {
+		final File dailyDataFile = TestUtil.dailyDataFile(indices, selectionName);
+		final List<String> lines = Files.readAllLines(dailyDataFile.toPath(), Charset.defaultCharset());
+		final String[] fields = lines.get(revisedDate).split("\t");
+		lines.set(revisedDate, fields[0] + "\t" + Double.parseDouble(fields[1]) * 1.1);
+		Files.write(dailyDataFile.toPath(), lines, Charset.defaultCharset());
+	}
+
+	/**
+	 * assertRowsEqual compares the rows up to the rounding of the batch fit,
+	 * which transforms the log prices of the whole selection
+	 */
+	private void assertRowsEqual(final File expectedFile, final File actualFile) throws IOException {
+		final List<String> expected = Files.readAllLines(expectedFile.toPath(), Charset.defaultCharset());
+		final List<String> actual = Files.readAllLines(actualFile.toPath(), Charset.defaultCharset());
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.get(0), actual.get(0));
+		for (int i = 1; i < expected.size(); i++) {
+			final String[] expectedRow = expected.get(i).split(",");
+			final String[] actualRow = actual.get(i).split(",");
+			assertEquals(expectedRow[0], actualRow[0]);
+			assertEquals(expectedRow[2], actualRow[2]);
+			final double expectedValue = Double.parseDouble(expectedRow[1]);
+			assertEquals(expectedValue, Double.parseDouble(actualRow[1]), epsilon * Math.abs(expectedValue));
+		}
+	}
+}
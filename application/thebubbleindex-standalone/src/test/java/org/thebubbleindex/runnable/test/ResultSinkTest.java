@@ -0,0 +1,103 @@
+package org.thebubbleindex.runnable.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.runnable.BinaryResultSink;
+import org.thebubbleindex.runnable.CsvResultSink;
+import org.thebubbleindex.runnable.MemoryResultSink;
+import org.thebubbleindex.util.Utilities;
+
+public class ResultSinkTest {
+
+	final double epsilon = 0.000000001;
+	final List<String> dailyPriceDate = Arrays.asList("d0", "d1", "d2", "d3", "d4", "d5", "d6", "d7", "d8", "d9");
+	final int window = 3;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void csvSinkShouldMatchWriteCSV() throws IOException {
+		final File root = temporaryFolder.getRoot();
+		final double[] values = new double[] { 0.5, 1.0E-9, 12.25, -3.0, 7.0, 1234567.875, 0.1 };
+
+		Utilities.WriteCSV(root.getPath(), Arrays.asList(0.5, 1.0E-9, 12.25, -3.0), 4, "expected.csv",
+				dailyPriceDate.subList(0, 7), false);
+		final CsvResultSink csvResultSink = new CsvResultSink(new File(root, "actual.csv").getPath(),
+				dailyPriceDate, window, false);
+		csvResultSink.open(0);
+		csvResultSink.write(values, 0, 2);
+		// the rows of a write can be read before the sink is closed
+		assertEquals(3, Files.readAllLines(new File(root, "actual.csv").toPath()).size());
+		csvResultSink.write(values, 2, 2);
+		csvResultSink.close();
+		assertEquals(4, csvResultSink.getRows());
+		assertFileEquals("expected.csv", "actual.csv");
+
+		Utilities.WriteCSV(root.getPath(), Arrays.asList(7.0, 1234567.875, 0.1), 7, "expected.csv",
+				dailyPriceDate, true);
+		final CsvResultSink update = new CsvResultSink(new File(root, "actual.csv").getPath(), dailyPriceDate,
+				window, false);
+		update.open(4);
+		update.write(values, 4, 3);
+		update.close();
+		assertFileEquals("expected.csv", "actual.csv");
+	}
+
+	@Test
+	public void tornLineShouldBeTruncatedBeforeAppending() throws IOException {
+		final File file = new File(temporaryFolder.getRoot(), "TEST3days.csv");
+		final String rows = "Period Number,Value,Date\n1,0.5,d3\n2,0.25,d4\n";
+		Files.write(file.toPath(), (rows + "3,0.12").getBytes(StandardCharsets.US_ASCII));
+
+		final CsvResultSink csvResultSink = new CsvResultSink(file.getPath(), dailyPriceDate, window, true);
+		csvResultSink.open(2);
+		csvResultSink.write(new double[] { 0.125 }, 0, 1);
+		csvResultSink.close();
+		assertEquals(rows + "3,0.125,d5\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void binaryAndMemorySinksShouldKeepEveryValue() throws IOException {
+		final double[] values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Math.sqrt(i) - 10.0;
+		}
+
+		final MemoryResultSink memoryResultSink = new MemoryResultSink(1);
+		memoryResultSink.open(17);
+		for (int offset = 0; offset < values.length; offset += 300) {
+			memoryResultSink.write(values, offset, Math.min(300, values.length - offset));
+		}
+		assertEquals(17, memoryResultSink.getFirstIndex());
+		assertArrayEquals(values, memoryResultSink.toArray(), epsilon);
+		final List<Double> expected = new ArrayList<Double>();
+		for (final double value : values) {
+			expected.add(value);
+		}
+		assertEquals(expected, memoryResultSink.asList());
+
+		final String filePath = new File(temporaryFolder.getRoot(), "results.bin").getPath();
+		memoryResultSink.writeTo(new BinaryResultSink(filePath));
+		final MemoryResultSink read = BinaryResultSink.read(filePath);
+		assertEquals(17, read.getFirstIndex());
+		assertArrayEquals(values, read.toArray(), 0.0);
+	}
+
+	private void assertFileEquals(final String expected, final String actual) throws IOException {
+		assertArrayEquals(Files.readAllBytes(new File(temporaryFolder.getRoot(), expected).toPath()),
+				Files.readAllBytes(new File(temporaryFolder.getRoot(), actual).toPath()));
+	}
+}
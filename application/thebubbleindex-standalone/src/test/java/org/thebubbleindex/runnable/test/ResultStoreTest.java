@@ -0,0 +1,168 @@
+package org.thebubbleindex.runnable.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.driver.MultiWindowRun;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.runnable.ResultStore;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.testutil.TestUtil;
+import org.thebubbleindex.util.Utilities;
+
+public class ResultStoreTest {
+
+	final String selectionName = "BITSTAMPUSD";
+	final int[] windows = new int[] { 104, 52 };
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void storeShouldMatchOutputFilesAndAppendDates() throws IOException, URISyntaxException {
+		final File root = temporaryFolder.getRoot();
+		final Indices indices = TestUtil.createProgramData(root, new String[] { selectionName }, new int[] { 300 });
+		final RunContext runContext = new RunContext(false, true, 2);
+		runContext.setResultStore(true);
+		run(indices, runContext);
+
+		ResultStore store = ResultStore.open(storePath(indices));
+		assertArrayEquals(new int[] { 52, 104 }, store.getWindows());
+		assertEquals(300, store.getRowCount());
+		assertStoreEquals(store, indices);
+		final long length = new File(storePath(indices)).length();
+
+		TestUtil.createProgramData(root, new String[] { selectionName }, new int[] { 340 });
+		run(indices, runContext);
+		store = ResultStore.open(storePath(indices));
+		assertEquals(340, store.getRowCount());
+		assertEquals(length, new File(storePath(indices)).length());
+		assertStoreEquals(store, indices);
+
+		final double[][] slice = store.readSlice(200, 340, 0, 2);
+		for (int row = 200; row < 340; row++) {
+			assertArrayEquals(slice[row - 200], store.readRow(row), 0.0);
+			assertEquals(store.readColumn(104)[row], slice[row - 200][1], 0.0);
+		}
+		assertTrue(Double.isNaN(store.readRow(100)[1]));
+		assertEquals(339, store.indexOfDate(store.getDate(339)));
+	}
+
+	@Test
+	public void appendedDatesShouldOnlyWriteTheirRows() throws IOException, URISyntaxException {
+		final File root = temporaryFolder.getRoot();
+		final Indices indices = TestUtil.createProgramData(root, new String[] { selectionName }, new int[] { 300 });
+		final RunContext runContext = new RunContext(false, true, 2);
+		runContext.setResultStore(true);
+		run(indices, runContext);
+		final double firstValue = ResultStore.open(storePath(indices)).readColumn(52)[52];
+
+		// a changed row of the output file is not read again by an update
+		final File outputFile = TestUtil.outputFile(indices, selectionName, 52);
+		final List<String> lines = Files.readAllLines(outputFile.toPath(), Charset.defaultCharset());
+		final String[] fields = lines.get(1).split(",");
+		lines.set(1, fields[0] + ",0.0," + fields[2]);
+		Files.write(outputFile.toPath(), lines, Charset.defaultCharset());
+		TestUtil.createProgramData(root, new String[] { selectionName }, new int[] { 340 });
+		run(indices, runContext);
+		ResultStore store = ResultStore.open(storePath(indices));
+		assertEquals(340, store.getRowCount());
+		assertEquals(firstValue, store.readColumn(52)[52], 0.0);
+		assertTrue(!Double.isNaN(store.readColumn(52)[339]));
+
+		// dates which a run without the store appended are read from the file
+		TestUtil.createProgramData(root, new String[] { selectionName }, new int[] { 360 });
+		run(indices, new RunContext(false, true, 2));
+		TestUtil.createProgramData(root, new String[] { selectionName }, new int[] { 380 });
+		run(indices, runContext);
+		store = ResultStore.open(storePath(indices));
+		assertEquals(380, store.getRowCount());
+		assertStoreEquals(store, indices);
+		assertEquals(0.0, store.readColumn(52)[52], 0.0);
+	}
+
+	@Test
+	public void consolidatedStoreShouldExportTheOutputFiles() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.getRoot(), new String[] { selectionName },
+				new int[] { 300 });
+		final RunContext runContext = new RunContext(false, true, 2);
+		final List<String> dailyPriceDate = run(indices, runContext);
+		assertTrue(!new File(storePath(indices)).exists());
+
+		for (final int window : windows) {
+			assertTrue(ResultStore.updateWindow(TestUtil.savePath(indices, selectionName), selectionName, window,
+					dailyPriceDate));
+		}
+		final ResultStore store = ResultStore.open(storePath(indices));
+		for (final int window : windows) {
+			final File exported = temporaryFolder.newFile(window + "days.csv");
+			store.exportWindow(window, exported.getPath());
+			assertArrayEquals(Files.readAllBytes(TestUtil.outputFile(indices, selectionName, window).toPath()),
+					Files.readAllBytes(exported.toPath()));
+		}
+	}
+
+	@Test
+	public void invalidStoreShouldBeReplacedByALayoutOfItsLength() throws IOException, URISyntaxException {
+		final Indices indices = TestUtil.createProgramData(temporaryFolder.getRoot(), new String[] { selectionName },
+				new int[] { 300 });
+		final List<String> dailyPriceDate = run(indices, new RunContext(false, true, 2));
+
+		// an invalid store longer than the store of the selection
+		Files.write(new File(storePath(indices)).toPath(), new byte[1 << 20]);
+		for (final int window : windows) {
+			assertTrue(ResultStore.updateWindow(TestUtil.savePath(indices, selectionName), selectionName, window,
+					dailyPriceDate));
+		}
+		assertTrue(new File(storePath(indices)).length() < 1 << 20);
+		final ResultStore store = ResultStore.open(storePath(indices));
+		assertEquals(300, store.getRowCount());
+		assertStoreEquals(store, indices);
+	}
+
+	/**
+	 * run runs the windows and returns the daily dates
+	 */
+	private List<String> run(final Indices indices, final RunContext runContext) {
+		final DailyDataCache dailyDataCache = new DailyDataCache();
+		final MultiWindowRun multiWindowRun = new MultiWindowRun(6.28, 0.38, 21.0, windows, "Currencies",
+				selectionName, dailyDataCache, indices, null, runContext);
+		multiWindowRun.run(null);
+		multiWindowRun.outputResults(null);
+		return dailyDataCache.getDailyPriceDate();
+	}
+
+	private void assertStoreEquals(final ResultStore store, final Indices indices) {
+		for (final int window : windows) {
+			final List<String> values = new ArrayList<String>();
+			final List<String> dates = new ArrayList<String>();
+			Utilities.ReadValues(TestUtil.outputFile(indices, selectionName, window).getPath(), values, dates,
+					true, true);
+
+			final List<String> storeDates = new ArrayList<String>();
+			final List<Double> storeValues = new ArrayList<Double>();
+			assertTrue(store.readWindow(window, storeDates, storeValues));
+			assertEquals(dates, storeDates);
+			for (int i = 0; i < values.size(); i++) {
+				assertEquals(Double.parseDouble(values.get(i)), storeValues.get(i), 0.0);
+			}
+		}
+	}
+
+	private String storePath(final Indices indices) {
+		return ResultStore.storePath(TestUtil.savePath(indices, selectionName), selectionName);
+	}
+}
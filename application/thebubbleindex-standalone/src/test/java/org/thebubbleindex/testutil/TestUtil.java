@@ -1,8 +1,21 @@
 package org.thebubbleindex.testutil;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
+import org.thebubbleindex.driver.DailyDataCache;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.runnable.RunIndex;
+
 public class TestUtil {
 
 	public static void parseDailyData(final List<String> lines, final List<String> priceValues,
@@ -26,4 +39,79 @@ public class TestUtil {
 			lineScan.close();
 		}
 	}
+
+	/**
+	 * createProgramData writes the first sizes[s] daily dates of each of the
+	 * selections of the Currencies category from the test resources to the
+	 * ProgramData folder of root
+	 *
+	 * @param root
+	 * @param selections
+	 * @param sizes
+	 * @return Indices whose user directory is root
+	 * @throws IOException
+	 * @throws URISyntaxException
+	 */
+	public static Indices createProgramData(final File root, final String[] selections, final int[] sizes)
+			throws IOException, URISyntaxException {
+		final Indices indices = new Indices();
+		indices.setUserDir(root + File.separator);
+		for (int s = 0; s < selections.length; s++) {
+			final String resource = "ProgramData/Currencies/" + selections[s] + "/" + selections[s] + "dailydata.csv";
+			final URL dailyDataUrl = TestUtil.class.getClassLoader().getResource(resource);
+			final List<String> lines = Files.readAllLines(new File(dailyDataUrl.toURI()).toPath(),
+					Charset.defaultCharset());
+
+			final File dailyDataFile = dailyDataFile(indices, selections[s]);
+			dailyDataFile.getParentFile().mkdirs();
+			Files.write(dailyDataFile.toPath(), lines.subList(0, sizes[s]), Charset.defaultCharset());
+		}
+		return indices;
+	}
+
+	/**
+	 * savePath returns the folder of a selection of the Currencies category,
+	 * ending with the file separator
+	 */
+	public static String savePath(final Indices indices, final String selectionName) {
+		return indices.getUserDir() + indices.getProgramDataFolder() + File.separator + "Currencies"
+				+ File.separator + selectionName + File.separator;
+	}
+
+	public static File dailyDataFile(final Indices indices, final String selectionName) {
+		return new File(savePath(indices, selectionName) + selectionName + "dailydata.csv");
+	}
+
+	public static File outputFile(final Indices indices, final String selectionName, final int window) {
+		return new File(savePath(indices, selectionName) + selectionName + window + "days.csv");
+	}
+
+	/**
+	 * writeLombScargleProperties writes the lombscargle.properties file of
+	 * the ProgramData folder of indices with the default grid sizes and the
+	 * given settings, such as engine=Direct
+	 */
+	public static void writeLombScargleProperties(final Indices indices, final String... settings)
+			throws IOException {
+		final List<String> lines = new ArrayList<String>(Arrays.asList("freqsize=70", "qsize=18", "hsize=19"));
+		lines.addAll(Arrays.asList(settings));
+		Files.write(new File(indices.getUserDir() + indices.getProgramDataFolder() + File.separator
+				+ "lombscargle.properties").toPath(), lines, Charset.defaultCharset());
+	}
+
+	/**
+	 * runWindow calculates every date of a window of a selection of the
+	 * Currencies category on the CPU, with the lombscargle.properties of the
+	 * ProgramData folder of indices, and returns the results
+	 */
+	public static List<Double> runWindow(final Indices indices, final String selectionName, final int window) {
+		final RunContext runContext = new RunContext(false, true, 2);
+		final DailyDataCache dailyDataCache = new DailyDataCache();
+		dailyDataCache.load(selectionName, dailyDataFile(indices, selectionName).getPath(), runContext);
+		final List<String> dailyPriceDate = dailyDataCache.getDailyPriceDate();
+		final List<Double> results = new ArrayList<Double>();
+		new RunIndex(null, dailyDataCache.getDailyPriceDoubleValues(), dailyPriceDate.size(), window, results,
+				dailyPriceDate, null, selectionName, 6.28, 0.38, 21.0, indices, null, runContext).execIndexWithCPU();
+		return results;
+	}
 }
@@ -52,4 +52,31 @@ public class NormalizeTest {
 			assertEquals(Math.log(expectedArray[i]), arrayDoubles[i], epsilon);
 		}
 	}
+
+	@Test
+	public void logPricesShouldNormalizeLikeNormalize() {
+		final int dataSize = 500;
+		final int size = 120;
+		final double[] prices = new double[dataSize];
+		final Random random = new Random(200);
+		prices[0] = 568.8;
+		for (int i = 1; i < dataSize; i++) {
+			prices[i] = prices[i - 1] * (0.95 + 0.1 * random.nextDouble());
+		}
+
+		final double[] logPrices = new double[dataSize];
+		Utilities.LogPrices(prices, logPrices, dataSize);
+
+		final double[] expected = new double[size];
+		final double[] actual = new double[size];
+		for (final int start : new int[] { 0, 1, 250, dataSize - size }) {
+			System.arraycopy(prices, start, expected, 0, size);
+			Utilities.Normalize(expected, size);
+			Utilities.NormalizeLogPrices(logPrices, start, actual, size);
+
+			for (int i = 0; i < size; i++) {
+				assertEquals(expected[i], actual[i], epsilon);
+			}
+		}
+	}
 }
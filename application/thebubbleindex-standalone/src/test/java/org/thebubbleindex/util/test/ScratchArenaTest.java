@@ -0,0 +1,110 @@
+package org.thebubbleindex.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.thebubbleindex.callable.MyCPUCallable;
+import org.thebubbleindex.inputs.Indices;
+import org.thebubbleindex.math.LombScargle;
+import org.thebubbleindex.math.WindowBasis;
+import org.thebubbleindex.runnable.RunContext;
+import org.thebubbleindex.util.ScratchArena;
+import org.thebubbleindex.util.Utilities;
+
+public class ScratchArenaTest {
+
+	@Test
+	public void releasedArraysShouldBeReused() {
+		final ScratchArena arena = new ScratchArena();
+		final int mark = arena.mark();
+		final double[] first = arena.doubles(100);
+		final double[] second = arena.doubles(10);
+		assertNotSame(first, second);
+		arena.release(mark);
+
+		assertSame(first, arena.doubles(100));
+		assertSame(second, arena.doubles(5));
+		assertEquals(mark + 2, arena.mark());
+	}
+
+	@Test
+	public void arraysShouldGrowWhenRequestIsLarger() {
+		final ScratchArena arena = new ScratchArena();
+		final double[] small = arena.doubles(10);
+		arena.release(0);
+		final double[] large = arena.doubles(1000);
+		assertNotSame(small, large);
+		assertTrue(large.length >= 1000);
+
+		for (int i = 0; i < 100; i++) {
+			assertTrue(arena.doubles(i + 1).length >= i + 1);
+		}
+		arena.release(0);
+		assertSame(large, arena.doubles(1000));
+	}
+
+	@Test
+	public void normalizeShouldReleaseItsArrays() {
+		final ScratchArena arena = ScratchArena.get();
+		final int mark = arena.mark();
+		final double[] data = new double[] { 10.0, 11.0, 12.0, 9.0 };
+		Utilities.Normalize(data, data.length);
+		assertEquals(mark, arena.mark());
+	}
+
+	@Test
+	public void estimatedScratchShouldBoundTheArenaOfAThread() throws InterruptedException {
+		final int window = 153;
+		final double[] logPrices = new double[window + 1];
+		final Random random = new Random(2468);
+		for (int k = 1; k < logPrices.length; k++) {
+			logPrices[k] = logPrices[k - 1] + 0.01 * random.nextGaussian();
+		}
+
+		final LombScargle lombScargle = new LombScargle(70, 18, 19, 6.28, 0.38, new Indices());
+		for (final LombScargle.Engine engine : LombScargle.Engine.values()) {
+			for (final LombScargle.Periodogram periodogram : LombScargle.Periodogram.values()) {
+				for (final LombScargle.FrequencySearch frequencySearch : LombScargle.FrequencySearch.values()) {
+					lombScargle.engine = engine;
+					lombScargle.periodogram = periodogram;
+					lombScargle.frequencySearch = frequencySearch;
+					lombScargle.pruning = frequencySearch == LombScargle.FrequencySearch.Grid;
+
+					final WindowBasis windowBasis = new WindowBasis(lombScargle, window, 21.0);
+					for (final boolean singlePrecision : new boolean[] { false, true }) {
+						final MyCPUCallable callable = new MyCPUCallable(0, windowBasis.getEngine(lombScargle),
+								singlePrecision ? windowBasis.getFloatEngine(lombScargle) : null, windowBasis,
+								logPrices, null, "2017-01-01", "TEST", new RunContext(false, true, 1));
+						final long retainedBytes = retainedBytes(callable);
+						assertTrue(retainedBytes > 0);
+						assertTrue(retainedBytes <= lombScargle.estimateScratchBytes(window, singlePrecision));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * retainedBytes calculates the date of the callable on a new thread and
+	 * returns the heap size of the arrays its arena keeps
+	 */
+	private static long retainedBytes(final MyCPUCallable callable) throws InterruptedException {
+		final AtomicLong retainedBytes = new AtomicLong(-1);
+		final Thread thread = new Thread() {
+			@Override
+			public void run() {
+				callable.call();
+				retainedBytes.set(ScratchArena.get().getRetainedBytes());
+			}
+		};
+		thread.start();
+		thread.join();
+		return retainedBytes.get();
+	}
+}
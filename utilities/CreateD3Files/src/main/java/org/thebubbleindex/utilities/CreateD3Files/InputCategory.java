@@ -83,14 +83,43 @@ public class InputCategory {
 	void createD3Files(final String outputFolder, final int maxLength, final int[] windows) throws IOException {
 		for (final String component : components) {
 			final Table<String, Integer, String> d3Table = TreeBasedTable.create();
-			for (final int window : windows) {
+
+			final File dailyData = new File(
+					this.folder + component + CreateD3Files.filePathSymbol + component + "dailydata.csv");
+			final File resultStore = new File(this.folder + component + CreateD3Files.filePathSymbol + component
+					+ ResultStoreReader.fileEnding);
+			final File[] files = new File[windows.length];
+			for (int i = 0; i < windows.length; i++) {
+				files[i] = new File(this.folder + component + CreateD3Files.filePathSymbol + component
+						+ String.valueOf(windows[i]) + "days.csv");
+			}
+
+			// the windows read from the result store
+			final boolean[] fromResultStore = new boolean[windows.length];
+			if (resultStore.exists() && isNewest(resultStore, files)) {
+				try {
+					final ResultStoreReader resultStoreReader = new ResultStoreReader(resultStore);
+					if (!dailyData.exists() || resultStoreReader.getRowCount() == countLines(dailyData)) {
+						readResultStore(resultStoreReader, maxLength, windows, fromResultStore, d3Table);
+					} else {
+						System.out.println("Result store does not match the daily data. Component: " + component);
+					}
+				} catch (final IOException ex) {
+					System.out.println("IOException Exception. Component: " + component + ex);
+				}
+			} else if (resultStore.exists()) {
+				System.out.println("Result store is older than the output files. Component: " + component);
+			}
+
+			for (int w = 0; w < windows.length; w++) {
+				final int window = windows[w];
+				if (fromResultStore[w]) {
+					continue;
+				}
 				try {
-					final File file = new File(this.folder + component + CreateD3Files.filePathSymbol + component
-							+ String.valueOf(window) + "days.csv");
+					final File file = files[w];
 					if (file.exists()) {
-						final List<String> lines = Files
-								.readAllLines(new File(this.folder + component + CreateD3Files.filePathSymbol
-										+ component + String.valueOf(window) + "days.csv").toPath());
+						final List<String> lines = Files.readAllLines(file.toPath());
 						lines.remove(0);// remove the header
 						final int sizeEntries = lines.size();
 
@@ -120,6 +149,51 @@ public class InputCategory {
 		}
 	}
 
+	/**
+	 * isNewest returns true if no output file is newer than the result store,
+	 * as a run which does not keep the store still writes the output files
+	 */
+	private static boolean isNewest(final File resultStore, final File[] files) {
+		final long storeModified = resultStore.lastModified();
+		for (final File file : files) {
+			if (file.exists() && file.lastModified() > storeModified) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int countLines(final File file) throws IOException {
+		final String fileAsString = new String(Files.readAllBytes(file.toPath()));
+		return fileAsString.split(System.getProperty("line.separator")).length;
+	}
+
+	/**
+	 * readResultStore reads the last maxLength values of the windows which the
+	 * result store has a column of and marks them in fromResultStore
+	 */
+	private static void readResultStore(final ResultStoreReader resultStoreReader, final int maxLength,
+			final int[] windows, final boolean[] fromResultStore, final Table<String, Integer, String> d3Table) {
+		final int[] columns = new int[windows.length];
+		final int[] remaining = new int[windows.length];
+		for (int w = 0; w < windows.length; w++) {
+			columns[w] = resultStoreReader.indexOfWindow(windows[w]);
+			fromResultStore[w] = columns[w] >= 0;
+			remaining[w] = maxLength;
+		}
+
+		final double[] row = new double[resultStoreReader.getWindowCount()];
+		for (int r = resultStoreReader.getRowCount() - 1; r >= 0; r--) {
+			resultStoreReader.readRow(r, row);
+			for (int w = 0; w < windows.length; w++) {
+				if (columns[w] >= 0 && remaining[w] > 0 && !Double.isNaN(row[columns[w]])) {
+					d3Table.put(resultStoreReader.getDate(r), windows[w], String.valueOf(row[columns[w]]));
+					remaining[w]--;
+				}
+			}
+		}
+	}
+
 	private void writeFileFromTable(final Table<String, Integer, String> d3Table, final String outputFolder,
 			final String component, final int[] windows, final String fileType) throws IOException {
 
@@ -0,0 +1,98 @@
+package org.thebubbleindex.utilities.CreateD3Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * ResultStoreReader reads the result store which The Bubble Index keeps of
+ * every window of a selection, such as BITSTAMPUSDresults.bin, in one
+ * sequential scan of its rows instead of one output file per window.
+ * <p>
+ * The file is little endian: a header of 32 bytes with the magic number, the
+ * version, the number of windows, the number of rows the file has room for
+ * and the number of rows, followed by the ascending windows and the dates of
+ * the rows as days since 1970-01-01, each padded to 8 bytes, and the rows of
+ * values with one double per window. A date before the first value of a
+ * window is NaN.
+ *
+ * @author thebubbleindex
+ */
+class ResultStoreReader {
+
+	static final String fileEnding = "results.bin";
+	private static final int headerBytes = 32;
+	private static final int magic = 0x31535242;
+	private static final int version = 1;
+
+	private final ByteBuffer buffer;
+	private final int[] windows;
+	private final int rowCount;
+	private final int datesOffset;
+	private final int valuesOffset;
+
+	ResultStoreReader(final File file) throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = randomAccessFile.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		} finally {
+			randomAccessFile.close();
+		}
+		if (buffer.capacity() < headerBytes || buffer.getInt(0) != magic || buffer.getInt(4) != version) {
+			throw new IOException("Not a result store: " + file);
+		}
+		final int windowCount = buffer.getInt(8);
+		final int rowCapacity = buffer.getInt(12);
+		rowCount = buffer.getInt(16);
+		datesOffset = headerBytes + align(4 * windowCount);
+		valuesOffset = datesOffset + align(4 * rowCapacity);
+		if (buffer.capacity() != valuesOffset + 8L * rowCapacity * windowCount) {
+			throw new IOException("Truncated result store: " + file);
+		}
+		windows = new int[windowCount];
+		for (int w = 0; w < windowCount; w++) {
+			windows[w] = buffer.getInt(headerBytes + 4 * w);
+		}
+	}
+
+	int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * indexOfWindow returns the column of a window, or a negative number if
+	 * the store has no values of the window
+	 */
+	int indexOfWindow(final int window) {
+		return Arrays.binarySearch(windows, window);
+	}
+
+	String getDate(final int row) {
+		return LocalDate.ofEpochDay(buffer.getInt(datesOffset + 4 * row)).toString();
+	}
+
+	/**
+	 * readRow reads the values of every window at a row into values
+	 */
+	void readRow(final int row, final double[] values) {
+		final ByteBuffer rowBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		rowBuffer.position((int) (valuesOffset + 8L * row * windows.length));
+		final DoubleBuffer doubles = rowBuffer.asDoubleBuffer();
+		doubles.get(values, 0, windows.length);
+	}
+
+	int getWindowCount() {
+		return windows.length;
+	}
+
+	private static int align(final int bytes) {
+		return (bytes + 7) & ~7;
+	}
+}
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -92,43 +93,47 @@ public class InputCategory {
 
 			final File dailyData = new File(
 					folder + component + CreateXYZFiles.filePathSymbol + component + "dailydata.csv");
+			final File resultStore = new File(
+					folder + component + CreateXYZFiles.filePathSymbol + component + ResultStoreReader.fileEnding);
 
 			if (dailyData.exists()) {
 				final String dailyDataAsString = new String(Files.readAllBytes(dailyData.toPath()));
 				dailyDataSize = dailyDataAsString.split(System.getProperty("line.separator")).length;
 			}
 
+			final File[] files = new File[windows.length];
 			for (int i = 0; i < windows.length; i++) {
-
-				final File file = new File(folder + component + CreateXYZFiles.filePathSymbol + component
+				files[i] = new File(folder + component + CreateXYZFiles.filePathSymbol + component
 						+ String.valueOf(windows[i]) + "days.csv");
-				if (file.exists()) {
-
-					windowsExist.add(windows[i]);
+			}
 
-					final String fileAsString = new String(Files.readAllBytes(file.toPath()));
-					final String[] fileLines = fileAsString.split(System.getProperty("line.separator"));
-
-					for (int j = 1; j < fileLines.length; j++) {
-						final String[] line = fileLines[j].split(",");
-						if (line.length >= 3) {
-							try {
-								final int value = bubbleStandardValue(line[1], windows[i]);
-								if (value > maximumValue)
-									maximumValue = value;
-								if (allDataTable.containsKey(line[2])) {
-									allDataTable.get(line[2])[i] = value;
-								} else {
-									final int[] valueArray = new int[windows.length];
-									valueArray[i] = value;
-									allDataTable.put(line[2], valueArray);
-								}
-							} catch (final Exception ex) {
-								System.out.println("Exception. Component: " + component + ex);
-
-							}
-						}
+			// the windows read from the result store
+			final boolean[] fromResultStore = new boolean[windows.length];
+			if (resultStore.exists() && isNewest(resultStore, files)) {
+				try {
+					final ResultStoreReader resultStoreReader = new ResultStoreReader(resultStore);
+					if (!dailyData.exists() || resultStoreReader.getRowCount() == dailyDataSize) {
+						maximumValue = readResultStore(resultStoreReader, windows, fromResultStore, allDataTable);
+					} else {
+						System.out.println("Result store does not match the daily data. Component: " + component);
 					}
+				} catch (final IOException ex) {
+					System.out.println("IOException Exception. Component: " + component + ex);
+					Arrays.fill(fromResultStore, false);
+					allDataTable.clear();
+					maximumValue = 0;
+				}
+			} else if (resultStore.exists()) {
+				System.out.println("Result store is older than the output files. Component: " + component);
+			}
+
+			for (int i = 0; i < windows.length; i++) {
+				if (fromResultStore[i]) {
+					windowsExist.add(windows[i]);
+				} else if (files[i].exists()) {
+					windowsExist.add(windows[i]);
+					maximumValue = Math.max(maximumValue,
+							readOutputFile(files[i], windows, i, component, allDataTable));
 				}
 			}
 
@@ -140,10 +145,94 @@ public class InputCategory {
 		}
 	}
 
+	/**
+	 * isNewest returns true if no output file is newer than the result store,
+	 * as a run which does not keep the store still writes the output files
+	 */
+	private static boolean isNewest(final File resultStore, final File[] files) {
+		final long storeModified = resultStore.lastModified();
+		for (final File file : files) {
+			if (file.exists() && file.lastModified() > storeModified) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * readOutputFile reads the values of the window at index i from its output
+	 * file and returns the maximum value
+	 */
+	private static int readOutputFile(final File file, final Integer[] windows, final int i,
+			final String component, final Map<String, int[]> allDataTable) throws IOException {
+		int maximumValue = 0;
+		final String fileAsString = new String(Files.readAllBytes(file.toPath()));
+		final String[] fileLines = fileAsString.split(System.getProperty("line.separator"));
+
+		for (int j = 1; j < fileLines.length; j++) {
+			final String[] line = fileLines[j].split(",");
+			if (line.length >= 3) {
+				try {
+					final int value = bubbleStandardValue(line[1], windows[i]);
+					if (value > maximumValue)
+						maximumValue = value;
+					if (allDataTable.containsKey(line[2])) {
+						allDataTable.get(line[2])[i] = value;
+					} else {
+						final int[] valueArray = new int[windows.length];
+						valueArray[i] = value;
+						allDataTable.put(line[2], valueArray);
+					}
+				} catch (final Exception ex) {
+					System.out.println("Exception. Component: " + component + ex);
+
+				}
+			}
+		}
+		return maximumValue;
+	}
+
+	/**
+	 * readResultStore reads the values of the windows which the result store
+	 * has a column of in one scan of its rows, marks them in fromResultStore
+	 * and returns the maximum value
+	 */
+	private static int readResultStore(final ResultStoreReader resultStoreReader, final Integer[] windows,
+			final boolean[] fromResultStore, final Map<String, int[]> allDataTable) {
+		final int[] columns = new int[windows.length];
+		for (int i = 0; i < windows.length; i++) {
+			columns[i] = resultStoreReader.indexOfWindow(windows[i]);
+			fromResultStore[i] = columns[i] >= 0;
+		}
+
+		int maximumValue = 0;
+		final double[] row = new double[resultStoreReader.getWindowCount()];
+		for (int r = 0; r < resultStoreReader.getRowCount(); r++) {
+			resultStoreReader.readRow(r, row);
+			int[] valueArray = null;
+			for (int i = 0; i < windows.length; i++) {
+				if (columns[i] >= 0 && !Double.isNaN(row[columns[i]])) {
+					final int value = bubbleStandardValue(row[columns[i]], windows[i]);
+					if (value > maximumValue)
+						maximumValue = value;
+					if (valueArray == null) {
+						valueArray = new int[windows.length];
+						allDataTable.put(resultStoreReader.getDate(r), valueArray);
+					}
+					valueArray[i] = value;
+				}
+			}
+		}
+		return maximumValue;
+	}
+
+	private static int bubbleStandardValue(final double value, final Integer window) {
+		return (int) Math.round(
+				value / (FastMath.exp(-9.746393 + 3.613444 * FastMath.log(window)) * 2.0 + 550.0) * 100.0);
+	}
+
 	private static int bubbleStandardValue(final String value, final Integer window) {
-		final int roundedValue = (int) Math.round(Double.parseDouble(value)
-				/ (FastMath.exp(-9.746393 + 3.613444 * FastMath.log(window)) * 2.0 + 550.0) * 100.0);
-		return roundedValue;
+		return bubbleStandardValue(Double.parseDouble(value), window);
 	}
 
 	private void writeXYZFile(final Map<String, int[]> allDataTable, final Integer[] windows, final String outputFolder,
@@ -44,13 +44,20 @@ public class CompositeIndex {
 		System.out.println("Name of country: " + category.getName());
 		System.out.println("Number of of stocks: " + stockNames.size());
 		System.out.println("Number of windows: " + dayWindow.length);
+		final Map<String, ResultStoreReader> resultStoreReaders = new HashMap<String, ResultStoreReader>();
+		for (final String stockName : stockNames) {
+			resultStoreReaders.put(stockName, openResultStore(stockName));
+		}
 		for (int i = 0; i < dayWindow.length; i++) {
 			for (int j = 0; j < stockNames.size(); j++) {
 
-				final String PreviousFilePath = CreateCompositeFiles.userDir + CreateCompositeFiles.filePathSymbol
-						+ CreateCompositeFiles.programDataFolder + CreateCompositeFiles.filePathSymbol + countryName
-						+ CreateCompositeFiles.filePathSymbol + stockNames.get(j) + CreateCompositeFiles.filePathSymbol
-						+ stockNames.get(j) + Integer.toString(dayWindow[i]) + "days.csv";
+				final ResultStoreReader resultStoreReader = resultStoreReaders.get(stockNames.get(j));
+				if (resultStoreReader != null && resultStoreReader.indexOfWindow(dayWindow[i]) >= 0) {
+					putRawValues(resultStoreReader, resultStoreReader.indexOfWindow(dayWindow[i]));
+					continue;
+				}
+
+				final String PreviousFilePath = getOutputFilePath(stockNames.get(j), dayWindow[i]);
 
 				final Path filepath = new File(PreviousFilePath).toPath();
 				if (Files.exists(filepath)) {
@@ -74,6 +81,66 @@ public class CompositeIndex {
 		}
 	}
 
+	private String getStockFolder(final String stockName) {
+		return CreateCompositeFiles.userDir + CreateCompositeFiles.filePathSymbol
+				+ CreateCompositeFiles.programDataFolder + CreateCompositeFiles.filePathSymbol + countryName
+				+ CreateCompositeFiles.filePathSymbol + stockName + CreateCompositeFiles.filePathSymbol;
+	}
+
+	private String getOutputFilePath(final String stockName, final int window) {
+		return getStockFolder(stockName) + stockName + Integer.toString(window) + "days.csv";
+	}
+
+	/**
+	 * openResultStore returns the result store of the stock, or null if it
+	 * does not exist, is older than an output file or does not match the daily
+	 * data, in which case the output files are read
+	 */
+	private ResultStoreReader openResultStore(final String stockName) {
+		final File resultStore = new File(getStockFolder(stockName) + stockName + ResultStoreReader.fileEnding);
+		if (!resultStore.exists()) {
+			return null;
+		}
+		final long storeModified = resultStore.lastModified();
+		for (final int window : dayWindow) {
+			final File file = new File(getOutputFilePath(stockName, window));
+			if (file.exists() && file.lastModified() > storeModified) {
+				System.out.println("Result store is older than the output files. Stock: " + stockName);
+				return null;
+			}
+		}
+		try {
+			final ResultStoreReader resultStoreReader = new ResultStoreReader(resultStore);
+			final File dailyData = new File(getStockFolder(stockName) + stockName + "dailydata.csv");
+			if (dailyData.exists()) {
+				final String fileAsString = new String(Files.readAllBytes(dailyData.toPath()));
+				if (resultStoreReader.getRowCount() != fileAsString
+						.split(System.getProperty("line.separator")).length) {
+					System.out.println("Result store does not match the daily data. Stock: " + stockName);
+					return null;
+				}
+			}
+			return resultStoreReader;
+		} catch (final IOException ex) {
+			System.out.println("Error reading the result store: " + ex);
+			return null;
+		}
+	}
+
+	/**
+	 * putRawValues adds the values of a column of the result store, skipping
+	 * the dates before the first value of the window
+	 */
+	private void putRawValues(final ResultStoreReader resultStoreReader, final int column) {
+		final double[] row = new double[resultStoreReader.getWindowCount()];
+		for (int r = 0; r < resultStoreReader.getRowCount(); r++) {
+			resultStoreReader.readRow(r, row);
+			if (!Double.isNaN(row[column])) {
+				putRawValue(resultStoreReader.getDate(r), row[column]);
+			}
+		}
+	}
+
 	private void putRawValues(final List<String> dataValues, final List<String> dateValues) {
 		final Iterator<String> dataIterator = dataValues.iterator();
 		final Iterator<String> dateIterator = dateValues.iterator();
@@ -84,20 +151,23 @@ public class CompositeIndex {
 			while (dataIterator.hasNext()) {
 				final String date = dateIterator.next();
 				final double data = Double.parseDouble(dataIterator.next());
-
-				if (rawValueMap.containsKey(date)) {
-					final ArrayList<Double> tempList = rawValueMap.get(date);
-					tempList.add(data);
-					// rawValueMap.put(date, tempList);
-				} else {
-					final ArrayList<Double> tempList = new ArrayList<Double>();
-					tempList.add(data);
-					rawValueMap.put(date, tempList);
-				}
+				putRawValue(date, data);
 			}
 		}
 	}
 
+	private void putRawValue(final String date, final double data) {
+		if (rawValueMap.containsKey(date)) {
+			final ArrayList<Double> tempList = rawValueMap.get(date);
+			tempList.add(data);
+			// rawValueMap.put(date, tempList);
+		} else {
+			final ArrayList<Double> tempList = new ArrayList<Double>();
+			tempList.add(data);
+			rawValueMap.put(date, tempList);
+		}
+	}
+
 	void setCountryName(final String countryName) {
 		this.countryName = countryName;
 	}